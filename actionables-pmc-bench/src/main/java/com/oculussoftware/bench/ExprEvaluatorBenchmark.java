@@ -0,0 +1,58 @@
+package com.oculussoftware.bench;
+
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.util.expr.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Filename:    ExprEvaluatorBenchmark.java
+* Date:
+* Description: Times ExprEvaluator on the kinds of rule expressions the workflow
+*              transitions carry.
+*
+* <P>An Expression is used up as it is evaluated, so each call either parses the text
+* again or resets an expression that was parsed once.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ExprEvaluatorBenchmark
+{
+  @Param({"( ( 1 + 2 ) * 3 )",
+          "( ( ( 4 * 5 ) - ( 6 / 2 ) ) > ( 10 + 1 ) )",
+          "( ( ( 1 < 2 ) && ( 3 >= 3 ) ) || ( ( 4 == 5 ) && ( 6 != 7 ) ) )"})
+  public String text;
+
+  private Expression _expr;
+
+  @Setup
+  public void setup()
+    throws OculusException
+  {
+    _expr = new Expression(null, text);
+  }
+
+  /** Parses and evaluates the text. */
+  @Benchmark
+  public float parseAndEvaluate()
+    throws OculusException
+  {
+    return new ExprEvaluator(new Expression(null, text)).evaluate();
+  }
+
+  /** Evaluates an expression that was parsed once. */
+  @Benchmark
+  public float evaluate()
+    throws OculusException
+  {
+    _expr.reset();
+    return new ExprEvaluator(_expr).evaluate();
+  }
+}
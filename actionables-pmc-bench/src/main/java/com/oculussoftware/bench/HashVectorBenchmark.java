@@ -0,0 +1,92 @@
+package com.oculussoftware.bench;
+
+import com.oculussoftware.util.HashVector;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Filename:    HashVectorBenchmark.java
+* Date:
+* Description: Times the HashVector operations the collections and the PoolMgr lean on.
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class HashVectorBenchmark
+{
+  @Param({"100", "10000"})
+  public int size;
+
+  private HashVector _full;
+  private Object[] _keys;
+  private int _next = 0;
+
+  @Setup
+  public void setup()
+  {
+    _keys = new Object[size];
+    _full = new HashVector();
+    for (int i = 0; i < size; i++)
+    {
+      _keys[i] = "key" + i;
+      _full.put(_keys[i], new Long(i));
+    }
+  }
+
+  private Object _nextKey()
+  {
+    if (++_next == size)
+      _next = 0;
+    return _keys[_next];
+  }
+
+  @Benchmark
+  public Object getByKey()
+  {
+    return _full.get(_nextKey());
+  }
+
+  @Benchmark
+  public Object getByIndex()
+  {
+    if (++_next == size)
+      _next = 0;
+    return _full.get(_next);
+  }
+
+  /** Removes an entry and puts it back, which also moves it to the end of the list. */
+  @Benchmark
+  public Object removeAndPut()
+  {
+    Object key = _nextKey();
+    Object value = _full.remove(key);
+    _full.put(key, value);
+    return value;
+  }
+
+  @Benchmark
+  public long iterate()
+  {
+    long total = 0;
+    for (Iterator it = _full.iterator(); it.hasNext(); )
+      total += ((Long)it.next()).longValue();
+    return total;
+  }
+
+  /** Builds a new HashVector of the given size. */
+  @Benchmark
+  public HashVector build()
+  {
+    HashVector hv = new HashVector();
+    for (int i = 0; i < size; i++)
+      hv.put(_keys[i], _keys[i]);
+    return hv;
+  }
+}
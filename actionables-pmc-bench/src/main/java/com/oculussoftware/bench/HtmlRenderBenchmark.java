@@ -0,0 +1,69 @@
+package com.oculussoftware.bench;
+
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.api.ui.html.BrowserKind;
+import com.oculussoftware.api.ui.html.wrappers.*;
+import com.oculussoftware.ui.html.wrappers.HTML;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Filename:    HtmlRenderBenchmark.java
+* Date:
+* Description: Times rendering a large IHTML page, both into a String and straight to
+*              a Writer the way EclatServlet sends it.
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class HtmlRenderBenchmark
+{
+  /** Number of rows in the page's table, each with four cells. */
+  @Param({"100", "1000"})
+  public int rows;
+
+  private IHTML _page;
+  private Writer _sink;
+
+  @Setup
+  public void setup()
+    throws OculusException
+  {
+    _page = new HTML(BrowserKind.ALL);
+    ITable table = _page.addBody().addTable();
+    for (int i = 0; i < rows; i++)
+    {
+      ITableRow row = table.addTableRow();
+      row.addTableData().addAnchor("Item " + i, "/servlet/Eclat?object=" + i);
+      row.addTableData("Description of item " + i);
+      row.addTableData("Open");
+      row.addTableData(String.valueOf(i * 17));
+    }
+    _sink = new Writer() {
+      public void write(char[] cbuf, int off, int len) {}
+      public void write(String str, int off, int len) {}
+      public void flush() {}
+      public void close() {}
+    };
+  }
+
+  @Benchmark
+  public String renderToString()
+  {
+    return _page.toString();
+  }
+
+  @Benchmark
+  public void writeToWriter()
+    throws IOException
+  {
+    _page.write(_sink);
+  }
+}
@@ -0,0 +1,84 @@
+package com.oculussoftware.bench;
+
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.repos.util.SequentialIID;
+import com.oculussoftware.system.GUID;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Filename:    IIDBenchmark.java
+* Date:
+* Description: Times making, hashing and comparing GUIDs and SequentialIIDs.
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class IIDBenchmark
+{
+  private IGUID _guid;
+  private IGUID _sameGuid;
+  private IIID _iid;
+  private IIID _otherIID;
+  private long _next = 1;
+
+  @Setup
+  public void setup()
+    throws OculusException
+  {
+    _guid = new GUID();
+    _sameGuid = new GUID(_guid.toString());
+    _iid = new SequentialIID(1234567L);
+    _otherIID = new SequentialIID(7654321L);
+  }
+
+  @Benchmark
+  public IGUID newGUID()
+    throws OculusException
+  {
+    return new GUID();
+  }
+
+  @Benchmark
+  public boolean guidEquals()
+  {
+    return _guid.equals(_sameGuid);
+  }
+
+  @Benchmark
+  public int guidHashCode()
+  {
+    return _guid.hashCode();
+  }
+
+  @Benchmark
+  public IIID newSequentialIID()
+  {
+    return new SequentialIID(_next++);
+  }
+
+  @Benchmark
+  public IIID genIID()
+  {
+    return SequentialIID.genIID();
+  }
+
+  @Benchmark
+  public int iidHashCode()
+  {
+    return _iid.hashCode();
+  }
+
+  @Benchmark
+  public int iidCompareTo()
+  {
+    return ((Comparable)_iid).compareTo(_otherIID);
+  }
+}
@@ -0,0 +1,127 @@
+package com.oculussoftware.bench;
+
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.system.*;
+import com.oculussoftware.util.DataSet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Filename:    PoolMgrBenchmark.java
+* Date:
+* Description: Times the PoolMgr paths every business object request goes through.
+*
+* <P>The objects handed out are stubs that never touch the database, so what is timed is
+* the PoolMgr's own work: the cache lookups, the locking and the dolly() copy.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PoolMgrBenchmark
+{
+  private IPoolMgr _pool;
+  private IObjectContext _context;
+  private IDataSet _args;
+
+  @Setup
+  public void setup()
+    throws Exception
+  {
+    _pool = PoolMgr.getInstance();
+    _context = new ObjectContext();
+    _context.setConnection(CRM.getInstance().connect("system","system"));
+    _args = new DataSet().setIID(42);
+    _pool.returnObject(_pool.getObject(_context, StubPoolable.class.getName()));
+    _pool.getObject(_context, StubPersistable.class.getName(), _args);   // puts it in the cache
+  }
+
+  /** Checks an object out of the pool and puts it back. */
+  @Benchmark
+  public IPoolable getAndReturnObject()
+    throws OculusException
+  {
+    IPoolable obj = _pool.getObject(_context, StubPoolable.class.getName());
+    _pool.returnObject(obj);
+    return obj;
+  }
+
+  /** Reads a cached persistable object for viewing, which copies it. */
+  @Benchmark
+  public IPersistable getCachedObject()
+    throws OculusException
+  {
+    return _pool.getObject(_context, StubPersistable.class.getName(), _args);
+  }
+
+  //------------------------ Stub Objects ------------------------------------
+  public static class StubPoolable implements IPoolable
+  {
+    protected IObjectContext _context;
+    protected IGUID _guid;
+
+    public StubPoolable() {}
+
+    public boolean isLocked() { return false; }
+    public IPoolable construct(IObjectContext context, IDataSet args) throws OculusException
+    {
+      _context = context;
+      _guid = new GUID();
+      return this;
+    }
+    public Object dolly() throws OculusException
+    {
+      StubPoolable copy = newCopy();
+      copy._context = _context;
+      copy._guid = _guid;
+      return copy;
+    }
+    public boolean isRemoveable() { return true; }
+    public IGUID getGUID() { return _guid; }
+    public IObjectContext getObjectContext() throws ORIOException { return _context; }
+    public IObject setObjectContext(IObjectContext context) throws ORIOException
+    {
+      _context = context;
+      return this;
+    }
+
+    protected StubPoolable newCopy() { return new StubPoolable(); }
+  }
+
+  public static class StubPersistable extends StubPoolable implements IPersistable
+  {
+    private PersState _state = PersState.UNINITED;
+    private IIID _iid;
+
+    public StubPersistable() {}
+
+    public IPoolable construct(IObjectContext context, IDataSet args) throws OculusException
+    {
+      super.construct(context, args);
+      _iid = args.getIID();
+      return this;
+    }
+    public Object dolly() throws OculusException
+    {
+      StubPersistable copy = (StubPersistable)super.dolly();
+      copy._state = _state;
+      copy._iid = _iid;
+      return copy;
+    }
+    public IPersistable setPersState(PersState state) { _state = state; return this; }
+    public PersState getPersState() { return _state; }
+    public IPersistable setIID(IIID iid) throws ORIOException { _iid = iid; return this; }
+    public IIID getIID() throws ORIOException { return _iid; }
+    public IPersistable load() throws OculusException { _state = PersState.UNMODIFIED; return this; }
+    public IPersistable save() throws OculusException { return this; }
+    public IPersistable delete() throws OculusException { return this; }
+
+    protected StubPoolable newCopy() { return new StubPersistable(); }
+  }
+}
@@ -0,0 +1,92 @@
+package com.oculussoftware.bench;
+
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.repi.query.*;
+import com.oculussoftware.api.repi.xmeta.*;
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.bus.xmeta.XMen;
+import com.oculussoftware.repos.query.*;
+import com.oculussoftware.repos.xmeta.XMR;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+* Filename:    QueryToSQLBenchmark.java
+* Date:
+* Description: Times turning the kinds of IQuery the search pages build into SQL.
+*
+* <P>Only the static XMen meta data is used, so no database is needed.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class QueryToSQLBenchmark
+{
+  private QueryToSQL _writer;
+  private IQuery _simple;
+  private IQuery _keyword;
+  private IQuery _chained;
+
+  @Setup
+  public void setup()
+    throws OculusException
+  {
+    IXMR xmr = XMR.getInstance();
+    _writer = QueryToSQL.getSQLWriter(DBVendor.SQL_SERVER, xmr);
+    List noChain = Arrays.asList(new IXAssoc[] {});
+
+    // a plain list of products
+    _simple = new PMCQuery();
+    _simple.setTargetClass(XMen.CLS_PRODUCT);
+    _simple.getSelect().addAttr(xmr.getAttrRef(null, XMen.CLS_PRODUCT, noChain, XMen.ATTR_PROD_NAME));
+
+    // a keyword search over the name and description
+    IQAttrRef name = xmr.getAttrRef(null, XMen.CLS_PRODUCT, noChain, XMen.ATTR_PROD_NAME);
+    IQAttrRef desc = xmr.getAttrRef(null, XMen.CLS_PRODUCT, noChain, XMen.ATTR_PROD_DESC);
+    _keyword = new PMCQuery();
+    _keyword.setTargetClass(XMen.CLS_PRODUCT);
+    _keyword.getSelect().addAttr(name);
+    _keyword.getFilter().setExpr(new QFilterExpr(BoolOper.BOOL_OR,
+                                   new QFilterExpr(BoolOper.BOOL_AND,
+                                     new QFilterExpr(CompOper.COMP_LIKE, name, "widget"),
+                                     new QFilterExpr(CompOper.COMP_LIKE, name, "gear")),
+                                   new QFilterExpr(BoolOper.BOOL_AND,
+                                     new QFilterExpr(CompOper.COMP_LIKE, desc, "widget"),
+                                     new QFilterExpr(CompOper.COMP_LIKE, desc, "gear"))));
+
+    // feature links, joined through to the feature
+    _chained = new PMCQuery();
+    _chained.setTargetClass(XMen.CLS_CATFEATLINK);
+    _chained.getSelect().addAttr(xmr.getAttrRef(null, XMen.CLS_CATFEATLINK,
+                                   Arrays.asList(new IXAssoc[] {XMen.ASC_FEATLINK_FEAT}), XMen.ATTR_FEAT_VISIBLEID));
+    _chained.getFilter().setExpr(XMen.FILTER_CATFEATLINK_FEAT_REV);
+  }
+
+  @Benchmark
+  public String simpleSelect()
+    throws OculusException
+  {
+    return _writer.translate(_simple);
+  }
+
+  @Benchmark
+  public String keywordFilter()
+    throws OculusException
+  {
+    return _writer.translate(_keyword);
+  }
+
+  @Benchmark
+  public String chainedJoin()
+    throws OculusException
+  {
+    return _writer.translate(_chained);
+  }
+}
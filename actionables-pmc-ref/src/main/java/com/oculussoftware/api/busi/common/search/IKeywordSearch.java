@@ -83,6 +83,23 @@ public interface IKeywordSearch
   */
   public ReposSearcher getSearcher() throws OculusException;
   
+  /**
+  * This method returns how well the object matched the keywords, as scored by the
+  * keyword index.  Higher is better; 0 means the index did not score the object.
+  * @param objectID The long Object ID of a row the search returned.
+  * @return The relevance of the object.
+  * @exception com.oculussoftware.api.sysi.OculusException 
+  */
+  public double getRelevance(long objectID) throws OculusException;
+
+  /**
+  * This method runs the KeywordSearch and returns the Object IDs it found, most
+  * relevant first.
+  * @return The List of Long Object IDs.
+  * @exception com.oculussoftware.api.sysi.OculusException 
+  */
+  public List getRankedObjectIDs() throws OculusException;
+
   /**
   * This method returns the List of IQuery objects.
   * @return The List of IQuery objects
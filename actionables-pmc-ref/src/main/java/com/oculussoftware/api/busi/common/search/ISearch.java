@@ -649,6 +649,15 @@ public interface ISearch extends java.io.Serializable
   */
   public IDataSet retrieve() throws OculusException;
   
+  /**
+  * This method returns a ReposSearcher that reads the results of the Search a page
+  * at a time.  Keep it to read the next or previous page.
+  * @param pageSize The number of rows in a page.
+  * @return The ReposSearcher.
+  * @exception com.oculussoftware.api.sysi.OculusException 
+  */
+  public com.oculussoftware.repos.query.ReposSearcher getPagedSearcher(int pageSize) throws OculusException;
+  
   /**
   * This method returns the SQL statement for the Search object.
   * @return The SQL statement.
@@ -16,6 +16,23 @@ public interface IDataSet extends Map
   
   public boolean next()
     throws ORIOException;    
+
+  /** Returns the index of the named column, so that a loop over many rows can look the
+  * name up once and use the int getters. */
+  public int findColumn(String key)
+    throws ORIOException;
+
+  /** Returns true if the last value read with a primitive getter was NULL. */
+  public boolean wasNull()
+    throws ORIOException;
+
+  /** Returns the number of rows read so far by next(), which is the number of the current row. */
+  public int getRow();
+
+  /** Returns the number of rows in the set, or -1 if it isn't known without reading them. */
+  public int getRowCount()
+    throws ORIOException;
+    
     
   public int getInt(String key)throws ORIOException; 
   public int getInt(int key)throws ORIOException; 
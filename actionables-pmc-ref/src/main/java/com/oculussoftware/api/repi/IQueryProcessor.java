@@ -18,6 +18,44 @@ public interface IQueryProcessor
   public IDataSet retrieve()
   	throws ORIOException;
 
+  /** Runs an update with '?' placeholders, binding the given values to them in order.
+  * The statement is prepared once per connection and reused. */
+  public int update(String strQuery, Object[] params)
+  	throws ORIOException;
+
+  /** Runs a query with '?' placeholders, binding the given values to them in order.
+  * The statement is prepared once per connection and reused. */
+  public IDataSet retrieve(String strQuery, Object[] params)
+  	throws ORIOException;
+
+  /** Runs a query and hands its rows to the handler one at a time as they are read,
+  * instead of returning them.  The result set is forward-only and is closed when the
+  * handler returns false or the rows run out, so only a fetch's worth of rows is held
+  * in memory.
+  * @return the number of rows handed to the handler. */
+  public int retrieve(String strQuery, IRowHandler handler)
+  	throws com.oculussoftware.api.sysi.OculusException;
+
+  /** Streams the rows of a query with '?' placeholders to the handler. */
+  public int retrieve(String strQuery, Object[] params, IRowHandler handler)
+  	throws com.oculussoftware.api.sysi.OculusException;
+
+  /** Sets the number of rows the driver reads from the database at a time.  0 leaves it
+  * to the driver, except that a streamed query then uses a fetch size of its own. */
+  public IQueryProcessor setFetchSize(int rows);
+
+  /** Sets the most rows a query may return; the rest are silently dropped.  0 is no limit. */
+  public IQueryProcessor setMaxRows(int rows);
+
+  /** Sets the seconds a query may run before the driver cancels it.  0 is no limit. */
+  public IQueryProcessor setQueryTimeout(int seconds);
+
+  public int getFetchSize();
+
+  public int getMaxRows();
+
+  public int getQueryTimeout();
+
   public void close()
   	throws ORIOException;
 
@@ -45,4 +45,19 @@ public interface IRConnection extends IPoolable
 	public IPreparedStatementProcessor prepareProcessor(String sql)
 		throws ORIOException;
 	
+	/** starts collecting the updates made through this connection into JDBC batches.  The
+	* batches are sent before any read, before any prepared statement and by endBatch(). */
+	public void startBatch()
+		throws ORIOException;
+	
+	/** sends any batched updates to the repository and stops batching */
+	public void endBatch()
+		throws ORIOException;
+	
+	/** returns the number of updates sent in batches since the last startBatch() */
+	public int getBatchedStatementCount();
+	
+	/** returns the number of batches sent since the last startBatch() */
+	public int getBatchCount();
+	
 }
\ No newline at end of file
@@ -20,6 +20,10 @@ public interface IRepository extends IRObjectContext
   public IIID genReposID()
     throws OculusException;
     
+  /** Reserves <code>count</code> consecutive object ids and returns the first one. */
+  public long genReposIDRange(int count)
+    throws OculusException;
+    
   public int getMajorVersion() 
     throws OculusException;
 
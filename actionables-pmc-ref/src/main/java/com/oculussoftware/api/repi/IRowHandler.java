@@ -0,0 +1,15 @@
+package com.oculussoftware.api.repi;
+
+import com.oculussoftware.api.sysi.OculusException;
+
+/** Receives the rows of a streamed query one at a time.
+*
+* The data set passed in is positioned on the current row and is only good until
+* handleRow() returns; a handler that needs the values later has to copy them.
+*/
+public interface IRowHandler
+{
+  /** Handles one row.  Returns false to stop reading rows. */
+  public boolean handleRow(IDataSet row)
+    throws OculusException;
+}
@@ -58,6 +58,9 @@ public final class CompOper extends IntEnum implements IOperator
   public static final CompOper COMP_TRUE        =     new CompOper(25 ,"true/yes"  , "COMP_TRUE", false);
   public static final CompOper COMP_FALSE       =     new CompOper(26 ,"false/no"  , "COMP_FALSE", false);
   public static final CompOper COMP_EXT_KEYWORD_LIKE = new CompOper(30 ,"contains keyword text", null, false);
+  // COMP_KEYWORD_IN is built by KeywordSearch from the KeywordIndex.  The right side is the long[] of
+  // matching OBJECTIDs of the attribute's table, or of the extended values if the left side is null.
+  public static final CompOper COMP_KEYWORD_IN = new CompOper(31 ,"contains keyword text (indexed)", null, false);
   // COMP_EQJOIN is not for public consumption.  Its used by query translator to create the 'join'
   // portion of a filter expression.  Needed since Oracle does not support 'LEFT OUTER JOIN' operator
   // in the FROM clause.
@@ -0,0 +1,25 @@
+package com.oculussoftware.api.sysi;
+
+/** This interface represents an operation in a transaction that saves many objects of
+* the repository at once, without an IPersistable for each of them.  The transaction uses
+* it to find out which objects were saved.
+*/
+
+/*
+* $Workfile: IBulkPersistable.java $
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* Change Activity
+* Issue number  	Programmer    	Date      	Description
+* ------------    ----------      ----        -----------
+*/
+
+public interface IBulkPersistable extends IPersistable
+{
+  /** Returns the ids of the objects the last save() created or changed.
+  *
+  * @return the object ids
+  */
+  public long[] getSavedIDs();
+}
@@ -14,6 +14,8 @@ package com.oculussoftware.api.sysi;
 * Change Activity
 * Issue number  	Programmer    	Date      	Description
 * ------------    ----------      ----        -----------
+*                                             GUIDs that are equal have the same hashCode(), so they
+*                                             can be used as keys.
 */
 public interface IGUID 
 {
@@ -23,6 +25,12 @@ public interface IGUID
   */
   public boolean equals(IGUID guid);
 
+  /** Returns a hash code that is the same for equivalent GUIDs.
+  *
+  * @return the hash code of this GUID
+  */
+  public int hashCode();
+
   /** Returns the String equivalent of this GUID.
   *
   * @return the String equivalent of this GUID
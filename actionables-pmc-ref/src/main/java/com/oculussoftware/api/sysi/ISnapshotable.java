@@ -0,0 +1,41 @@
+package com.oculussoftware.api.sysi;
+
+/** This interface represents a cachable object that can hand out cheap view-only
+* copies of itself.  A snapshot shares the cached object's state instead of copying it
+* the way dolly() does, and only makes its own copy of that state the first time it is
+* changed.  The PoolMgr uses snapshots for view-only requests; objects requested for
+* edit are still dolly()'d.
+*/
+
+/*
+* $Workfile: ISnapshotable.java $
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* Change Activity
+* Issue number  	Programmer    	Date      	Description
+* ------------    ----------      ----        -----------
+*/
+
+public interface ISnapshotable extends IPoolable
+{
+  /** Returns a view-only copy of this object that shares its state.
+  *
+  * @return the snapshot
+  * @exception com.oculussoftware.api.sysi.OculusException
+  */
+  public Object snapshot()
+    throws OculusException;
+  /** Returns whether or not this object is a snapshot that still shares its state
+  * with the object it was taken from.
+  *
+  * @return true if this object is an unchanged snapshot, false otherwise
+  */
+  public boolean isSnapshot();
+  /** Returns whether or not snapshots have been taken that share this object's state.
+  * The state of a shared object must not be changed.
+  *
+  * @return true if this object's state is shared, false otherwise
+  */
+  public boolean isShared();
+}
@@ -40,6 +40,15 @@ public interface IGenericElement
   * @return The HTML String for this Element.
   */
   public String toString();
+
+  /**
+  * Writes the HTML tags for this Element, including start tag with parameters, 
+  * contained elements, and end tag, to the Writer as it goes.  Produces the same
+  * HTML as toString() without building it in memory first.
+  * @param out The Writer to write the HTML to.
+  * @exception java.io.IOException 
+  */
+  public void write(java.io.Writer out) throws java.io.IOException;
     
   /** 
   * Returns entire HTML start tag.
@@ -61,7 +70,7 @@ public interface IGenericElement
   
   /** 
   * Returns HTML for all Elements contained by this Element.  
-  * note: recursive call to toString() 
+  * note: recursive call to write() 
   * @return HTML for all Elements contained by this Element.
   */ 
   public String getElements();
@@ -46,6 +46,8 @@ import java.util.*;
 * ---             Zain Nemaze     3/1/00      Added COL_DELETESTATE
 * BUG00597				Saleem Shafi		6/1/00			Needed to remove final keyword from column names because of aliasing.
 * ---             Cuihua Zhang    6/8/2000    Added four variations of method getAttachedDiscussionTopics()        
+* ---                                         Added copyOwnProperties() and copy-on-write of the property map
+*                                             for the PoolMgr's view-only snapshots.
 */
 abstract public class BusinessObject extends com.oculussoftware.repos.ReposObject
                                      implements IBusinessObject, IRPropertyMap
@@ -107,6 +109,20 @@ abstract public class BusinessObject extends com.oculussoftware.repos.ReposObjec
 
   //-------------------------- Protected Methods -----------------------------
   
+  /** Gives a new snapshot its own copies of the standard properties. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _name = ownCopy(_name);
+    _description = ownCopy(_description);
+    _creationDate = ownCopy(_creationDate);
+    _messageAttached = ownCopy(_messageAttached);
+    _linkAttached = ownCopy(_linkAttached);
+    _fileAttached = ownCopy(_fileAttached);
+    _class = ownCopy(_class);
+  }
+  
   protected String getLoadPropertiesQuery()
     throws OculusException
   {
@@ -135,6 +151,18 @@ abstract public class BusinessObject extends com.oculussoftware.repos.ReposObjec
   }
 
 
+  /** The properties come straight from the value tables, so a collection can load them a
+  * page at a time.  A subclass that replaces getLoadPropertiesQuery() must override this. */
+  protected boolean canPageLoadProperties()
+  {
+    return true;
+  }
+
+  protected IIID getPropertyClassIID()
+  {
+    return _classIID;
+  }
+
 protected String getLoadPropertiesQuery2()
     throws OculusException
   {
@@ -1031,7 +1059,10 @@ protected String getLoadPropertiesQuery2()
       else if (key.equals(LABEL_LINKATTACHED))
         setLinkAttached(((Boolean)property.getValue()).booleanValue());
       else
+      {
+        copyOnWrite();
         _attributes.put(key,value);
+      }
     }
   }
 
@@ -1041,12 +1072,14 @@ protected String getLoadPropertiesQuery2()
   /** Copys the given list of properties to this product */
   public void putAll(IRPropertyMap props) throws OculusException
   {
+    copyOnWrite();
     _attributes.putAll(props, this);
   }
   
   /** Copys the given list of properties to this product */
   public void putAll(IRPropertyMap props, IRObject obj) throws OculusException
   {
+    copyOnWrite();
     _attributes.putAll(props, obj);
   }
 
@@ -1125,6 +1158,7 @@ protected String getLoadPropertiesQuery2()
   public IBusinessObject setDefnObject(IRClass newClass)
     throws OculusException
   {
+    copyOnWrite();
     if (getPersState().equals(PersState.UNMODIFIED))
       setPersState(PersState.MODIFIED);
     _classIID = newClass.getIID();
@@ -92,6 +92,20 @@ public class Organization extends BusinessObject implements IOrganization
   
   }    
 //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _isInstallOwner = ownCopy(_isInstallOwner);
+    _busAddrLine1 = ownCopy(_busAddrLine1);
+    _busAddrLine2 = ownCopy(_busAddrLine2);
+    _city = ownCopy(_city);
+    _state = ownCopy(_state);
+    _country = ownCopy(_country);
+    _zipcode = ownCopy(_zipcode);
+  }
+
 /**
   *  Returns a copy of the current Organization object.
   *
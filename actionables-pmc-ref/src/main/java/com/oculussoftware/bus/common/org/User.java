@@ -149,6 +149,7 @@ public class User extends BusinessObject implements IUser
   disassociateGroup(grp);
   IRConnection conn = getObjectContext().getRepository().getDataConnection(getObjectContext());
   conn.createProcessor().update("INSERT INTO USERGROUPASC (GROUPID, USERID) VALUES ("+grp.getLongValue()+","+getIID().getLongValue()+") ");
+  com.oculussoftware.system.sec.PermissionCache.getInstance().invalidateUser(conn, getIID().getLongValue());
   return this;
   }  
 
@@ -173,11 +174,31 @@ public class User extends BusinessObject implements IUser
   {
   IRConnection conn = getObjectContext().getRepository().getDataConnection(getObjectContext());
   conn.createProcessor().update("DELETE FROM USERGROUPASC WHERE USERID="+getIID().getLongValue()+" AND GROUPID="+grp.getLongValue()+" ");
+  com.oculussoftware.system.sec.PermissionCache.getInstance().invalidateUser(conn, getIID().getLongValue());
   return this;
   }  
 
 
   //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _loginId = ownCopy(_loginId);
+    _password = ownCopy(_password);
+    _emailStatus = ownCopy(_emailStatus);
+    _numberOfTrials = ownCopy(_numberOfTrials);
+    _autoLogout = ownCopy(_autoLogout);
+    _lastName = ownCopy(_lastName);
+    _phone = ownCopy(_phone);
+    _emailAddr = ownCopy(_emailAddr);
+    _firstName = ownCopy(_firstName);
+    _isAccolades = ownCopy(_isAccolades);
+    _isCompass = ownCopy(_isCompass);
+    _isConduit = ownCopy(_isConduit);
+  }
+
   /**
   *  Returns a copy of the current Company object.
   *
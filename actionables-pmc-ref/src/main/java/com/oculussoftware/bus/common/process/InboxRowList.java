@@ -3,6 +3,7 @@ package com.oculussoftware.bus.common.process;
 import com.oculussoftware.api.repi.*;
 import com.oculussoftware.api.sysi.*;
 import com.oculussoftware.repos.*;
+import com.oculussoftware.rdb.BufferedDataSet;
 import com.oculussoftware.api.busi.common.process.*;
 
 import java.util.*;
@@ -23,6 +24,8 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
   * Change Activity
   *
   * Issue number    Programmer      Date        Description
+  * ---                                         The inbox is read from the InboxStore, which keeps it in
+  *                                             memory, instead of by running the inbox query every time.
   */
 
   
@@ -50,6 +53,17 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
   
   //------------------------ Protected Methods --------------------------------
   protected String getLoadQuery() throws ORIOException
+  {
+    return getInboxQuery("note.RECIPIENTID = "+getIID())+" ORDER BY "+_sortby;
+  }//
+
+  /**
+  * Returns the inbox query, without an ORDER BY, for the notifications that match the
+  * given condition on "note".  Besides the columns InboxRow reads, each row has the
+  * recipient and the ids of the objects its values come from (the DEP columns), which
+  * InboxStore uses to find the rows a commit has changed.
+  */
+  static String getInboxQuery(String noteFilter)
   {
     return 
     "SELECT note.OBJECTID, note.NOTIFICATIONKIND, note.CREATIONDATE, note.ACKMASK, "+ 
@@ -65,7 +79,10 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
   "NULL AS DISCUSSPARCATSTATE, "+
   "NULL AS DISCUSSPARFEATSTATE, "+
   "mm.USERID AS MKTMGRID, "+
-  "em.USERID AS ENGMGRID "+
+  "em.USERID AS ENGMGRID, "+
+  "note.RECIPIENTID AS DEPRECIPIENTID, note.PAROBJECTID AS DEPPAROBJECTID, note.CREATORID AS DEPCREATORID, "+
+  "feat.OBJECTID AS DEPFEATUREID, rev.OBJECTID AS DEPREVISIONID, cat.OBJECTID AS DEPCATEGORYID, "+
+  "ver.OBJECTID AS DEPVERSIONID, prod.OBJECTID AS DEPPRODUCTID, NULL AS DEPFOLDERID "+
   "FROM (((((((((((NOTIFICATION note LEFT OUTER JOIN CATFEATURELINK featcat ON note.PAROBJECTID = featcat.OBJECTID) "+  
     "LEFT OUTER JOIN ENUMLITERAL enumlit ON featcat.PRIORITYID = enumlit.OBJECTID) "+  
     "LEFT OUTER JOIN FEATURE feat ON featcat.FEATUREID = feat.OBJECTID) "+  
@@ -80,7 +97,7 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
     "LEFT OUTER JOIN APPUSER usr ON note.CREATORID = usr.OBJECTID) "+ 
     "LEFT OUTER JOIN OBJECTROLEASSIGN mm ON featcat.OBJECTID = mm.PAROBJECTID AND mm.ROLEID = "+IDCONST.MKTMGRROLE+") "+
     "LEFT OUTER JOIN OBJECTROLEASSIGN em ON featcat.OBJECTID = em.PAROBJECTID AND em.ROLEID = "+IDCONST.ENGMGRROLE+") "+
-  "WHERE note.RECIPIENTID =  "+getIID()+" "+
+  "WHERE "+noteFilter+" "+
      "AND (note.NOTIFICATIONKIND = 0 OR note.NOTIFICATIONKIND = 2) "+ 
      "AND feat.DELETESTATE = 1 "+
      "AND featcat.DELETESTATE = 1 "+
@@ -93,7 +110,8 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
   "'ZZZZZZZZZZZZZ', "+  
   "999999999, NULL, "+ 
   "dt.OBJECTID, dt.PAROBJECTTYPE, dt.PAROBJECTID, "+
-  "prod.STATEID, ver.STATEID, cat.STATEID, featcat.STATEID,NULL,NULL "+  
+  "prod.STATEID, ver.STATEID, cat.STATEID, featcat.STATEID,NULL,NULL, "+
+  "note.RECIPIENTID, note.PAROBJECTID, note.CREATORID, NULL, NULL, cat.OBJECTID, ver.OBJECTID, prod.OBJECTID, NULL "+
   "FROM ((((((NOTIFICATION note LEFT OUTER JOIN DISCUSSIONTOPIC dt ON note.PAROBJECTID = dt.OBJECTID) "+   
             "LEFT OUTER JOIN CATFEATURELINK featcat ON dt.PAROBJECTID = featcat.OBJECTID) "+  
             "LEFT OUTER JOIN CATEGORY cat ON dt.PAROBJECTID = cat.OBJECTID "+ 
@@ -103,7 +121,7 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
             "LEFT OUTER JOIN PRODUCT prod ON dt.PAROBJECTID = prod.OBJECTID "+   
                                       "OR ver.PRODUCTID = prod.OBJECTID) "+   
             "LEFT OUTER JOIN APPUSER usr ON note.CREATORID = usr.OBJECTID) "+ 
-"WHERE note.RECIPIENTID = "+getIID()+" "+
+"WHERE "+noteFilter+" "+
  "AND note.NOTIFICATIONKIND = 1 "+ 
  "AND dt.DELETESTATE = 1 "+
  "AND ((prod.OBJECTID=dt.PAROBJECTID AND prod.DELETESTATE = 1) "+ 
@@ -120,13 +138,14 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
   "'ZZZZZZZZZZZZZ', "+  
   "999999999, NULL, "+ 
   "dt.OBJECTID, dt.PAROBJECTTYPE, dt.PAROBJECTID, "+  
-  "NULL,NULL,NULL,NULL,NULL,NULL "+
+  "NULL,NULL,NULL,NULL,NULL,NULL, "+
+  "note.RECIPIENTID, note.PAROBJECTID, note.CREATORID, NULL, NULL, NULL, NULL, NULL, NULL "+
   "FROM (((((NOTIFICATION note LEFT OUTER JOIN DISCUSSIONTOPIC dt ON note.PAROBJECTID = dt.OBJECTID) "+   
             "LEFT OUTER JOIN FOLDERINPUTLINK flink ON dt.PAROBJECTID = flink.OBJECTID) "+ 
             "LEFT OUTER JOIN PROBLEMSTATEMENT ps ON dt.PAROBJECTID = ps.OBJECTID) "+
 	    "LEFT OUTER JOIN REACTION rct ON dt.PAROBJECTID = rct.OBJECTID) "+
             "LEFT OUTER JOIN APPUSER usr ON note.CREATORID = usr.OBJECTID) "+ 
-"WHERE note.RECIPIENTID = "+getIID()+" "+
+"WHERE "+noteFilter+" "+
  "AND note.NOTIFICATIONKIND = 1 "+ 
  "AND dt.DELETESTATE = 1 "+
  "AND ((flink.OBJECTID=dt.PAROBJECTID AND flink.DELETESTATE = 1) "+ 
@@ -142,16 +161,17 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
   "st.NAME, "+ 
   "999999999, NULL, "+
   "flink.OBJECTID,NULL,NULL, "+ 
-  "NULL,NULL,NULL,NULL,NULL,NULL "+
+  "NULL,NULL,NULL,NULL,NULL,NULL, "+
+  "note.RECIPIENTID, note.PAROBJECTID, note.CREATORID, NULL, NULL, NULL, NULL, NULL, fold.OBJECTID "+
 "FROM (((((NOTIFICATION note LEFT OUTER JOIN MARKETINPUT mi ON note.PAROBJECTID = mi.OBJECTID) "+ 
   "LEFT OUTER JOIN FOLDERINPUTLINK flink ON mi.OBJECTID = flink.MARKETINPUTID) "+ 
   "LEFT OUTER JOIN FOLDER fold ON flink.FOLDERID = fold.OBJECTID) "+ 
   "LEFT OUTER JOIN STATE st ON mi.STATEID = st.OBJECTID) "+ 
   "LEFT OUTER JOIN APPUSER usr ON note.CREATORID = usr.OBJECTID) "+ 
-"WHERE note.RECIPIENTID = "+getIID()+" "+
+"WHERE "+noteFilter+" "+
  "AND note.NOTIFICATIONKIND = 4 "+ 
- "AND flink.DELETESTATE = 1 "+
-"ORDER BY "+_sortby;
+ "AND flink.DELETESTATE = 1";
+
     /*
     return 
      "SELECT NOTIFICATION.OBJECTID, NOTIFICATION.NOTIFICATIONKIND, NOTIFICATION.CREATIONDATE, NOTIFICATION.ACKMASK, "+ 
@@ -254,6 +274,30 @@ public class InboxRowList extends ReposObjectList implements IInboxRowList
   }//
 
   protected String getClassName () { return "InboxRow"; }
+
+  /** Reads the list from the InboxStore, unless the store is off or this is a subclass with its own query. */
+  public IPersistable load()
+    throws OculusException
+  {
+    BufferedDataSet results = null;
+    if (getClass() == InboxRowList.class)
+      results = InboxStore.getInstance().getRows(getObjectContext(), getIID(), _sortby, 1, Integer.MAX_VALUE);
+    if (results == null)
+      return super.load();
+    IRepository repos = getObjectContext().getRepository();
+    while (results.next())
+    {
+      IIID iid = repos.makeReposID(results.getLong(COL_OBJECTID));
+      _items.add(iid);
+      if (preLoad())
+      {
+        results.setIID(iid);
+        getObjectContext().getCRM().getCompObject(getObjectContext(),getClassName(),results);
+      }
+    }
+    reset();
+    return this;
+  }//
 	//----------------- IHyperLinkList Methods ------------------------------------
 	/**
 	*
@@ -0,0 +1,434 @@
+package com.oculussoftware.bus.common.process;
+
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.api.busi.mkt.comm.INotification;
+import com.oculussoftware.api.busi.common.process.IRoleAssignment;
+import com.oculussoftware.system.*;
+import com.oculussoftware.rdb.*;
+import com.oculussoftware.util.*;
+import com.oculussoftware.service.log.LogService;
+
+import java.util.*;
+
+/**
+* Filename:    InboxStore.java
+* Date:
+* Description: Keeps the inbox rows of recently seen users in memory.
+*
+* <P>The inbox query joins a notification to the objects it is about, and used to be run
+* again every time an inbox was shown.  Now the rows of a user's inbox are read once and
+* kept, and an InboxRowList sorts and pages through the kept rows instead.</P>
+*
+* <P>The rows are kept up to date as changes are committed.  Every row carries the ids of
+* the objects its values come from (the DEP columns of InboxRowList.getInboxQuery()), and
+* Transaction.commit() hands the store the objects it saved.  Rows that came from a saved
+* object, rows of saved notifications and new notifications for users whose inbox is kept
+* are read again, all in one query restricted to those notifications.  A role assignment
+* counts as a change to the object it is assigned on.</P>
+*
+* <P>Changes made outside a Transaction of this VM, and changes to objects a row only
+* shows the name of (states and priorities), are not seen, so an inbox is also read again
+* once it is older than "maxAge" seconds.</P>
+*
+* <P>Settings are read from the "InboxStore" directory entry: "maxUsers" (200), the
+* number of inboxes kept, where 0 turns the store off; and "maxAge" (600).</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class InboxStore
+{
+  /** Number of inboxes kept if none is configured. */
+  public static final int DEFAULT_MAX_USERS = 200;
+  /** Seconds an inbox is kept if no age is configured. */
+  public static final int DEFAULT_MAX_AGE = 600;
+
+  /** Columns with the ids of the objects a row was read from. */
+  static final String[] DEP_COLUMNS = {
+    InboxRow.COL_NOTIFICATIONID, InboxRow.COL_PARENTITYID, InboxRow.COL_DISCUSSPAROBJECTID,
+    "DEPPAROBJECTID", "DEPCREATORID", "DEPFEATUREID", "DEPREVISIONID", "DEPCATEGORYID",
+    "DEPVERSIONID", "DEPPRODUCTID", "DEPFOLDERID" };
+  static final String COL_RECIPIENTID = "DEPRECIPIENTID";
+
+  private static final int MAX_IN_LIST = 250;
+  private static final int MAX_JOURNAL = 1000;
+
+  private static InboxStore _instance = null;
+
+  //------------------------ Private Instance Variables ------------------------------------
+  private ObjectCache _inboxes;                 // Long user id -> Inbox
+  private boolean _enabled;
+  private long _maxAge;                         // milliseconds
+  private long _changes = 0;                    // number of commits seen
+  private LinkedList _journal = new LinkedList(); // Change, the last MAX_JOURNAL commits
+  private long _reads = 0;
+  private long _updates = 0;
+
+  //------------------------ Public Static Methods ------------------------------------
+  public static synchronized InboxStore getInstance()
+  {
+    if (_instance == null)
+    {
+      int maxUsers, maxAge;
+      try
+      {
+        maxUsers = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("maxUsers","InboxStore")).trim());
+      }
+      catch (Exception ignore) { maxUsers = DEFAULT_MAX_USERS; }
+      try
+      {
+        maxAge = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("maxAge","InboxStore")).trim());
+      }
+      catch (Exception ignore) { maxAge = DEFAULT_MAX_AGE; }
+      _instance = new InboxStore(maxUsers, maxAge);
+    }
+    return _instance;
+  }
+
+  //------------------------ Public Constructors ------------------------------------
+  public InboxStore(int maxUsers, int maxAge)
+  {
+    _enabled = (maxUsers > 0);
+    _maxAge = maxAge * 1000L;
+    _inboxes = new ObjectCache(Math.max(1, maxUsers), ObjectCache.DEFAULT_SEGMENTS);
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  public boolean isEnabled() { return _enabled; }
+
+  /**
+  * Returns count rows of the user's inbox in the given order, starting with row from
+  * (which starts at 1), or null if the store is off.  The inbox is read from the database
+  * if it isn't kept or is too old.
+  * @param orderBy an ORDER BY list of the inbox query's column labels
+  */
+  public BufferedDataSet getRows(IObjectContext context, IIID user, String orderBy, int from, int count)
+    throws OculusException
+  {
+    if (!_enabled)
+      return null;
+    Inbox inbox = _getInbox(context, user.getLongValue());
+    synchronized (inbox)
+    {
+      inbox.sort(orderBy);
+      return new BufferedDataSet(inbox._rows, from, count);
+    }
+  }
+
+  /** Returns the number of notifications in the user's inbox, or -1 if the store is off. */
+  public int getRowCount(IObjectContext context, IIID user)
+    throws OculusException
+  {
+    if (!_enabled)
+      return -1;
+    Inbox inbox = _getInbox(context, user.getLongValue());
+    synchronized (inbox)
+    {
+      return inbox._rows.getRowCount();
+    }
+  }
+
+  /**
+  * Brings the kept inboxes up to date with objects that have just been committed.  This
+  * never throws; if the rows can't be read, the inboxes they belong to are dropped.
+  */
+  public void committed(IObjectContext context, List objects)
+  {
+    if (!_enabled || objects.isEmpty())
+      return;
+    Change change;
+    try
+    {
+      change = new Change(objects);
+    }
+    catch (Exception exp)
+    {
+      LogService.getInstance().write(exp);
+      clear();
+      return;
+    }
+    synchronized (this)
+    {
+      change._seq = ++_changes;
+      _journal.addLast(change);
+      if (_journal.size() > MAX_JOURNAL)
+        _journal.removeFirst();
+    }
+    List inboxes = new ArrayList();
+    for (Iterator it = _inboxes.keys().iterator(); it.hasNext(); )
+    {
+      Inbox inbox = (Inbox)_inboxes.get(it.next());
+      if (inbox != null)
+        inboxes.add(inbox);
+    }
+    _apply(context, inboxes, change);
+  }
+
+  /** Drops the user's inbox, so it is read again the next time it is needed. */
+  public void invalidate(IIID user)
+  {
+    _inboxes.remove(new Long(user.getLongValue()));
+  }
+
+  /** Drops every inbox. */
+  public void clear()
+  {
+    _inboxes.clear();
+  }
+
+  public int size() { return _inboxes.size(); }
+  public long getHitCount() { return _inboxes.getHitCount(); }
+  public long getMissCount() { return _inboxes.getMissCount(); }
+  public synchronized long getReadCount() { return _reads; }
+  public synchronized long getUpdateCount() { return _updates; }
+
+  public String toString()
+  {
+    return "InboxStore[users="+size()+", hits="+getHitCount()+", reads="+getReadCount()+", updates="+getUpdateCount()+"]";
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private Inbox _getInbox(IObjectContext context, long user)
+    throws OculusException
+  {
+    Long key = new Long(user);
+    Inbox inbox = (Inbox)_inboxes.get(key);
+    if (inbox != null && System.currentTimeMillis() - inbox._loaded <= _maxAge)
+      return inbox;
+
+    long before;
+    synchronized (this)
+    {
+      before = _changes;
+      _reads++;
+    }
+    inbox = new Inbox(user, _read(context, "note.RECIPIENTID = "+user));
+    _inboxes.put(key, inbox);
+
+    // catch up with whatever was committed while the rows were read
+    List missed = new ArrayList();
+    synchronized (this)
+    {
+      if (_changes - before > _journal.size())
+      {
+        _inboxes.remove(key);                   // too much was missed to tell
+        return inbox;
+      }
+      for (Iterator it = _journal.iterator(); it.hasNext(); )
+      {
+        Change change = (Change)it.next();
+        if (change._seq > before)
+          missed.add(change);
+      }
+    }
+    for (Iterator it = missed.iterator(); it.hasNext(); )
+      _apply(context, Collections.singletonList(inbox), (Change)it.next());
+    return inbox;
+  }
+
+  /** Reads again the rows of the inboxes that the change affects. */
+  private void _apply(IObjectContext context, List inboxes, Change change)
+  {
+    Map affected = new HashMap();               // Inbox -> LongSortedSet of notification ids
+    LongSortedSet all = new LongSortedSet();
+    for (Iterator it = inboxes.iterator(); it.hasNext(); )
+    {
+      Inbox inbox = (Inbox)it.next();
+      LongSortedSet notes;
+      synchronized (inbox)
+      {
+        notes = inbox.affectedBy(change);
+      }
+      if (!notes.isEmpty())
+      {
+        affected.put(inbox, notes);
+        all.addAll(notes);
+      }
+    }
+    if (all.isEmpty())
+      return;
+    try
+    {
+      BufferedDataSet rows = new BufferedDataSet();
+      long[] ids = all.toArray();
+      for (int from = 0; from < ids.length; from += MAX_IN_LIST)
+      {
+        StringBuffer inList = new StringBuffer();
+        for (int i = from; i < Math.min(ids.length, from + MAX_IN_LIST); i++)
+          inList.append((i == from) ? "" : ",").append(ids[i]);
+        _read(context, rows, "note.OBJECTID IN ("+inList+")");
+      }
+      for (Iterator it = affected.entrySet().iterator(); it.hasNext(); )
+      {
+        Map.Entry entry = (Map.Entry)it.next();
+        Inbox inbox = (Inbox)entry.getKey();
+        synchronized (inbox)
+        {
+          inbox.replace((LongSortedSet)entry.getValue(), rows);
+        }
+      }
+      synchronized (this)
+      {
+        _updates++;
+      }
+    }
+    catch (Exception exp)
+    {
+      LogService.getInstance().write(exp);
+      for (Iterator it = affected.keySet().iterator(); it.hasNext(); )
+        _inboxes.remove(new Long(((Inbox)it.next())._user));
+    }
+  }
+
+  private BufferedDataSet _read(IObjectContext context, String noteFilter)
+    throws OculusException
+  {
+    BufferedDataSet rows = new BufferedDataSet();
+    _read(context, rows, noteFilter);
+    return rows;
+  }
+
+  private void _read(IObjectContext context, BufferedDataSet rows, String noteFilter)
+    throws OculusException
+  {
+    IRConnection repConn = context.getRepository().getDataConnection(context);
+    IQueryProcessor stmt = repConn.createProcessor();
+    try
+    {
+      IDataSet results = stmt.retrieve(InboxRowList.getInboxQuery(noteFilter));
+      while (results.next())
+        rows.addRow(results);
+    }
+    finally
+    {
+      stmt.close();
+    }
+  }
+
+  //------------------------ Inner Classes ------------------------------------
+  /** The ids of the objects one commit saved. */
+  private static class Change
+  {
+    long _seq;
+    LongSortedSet _ids = new LongSortedSet();          // saved objects and what they stand for
+    LongObjectMap _notes = new LongObjectMap();        // recipient -> LongSortedSet of notifications
+
+    Change(List objects)
+      throws OculusException
+    {
+      for (Iterator it = objects.iterator(); it.hasNext(); )
+      {
+        Object obj = it.next();
+        if (!(obj instanceof IPersistable) || ((IPersistable)obj).getIID() == null)
+          continue;
+        _ids.add(((IPersistable)obj).getIID().getLongValue());
+        if (obj instanceof IRoleAssignment && ((IRoleAssignment)obj).getParObjectIID() != null)
+          _ids.add(((IRoleAssignment)obj).getParObjectIID().getLongValue());
+        if (obj instanceof INotification && ((INotification)obj).getRecipientIID() != null)
+        {
+          long recipient = ((INotification)obj).getRecipientIID().getLongValue();
+          LongSortedSet notes = (LongSortedSet)_notes.get(recipient);
+          if (notes == null)
+            _notes.put(recipient, notes = new LongSortedSet());
+          notes.add(((INotification)obj).getIID().getLongValue());
+        }
+      }
+    }
+  }
+
+  /** The rows of one user's inbox. */
+  private static class Inbox
+  {
+    final long _user;
+    final long _loaded = System.currentTimeMillis();
+    BufferedDataSet _rows;
+    String _sortedBy = null;
+    LongObjectMap _deps = null;                  // object id -> LongSortedSet of notification ids
+
+    Inbox(long user, BufferedDataSet rows)
+    {
+      _user = user;
+      _rows = rows;
+    }
+
+    void sort(String orderBy)
+      throws OculusException
+    {
+      if (orderBy != null && !orderBy.equals(_sortedBy) && _rows.getRowCount() > 0)
+        _rows.sort(orderBy);
+      _sortedBy = orderBy;
+    }
+
+    /** Returns the notifications of this inbox that have to be read again. */
+    LongSortedSet affectedBy(Change change)
+    {
+      LongSortedSet notes = new LongSortedSet();
+      LongSortedSet mine = (LongSortedSet)change._notes.get(_user);
+      if (mine != null)
+        notes.addAll(mine);
+      LongObjectMap deps = _getDeps();
+      for (int i = 0; i < change._ids.size(); i++)
+      {
+        LongSortedSet rows = (LongSortedSet)deps.get(change._ids.get(i));
+        if (rows != null)
+          notes.addAll(rows);
+      }
+      return notes;
+    }
+
+    /** Replaces the rows of the given notifications with those of this user in the source. */
+    void replace(LongSortedSet notes, BufferedDataSet source)
+      throws OculusException
+    {
+      for (int row = _rows.getRowCount(); row > 0; row--)
+        if (notes.contains(_id(_rows.getValue(row, InboxRow.COL_NOTIFICATIONID))))
+          _rows.removeRow(row);
+      source.beforeFirst();
+      while (source.next())
+      {
+        if (_id(source.get(COL_RECIPIENTID)) == _user && notes.contains(_id(source.get(InboxRow.COL_NOTIFICATIONID))))
+          _rows.addRow(source);
+      }
+      _sortedBy = null;
+      _deps = null;
+    }
+
+    private LongObjectMap _getDeps()
+    {
+      if (_deps == null)
+      {
+        LongObjectMap deps = new LongObjectMap(_rows.getRowCount() * 4);
+        try
+        {
+          for (int row = 1; row <= _rows.getRowCount(); row++)
+          {
+            long note = _id(_rows.getValue(row, InboxRow.COL_NOTIFICATIONID));
+            for (int i = 0; i < DEP_COLUMNS.length; i++)
+            {
+              long id = _id(_rows.getValue(row, DEP_COLUMNS[i]));
+              if (id == 0)
+                continue;
+              LongSortedSet notes = (LongSortedSet)deps.get(id);
+              if (notes == null)
+                deps.put(id, notes = new LongSortedSet());
+              notes.add(note);
+            }
+          }
+        }
+        catch (ORIOException exp)
+        {
+          // a kept inbox always has the columns
+        }
+        _deps = deps;
+      }
+      return _deps;
+    }
+
+    private static long _id(Object value)
+    {
+      return (value instanceof Number) ? ((Number)value).longValue() : 0;
+    }
+  }
+}
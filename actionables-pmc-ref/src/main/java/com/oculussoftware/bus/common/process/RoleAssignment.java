@@ -10,6 +10,8 @@ import com.oculussoftware.repos.*;
 import com.oculussoftware.api.busi.common.process.*;
 import com.oculussoftware.api.busi.common.org.IUser;
 
+import java.util.*;
+
 /**
 * Filename:    RoleAssignment.java
 * Date:        3/14/00
@@ -175,13 +177,40 @@ public class RoleAssignment extends ReposObject implements IRoleAssignment
   public IPersistable save()
     throws OculusException
   {
+    // the users whose roles this changes, so their cached permissions can be dropped
+    Set users = new HashSet();
+    if (getPersState().equals(PersState.NEW) || getPersState().equals(PersState.DELETED))
+      users.add(new Long(getUserIID().getLongValue()));
     if (getPersState().equals(PersState.NEW))
 	  {
+      addReplacedUsers(users);
 		  deleteOld();
-      return super.save();
 	  }//end if
-    else
-      return super.save();
+    IPersistable retObj = super.save();
+    IRConnection repConn = getObjectContext().getRepository().getDataConnection(getObjectContext());
+    for (Iterator it = users.iterator(); it.hasNext(); )
+      com.oculussoftware.system.sec.PermissionCache.getInstance().invalidateUser(repConn, ((Long)it.next()).longValue());
+    return retObj;
+  }
+
+  /** Adds the users who lose this role on the object when a single-user role is assigned. */
+  private void addReplacedUsers(Set users) throws OculusException
+  {
+	  IProcessRole role = (IProcessRole)getObjectContext().getCRM().getCompObject(getObjectContext(), "Role", _roleiid);
+    if (role.isMultiUser())
+      return;
+		IQueryProcessor qp = null;
+    try
+    {
+      IRConnection repConn = getObjectContext().getRepository().getDataConnection(getObjectContext());
+      qp = repConn.createProcessor();
+      IDataSet rs = qp.retrieve("SELECT "+COL_USERID+" FROM "+TABLE+
+                              " WHERE "+COL_PAROBJECTID+"="+getParObjectIID().getLongValue()+
+                              " AND "+COL_ROLEID+"="+getRoleIID().getLongValue());
+      while (rs.next())
+        users.add(new Long(rs.getLong(COL_USERID)));
+    }//end try
+    finally{if(qp!=null)qp.close();}
   }
 	
 	private void deleteOld() throws OculusException
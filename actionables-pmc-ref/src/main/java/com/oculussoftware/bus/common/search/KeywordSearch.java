@@ -111,6 +111,14 @@ import java.sql.*;
 /**
 *
 * NOTE: Renamed from SimpleQuery.java.
+*
+* <P>Once the KeywordIndex is ready each keyword is looked up in it, and the query asks for
+* the OBJECTIDs it found instead of scanning the text columns with LIKE.  A keyword that
+* matches more rows than the index will hand back is still searched with LIKE, and so are
+* the rows that changed since the index last read them.  The index
+* also scores what it finds, so getRankedObjectIDs() can return the results best match
+* first.  Rows are scored on the text of the row itself; a row found through the text of
+* an associated object keeps a relevance of 0.</P>
 */
 public class KeywordSearch implements IKeywordSearch
 {
@@ -143,6 +151,7 @@ public class KeywordSearch implements IKeywordSearch
   private IXClass _scopeClass = null;
   private boolean _bDTs = false;
   private IObjectContext _context = null;
+  private Map     _relevance = new HashMap();      // Long OBJECTID -> Double, filled in by genQuery()
   
   //-------------------------------------------------------------------
   //-------------------------------------------------------------------
@@ -174,6 +183,41 @@ public class KeywordSearch implements IKeywordSearch
     return getSearcher().getSQL();
   }
 
+  public double getRelevance(long objectID)
+    throws OculusException
+  {
+    getQueries();
+    Double score = (Double)_relevance.get(new Long(objectID));
+    return (score == null) ? 0.0 : score.doubleValue();
+  }
+
+  public List getRankedObjectIDs()
+    throws OculusException
+  {
+    final Set ids = new LinkedHashSet();
+    // only the ids are kept, so the rows are streamed rather than read into a data set
+    getSearcher().doQueries(new IRowHandler() {
+      public boolean handleRow(IDataSet row) throws OculusException
+      {
+        ids.add(new Long(row.getLong("OBJECTID")));
+        return true;
+      }
+    });
+    List ranked = new ArrayList(ids);
+    // stable, so rows of equal relevance keep the order the query returned them in
+    Collections.sort(ranked, new Comparator() {
+      public int compare(Object o1, Object o2)
+      {
+        Double s1 = (Double)_relevance.get(o1);
+        Double s2 = (Double)_relevance.get(o2);
+        double d1 = (s1 == null) ? 0.0 : s1.doubleValue();
+        double d2 = (s2 == null) ? 0.0 : s2.doubleValue();
+        return (d1 > d2) ? -1 : ((d1 < d2) ? 1 : 0);
+      }
+    });
+    return ranked;
+  }
+
   public void setIncludeDTs() { _bDTs = true; }
   public boolean getIncludeDTs() { return _bDTs; }
 
@@ -246,15 +290,28 @@ public class KeywordSearch implements IKeywordSearch
   }
 
 
-  private IQFilterExpr addKeywordFilters(IQAttrRef attrRef, BoolOper bool)
+  private IQFilterExpr addKeywordFilters(IXClass target, IQAttrRef attrRef, BoolOper bool)
     throws OculusException
   {
     IQFilterExpr attribFilter = null;
+    KeywordIndex index = KeywordIndex.getInstance();
+    String field = null;
+    long[] pending = null;
+    if (index.isReady() && (pending = index.getPendingIDs()) != null)
+    {
+      IXMR xmr = getObjectContext().getRepository().getXMR();
+      field = KeywordIndex.getField(xmr.getEndClass(target, attrRef.getAssocs()).getTableName(), attrRef.getAttr().getColName());
+    }
     StringTokenizer words = new StringTokenizer(getKeywords()," ");
     while (words.hasMoreTokens())
     {
       String keyword = words.nextToken();
-      attribFilter = combineFilters(bool, attribFilter, new QFilterExpr(CompOper.COMP_LIKE, attrRef, keyword, usesSynonyms()));
+      long[] ids = (field == null) ? null : index.find(field, keyword, _relevance);
+      IQFilterExpr like = new QFilterExpr(CompOper.COMP_LIKE, attrRef, keyword, usesSynonyms());
+      if (ids != null)
+        attribFilter = combineFilters(bool, attribFilter, addPending(new QFilterExpr(CompOper.COMP_KEYWORD_IN, attrRef, ids), attrRef, like, pending));
+      else
+        attribFilter = combineFilters(bool, attribFilter, like);
     }
 
     return attribFilter;
@@ -265,16 +322,40 @@ public class KeywordSearch implements IKeywordSearch
     throws OculusException
   {
     IQFilterExpr attribFilter = null;
+    KeywordIndex index = KeywordIndex.getInstance();
+    long[] pending = index.getPendingIDs();
     StringTokenizer words = new StringTokenizer(getKeywords()," ");
     while (words.hasMoreTokens())
     {
       String keyword = words.nextToken();
-      attribFilter = combineFilters(bool, attribFilter, new QFilterExpr(CompOper.COMP_EXT_KEYWORD_LIKE, null, keyword, usesSynonyms()));
+      long[] charIDs = (pending == null) ? null : index.find(KeywordIndex.FIELD_EXT_CHAR, keyword, _relevance);
+      long[] longCharIDs = (charIDs == null) ? null : index.find(KeywordIndex.FIELD_EXT_LONG_CHAR, keyword, _relevance);
+      IQFilterExpr like = new QFilterExpr(CompOper.COMP_EXT_KEYWORD_LIKE, null, keyword, usesSynonyms());
+      if (longCharIDs != null)
+        attribFilter = combineFilters(bool, attribFilter, addPending(new QFilterExpr(BoolOper.BOOL_OR,
+                                                                                     new QFilterExpr(CompOper.COMP_KEYWORD_IN, null, charIDs),
+                                                                                     new QFilterExpr(CompOper.COMP_KEYWORD_IN, null, longCharIDs)),
+                                                                     null, like, pending));
+      else
+        attribFilter = combineFilters(bool, attribFilter, like);
     }
 
     return attribFilter;
   }
   
+  /**
+  * The KeywordIndex leaves out the rows that changed since it last read them, so they are
+  * matched with the LIKE filter instead.
+  */
+  private IQFilterExpr addPending(IQFilterExpr found, IQAttrRef attrRef, IQFilterExpr like, long[] pending)
+    throws OculusException
+  {
+    if (pending.length == 0)
+      return found;
+    return new QFilterExpr(BoolOper.BOOL_OR, found,
+                           new QFilterExpr(BoolOper.BOOL_AND, new QFilterExpr(CompOper.COMP_KEYWORD_IN, attrRef, pending), like));
+  }
+
   private IQFilterExpr addIDFilters(IQAttrRef attrRef, BoolOper bool)
     throws OculusException
   {
@@ -321,7 +402,7 @@ public class KeywordSearch implements IKeywordSearch
       for (Iterator atts = attributes.iterator(); atts.hasNext(); )
       {
         IQAttrRef attrRef = (IQAttrRef)atts.next();
-        filter = combineFilters(BoolOper.BOOL_OR,filter,addKeywordFilters(attrRef, bool));
+        filter = combineFilters(BoolOper.BOOL_OR,filter,addKeywordFilters(target, attrRef, bool));
       }
       // JKC 9/26/00 #2651
       filter = combineFilters(BoolOper.BOOL_OR,filter,addExtKeywordFilters(bool));
@@ -364,6 +445,7 @@ public class KeywordSearch implements IKeywordSearch
     throws OculusException
   {
     _queries = new Vector();
+    _relevance.clear();
     IXClass target = null;
     
     for (Iterator i = _classIDs.iterator(); i.hasNext(); )
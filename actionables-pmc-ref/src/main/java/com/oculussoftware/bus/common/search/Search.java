@@ -32,6 +32,7 @@ abstract public class Search extends BMDataView implements ISearch, java.io.Seri
   * Change Activity
   *
   * Issue number    Programmer      Date        Description
+  * ---                                         Added getPagedSearcher() to read the results a page at a time.
   */
   protected IIID    _scopeclassiid;
   protected IIID    _scopeobjectiid;
@@ -667,6 +668,11 @@ abstract public class Search extends BMDataView implements ISearch, java.io.Seri
     ReposSearcher searcher = new ReposSearcher(getObjectContext(), getQuery());
     return searcher.doQuery(); 
   }
+  
+  public ReposSearcher getPagedSearcher(int pageSize) throws OculusException
+  {
+    return new ReposSearcher(getObjectContext(), getQuery()).setPageSize(pageSize);
+  }
     
   public String getSQL() throws OculusException
   {
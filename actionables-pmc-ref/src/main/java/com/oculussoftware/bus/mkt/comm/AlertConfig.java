@@ -86,6 +86,15 @@ public class AlertConfig extends BusinessObject implements IAlertConfig
     return null;
   }//    
   
+  /** Gives a new snapshot its own recipients, since a collection keeps a cursor. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    if (_recipients != null)
+      _recipients = (IUserColl)_recipients.dolly();
+  }
+
   public Object dolly() throws OculusException
   {
     AlertConfig alert = null;
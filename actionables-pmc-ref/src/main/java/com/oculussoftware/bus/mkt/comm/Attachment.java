@@ -421,6 +421,16 @@ public class Attachment extends BusinessObject implements IAttachment
   }
   
 //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _filesize = ownCopy(_filesize);
+    _filename = ownCopy(_filename);
+    _viewable = ownCopy(_viewable);
+  }
+
   /**
   *  Returns a copy of the current product object.
   *
@@ -357,6 +357,16 @@ public class DiscussionTopic extends BusinessObject implements IDiscussionTopic
   
   
   //----------------- IPoolable Methods -----------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _subject = ownCopy(_subject);
+    _editeddate = ownCopy(_editeddate);
+    _body = ownCopy(_body);
+  }
+
   /**
   *  Returns a copy of the current product object.  It does not copy the
   * IObjectContext.  
@@ -282,6 +282,15 @@ public class EngrSpecFolder extends ReposObject implements IEngrSpecFolder
     return null;
   }
   //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _strFolderNetPath = ownCopy(_strFolderNetPath);
+    _strIndexFile = ownCopy(_strIndexFile);
+  }
+
   /**
   *  Returns a copy of the current product object.
   *
@@ -250,6 +250,14 @@ public class HyperLink extends BusinessObject implements IHyperLink
 
  
 //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _url = ownCopy(_url);
+  }
+
   /**
   *  Returns a copy of the current product object.  It does not copy the
   * IObjectContext.  
@@ -145,6 +145,17 @@ public class Notification extends BusinessObject implements INotification
            " WHERE "+COL_OBJECTID+"="+_iid.getLongValue();
   }//    
   
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _ackmask = ownCopy(_ackmask);
+    _subject = ownCopy(_subject);
+    _body = ownCopy(_body);
+    _notekind = ownCopy(_notekind);
+  }
+
   public Object dolly() throws OculusException
   {
     Notification notif = new Notification();
@@ -46,6 +46,7 @@ import java.util.*;
 * ---             Saleem Shafi    3/3/00      Started using the new method of creating new objects (null IID).
 * BUG00074        Saleem Shafi    5/18/00     Added a createCopyFor() method that creates a copy for a different version.
 * BUG00992				Saleem Shafi		6/13/00			Limited category indexing to categories, not baseline categories.
+* ---                                         Visible ids can be reserved in blocks for VersionStructureCopy.
 */
 
 public class Category extends BusinessObject implements ICategory
@@ -157,17 +158,26 @@ public class Category extends BusinessObject implements ICategory
 
   synchronized protected long getNextVisibleID()
     throws OculusException
+  {
+    return reserveVisibleIDs(getObjectContext(), 1);
+  }
+
+  /** Reserves <code>count</code> consecutive visible ids and returns the first one. */
+  static synchronized long reserveVisibleIDs(IObjectContext context, int count)
+    throws OculusException
   {
     if (_nextid == -1)
     {
-      IRConnection conn = getObjectContext().getRepository().getDataConnection(getObjectContext());
+      IRConnection conn = context.getRepository().getDataConnection(context);
       IDataSet rs = conn.createProcessor().retrieve("SELECT MAX(VISIBLEID) AS MAXVISIBLEID FROM CATEGORY");
       if (rs.next())
         _nextid = rs.getLong("MAXVISIBLEID")+1;
       if (_nextid < 1) _nextid = 1;
     }
     
-    return _nextid++;
+    long first = _nextid;
+    _nextid += count;
+    return first;
   }
 
   public long getVisibleID()
@@ -264,6 +274,14 @@ public class Category extends BusinessObject implements ICategory
   {  return (_parentIID.equals(getIID())); }
   
 //----------------- IPoolable Methods ------------------------------------
+	/** Gives a new snapshot its own copies of the properties held in fields. */
+	protected void copyOwnProperties()
+	  throws OculusException
+	{
+	  super.copyOwnProperties();
+	  _orderNum = ownCopy(_orderNum);
+	}
+
 	/**
 	*	Returns a copy of the current product object.
 	*
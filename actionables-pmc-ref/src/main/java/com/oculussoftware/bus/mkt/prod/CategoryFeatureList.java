@@ -150,12 +150,25 @@ public class CategoryFeatureList extends com.oculussoftware.bus.BusinessObjectLi
     while (nextFeat == null && hasNext())          // as long as we need to and can
     {
       IIID catlinkIID = (IIID)_ids.next();
+      com.oculussoftware.repos.PropertyPageLoader page = nextPropertyPage();
       nextCatLink = (IFeatureCategoryLink)getObjectContext().getCRM().getCompObject(getObjectContext(),"FeatureCategoryLink",catlinkIID,isLocked());
       nextFeat = nextCatLink.getFeatureObject(isLocked());
+      if (page != null)
+      {
+        page.attach(nextCatLink);
+        page.attach(nextFeat);
+      }
     }
     return nextFeat;
   }
 
+  /** The features behind the links on the page load their properties with it. */
+  protected void addPropertyPageOwners(com.oculussoftware.repos.PropertyPageLoader page)
+    throws OculusException
+  {
+    page.addOwnerQuery("SELECT FEATUREID FROM CATFEATURELINK WHERE OBJECTID IN ("+page.getOwnerList()+")");
+  }
+
 
   public void setOrder(IFeatureCategoryLink featCatLink, int order)
     throws OculusException
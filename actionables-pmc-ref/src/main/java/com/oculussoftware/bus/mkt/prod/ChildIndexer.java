@@ -6,6 +6,7 @@ import com.oculussoftware.api.sysi.*;
 import com.oculussoftware.api.busi.mkt.prod.*;
 import com.oculussoftware.api.busi.*;
 import com.oculussoftware.repos.util.*;
+import com.oculussoftware.repos.ConnectionPool;
 import com.oculussoftware.repos.bmr.*;
 import com.oculussoftware.bus.*;
 import com.oculussoftware.api.busi.common.process.*;
@@ -24,6 +25,12 @@ import java.util.*;
 * Description: This is an object to be used to maintain a redundant index of any heirarchy.
 * It currently only writes to one table, but doesn't care what id's refer to.  
 *
+* <P>The index holds a row for every node and each of the nodes above it, including itself.
+* Adding, removing and moving a tree are each done with a couple of INSERT ... SELECT and
+* DELETE statements, however big the tree is, and reindexing adds a whole level of the
+* hierarchy per statement.  rebuildParallel() rebuilds several of the indexes at once, each
+* on a connection of its own, to repair them.</P>
+*
 * Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
 *
 * @author Saleem Shafi
@@ -37,6 +44,9 @@ public class ChildIndexer
 	public static final int FOLDER   = 2;
 	public static final int STDCOLL  = 3;
 
+	/** The top node for reindexing every tree in the index. */
+	private static final long ALL = Long.MIN_VALUE;
+
 	public ChildIndexer() 
 	{
 	}
@@ -126,48 +136,25 @@ public class ChildIndexer
 		Step 2: Add the rows (P',C) where (P',P) and (N,C).
 	*/
 	{
-		IRConnection conn = null;
-		IQueryProcessor qp1 = null;
-		IQueryProcessor qp2 = null;
-		IQueryProcessor qp3 = null;
+		IQueryProcessor qp = null;
 		String table = getIndexTable(type);
 		String parentCol = getIndexParent(type);
 		String childCol = getIndexChild(type);
 		try
 		{
-			conn = context.getCRM().getDatabaseConnection(context);
+			qp = context.getCRM().getDatabaseConnection(context).createProcessor();
+			qp.setSingleton(false);
 
 //		Step 1: Add the row (N,N)
-			qp1 = conn.createProcessor();
-//			System.err.println("Adding ("+child+", "+child+")");
-			qp1.update("INSERT INTO "+table+" ("+parentCol+", "+childCol+") VALUES ("+child+","+child+")");
-			
-//		Step 2: Add the rows (P',C) where (P',P) and (N,C).
-//			In the query, parent represents P, child represents N, PARENT represents P', 
-//			CHILD represents C, the clause parentList.CHILDCATID=parent represents the 
-//			tuple (P',P), and the clause childList.PARENTCATID=child represents the tupe (N,C)
+			qp.update("INSERT INTO "+table+" ("+parentCol+", "+childCol+") VALUES ("+child+","+child+")");
 
-	if (parent != child)
-	{
-		qp2 = conn.createProcessor();
-			IDataSet ds = qp2.retrieve("SELECT parentList."+parentCol+" AS PARENT, childList."+childCol+" AS CHILD "+
-																 "FROM "+table+" parentList, "+table+" childList "+
-																 "WHERE parentList."+childCol+"="+parent+" AND childList."+parentCol+"="+child);
-			while (ds.next())
-			{
-				long newParent = ds.getLong("PARENT");		// P'
-				long newChild = ds.getLong("CHILD");			// C
-				qp3 = conn.createProcessor();
-//				System.err.println("Adding ("+newParent+", "+newChild+")");
-				qp3.update("INSERT INTO "+table+" ("+parentCol+", "+childCol+") VALUES ("+newParent+","+newChild+")");
-			}
-	}
+//		Step 2: Add the rows (P',C) where (P',P) and (N,C), all in one statement.
+			if (parent != child)
+				qp.update("INSERT INTO "+table+" ("+parentCol+", "+childCol+") "+getPairQuery(type,parent,child));
 		}
 		finally
 		{
-			if (qp1 != null) qp1.close();
-			if (qp2 != null) qp2.close();
-			if (qp3 != null) qp3.close();
+			if (qp != null) qp.close();
 		}
 	}
 	
@@ -189,47 +176,27 @@ public class ChildIndexer
 		Step 2: Delete the row (N,N)
 */
 	{
-		IRConnection conn = null;
-		IQueryProcessor qp1 = null;
-		IQueryProcessor qp2 = null;
-		IQueryProcessor qp3 = null;
+		IQueryProcessor qp = null;
 		String table = getIndexTable(type);
 		String parentCol = getIndexParent(type);
 		String childCol = getIndexChild(type);
 		try
 		{
-			conn = context.getCRM().getDatabaseConnection(context);
+			qp = context.getCRM().getDatabaseConnection(context).createProcessor();
+			qp.setSingleton(false);
 
 	//		Step 1: Delete the rows (P',C) where (P',P) and (N,C).
-	//		See addChild() for further explanation of the query.
-		if (parent != child)
-		{
-			qp2 = conn.createProcessor();
-			IDataSet ds = qp2.retrieve("SELECT parentList."+parentCol+" AS PARENT, childList."+childCol+" AS CHILD "+
-																 "FROM "+table+" parentList, "+table+" childList "+
-																 "WHERE parentList."+childCol+"="+parent+" AND childList."+parentCol+"="+child);
-			while (ds.next())
-			{
-				long newParent = ds.getLong("PARENT");		// P'
-				long newChild = ds.getLong("CHILD");			// C
-				qp3 = conn.createProcessor();
-				qp3.setSingleton(false);
-				qp3.update("DELETE "+table+" WHERE "+parentCol+"="+newParent+" AND "+childCol+"="+newChild);
-			}
-		}
+			if (parent != child)
+				qp.update("DELETE FROM "+table+
+									" WHERE "+parentCol+" IN (SELECT "+parentCol+" FROM "+table+" WHERE "+childCol+"="+parent+")"+
+									"   AND "+childCol+" IN (SELECT "+childCol+" FROM "+table+" WHERE "+parentCol+"="+child+")");
 
 	//		Step 2: Delete the row (N,N)
-			qp1 = conn.createProcessor();
-			qp1.setSingleton(false);	
-			qp1.update("DELETE "+table+" WHERE "+parentCol+"="+child+" AND "+childCol+"="+child);
-			
-
+			qp.update("DELETE FROM "+table+" WHERE "+parentCol+"="+child+" AND "+childCol+"="+child);
 		}
 		finally
 		{
-			if (qp1 != null) qp1.close();
-			if (qp2 != null) qp2.close();
-			if (qp3 != null) qp3.close();
+			if (qp != null) qp.close();
 		}
 	}
 
@@ -237,14 +204,49 @@ public class ChildIndexer
 	/**
 	This method acts just as expected and handles the moving of one tree to another.
 	The parameter represent the old parent node of the tree, the new parent node of the
-	tree, and the top node of the tree being moved.  
+	tree, and the top node of the tree being moved.  The tree is detached from all of the
+	nodes the index has above it, so the old parent is only there for the callers.
 	*/
 	public static void moveChild(int type, IObjectContext context, long parentOld, long parentNew, long child)
 		throws OculusException
+	/*
+	When moving N to P:
+		Step 1: Delete the rows (A,C) where (A,N), A<>N and (N,C).
+		Step 2: Add the rows (P',C) where (P',P) and (N,C).
+	*/
 	{
-//		System.err.println(parentOld+", "+parentNew+", "+child);
-		ChildIndexer.removeChild(type,context,parentOld,child);
-		ChildIndexer.addChild(type,context,parentNew,child);
+		IQueryProcessor qp = null;
+		String table = getIndexTable(type);
+		String parentCol = getIndexParent(type);
+		String childCol = getIndexChild(type);
+		try
+		{
+			qp = context.getCRM().getDatabaseConnection(context).createProcessor();
+			qp.setSingleton(false);
+			qp.update("DELETE FROM "+table+
+								" WHERE "+parentCol+" IN (SELECT "+parentCol+" FROM "+table+" WHERE "+childCol+"="+child+" AND "+parentCol+"<>"+child+")"+
+								"   AND "+childCol+" IN (SELECT "+childCol+" FROM "+table+" WHERE "+parentCol+"="+child+")");
+			if (parentNew != child)
+				qp.update("INSERT INTO "+table+" ("+parentCol+", "+childCol+") "+getPairQuery(type,parentNew,child));
+		}
+		finally
+		{
+			if (qp != null) qp.close();
+		}
+	}
+
+	/**
+	Returns the query for the rows (P',C) where (P',P) and (N,C), that is every node above
+	the parent with every node of the tree under the child.
+	*/
+	private static String getPairQuery(int type, long parent, long child)
+	{
+		String table = getIndexTable(type);
+		String parentCol = getIndexParent(type);
+		String childCol = getIndexChild(type);
+		return "SELECT parentList."+parentCol+", childList."+childCol+" "+
+					 "FROM "+table+" parentList, "+table+" childList "+
+					 "WHERE parentList."+childCol+"="+parent+" AND childList."+parentCol+"="+child;
 	}
 
 	/**
@@ -253,12 +255,16 @@ public class ChildIndexer
 	public static void wipeIndex(int type, IObjectContext context)
 		throws OculusException
 	{
-		IRConnection conn = null;
+		wipeIndex(type, context.getCRM().getDatabaseConnection(context));
+	}
+
+	private static void wipeIndex(int type, IRConnection conn)
+		throws OculusException
+	{
 		IQueryProcessor qp = null;
 		String table = getIndexTable(type);
 		try
 		{
-			conn = context.getCRM().getDatabaseConnection(context);
 			qp = conn.createProcessor();
 			qp.setSingleton(false);
 			qp.update("DELETE FROM "+table+"");
@@ -280,61 +286,170 @@ public class ChildIndexer
 	}
 
 	/**
-	Reindexes all of the categories
+	Reindexes all of the categories.  Trees that are already in the index are left alone.
 	*/
 	public static void reindexType(int type, IObjectContext context)
 		throws OculusException
 	{
-		IRConnection conn = null;
-		IQueryProcessor qp = null;
-		String table = getBaseTable(type);
-		String parentCol = getBaseParent(type);
-		String childCol = getBaseChild(type);
-		try
+		buildIndex(type, context.getCRM().getDatabaseConnection(context), ALL);
+	}
+
+	/**
+	Reindexes the tree under the specified category, which has to be in the index already.
+	Nodes that are already in the index are left alone.
+	*/
+	public static void reindexChild(int type, IObjectContext context, long parentid)
+		throws OculusException
+	{
+		buildIndex(type, context.getCRM().getDatabaseConnection(context), parentid);
+	}
+
+	/**
+	Rebuilds the indexes of the given types from scratch, all at the same time.  Each one is
+	rebuilt by a thread of its own, on a database connection of its own and in a transaction
+	of its own, so this is meant for repairing the indexes rather than for use inside another
+	transaction.  It returns once every index is done, and throws the first error if any of
+	them failed.  The indexes that were rebuilt stay rebuilt.
+	*/
+	public static void rebuildParallel(int[] types)
+		throws OculusException
+	{
+		Rebuilder[] rebuilders = new Rebuilder[types.length];
+		for (int i = 0; i < types.length; i++)
 		{
-			conn = context.getCRM().getDatabaseConnection(context);
-			qp = conn.createProcessor();
-			IDataSet ds = qp.retrieve("SELECT "+childCol+" FROM "+table+" WHERE "+childCol+"="+parentCol+"");
-			while (ds.next())
-			{
-				long defaultCatID = ds.getLong(childCol);
-				addChild(type,context,defaultCatID,defaultCatID);
-				reindexChild(type,context,defaultCatID);
-			}
+			rebuilders[i] = new Rebuilder(types[i]);
+			rebuilders[i].start();
 		}
-		finally
+		OculusException error = null;
+		for (int i = 0; i < rebuilders.length; i++)
 		{
-			if (qp != null) qp.close();
+			try { rebuilders[i].join(); }
+			catch (InterruptedException ex) { throw new OculusException("Interrupted while rebuilding "+getIndexTable(types[i])+"."); }
+			if (error == null)
+				error = rebuilders[i].error;
 		}
+		if (error != null)
+			throw error;
 	}
 
 	/**
-	Reindexes the specified category.
+	Rebuilds all of the indexes from scratch, all at the same time.
 	*/
-	public static void reindexChild(int type, IObjectContext context, long parentid)
+	public static void rebuildAll()
+		throws OculusException
+	{
+		rebuildParallel(new int[] { CATEGORY, FOLDER, STDCOLL });
+	}
+
+	/**
+	Adds the missing rows of the nodes under the given top node (or under every root when it
+	is ALL), a whole level of the hierarchy at a time.  The statements for one level are:
+		Step 1: Add the rows (A,N) where N is a node that isn't indexed yet, (A,P) and P is
+		        the parent of N.  Stop when there are none.
+		Step 2: Add the row (N,N) for each of those nodes.
+	so the whole tree takes two statements for each level of it.  Returns the number of rows
+	added.  VersionStructureCopy uses it to index the categories it copies.
+	*/
+	static int buildIndex(int type, IRConnection conn, long top)
 		throws OculusException
 	{
-		IRConnection conn = null;
 		IQueryProcessor qp = null;
-		String table = getBaseTable(type);
-		String parentCol = getBaseParent(type);
-		String childCol = getBaseChild(type);
+		String table = getIndexTable(type);
+		String parentCol = getIndexParent(type);
+		String childCol = getIndexChild(type);
+		String base = getBaseTable(type);
+		String baseParent = getBaseParent(type);
+		String baseChild = getBaseChild(type);
+		long start = System.currentTimeMillis();
+		int rows = 0;
+		int levels = 0;
 		try
 		{
-			conn = context.getCRM().getDatabaseConnection(context);
 			qp = conn.createProcessor();
-			IDataSet ds = qp.retrieve("SELECT "+childCol+" FROM "+table+" WHERE "+childCol+"<>"+parentCol+" AND "+parentCol+"="+parentid);
-			while (ds.next())
+			qp.setSingleton(false);
+
+			// the roots, which are their own parents
+			if (top == ALL)
+				rows += qp.update(
+					"INSERT INTO "+table+" ("+parentCol+", "+childCol+") "+
+					"SELECT root."+baseChild+", root."+baseChild+" FROM "+base+" root "+
+					"WHERE root."+baseChild+"=root."+baseParent+
+					"  AND NOT EXISTS (SELECT * FROM "+table+" own WHERE own."+parentCol+"=root."+baseChild+" AND own."+childCol+"=root."+baseChild+")");
+
+			String underTop = (top == ALL) ? "" :
+				"  AND EXISTS (SELECT * FROM "+table+" sub WHERE sub."+parentCol+"="+top+" AND sub."+childCol+"=node."+baseParent+")";
+			while (true)
 			{
-				long defaultCatID = ds.getLong(childCol);
-				addChild(type,context,parentid,defaultCatID);
-				reindexChild(type,context,defaultCatID);
+				// Step 1: the next level, with everything above it
+				int added = qp.update(
+					"INSERT INTO "+table+" ("+parentCol+", "+childCol+") "+
+					"SELECT anc."+parentCol+", node."+baseChild+" FROM "+table+" anc, "+base+" node "+
+					"WHERE anc."+childCol+"=node."+baseParent+" AND node."+baseChild+"<>node."+baseParent+underTop+
+					"  AND NOT EXISTS (SELECT * FROM "+table+" done WHERE done."+childCol+"=node."+baseChild+")");
+				if (added == 0)
+					break;
+				rows += added;
+				levels++;
+
+				// Step 2: each node of that level under itself
+				rows += qp.update(
+					"INSERT INTO "+table+" ("+parentCol+", "+childCol+") "+
+					"SELECT node."+baseChild+", node."+baseChild+" FROM "+base+" node "+
+					"WHERE node."+baseChild+"<>node."+baseParent+
+					"  AND EXISTS (SELECT * FROM "+table+" anc WHERE anc."+childCol+"=node."+baseChild+")"+
+					"  AND NOT EXISTS (SELECT * FROM "+table+" own WHERE own."+parentCol+"=node."+baseChild+")");
 			}
 		}
 		finally
 		{
 			if (qp != null) qp.close();
 		}
+		com.oculussoftware.service.log.DatabaseLogService.getInstance().write(
+			"REINDEX "+table+(top == ALL ? "" : " under "+top)+": "+rows+" rows, "+levels+" levels in "+
+			(System.currentTimeMillis() - start)+"ms");
+		return rows;
+	}
+
+	/**
+	Rebuilds one index in a transaction of its own, for rebuildParallel().
+	*/
+	private static class Rebuilder extends Thread
+	{
+		private int _type;
+		OculusException error = null;
+
+		Rebuilder(int type)
+		{
+			super("ChildIndexer-"+getIndexTable(type));
+			_type = type;
+		}
+
+		public void run()
+		{
+			IRConnection conn = null;
+			try
+			{
+				IObjectContext context = new ObjectContext();
+				context.setConnection(context.getCRM().connect("system","system"));
+				conn = ConnectionPool.getInstance().borrowPrivateConnection(context);
+				wipeIndex(_type, conn);
+				buildIndex(_type, conn, ALL);
+				conn.commit();
+			}
+			catch (Exception ex)
+			{
+				error = (ex instanceof OculusException) ? (OculusException)ex : new OculusException(ex);
+				if (conn != null)
+				{
+					try { conn.rollback(); }
+					catch (Exception ignore) {}
+				}
+			}
+			finally
+			{
+				ConnectionPool.getInstance().returnConnection(conn);
+			}
+		}
 	}
 
 
@@ -1633,6 +1633,21 @@ public class Feature extends BusinessObject implements IFeature, IRPropertyMap
   
 	
 //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _feattype = ownCopy(_feattype);
+    _isstandard = ownCopy(_isstandard);
+    _dependencies = ownCopy(_dependencies);
+    _engrSpecAttached = ownCopy(_engrSpecAttached);
+    // the objects looked up through the cached bo belong to its context, and may be locked by it
+    _link = null;
+    _rev = null;
+    inputScores = null;
+  }
+
   /**
   *  Returns a copy of the current product object.  It does not copy the
   * IObjectContext.  
@@ -1305,6 +1305,28 @@ public class FeatureCategoryLink extends BusinessObject implements IFeatureCateg
 
  
 //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _orderNum = ownCopy(_orderNum);
+    _percentCompleted = ownCopy(_percentCompleted);
+    _estDevTime = ownCopy(_estDevTime);
+    _actDevTime = ownCopy(_actDevTime);
+    _estTestTime = ownCopy(_estTestTime);
+    _devStartDate = ownCopy(_devStartDate);
+    _devEndDate = ownCopy(_devEndDate);
+    _testEndDate = ownCopy(_testEndDate);
+    // the objects looked up through the cached bo belong to its context, and may be locked by it
+    _feat = null;
+    _change = null;
+    _isChangeable = ownCopy(_isChangeable);
+    _priority = ownCopy(_priority);
+    _test = ownCopy(_test);
+    _difficulty = ownCopy(_difficulty);
+  }
+
   /**
   *  Returns a copy of the current product object.  It does not copy the
   * IObjectContext.  
@@ -287,6 +287,15 @@ public class FeatureLinkChange extends ReposObject implements IFeatureLinkChange
     }
   }
   
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _date = ownCopy(_date);
+    _comment = ownCopy(_comment);
+  }
+
   public Object dolly() throws OculusException
   {
     FeatureLinkChange ra = null;
@@ -40,6 +40,7 @@ import java.util.*;
 * ---             Saleem Shafi    3/13/00     Added logic to getFeatureObject() to return an IFeature object
 *                                             that uses the current FeatureRevision object as its current FeatureRevision.
 *	BUG00597				Saleem Shafi		6/2/00			Fixed the load() method for edits.
+* ---                                         Properties are not paged in by collections, since none are loaded.
 */
 public class FeatureRevision extends BusinessObject implements IFeatureRevision, IRPropertyMap
 {
@@ -129,6 +130,12 @@ public class FeatureRevision extends BusinessObject implements IFeatureRevision,
 		return null;
 	}
 
+  /** A revision doesn't load its properties, so a collection mustn't page them in either. */
+  protected boolean canPageLoadProperties()
+  {
+    return false;
+  }
+
 
   protected String getLoadQuery()
     throws OculusException
@@ -382,6 +389,17 @@ public class FeatureRevision extends BusinessObject implements IFeatureRevision,
 
  
 //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _isChangeable = ownCopy(_isChangeable);
+    _comment = ownCopy(_comment);
+    _revisionName = ownCopy(_revisionName);
+    _autoRevLabel = ownCopy(_autoRevLabel);
+  }
+
   /**
   *  Returns a copy of the current product object.  It does not copy the
   * IObjectContext.  
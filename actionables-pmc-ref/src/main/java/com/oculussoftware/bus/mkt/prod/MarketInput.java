@@ -282,6 +282,16 @@ public class MarketInput extends BusinessObject implements IMarketInput
      
     
 
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _importance = ownCopy(_importance);
+    _comment = ownCopy(_comment);
+    _subject = ownCopy(_subject);
+  }
+
   public Object dolly() throws OculusException
   {
     MarketInput cat = new MarketInput();
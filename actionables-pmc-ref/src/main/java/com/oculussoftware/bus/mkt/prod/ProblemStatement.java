@@ -50,6 +50,13 @@ public class ProblemStatement extends BusinessObject implements IProblemStatemen
   
   }
   
+  /** Gives a new snapshot its own list of input scores, read again when it is needed. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    inputScores = null;
+  }
 
   public Object dolly() throws OculusException
   {
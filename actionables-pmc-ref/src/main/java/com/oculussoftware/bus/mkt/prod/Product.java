@@ -90,6 +90,14 @@ public class Product extends BusinessObject implements IProduct
   _autoRev.setDefnObject(IDCONST.AUTOREV.getIIDValue());
 	}
 //----------------- IPoolable Methods ------------------------------------
+	/** Gives a new snapshot its own copies of the properties held in fields. */
+	protected void copyOwnProperties()
+	  throws OculusException
+	{
+	  super.copyOwnProperties();
+	  _autoRev = ownCopy(_autoRev);
+	}
+
 	/**
 	*	Returns a copy of the current product object.
 	*
@@ -50,6 +50,8 @@ import java.util.*;
 * ---             Saleem Shafi    2/24/00     Added createNewBaseline() method.
 * ---             Saleem Shafi    3/3/00      Started using the new method of creating new objects (null IID).
 * BUG00076        Saleem Shafi    5/15/00     Changed createCopy to use the defaultCategory
+* ---                                         copyStructureOf() copies the rows in bulk with a VersionStructureCopy.
+* ---                                         getAllChildOIDs() streams the ids instead of reading the search into a data set.
 */
 
 public class ProductVersion extends BusinessObject implements IProductVersion
@@ -89,6 +91,17 @@ public class ProductVersion extends BusinessObject implements IProductVersion
   
   }
 //----------------- IPoolable Methods ------------------------------------
+	/** Gives a new snapshot its own copies of the properties held in fields. */
+	protected void copyOwnProperties()
+	  throws OculusException
+	{
+	  super.copyOwnProperties();
+	  _orderNum = ownCopy(_orderNum);
+	  _targetDate = ownCopy(_targetDate);
+	  _estimatedDate = ownCopy(_estimatedDate);
+	  _actualDate = ownCopy(_actualDate);
+	}
+
 	/**
 	*	Returns a copy of the current product object.
 	*
@@ -130,53 +143,8 @@ public class ProductVersion extends BusinessObject implements IProductVersion
   public IProductVersion copyStructureOf(IProductVersion source)
     throws OculusException
   {
-    IObjectContext context = getObjectContext();
-    ICategory sourceCat = source.getDefaultCategory();
-    ICategory defaultCat = getDefaultCategory();
-
-    ICategoryColl subcats = sourceCat.getCategories();
-    while (subcats.hasMoreCategories())
-    {
-      ICategory subcat = subcats.nextCategory().createCopyFor(this);
-      subcat.setParentObject(defaultCat);
-      subcat.setVersionObject(this);
-    }
-
-    IFeatureColl feats = sourceCat.getFeatures();
-    while (feats.hasMoreFeatures())
-    {
-      IFeature feat = feats.nextFeature();
-      defaultCat.associateFeature(feat);
-    }
-
-    // Copy the dependencies over
-    IRConnection conn = context.getRepository().getDataConnection(context);
-    IQueryProcessor qp = conn.createProcessor();
-    IDataSet rs = qp.retrieve(
-      "      SELECT newlink.OBJECTID AS SOURCE, newlink2.OBJECTID AS DEST "+
-      "      FROM CATFEATURELINK link LEFT OUTER JOIN SEMANTICLINK sem ON link.OBJECTID = sem.SRCOBJECTID "+
-      "          LEFT OUTER JOIN CATEGORY cat ON link.CATEGORYID = cat.OBJECTID "+
-      "          LEFT OUTER JOIN CATFEATURELINK link2 ON link2.OBJECTID = sem.DESTOBJECTID "+
-      "          LEFT OUTER JOIN CATEGORY cat2 ON link2.CATEGORYID = cat2.OBJECTID "+
-      "          LEFT OUTER JOIN CATFEATURELINK newlink ON newlink.FEATUREID = link.FEATUREID "+
-      "          LEFT OUTER JOIN CATEGORY newcat ON newlink.CATEGORYID = newcat.OBJECTID "+
-      "          LEFT OUTER JOIN CATFEATURELINK newlink2 ON newlink2.FEATUREID = link2.FEATUREID "+
-      "          LEFT OUTER JOIN CATEGORY newcat2 ON newlink2.CATEGORYID = newcat2.OBJECTID "+
-      "      WHERE sem.LINKTYPE = "+LinkKind.FUNCTIONAL_DEP+" AND cat.VERSIONID = "+source.getIID()+" AND "+
-      "          cat2.VERSIONID = "+source.getIID()+" AND newcat.VERSIONID = "+getIID()+" AND "+
-      "          newcat2.VERSIONID = "+getIID()+" "
-      );
-
-    while (rs.next())
-    {
-      long sourceLinkID = rs.getLong("SOURCE");
-      long destLinkID = rs.getLong("DEST");
-      IIID sourceIID = context.getRepository().makeReposID(sourceLinkID);
-      IIID destIID = context.getRepository().makeReposID(destLinkID);
-      IFeatureCategoryLink sourceLink = (IFeatureCategoryLink)context.getCRM().getCompObject(context,"FeatureCategoryLink",sourceIID);
-      IFeatureCategoryLink destLink = (IFeatureCategoryLink)context.getCRM().getCompObject(context,"FeatureCategoryLink",destIID);
-      destLink.addFunctionalDependency(sourceLink);
-    }    
+    // the rows are copied with set-based inserts when the transaction commits
+    VersionStructureCopy.schedule(source, this);
     return this;
   }
   
@@ -949,7 +917,7 @@ protected Object getPSPValue() throws ORIOException
   public List getAllChildOIDs( )
     throws OculusException
   {
-    List retList = new Vector();
+    final List retList = new Vector();
     
     IKeywordSearch srch = new KeywordSearch();
     ((KeywordSearch) srch).setObjectContext(getObjectContext());
@@ -958,11 +926,13 @@ protected Object getPSPValue() throws ORIOException
     srch.setSearchAllFields(false);
     srch.setQueryClasses(Arrays.asList(new IXClass[] {XMen.CLS_CATEGORY, XMen.CLS_CATFEATLINK}));
     srch.setScopeObject(XMen.CLS_VERSION, getIID().getLongValue());
-    IDataSet results = srch.getSearcher().doQueries();
-    while (results != null && results.next()) {
-      long l = results.getLong("OBJECTID");
-      retList.add(new Long(l));
-    }
+    srch.getSearcher().doQueries(new IRowHandler() {
+      public boolean handleRow(IDataSet row) throws OculusException
+      {
+        retList.add(new Long(row.getLong("OBJECTID")));
+        return true;
+      }
+    });
     return retList;
   }
 }
@@ -49,6 +49,14 @@ public class Reaction extends BusinessObject implements IReaction
   }
   
 
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _weight = ownCopy(_weight);
+  }
+
   public Object dolly() throws OculusException
   {
     Reaction cat = null;
@@ -178,6 +178,15 @@ public class SpecSignOff extends BusinessObject implements ISpecSignOff
     return blnRV;
   }//
     
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _editdate = ownCopy(_editdate);
+    _comment = ownCopy(_comment);
+  }
+
   public Object dolly() throws OculusException
   {
     SpecSignOff sso = null;
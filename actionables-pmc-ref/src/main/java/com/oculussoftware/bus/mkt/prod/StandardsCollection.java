@@ -61,6 +61,14 @@ public class StandardsCollection extends BusinessObject implements IStandardsCol
 	_autoRev = new BMProperty(this);
 	}
 //----------------- IPoolable Methods ------------------------------------
+	/** Gives a new snapshot its own copies of the properties held in fields. */
+	protected void copyOwnProperties()
+	  throws OculusException
+	{
+	  super.copyOwnProperties();
+	  _autoRev = ownCopy(_autoRev);
+	}
+
 	/**
 	*	Returns a copy of the current StandardsCollection object.
 	*
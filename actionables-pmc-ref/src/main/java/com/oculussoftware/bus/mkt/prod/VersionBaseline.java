@@ -274,6 +274,14 @@ public class VersionBaseline extends ProductVersion implements IVersionBaseline
 
 
 //----------------- IPoolable Methods ------------------------------------
+  /** Gives a new snapshot its own copies of the properties held in fields. */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+    super.copyOwnProperties();
+    _vername = ownCopy(_vername);
+  }
+
 	/**
 	*	Returns a copy of the current product object.
 	*
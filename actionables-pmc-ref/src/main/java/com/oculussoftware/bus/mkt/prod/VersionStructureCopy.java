@@ -0,0 +1,547 @@
+package com.oculussoftware.bus.mkt.prod;
+
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.api.sysi.sec.IPermission;
+import com.oculussoftware.api.busi.PermEnum;
+import com.oculussoftware.api.busi.mkt.prod.*;
+import com.oculussoftware.api.busi.mkt.comm.*;
+import com.oculussoftware.system.*;
+import com.oculussoftware.util.*;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+* Filename:    VersionStructureCopy.java
+* Date:
+* Description: Copies the category tree of one product version into another.
+*
+* <P>ProductVersion.copyStructureOf() used to copy the tree one object at a time: every
+* category, feature link, file and hyperlink was loaded, copied into a new object and saved
+* with its own INSERT, and every functional dependency was looked up again through a join
+* of nine tables.  A version with thousands of features took minutes to copy.</P>
+*
+* <P>A VersionStructureCopy reads the ids of the rows to copy once, one query per table,
+* and reserves one block of object ids (and one of category visible ids) for all of the
+* copies.  When the transaction commits, its save() copies the rows with INSERT ... SELECT
+* statements, each of which copies up to MAX_CASE_ROWS rows.  The new ids, GUIDs and the
+* ids of the rows the copies hang off are given to the statement as CASE expressions on
+* the old OBJECTID, and every other column is copied by the database, including the file
+* contents and the extended values of the feature links.  Everything is written on the
+* transaction's connection, so the copy commits or rolls back with the new version.  The
+* CATCHILDINDEX rows of the copied categories are then added under the target's default
+* category by ChildIndexer, a level of the tree per statement.</P>
+*
+* <P>The same rows are copied as before: the categories under the default category of the
+* source, their files and hyperlinks, the feature links of those categories and of the
+* default category, the extended values of the links, and the functional dependencies
+* between the copied links.  Discussion topics are still copied as objects, but only for
+* the categories that have them.</P>
+*
+* <P>The progress of the copy is written to the database log as each table is done, and
+* getCopiesInProgress() returns the copies being saved so they can be watched.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class VersionStructureCopy implements IBulkPersistable, IPoolableNotCachable
+{
+  /**
+  * Rows copied by one statement.  Each row adds two arguments to each CASE expression and
+  * Oracle allows 255.
+  */
+  public static final int MAX_CASE_ROWS = 100;
+
+  /** Tables of the extended values of an object, and the column with the value. */
+  private static final String[][] VALUE_TABLES = {
+    {"CHARVALUE", "VALUE"}, {"LONGCHARVALUE", "VALUE"}, {"BOOLEANVALUE", "VALUE"},
+    {"TIMEVALUE", "VALUE"}, {"BLOBVALUE", "VALUE"}, {"ENUMVALUE", "VALUE"},
+    {"ENUMSELECTION", "ENUMLITERALID"} };
+
+  private static final List _inProgress = new ArrayList();
+
+  //------------------------ Private Instance Variables ------------------------------------
+  private IObjectContext _context;
+  private IGUID _guid;
+  private PersState _persState = PersState.NEW;
+  private IIID _targetIID;
+  private long _sourceVersion, _sourceRoot;     // the source version and its default category
+  private long _targetVersion, _targetRoot;
+  private long _creator;
+  private String _created;
+
+  private TableCopy _categories, _links, _files, _hyperLinks, _dependencies;
+  private LongObjectMap _newIDs = new LongObjectMap();  // old category and link id -> Long new id
+  private LongSortedSet _discussed = new LongSortedSet(); // categories with discussion topics
+  private long _firstID = 0;
+  private int _idCount = 0;
+
+  private String _stage = "planned";
+  private int _rowsPlanned = 0;
+  private int _rowsWritten = 0;
+  private int _statements = 0;
+  private long _millis = 0;
+
+  //------------------------ Public Static Methods ------------------------------------
+  /**
+  * Plans the copy of the structure of the source version into the target, and adds it to
+  * the transaction of the context of the target.  The rows are copied when the
+  * transaction commits.
+  */
+  public static VersionStructureCopy schedule(IProductVersion source, IProductVersion target)
+    throws OculusException
+  {
+    VersionStructureCopy copy = new VersionStructureCopy(source, target);
+    copy._plan();
+    TransactionMgr.getInstance().getTransaction(copy._context).addObject(copy);
+    copy._copyDiscussionTopics();
+    return copy;
+  }
+
+  /** Returns the copies that are being saved right now. */
+  public static List getCopiesInProgress()
+  {
+    synchronized (_inProgress)
+    {
+      return new ArrayList(_inProgress);
+    }
+  }
+
+  //------------------------ Constructors ------------------------------------
+  protected VersionStructureCopy(IProductVersion source, IProductVersion target)
+    throws OculusException
+  {
+    _context = target.getObjectContext();
+    _guid = new GUID();
+    _targetIID = target.getIID();
+    _sourceVersion = source.getIID().getLongValue();
+    _sourceRoot = source.getDefaultCategory().getIID().getLongValue();
+    _targetVersion = target.getIID().getLongValue();
+    _targetRoot = target.getDefaultCategory().getIID().getLongValue();
+    _creator = _context.getConnection().getUserIID().getLongValue();
+    _created = "'"+new Timestamp(System.currentTimeMillis()).toString()+"'";
+  }
+
+  //------------------------ Progress ------------------------------------
+  /** Returns what the copy is doing: "planned", the table being copied, or "done". */
+  public String getStage() { return _stage; }
+
+  /** Returns the number of categories, links, files, hyperlinks and dependencies to copy. */
+  public int getRowsPlanned() { return _rowsPlanned; }
+
+  /** Returns the number of rows inserted so far, extended values and grants included. */
+  public int getRowsWritten() { return _rowsWritten; }
+
+  public String toString()
+  {
+    return "VersionStructureCopy "+_sourceVersion+" -> "+_targetVersion+": "+_stage+", "+
+      _categories.size()+" categories, "+_links.size()+" feature links, "+
+      _files.size()+" files, "+_hyperLinks.size()+" hyperlinks, "+
+      _dependencies.size()+" dependencies; "+_rowsWritten+" rows in "+_statements+
+      " statements, "+_millis+"ms";
+  }
+
+  //------------------------ IBulkPersistable Methods ------------------------------------
+  public long[] getSavedIDs()
+  {
+    long[] ids = new long[_persState.equals(PersState.NEW) ? 0 : _idCount];
+    for (int i = 0; i < ids.length; i++)
+      ids[i] = _firstID + i;
+    return ids;
+  }
+
+  //------------------------ IPersistable Methods ------------------------------------
+  public IPersistable setPersState(PersState state) { _persState = state; return this; }
+  public PersState getPersState() { return _persState; }
+  public IPersistable setIID(IIID objIID) { _targetIID = objIID; return this; }
+  public IIID getIID() { return _targetIID; }
+  public IPersistable load() { return this; }
+  public IPersistable delete() { return this; }
+
+  /** Copies the rows.  It is called by the transaction, on its connection. */
+  public IPersistable save()
+    throws OculusException
+  {
+    if (!_persState.equals(PersState.NEW))
+      return this;
+    long start = System.currentTimeMillis();
+    synchronized (_inProgress) { _inProgress.add(this); }
+    IQueryProcessor qp = _context.getCRM().getDatabaseConnection(_context).createProcessor();
+    try
+    {
+      qp.setSingleton(false);
+      _copy(qp, _categories, start);
+      _indexCategories(start);
+      _copy(qp, _links, start);
+      _copyValues(qp, start);
+      _copy(qp, _files, start);
+      _copy(qp, _hyperLinks, start);
+      _copy(qp, _dependencies, start);
+      _grantOwner(qp, _categories, IDCONST.CATEGORY, start);
+      _grantOwner(qp, _links, IDCONST.FEATURECATEGORYLINK, start);
+      _progress("done", start);
+      _persState = PersState.UNMODIFIED;
+    }
+    finally
+    {
+      qp.close();
+      synchronized (_inProgress) { _inProgress.remove(this); }
+    }
+    return this;
+  }
+
+  //------------------------ IPoolable Methods ------------------------------------
+  public IGUID getGUID() { return _guid; }
+  public IObjectContext getObjectContext() { return _context; }
+  public IObject setObjectContext(IObjectContext context) { _context = context; return this; }
+  public boolean isLocked() { return false; }
+  public IPoolable construct(IObjectContext context, IDataSet args) { return this; }
+  public Object dolly() { return this; }
+  public boolean isRemoveable() { return true; }
+
+  //------------------------ Private Methods ------------------------------------
+  /** Reads the ids of the rows to copy and reserves the ids of the copies. */
+  private void _plan()
+    throws OculusException
+  {
+    IQueryProcessor qp = _context.getRepository().getDataConnection(_context).createProcessor();
+    try
+    {
+      String notDeleted = " <> "+DeleteState.DELETED.getIntValue();
+
+      // the category tree, parents before their children
+      LongObjectMap children = new LongObjectMap();
+      IDataSet rs = qp.retrieve(
+        "SELECT OBJECTID, PARENTCATID, DISCUSSATTACHED FROM CATEGORY "+
+        " WHERE VERSIONID = "+_sourceVersion+" AND OBJECTID <> PARENTCATID AND DELETESTATE"+notDeleted);
+      while (rs.next())
+      {
+        long id = rs.getLong("OBJECTID");
+        long parent = rs.getLong("PARENTCATID");
+        DynaLongArray kids = (DynaLongArray)children.get(parent);
+        if (kids == null)
+          children.put(parent, kids = new DynaLongArray());
+        kids.add(id);
+        if (rs.getInt("DISCUSSATTACHED") == 1)
+          _discussed.add(id);
+      }
+      _categories = new TableCopy("CATEGORY", new String[] {"PARENTCATID"},
+        new String[][] {{"CLASSID", ""+IDCONST.CATEGORY.getLongValue()}, {"VERSIONID", ""+_targetVersion},
+                        {"CREATIONDATE", _created}, {"CREATORID", ""+_creator}},
+        new String[] {"STATEID", "DELETESTATE", "NAME", "DESCRIPTION", "ORDERNUM", "ACCESSID",
+                      "DISCUSSATTACHED", "FILEATTACHED", "LINKATTACHED"});
+      _categories.sequenceColumn = "VISIBLEID";
+      LongSortedSet copied = new LongSortedSet();
+      DynaLongArray parents = new DynaLongArray();
+      parents.add(_sourceRoot);
+      for (int p = 0; p < parents.size(); p++)
+      {
+        DynaLongArray kids = (DynaLongArray)children.get(parents.get(p));
+        for (int k = 0; kids != null && k < kids.size(); k++)
+          if (copied.add(kids.get(k)))
+          {
+            _categories.add(kids.get(k), parents.get(p), 0);
+            parents.add(kids.get(k));
+          }
+      }
+
+      // the feature links of the default category and the copied ones
+      _links = new TableCopy("CATFEATURELINK", new String[] {"CATEGORYID"},
+        new String[][] {{"CREATIONDATE", _created}, {"CREATORID", ""+_creator}},
+        new String[] {"CLASSID", "STATEID", "DELETESTATE", "ACCESSID", "DISCUSSATTACHED",
+                      "FILEATTACHED", "LINKATTACHED", "FEATUREID", "PINNEDREVID", "PRIORITYID",
+                      "TESTLEVELID", "DIFFLEVELID", "ORDERNUM", "PERCENTCOMPLETED", "ESTDEVTIME",
+                      "ACTUALDEVTIME", "ESTTESTTIME", "DEVSTARTDATE", "DEVENDDATE", "TESTENDDATE"});
+      rs = qp.retrieve(
+        "SELECT link.OBJECTID, link.CATEGORYID FROM CATFEATURELINK link, CATEGORY cat "+
+        " WHERE link.CATEGORYID = cat.OBJECTID AND link.DELETESTATE"+notDeleted+
+        "   AND (cat.VERSIONID = "+_sourceVersion+" OR cat.OBJECTID = "+_sourceRoot+")");
+      LongSortedSet linked = new LongSortedSet();
+      while (rs.next())
+      {
+        long cat = rs.getLong("CATEGORYID");
+        if (cat == _sourceRoot || copied.contains(cat))
+        {
+          _links.add(rs.getLong("OBJECTID"), cat, 0);
+          linked.add(rs.getLong("OBJECTID"));
+        }
+      }
+
+      // the files and hyperlinks of the copied categories
+      _files = new TableCopy("ATTACHMENT", new String[] {"PAROBJECTID"},
+        new String[][] {{"CLASSID", ""+IDCONST.FILE.getLongValue()},
+                        {"CREATIONDATE", _created}, {"CREATORID", ""+_creator}},
+        new String[] {"STATEID", "FILENAME", "DESCRIPTION", "DELETESTATE", "ACCESSID",
+                      "DISCUSSATTACHED", "INCLUDEINDOCRPTS", "FILEATTACHED", "LINKATTACHED",
+                      "FILECATEGORYCODE", "FILESIZEBYTES", "TYPE", "FILECONTENT"});
+      _addChildren(qp, _files,
+        "SELECT att.OBJECTID, att.PAROBJECTID FROM ATTACHMENT att, CATEGORY cat "+
+        " WHERE att.PAROBJECTID = cat.OBJECTID AND cat.VERSIONID = "+_sourceVersion+
+        "   AND att.TYPE = "+AttachmentType.NORMAL.getIntValue()+" AND att.DELETESTATE"+notDeleted, copied);
+      _hyperLinks = new TableCopy("EXTHYPERLINK", new String[] {"PAROBJECTID"},
+        new String[][] {{"CREATIONDATE", _created}, {"CREATORID", ""+_creator}},
+        new String[] {"CLASSID", "STATEID", "DELETESTATE", "LABEL", "SHORTDESCRIPTION", "URL",
+                      "TYPE", "ACCESSID", "DISCUSSATTACHED", "FILEATTACHED", "LINKATTACHED"});
+      _addChildren(qp, _hyperLinks,
+        "SELECT hl.OBJECTID, hl.PAROBJECTID FROM EXTHYPERLINK hl, CATEGORY cat "+
+        " WHERE hl.PAROBJECTID = cat.OBJECTID AND cat.VERSIONID = "+_sourceVersion+
+        "   AND hl.TYPE <> "+HyperLinkType.ENGRSPEC.getIntValue()+" AND hl.DELETESTATE"+notDeleted, copied);
+
+      // the functional dependencies between the copied links
+      _dependencies = new TableCopy("SEMANTICLINK", new String[] {"SRCOBJECTID", "DESTOBJECTID"},
+        new String[0][], new String[] {"LINKTYPE", "ORDERNUM"});
+      rs = qp.retrieve(
+        "SELECT sem.OBJECTID, sem.SRCOBJECTID, sem.DESTOBJECTID "+
+        " FROM SEMANTICLINK sem, CATFEATURELINK link, CATEGORY cat "+
+        " WHERE sem.LINKTYPE = "+LinkKind.FUNCTIONAL_DEP.getIntValue()+
+        "   AND sem.SRCOBJECTID = link.OBJECTID AND link.CATEGORYID = cat.OBJECTID "+
+        "   AND (cat.VERSIONID = "+_sourceVersion+" OR cat.OBJECTID = "+_sourceRoot+")");
+      while (rs.next())
+      {
+        long src = rs.getLong("SRCOBJECTID");
+        long dest = rs.getLong("DESTOBJECTID");
+        if (linked.contains(src) && linked.contains(dest))
+          _dependencies.add(rs.getLong("OBJECTID"), src, dest);
+      }
+    }
+    finally
+    {
+      qp.close();
+    }
+
+    // one block of ids for every copy, in the order they are inserted
+    TableCopy[] tables = { _categories, _links, _files, _hyperLinks, _dependencies };
+    for (int t = 0; t < tables.length; t++)
+      _idCount += tables[t].size();
+    _rowsPlanned = _idCount;
+    if (_idCount > 0)
+      _firstID = _context.getRepository().genReposIDRange(_idCount);
+    long next = _firstID;
+    for (int t = 0; t < tables.length; t++)
+    {
+      tables[t].firstID = next;
+      next += tables[t].size();
+    }
+    if (_categories.size() > 0)
+      _categories.sequenceFirst = Category.reserveVisibleIDs(_context, _categories.size());
+
+    _newIDs.put(_sourceRoot, new Long(_targetRoot));
+    _categories.mapIDs(_newIDs);
+    _links.mapIDs(_newIDs);
+  }
+
+  /** Adds the rows the query returns that belong to one of the parents. */
+  private void _addChildren(IQueryProcessor qp, TableCopy table, String query, LongSortedSet parents)
+    throws OculusException
+  {
+    IDataSet rs = qp.retrieve(query);
+    while (rs.next())
+    {
+      long parent = rs.getLong("PAROBJECTID");
+      if (parents.contains(parent))
+        table.add(rs.getLong("OBJECTID"), parent, 0);
+    }
+  }
+
+  /** Copies the discussion topics of the categories that have them, as objects. */
+  private void _copyDiscussionTopics()
+    throws OculusException
+  {
+    IRepository repos = _context.getRepository();
+    for (int i = 0; i < _discussed.size(); i++)
+    {
+      long oldID = _discussed.get(i);
+      Long newID = (Long)_newIDs.get(oldID);
+      if (newID == null)
+        continue;
+      ICategory oldCat = (ICategory)_context.getCRM().getCompObject(_context,"Category",repos.makeReposID(oldID));
+      IDiscussionTopicList topics = oldCat.getAttachedDiscussionTopics();
+      while (topics != null && topics.hasMoreDiscussionTopics())
+      {
+        IDiscussionTopic newTopic = topics.nextDiscussionTopic().createCopy();
+        newTopic.setParObjectIID(repos.makeReposID(newID.longValue()));
+        newTopic.setParObjectType(IDCONST.CATEGORY);
+      }
+    }
+  }
+
+  /** Inserts the copies of the rows of one table. */
+  private void _copy(IQueryProcessor qp, TableCopy table, long start)
+    throws OculusException
+  {
+    _progress(table.table, start);
+    for (int from = 0; from < table.size(); from += MAX_CASE_ROWS)
+    {
+      int to = Math.min(from + MAX_CASE_ROWS, table.size());
+      StringBuffer sql = new StringBuffer("INSERT INTO ").append(table.table).append(" (OBJECTID, GUID");
+      for (int c = 0; c < table.refColumns.length; c++)
+        sql.append(", ").append(table.refColumns[c]);
+      if (table.sequenceColumn != null)
+        sql.append(", ").append(table.sequenceColumn);
+      for (int c = 0; c < table.fixed.length; c++)
+        sql.append(", ").append(table.fixed[c][0]);
+      for (int c = 0; c < table.copied.length; c++)
+        sql.append(", ").append(table.copied[c]);
+      sql.append(") SELECT ");
+
+      // the new id, a new GUID, the new ids of the rows it refers to and its sequence number
+      sql.append("CASE OBJECTID");
+      for (int i = from; i < to; i++)
+        sql.append(" WHEN ").append(table.oldIDs.get(i)).append(" THEN ").append(table.firstID + i);
+      sql.append(" END, CASE OBJECTID");
+      for (int i = from; i < to; i++)
+        sql.append(" WHEN ").append(table.oldIDs.get(i)).append(" THEN '").append(new GUID().toString()).append("'");
+      sql.append(" END");
+      for (int c = 0; c < table.refColumns.length; c++)
+      {
+        sql.append(", CASE OBJECTID");
+        for (int i = from; i < to; i++)
+          sql.append(" WHEN ").append(table.oldIDs.get(i)).append(" THEN ").append(_newID(table.refs[c].get(i)));
+        sql.append(" END");
+      }
+      if (table.sequenceColumn != null)
+      {
+        sql.append(", CASE OBJECTID");
+        for (int i = from; i < to; i++)
+          sql.append(" WHEN ").append(table.oldIDs.get(i)).append(" THEN ").append(table.sequenceFirst + i);
+        sql.append(" END");
+      }
+      for (int c = 0; c < table.fixed.length; c++)
+        sql.append(", ").append(table.fixed[c][1]);
+      for (int c = 0; c < table.copied.length; c++)
+        sql.append(", ").append(table.copied[c]);
+      sql.append(" FROM ").append(table.table).append(" WHERE OBJECTID IN (");
+      _appendIDs(sql, table.oldIDs, from, to);
+      sql.append(")");
+      _update(qp, sql.toString());
+    }
+  }
+
+  /**
+  * Adds the CATCHILDINDEX rows of the copied categories, as Category.save() does for each
+  * new category.  The default category of the target is already in the index.
+  */
+  private void _indexCategories(long start)
+    throws OculusException
+  {
+    if (_categories.size() == 0)
+      return;
+    _progress("CATCHILDINDEX", start);
+    _rowsWritten += ChildIndexer.buildIndex(ChildIndexer.CATEGORY, _context.getCRM().getDatabaseConnection(_context), _targetRoot);
+  }
+
+  /** Copies the extended values of the copied feature links. */
+  private void _copyValues(IQueryProcessor qp, long start)
+    throws OculusException
+  {
+    _progress("values", start);
+    for (int from = 0; from < _links.size(); from += MAX_CASE_ROWS)
+    {
+      int to = Math.min(from + MAX_CASE_ROWS, _links.size());
+      StringBuffer newIDs = new StringBuffer("CASE PAROBJECTID");
+      for (int i = from; i < to; i++)
+        newIDs.append(" WHEN ").append(_links.oldIDs.get(i)).append(" THEN ").append(_links.firstID + i);
+      newIDs.append(" END");
+      StringBuffer oldIDs = new StringBuffer();
+      _appendIDs(oldIDs, _links.oldIDs, from, to);
+      for (int t = 0; t < VALUE_TABLES.length; t++)
+        _update(qp,
+          "INSERT INTO "+VALUE_TABLES[t][0]+" ("+VALUE_TABLES[t][1]+", ATTRIBUTEID, PAROBJECTID) "+
+          " SELECT "+VALUE_TABLES[t][1]+", ATTRIBUTEID, "+newIDs+
+          " FROM "+VALUE_TABLES[t][0]+" WHERE PAROBJECTID IN ("+oldIDs+")");
+    }
+  }
+
+  /** Grants the creator the ownership of the copies, as BusinessObject.save() does. */
+  private void _grantOwner(IQueryProcessor qp, TableCopy table, IDCONST cls, long start)
+    throws OculusException
+  {
+    IPermission owner = PermEnum.OWNER;
+    if (table.size() == 0 || !PermEnum.isValidPermission(owner, cls))
+      return;
+    _progress("grants", start);
+    _update(qp,
+      "INSERT INTO PERMISSIONGRANT (PAROBJECTID, PERMISSIONID, ACCESSORID) "+
+      " SELECT OBJECTID, "+owner.getID()+", "+_creator+" FROM "+table.table+
+      " WHERE OBJECTID >= "+table.firstID+" AND OBJECTID < "+(table.firstID + table.size()));
+  }
+
+  private void _update(IQueryProcessor qp, String sql)
+    throws OculusException
+  {
+    _rowsWritten += qp.update(sql);
+    _statements++;
+  }
+
+  private long _newID(long oldID)
+    throws OculusException
+  {
+    Long newID = (Long)_newIDs.get(oldID);
+    if (newID == null)
+      throw new OculusException("No copy was planned for object "+oldID+".");
+    return newID.longValue();
+  }
+
+  private void _progress(String stage, long start)
+  {
+    _stage = stage;
+    _millis = System.currentTimeMillis() - start;
+    com.oculussoftware.service.log.DatabaseLogService.getInstance().write(toString());
+  }
+
+  private static void _appendIDs(StringBuffer sql, DynaLongArray ids, int from, int to)
+  {
+    for (int i = from; i < to; i++)
+    {
+      if (i > from)
+        sql.append(",");
+      sql.append(ids.get(i));
+    }
+  }
+
+  //------------------------ Inner Classes ------------------------------------
+  /** The rows of one table to copy, and how their columns are filled in. */
+  private static class TableCopy
+  {
+    String table;
+    String[] refColumns;            // ids of copied rows, replaced by the ids of their copies
+    String[][] fixed;               // column and the value every copy gets
+    String[] copied;                // columns copied as they are
+    String sequenceColumn = null;   // numbered from sequenceFirst, in the order of the rows
+    long sequenceFirst = 0;
+    DynaLongArray oldIDs = new DynaLongArray();
+    DynaLongArray[] refs;
+    long firstID = 0;               // id of the copy of the first row
+
+    TableCopy(String table, String[] refColumns, String[][] fixed, String[] copied)
+    {
+      this.table = table;
+      this.refColumns = refColumns;
+      this.fixed = fixed;
+      this.copied = copied;
+      refs = new DynaLongArray[refColumns.length];
+      for (int c = 0; c < refs.length; c++)
+        refs[c] = new DynaLongArray();
+    }
+
+    void add(long oldID, long ref0, long ref1)
+    {
+      oldIDs.add(oldID);
+      if (refs.length > 0)
+        refs[0].add(ref0);
+      if (refs.length > 1)
+        refs[1].add(ref1);
+    }
+
+    int size() { return oldIDs.size(); }
+
+    /** Puts the id of the copy of each row into the map. */
+    void mapIDs(LongObjectMap newIDs)
+    {
+      for (int i = 0; i < size(); i++)
+        newIDs.put(oldIDs.get(i), new Long(firstID + i));
+    }
+  }
+}
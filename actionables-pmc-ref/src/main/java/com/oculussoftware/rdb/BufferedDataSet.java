@@ -0,0 +1,332 @@
+package com.oculussoftware.rdb;
+
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.repos.util.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+* Filename:    BufferedDataSet.java
+* Date:
+* Description: An IDataSet over rows copied out of another data set, for a small number
+* of rows that has to outlive the result set it came from, such as one page of a search.
+*
+* <P>The columns are those of the first row copied.  Like a JDBCDataSet, columns are found
+* by name without regard to case, or by their index starting at 1, and next() has to be
+* called before the first row is read.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class BufferedDataSet implements IDataSet
+{
+  private List _labels = null;              // upper case column labels, in column order
+  private Map _columns = null;              // label -> Integer index
+  private final List _rows = new ArrayList();  // Object[] per row
+  private IIID _iid;
+  private int _row = 0;
+  private boolean _lastNull = false;
+
+  public BufferedDataSet()
+  {
+  }
+
+  /** Creates a data set of count rows of the source, starting with the given row (from 1). */
+  public BufferedDataSet(BufferedDataSet source, int from, int count)
+  {
+    _labels = source._labels;                // the columns never change once set
+    _columns = source._columns;
+    int first = Math.max(from, 1) - 1;
+    int last = Math.min(first + Math.max(count, 0), source._rows.size());
+    for (int i = first; i < last; i++)
+      _rows.add(source._rows.get(i));         // and rows are never changed in place
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  /** Copies the current row of the source to the end of this data set. */
+  public void addRow(IDataSet source)
+    throws ORIOException
+  {
+    if (_labels == null)
+      _setColumns(source.keySet());
+    Object[] values = new Object[_labels.size()];
+    for (int i = 0; i < values.length; i++)
+      values[i] = source.get(_labels.get(i));
+    _rows.add(values);
+  }
+
+  /** Drops the last row. */
+  public void removeLastRow()
+  {
+    if (!_rows.isEmpty())
+      _rows.remove(_rows.size() - 1);
+  }
+
+  /** Drops the given row, which starts at 1. */
+  public void removeRow(int row)
+  {
+    _rows.remove(row - 1);
+    if (_row >= row)
+      _row--;
+  }
+
+  /** Reverses the order of the rows. */
+  public void reverse()
+  {
+    Collections.reverse(_rows);
+  }
+
+  /**
+  * Sorts the rows by an ORDER BY list of column labels, such as "NAME, CREATIONDATE DESC".
+  * Table aliases in front of the labels are ignored.  Like the database, NULLs sort before
+  * other values, and strings are compared without regard to case.  Rows that compare equal
+  * keep their order.
+  */
+  public void sort(String orderBy)
+    throws ORIOException
+  {
+    StringTokenizer items = new StringTokenizer(orderBy, ",");
+    final int[] keys = new int[items.countTokens()];
+    final boolean[] desc = new boolean[keys.length];
+    for (int i = 0; i < keys.length; i++)
+    {
+      StringTokenizer words = new StringTokenizer(items.nextToken());
+      String label = words.nextToken();
+      label = label.substring(label.lastIndexOf('.') + 1);
+      keys[i] = findColumn(label) - 1;
+      desc[i] = words.hasMoreTokens() && words.nextToken().equalsIgnoreCase("DESC");
+    }
+    Collections.sort(_rows, new Comparator() {
+      public int compare(Object o1, Object o2)
+      {
+        Object[] r1 = (Object[])o1;
+        Object[] r2 = (Object[])o2;
+        for (int i = 0; i < keys.length; i++)
+        {
+          int c = _compare(r1[keys[i]], r2[keys[i]]);
+          if (c != 0)
+            return desc[i] ? -c : c;
+        }
+        return 0;
+      }
+    });
+    _row = 0;
+  }
+
+  /** Moves back before the first row. */
+  public void beforeFirst()
+  {
+    _row = 0;
+  }
+
+  /** Returns the named value of the given row, which starts at 1. */
+  public Object getValue(int row, String key)
+    throws ORIOException
+  {
+    return ((Object[])_rows.get(row - 1))[findColumn(key) - 1];
+  }
+
+  public IDataSet setIID(IIID iid)
+    throws ORIOException
+  {
+    _iid = iid;
+    return this;
+  }
+
+  public IDataSet setIID(long iid)
+    throws ORIOException
+  {
+    _iid = new SequentialIID(iid);
+    return this;
+  }
+
+  public IIID getIID()
+    throws ORIOException
+  {
+    return _iid;
+  }
+
+  public boolean next()
+    throws ORIOException
+  {
+    if (_row >= _rows.size())
+      return false;
+    _row++;
+    return true;
+  }
+
+  public int findColumn(String key)
+    throws ORIOException
+  {
+    int index = _lookup(key);
+    if (index <= 0)
+      throw new ORIOException("Invalid column name: "+key);
+    return index;
+  }
+
+  public boolean wasNull() { return _lastNull; }
+
+  public int getRow() { return _row; }
+
+  public int getRowCount() { return _rows.size(); }
+
+  public Object get(Object key)
+  {
+    int index = _lookup((String)key);
+    return (index <= 0 || _row == 0 || _row > _rows.size()) ? null : ((Object[])_rows.get(_row - 1))[index - 1];
+  }
+
+  public boolean containsKey(Object key)
+  {
+    return _lookup((String)key) > 0;
+  }
+
+  public void putAll(Map map) {}
+  public Set keySet() { return (_labels == null) ? Collections.EMPTY_SET : Collections.unmodifiableSet(_columns.keySet()); }
+  public Collection values() { return null; }
+  public boolean containsValue(Object key) { return false; }
+  public Object remove(Object key) { return this; }
+  public Object put(Object key, Object value) { return this; }
+  public void clear() {}
+  public Set entrySet() { return null; }
+  public boolean isEmpty() { return size() == 0; }
+  public int size() { return (_labels == null) ? 0 : _labels.size(); }
+
+  public int getInt(String key) throws ORIOException { return getInt(findColumn(key)); }
+  public int getInt(int key) throws ORIOException
+  {
+    Object value = _value(key);
+    return (value == null) ? 0 : ((Number)_number(value)).intValue();
+  }
+
+  public long getLong(String key) throws ORIOException { return getLong(findColumn(key)); }
+  public long getLong(int key) throws ORIOException
+  {
+    Object value = _value(key);
+    return (value == null) ? 0 : ((Number)_number(value)).longValue();
+  }
+
+  public float getFloat(String key) throws ORIOException { return getFloat(findColumn(key)); }
+  public float getFloat(int key) throws ORIOException
+  {
+    Object value = _value(key);
+    return (value == null) ? 0 : ((Number)_number(value)).floatValue();
+  }
+
+  public boolean getBoolean(String key) throws ORIOException { return getBoolean(findColumn(key)); }
+  public boolean getBoolean(int key) throws ORIOException
+  {
+    Object value = _value(key);
+    if (value == null)
+      return false;
+    if (value instanceof Boolean)
+      return ((Boolean)value).booleanValue();
+    return ((Number)_number(value)).intValue() != 0;
+  }
+
+  public String getString(String key) throws ORIOException { return getString(findColumn(key)); }
+  public String getString(int key) throws ORIOException
+  {
+    Object value = _value(key);
+    return (value == null) ? null : value.toString();
+  }
+
+  public Timestamp getTimestamp(String key) throws ORIOException { return getTimestamp(findColumn(key)); }
+  public Timestamp getTimestamp(int key) throws ORIOException
+  {
+    Object value = _value(key);
+    if (value == null || value instanceof Timestamp)
+      return (Timestamp)value;
+    if (value instanceof java.util.Date)
+      return new Timestamp(((java.util.Date)value).getTime());
+    return com.oculussoftware.ui.DateFormatter.getDateTimestamp(value.toString());
+  }
+
+  public Clob getClob(String key) throws ORIOException { return getClob(findColumn(key)); }
+  public Clob getClob(int key) throws ORIOException { return (Clob)_value(key); }
+
+  public java.io.Reader getCharacterStream(String key) throws ORIOException { return getCharacterStream(findColumn(key)); }
+  public java.io.Reader getCharacterStream(int key) throws ORIOException
+  {
+    Object value = _value(key);
+    return (value == null) ? null : new java.io.StringReader(value.toString());
+  }
+
+  public java.io.InputStream getBinaryStream(String key) throws ORIOException { return getBinaryStream(findColumn(key)); }
+  public java.io.InputStream getBinaryStream(int key) throws ORIOException
+  {
+    Object value = _value(key);
+    if (value == null || value instanceof java.io.InputStream)
+      return (java.io.InputStream)value;
+    return new java.io.ByteArrayInputStream((byte[])value);
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private void _setColumns(Set labels)
+  {
+    _labels = new ArrayList();
+    _columns = new LinkedHashMap();
+    if (labels == null)
+      return;
+    for (Iterator it = labels.iterator(); it.hasNext(); )
+    {
+      String label = ((String)it.next()).toUpperCase();
+      if (!_columns.containsKey(label))
+      {
+        _labels.add(label);
+        _columns.put(label, new Integer(_labels.size()));
+      }
+    }
+  }
+
+  private int _lookup(String key)
+  {
+    if (key == null || _columns == null)
+      return 0;
+    Integer index = (Integer)_columns.get(key.toUpperCase());
+    return (index == null) ? 0 : index.intValue();
+  }
+
+  private Object _value(int key)
+    throws ORIOException
+  {
+    if (_row == 0 || _row > _rows.size())
+      throw new ORIOException("There is no current row.");
+    Object[] values = (Object[])_rows.get(_row - 1);
+    if (key <= 0 || key > values.length)
+      throw new ORIOException("Invalid column index: "+key);
+    Object value = values[key - 1];
+    _lastNull = (value == null);
+    return value;
+  }
+
+  private static int _compare(Object v1, Object v2)
+  {
+    if (v1 == null || v2 == null)
+      return (v1 == null) ? ((v2 == null) ? 0 : -1) : 1;
+    if (v1 instanceof String && v2 instanceof String)
+      return ((String)v1).compareToIgnoreCase((String)v2);
+    if (v1 instanceof Number && v2 instanceof Number)
+      return new java.math.BigDecimal(v1.toString()).compareTo(new java.math.BigDecimal(v2.toString()));
+    if (v1 instanceof Comparable && v1.getClass().isInstance(v2))
+      return ((Comparable)v1).compareTo(v2);
+    return v1.toString().compareTo(v2.toString());
+  }
+
+  /** Numbers some drivers return as strings are parsed. */
+  private Object _number(Object value)
+    throws ORIOException
+  {
+    if (value instanceof Number)
+      return value;
+    try
+    {
+      return new java.math.BigDecimal(value.toString().trim());
+    }
+    catch (NumberFormatException exp)
+    {
+      throw new ORIOException("Not a number: "+value);
+    }
+  }
+}
@@ -4,106 +4,187 @@ import com.oculussoftware.api.repi.*;
 import com.oculussoftware.repos.util.*;
 import java.sql.*;
 import java.util.*;
-	
+
+/*
+* Change Activity
+*
+* Issue number    Programmer      Date        Description
+* ---                                         Column names are resolved to indexes once per result set, from
+*                                             its metadata, instead of by the driver on every get.  size() is
+*                                             the number of columns, and the rows read so far and the row count
+*                                             (for scrollable result sets) are available.
+*/
 public class JDBCDataSet implements IDataSet
 {
   private ResultSet _rs;
   private IIID _iid;
-  
+  private Map _columns = null;              // column label -> Integer index, built on first use
+  private int _row = 0;                     // rows read by next()
+
   public JDBCDataSet(ResultSet rs)
   {
     _rs = rs;
- 
+
   }
-  
+
   public IDataSet setIID(IIID iid)
     throws ORIOException
   {
     _iid = iid;
     return this;
   }
-    
+
   public IDataSet setIID(long iid)
     throws ORIOException
   {
     _iid = new SequentialIID(iid);
     return this;
   }
-    
+
   public IIID getIID()
     throws ORIOException
   {
     return _iid;
   }
-  
+
   public boolean next()
     throws ORIOException
   {
     try
     {
-      return _rs.next();
+      boolean more = _rs.next();
+      if (more) _row++;
+      return more;
     }
     catch (SQLException sqlExp)
     {
       throw new ORIOException(sqlExp);
     }
   }
-  
+
   public Object get(Object key)
   {
     try
     {
-      return _rs.getObject((String)key);
+      return _rs.getObject(findColumn((String)key));
     }
-    catch (SQLException sqlExp)
+    catch (Exception sqlExp)
     {
       throw new NullPointerException("Database access error."+sqlExp);
     }
   }
-  
-  
-  
+
+
+
   public boolean containsKey(Object key)
   {
     try
     {
-      return _rs.findColumn((String)key) >= 0;
+      return _lookup((String)key) > 0;
     }
     catch (SQLException sqlExp)
     {
       return false;
     }
   }
-  
-  
-  
+
+  /** Returns the index of the column with the given name or label. */
+  public int findColumn(String key) throws ORIOException
+  {
+    try
+    {
+      int index = _lookup(key);
+      if (index <= 0)
+        throw new ORIOException("Invalid column name: "+key);
+      return index;
+    }
+    catch (SQLException ex)
+    { throw new ORIOException(ex);
+    }
+  }
+
+  /** Returns true if the last column read was NULL. */
+  public boolean wasNull() throws ORIOException
+  {
+    try
+    {
+      return _rs.wasNull();
+    }
+    catch (SQLException ex)
+    { throw new ORIOException(ex);
+    }
+  }
+
+  /** Returns the number of rows read so far, which is the number of the current row. */
+  public int getRow() { return _row; }
+
+  /**
+  * Returns the number of rows in the result set, or -1 if the result set can only be read
+  * forwards and the count isn't known.
+  */
+  public int getRowCount() throws ORIOException
+  {
+    try
+    {
+      if (_rs.getType() == ResultSet.TYPE_FORWARD_ONLY)
+        return -1;
+      int current = _rs.getRow();
+      boolean afterLast = _rs.isAfterLast();
+      int count = _rs.last() ? _rs.getRow() : 0;
+      if (afterLast)
+        _rs.afterLast();
+      else if (current == 0)
+        _rs.beforeFirst();
+      else
+        _rs.absolute(current);
+      return count;
+    }
+    catch (SQLException ex)
+    { throw new ORIOException(ex);
+    }
+  }
+
   public void putAll(Map map) {}
-  public Set keySet() { return null; }
+  public Set keySet()
+  {
+    try
+    {
+      return Collections.unmodifiableSet(_columns().keySet());
+    }
+    catch (SQLException sqlExp)
+    {
+      return null;
+    }
+  }
   public Collection values() { return null; }
   public boolean containsValue(Object key) { return false; }
   public Object remove(Object key) { return this; }
   public Object put(Object key, Object value) { return this; }
   public void clear() {}
   public Set entrySet() { return null; }
-  public boolean isEmpty() { return false; }
-  public int size() { return -1; }
- 
+  public boolean isEmpty() { return size() == 0; }
+  public int size()
+  {
+    try
+    {
+      return _rs.getMetaData().getColumnCount();
+    }
+    catch (SQLException sqlExp)
+    {
+      return -1;
+    }
+  }
+
   //----- Egan & Alok decided that for the repository classes it would be
   // best to use specific accessor methods as we know what data to expect.
   //Howevere, at the business object level we will use the generic get(Object) method
-  
-  public int getInt(String key)  throws ORIOException 
-    { 
-      try
-      {
-      return _rs.getInt(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
+
+  public int getInt(String key)  throws ORIOException
+    {
+      return getInt(findColumn(key));
      }
-  public int getInt(int key)  throws ORIOException 
-    { 
+  public int getInt(int key)  throws ORIOException
+    {
       try
       {
       return _rs.getInt(key);
@@ -112,19 +193,13 @@ public class JDBCDataSet implements IDataSet
       { throw new ORIOException(ex);
       }
      }
-  
-  public long getLong(String key)  throws ORIOException 
-    { 
-      try
-      {
-      return _rs.getLong(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
+
+  public long getLong(String key)  throws ORIOException
+    {
+      return getLong(findColumn(key));
      }
-  public long getLong(int key)  throws ORIOException 
-    { 
+  public long getLong(int key)  throws ORIOException
+    {
       try
       {
       return _rs.getLong(key);
@@ -133,20 +208,14 @@ public class JDBCDataSet implements IDataSet
       { throw new ORIOException(ex);
       }
      }
-  
-   public java.sql.Clob getClob(String key)  throws ORIOException 
-    { 
-      try
-      {
-      return _rs.getClob(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
-     }   
-  
-   public java.sql.Clob getClob(int key)  throws ORIOException 
-    { 
+
+   public java.sql.Clob getClob(String key)  throws ORIOException
+    {
+      return getClob(findColumn(key));
+     }
+
+   public java.sql.Clob getClob(int key)  throws ORIOException
+    {
       try
       {
       return _rs.getClob(key);
@@ -154,19 +223,13 @@ public class JDBCDataSet implements IDataSet
       catch(SQLException ex)
       { throw new ORIOException(ex);
       }
-     }   
-   public java.io.Reader getCharacterStream(String key)  throws ORIOException 
-    { 
-      try
-      {
-      return (java.io.BufferedReader)_rs.getCharacterStream(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
-     }   
-   public java.io.Reader getCharacterStream(int key)  throws ORIOException 
-    { 
+     }
+   public java.io.Reader getCharacterStream(String key)  throws ORIOException
+    {
+      return getCharacterStream(findColumn(key));
+     }
+   public java.io.Reader getCharacterStream(int key)  throws ORIOException
+    {
       try
       {
       return (java.io.BufferedReader)_rs.getCharacterStream(key);
@@ -174,21 +237,15 @@ public class JDBCDataSet implements IDataSet
       catch(SQLException ex)
       { throw new ORIOException(ex);
       }
-     }   
-  
-  
-  public String getString(String key)  throws ORIOException 
-    { 
-      try
-      {
-      return _rs.getString(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
      }
-  public String getString(int key)  throws ORIOException 
-    { 
+
+
+  public String getString(String key)  throws ORIOException
+    {
+      return getString(findColumn(key));
+     }
+  public String getString(int key)  throws ORIOException
+    {
       try
       {
       return _rs.getString(key);
@@ -197,22 +254,16 @@ public class JDBCDataSet implements IDataSet
       { throw new ORIOException(ex);
       }
      }
-  
-  
-  public java.sql.Timestamp getTimestamp(String key)  throws ORIOException 
-    { 
-      try
-      {
-        String time = _rs.getString(key);
-        return com.oculussoftware.ui.DateFormatter.getDateTimestamp(time);
+
+
+  public java.sql.Timestamp getTimestamp(String key)  throws ORIOException
+    {
+      String time = getString(findColumn(key));
+      return com.oculussoftware.ui.DateFormatter.getDateTimestamp(time);
 //      return _rs.getTimestamp(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
      }
-  public java.sql.Timestamp getTimestamp(int key)  throws ORIOException 
-    { 
+  public java.sql.Timestamp getTimestamp(int key)  throws ORIOException
+    {
       try
       {
       return _rs.getTimestamp(key);
@@ -221,20 +272,14 @@ public class JDBCDataSet implements IDataSet
       { throw new ORIOException(ex);
       }
      }
-  
-  
-  public boolean getBoolean(String key)  throws ORIOException 
-    { 
-      try
-      {
-      return _rs.getBoolean(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
+
+
+  public boolean getBoolean(String key)  throws ORIOException
+    {
+      return getBoolean(findColumn(key));
      }
-  public boolean getBoolean(int key)  throws ORIOException 
-    { 
+  public boolean getBoolean(int key)  throws ORIOException
+    {
       try
       {
       return _rs.getBoolean(key);
@@ -243,19 +288,13 @@ public class JDBCDataSet implements IDataSet
       { throw new ORIOException(ex);
       }
      }
-  
-  public java.io.InputStream getBinaryStream(String key)  throws ORIOException 
-    { 
-      try
-      {
-      return _rs.getBinaryStream(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
+
+  public java.io.InputStream getBinaryStream(String key)  throws ORIOException
+    {
+      return getBinaryStream(findColumn(key));
      }
-  public java.io.InputStream getBinaryStream(int key)  throws ORIOException 
-    { 
+  public java.io.InputStream getBinaryStream(int key)  throws ORIOException
+    {
       try
       {
       return _rs.getBinaryStream(key);
@@ -264,9 +303,13 @@ public class JDBCDataSet implements IDataSet
       { throw new ORIOException(ex);
       }
      }
-     
-   public float getFloat(String key)  throws ORIOException 
-    { 
+
+   public float getFloat(String key)  throws ORIOException
+    {
+      return getFloat(findColumn(key));
+     }
+   public float getFloat(int key)  throws ORIOException
+    {
       try
       {
       return _rs.getFloat(key);
@@ -274,15 +317,42 @@ public class JDBCDataSet implements IDataSet
       catch(SQLException ex)
       { throw new ORIOException(ex);
       }
-     }   
-   public float getFloat(int key)  throws ORIOException 
-    { 
-      try
+     }
+
+  //------------------------ Private Methods ------------------------------------
+  /** Returns the index of the column, or 0 if there is no such column. */
+  private int _lookup(String key) throws SQLException
+  {
+    if (key == null)
+      return 0;
+    Map columns = _columns();
+    Integer index = (Integer)columns.get(key);
+    if (index == null)
+      index = (Integer)columns.get(key.toUpperCase());   // names are matched without regard to case
+    return (index == null) ? 0 : index.intValue();
+  }
+
+  /** Reads the column labels from the metadata the first time they are needed. */
+  private Map _columns() throws SQLException
+  {
+    if (_columns == null)
+    {
+      ResultSetMetaData md = _rs.getMetaData();
+      int count = md.getColumnCount();
+      Map columns = new LinkedHashMap(count * 2);
+      for (int i = 1; i <= count; i++)
       {
-      return _rs.getFloat(key);
-      }
-      catch(SQLException ex)
-      { throw new ORIOException(ex);
-      }
-     }   
-}
\ No newline at end of file
+        String label = md.getColumnLabel(i);
+        if (label == null || label.length() == 0)
+          label = md.getColumnName(i);
+        if (label == null)
+          continue;
+        label = label.toUpperCase();
+        if (!columns.containsKey(label))
+          columns.put(label, new Integer(i));            // like findColumn(), the first one wins
+      }
+      _columns = columns;
+    }
+    return _columns;
+  }
+}
@@ -23,12 +23,15 @@ import java.text.*;
 *
 * Issue number  	Programmer    	Date      	Description
 * BUG00010				Saleem Shafi		6/9/00			Added singleton logic to update.
+* ---                                         The statement comes from the connection's StatementCache and goes
+*                                             back to it on close().
 *
 */
 
 public class PreparedStatementProcessor extends QueryProcessor implements IPreparedStatementProcessor
 {
   PreparedStatement _preparedStatement = null;
+  String _strStatement = null;
   
   /** Constructor: 
   *   Use for explicit queries
@@ -36,11 +39,32 @@ public class PreparedStatementProcessor extends QueryProcessor implements IPrepa
   public PreparedStatementProcessor(Connection conn, String strStatement)
     throws ORIOException
   {
-    super(conn);
+    this(conn, strStatement, null);
+  }//end constructor
+  
+  /** Constructor: 
+  *   Use when the connection is collecting its updates into a StatementBatch.  The
+  *   batch is flushed before this statement runs.
+  */
+  public PreparedStatementProcessor(Connection conn, String strStatement, StatementBatch batch)
+    throws ORIOException
+  {
+    this(conn, strStatement, batch, null);
+  }//end constructor
+  
+  /** Constructor: 
+  *   Use when the connection also caches its prepared statements.  The statement is
+  *   taken from the cache if it has one for the SQL, and put back on close().
+  */
+  public PreparedStatementProcessor(Connection conn, String strStatement, StatementBatch batch, StatementCache cache)
+    throws ORIOException
+  {
+    super(conn, batch, cache);
+    _strStatement = strStatement;
     try
   	{
       com.oculussoftware.service.log.LogService.getInstance().write("Preparing PSP: "+strStatement);
-    	_preparedStatement = _jdtConn.prepareStatement(strStatement);
+    	_preparedStatement = (_cache != null) ? _cache.checkOut(strStatement) : _jdtConn.prepareStatement(strStatement);
   	}
   	catch (SQLException sqlExp)
   	{
@@ -58,6 +82,8 @@ public class PreparedStatementProcessor extends QueryProcessor implements IPrepa
   */
   public int update() throws ORIOException
   {
+    if (_batch != null)
+      _batch.beforeDirect();
     int numRows = 0;
     int numTries = 0;
     boolean bQuerySucceeded = false;
@@ -138,8 +164,12 @@ public class PreparedStatementProcessor extends QueryProcessor implements IPrepa
   public void close() throws ORIOException
   {
     super.close();
-    try { if(_preparedStatement != null) _preparedStatement.close();} 
-    catch (Exception ignore) {}
+    if (_preparedStatement != null && _cache != null)
+      _cache.checkIn(_strStatement, _preparedStatement);
+    else
+      try { if(_preparedStatement != null) _preparedStatement.close();} 
+      catch (Exception ignore) {}
+    _preparedStatement = null;
   }//end close
 	
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.oculussoftware.rdb;
 
 import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.sysi.OculusException;
 
 import java.util.*;
 import java.sql.*;
@@ -29,6 +30,10 @@ public class QueryProcessor implements IQueryProcessor
 *
 * Issue number    Programmer      Date        Description
 * BUG00010				Saleem Shafi		6/9/00			Added singleton logic.
+* ---                                         Added update() and retrieve() with bound parameters, which
+*                                             reuse prepared statements from the connection's StatementCache.
+* ---                                         Added fetch size, max rows and query timeout, and retrieve() with an
+*                                             IRowHandler, which streams the rows from a forward-only cursor.
 *
 */
 	// class vars
@@ -40,6 +45,7 @@ public class QueryProcessor implements IQueryProcessor
   protected static final String sql_AS      = "AS";
   protected static final int QUERY_TRY_LIMIT    = 5;
   protected static final int QUERY_WAIT_MILLIS  = 500;
+  protected static final int STREAM_FETCH_SIZE  = 100;   // rows per fetch for a streamed query if none is set
   //
 	// instance vars and methods
 	protected Connection 			_jdtConn 				= null;
@@ -47,6 +53,14 @@ public class QueryProcessor implements IQueryProcessor
   protected ResultSet       _queryResult    = null;
   protected String          _strQuery       = null;
 	protected boolean					_singleton 			= true;
+  protected StatementBatch  _batch          = null;   // set while the connection is batching updates
+  protected StatementCache  _cache          = null;   // the connection's prepared statements
+  protected PreparedStatement _boundStatement = null; // checked out of the cache for a parameterized call
+  protected String          _boundSQL       = null;
+  protected int             _fetchSize      = 0;      // 0 leaves it to the driver
+  protected int             _maxRows        = 0;      // 0 is no limit
+  protected int             _queryTimeout   = 0;      // seconds, 0 is no limit
+  protected boolean         _streaming      = false;  // set while rows are streamed to a handler
   
   /** Constructor: 
   *   Use for explicit queries
@@ -62,6 +76,25 @@ public class QueryProcessor implements IQueryProcessor
   */
   public QueryProcessor(Connection conn) { _jdtConn = conn; }
   
+  /** Constructor: 
+  *   Use when the connection is collecting its updates into a StatementBatch
+  */
+  public QueryProcessor(Connection conn, StatementBatch batch)
+  {
+    _jdtConn = conn;
+    _batch = batch;
+  }
+  
+  /** Constructor: 
+  *   Use when the connection also caches its prepared statements
+  */
+  public QueryProcessor(Connection conn, StatementBatch batch, StatementCache cache)
+  {
+    _jdtConn = conn;
+    _batch = batch;
+    _cache = cache;
+  }
+  
   /**
   *
   */
@@ -76,6 +109,10 @@ public class QueryProcessor implements IQueryProcessor
   */	
   public synchronized int update() throws ORIOException
 	{
+    // A batched update is only sent when the batch is flushed, so the row count isn't
+    // known yet.  The singleton check is made when it is sent.
+    if (_batch != null && _batch.offer(getCompleteSQL(), isSingleton()))
+      return 1;
 		int numRows = 0;
     int numTries = 0;
     boolean bQuerySucceeded = false;
@@ -127,6 +164,8 @@ public class QueryProcessor implements IQueryProcessor
   */
   public synchronized IDataSet retrieve() throws ORIOException
   {
+    if (_batch != null)
+      _batch.flush();   // the query has to see the updates made so far
     ResultSet retVal = null;
     int numTries = 0;
     boolean bQuerySucceeded = false;
@@ -134,7 +173,8 @@ public class QueryProcessor implements IQueryProcessor
       try {
         numTries++;
         close();  // close resultset and statement just to be sure
-        _queryStatement = _jdtConn.createStatement();
+        _queryStatement = _jdtConn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        applyLimits(_queryStatement);
         String query = getCompleteSQL();
         if (query == null)
           throw new ORIOException("Attempt to execute null query.");
@@ -161,6 +201,115 @@ public class QueryProcessor implements IQueryProcessor
     return new JDBCDataSet(retVal);
   }//end retrieve
 
+  /**
+  * Runs an update with bound parameters
+  */
+  public synchronized int update(String strQuery, Object[] params) throws ORIOException
+  {
+    setCompleteSQL(strQuery);
+    if (_batch != null)
+      _batch.beforeDirect();   // the batch only takes literal SQL
+		int numRows = 0;
+    int numTries = 0;
+    boolean bQuerySucceeded = false;
+    while ( !bQuerySucceeded ) {
+      try {
+        numTries++;
+        PreparedStatement ps = prepareBound(strQuery, params);
+        numRows = ps.executeUpdate();
+				if (isSingleton() && numRows > 1)
+					throw new ORIOException("An update to the database was trying to change "+numRows+" rows.");
+        bQuerySucceeded = true;
+      }//end try
+      catch (SQLException ex) {
+        discardBound();
+        retryOrThrow(ex, numTries);
+      }//end catch
+    } // end while retry loop
+    return numRows;
+  }//end update
+
+  /**
+  * Runs a query with bound parameters
+  */
+  public synchronized IDataSet retrieve(String strQuery, Object[] params) throws ORIOException
+  {
+    setCompleteSQL(strQuery);
+    if (_batch != null)
+      _batch.flush();   // the query has to see the updates made so far
+    int numTries = 0;
+    boolean bQuerySucceeded = false;
+    while ( !bQuerySucceeded ) {
+      try {
+        numTries++;
+        PreparedStatement ps = prepareBound(strQuery, params);
+        _queryResult = ps.executeQuery();
+        bQuerySucceeded = true;
+      }//end try
+      catch (SQLException ex) {
+        discardBound();
+        retryOrThrow(ex, numTries);
+      }//end catch
+    } // end while retry loop
+    return new JDBCDataSet(_queryResult);
+  }//end retrieve
+
+  /**
+  * Runs the query and streams its rows to the handler
+  */
+  public synchronized int retrieve(String strQuery, IRowHandler handler) throws OculusException
+  {
+    _streaming = true;
+    try
+    {
+      return stream(retrieve(strQuery), handler);
+    }
+    finally
+    {
+      _streaming = false;
+    }
+  }//end retrieve
+
+  /**
+  * Runs the query with bound parameters and streams its rows to the handler
+  */
+  public synchronized int retrieve(String strQuery, Object[] params, IRowHandler handler) throws OculusException
+  {
+    _streaming = true;
+    try
+    {
+      return stream(retrieve(strQuery, params), handler);
+    }
+    finally
+    {
+      _streaming = false;
+    }
+  }//end retrieve
+
+  public IQueryProcessor setFetchSize(int rows)
+  {
+    _fetchSize = Math.max(0, rows);
+    return this;
+  }
+
+  public IQueryProcessor setMaxRows(int rows)
+  {
+    _maxRows = Math.max(0, rows);
+    return this;
+  }
+
+  public IQueryProcessor setQueryTimeout(int seconds)
+  {
+    _queryTimeout = Math.max(0, seconds);
+    return this;
+  }
+
+  public int getFetchSize() { return _fetchSize; }
+
+  public int getMaxRows() { return _maxRows; }
+
+  public int getQueryTimeout() { return _queryTimeout; }
+
   /**
   * Closes the JDBC result set and statement
   */
@@ -181,7 +330,129 @@ public class QueryProcessor implements IQueryProcessor
   	{
   		throw new ORIOException(ex.toString());
   	}
+  	finally
+  	{
+	    if(_boundStatement != null) {
+	      if (_cache != null)
+	        _cache.checkIn(_boundSQL, _boundStatement);   // keep it for the next caller
+	      else
+	        try { _boundStatement.close(); } catch (SQLException ignore) {}
+	      _boundStatement = null;
+	      _boundSQL = null;
+	    }
+  	}
   }//end close
+
+  /**
+  * Binds one parameter.  IIDs are bound as their long value, Booleans as 1 or 0 and
+  * IntEnums as their int value, the way they are stored.
+  */
+  public static void bindParameter(PreparedStatement ps, int index, Object value)
+    throws SQLException
+  {
+    if (value == null)
+      ps.setNull(index, Types.VARCHAR);
+    else if (value instanceof IIID)
+      ps.setLong(index, ((IIID)value).getLongValue());
+    else if (value instanceof String)
+      ps.setString(index, (String)value);
+    else if (value instanceof Long)
+      ps.setLong(index, ((Long)value).longValue());
+    else if (value instanceof Integer)
+      ps.setInt(index, ((Integer)value).intValue());
+    else if (value instanceof Boolean)
+      ps.setInt(index, ((Boolean)value).booleanValue() ? 1 : 0);
+    else if (value instanceof Timestamp)
+      ps.setTimestamp(index, (Timestamp)value);
+    else if (value instanceof java.util.Date)
+      ps.setTimestamp(index, new Timestamp(((java.util.Date)value).getTime()));
+    else if (value instanceof com.oculussoftware.util.IntEnum)
+      ps.setInt(index, ((com.oculussoftware.util.IntEnum)value).getIntValue());
+    else
+      ps.setObject(index, value);
+  }
+
+  /**
+  * Hands each row to the handler until it returns false or the rows run out, then
+  * closes the result set and statement.
+  */
+  protected int stream(IDataSet rows, IRowHandler handler) throws OculusException
+  {
+    int count = 0;
+    try
+    {
+      while (rows.next())
+      {
+        count++;
+        if (!handler.handleRow(rows))
+          break;
+      }
+    }
+    finally
+    {
+      close();
+    }
+    return count;
+  }
+
+  /**
+  * Sets the fetch size, max rows and timeout on a statement.  All three are always set,
+  * since a statement from the cache may still have another caller's.
+  */
+  protected void applyLimits(Statement stmt) throws SQLException
+  {
+    int fetchSize = (_streaming && _fetchSize == 0) ? STREAM_FETCH_SIZE : _fetchSize;
+    stmt.setFetchSize(fetchSize);
+    stmt.setMaxRows(_maxRows);
+    stmt.setQueryTimeout(_queryTimeout);
+  }
+
+  /**
+  * Checks out a statement for the SQL and binds the parameters to it.
+  */
+  protected PreparedStatement prepareBound(String strQuery, Object[] params)
+    throws SQLException, ORIOException
+  {
+    if (strQuery == null)
+      throw new ORIOException("Attempt to execute null query.");
+    close();  // close resultset and statement just to be sure
+    _boundStatement = (_cache != null) ? _cache.checkOut(strQuery) : _jdtConn.prepareStatement(strQuery);
+    _boundSQL = strQuery;
+    applyLimits(_boundStatement);
+    int count = (params == null) ? 0 : params.length;
+    for (int i = 0; i < count; i++)
+      bindParameter(_boundStatement, i + 1, params[i]);
+    com.oculussoftware.service.log.DatabaseLogService.getInstance().write(
+      (count == 0) ? strQuery : strQuery+" "+Arrays.asList(params));
+    return _boundStatement;
+  }
+
+  /**
+  * Closes the checked out statement instead of returning it to the cache, after an error.
+  */
+  protected void discardBound()
+  {
+    if (_boundStatement != null)
+    {
+      try { _boundStatement.close(); } catch (SQLException ignore) {}
+      _boundStatement = null;
+      _boundSQL = null;
+    }
+  }
+
+  /**
+  * Sleeps before another try if the error can be retried, otherwise throws it.
+  */
+  protected static void retryOrThrow(SQLException ex, int numTries) throws ORIOException
+  {
+    if ( SQLState.isRetryable(ex) && numTries < QUERY_TRY_LIMIT ) {
+      try {
+        Thread.sleep(QUERY_WAIT_MILLIS);
+      } catch (InterruptedException ignore) {}
+    }
+    else
+      throw new ORIOException(ex.toString());
+  }
   
   /**
   *
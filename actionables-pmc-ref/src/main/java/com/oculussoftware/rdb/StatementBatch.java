@@ -0,0 +1,640 @@
+package com.oculussoftware.rdb;
+
+import com.oculussoftware.api.repi.*;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.*;
+
+/**
+* Filename:    StatementBatch.java
+* Date:
+* Description: Collects the updates sent through a connection while a transaction commits
+* and sends them to the database as JDBC batches.
+*
+* <P>The business objects build their updates as literal SQL.  Each update is turned into a
+* parameterized statement by lifting its string and number literals out into parameters, so
+* that, for example, every "UPDATE CHARVALUE SET VALUE = '...' WHERE ATTRIBUTEID = ... AND
+* PAROBJECTID = ..." in the commit shares one PreparedStatement.  Updates are grouped by that
+* statement shape, and each group is executed with a single executeBatch().</P>
+*
+* <P>Grouping changes the order the updates reach the database, so an update is only moved
+* ahead of updates it cannot depend on:</P>
+* <UL>
+* <LI>it never passes an update on the same table unless both name their row outright, by
+*   OBJECTID or by PAROBJECTID and ATTRIBUTEID, and the rows differ,</LI>
+* <LI>it never passes an update on another table that inserts, updates or deletes a row whose
+*   OBJECTID it refers to, or that refers to the row it inserts, updates or deletes,</LI>
+* <LI>updates that have no ids at all are never moved.</LI>
+* </UL>
+*
+* <P>Anything that cannot be parameterized safely (sub-selects, JDBC escapes, comments, ...)
+* is not batched: the pending groups are flushed and the update runs by itself as before.
+* Reads and prepared statements on the connection also flush the pending groups first, so
+* they always see every earlier update.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class StatementBatch
+{
+  /** Updates held before the batch flushes itself, to bound memory on very large commits. */
+  public static final int MAX_PENDING = 1000;
+  /** Smallest number that is taken to be an object id.  Smaller numbers are flags and enums. */
+  private static final long MIN_ID = 10;
+
+  private Connection _conn;
+  private StatementCache _cache;                        // may be null
+  private List _groups = new ArrayList();               // pending Groups, in execution order
+  private int _pending;
+
+  private int _statements;                              // updates sent in batches
+  private int _batches;                                 // executeBatch() calls
+  private int _direct;                                  // updates that had to run by themselves
+
+  public StatementBatch(Connection conn)
+  {
+    this(conn, null);
+  }
+
+  /** Creates a batch that takes its statements from, and returns them to, the given cache. */
+  public StatementBatch(Connection conn, StatementCache cache)
+  {
+    _conn = conn;
+    _cache = cache;
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  /**
+  * Queues the update if it can be batched and returns true.  Otherwise flushes anything
+  * that is pending and returns false, in which case the caller must execute the update
+  * itself.
+  */
+  public synchronized boolean offer(String sql, boolean singleton)
+    throws ORIOException
+  {
+    Entry entry = parse(sql, singleton);
+    if (entry == null)
+    {
+      beforeDirect();
+      return false;
+    }
+    Group group = findGroup(entry);
+    if (group == null)
+    {
+      group = new Group(entry.shape, entry.table);
+      _groups.add(group);
+    }
+    group.add(entry);
+    _pending++;
+    if (_pending >= MAX_PENDING)
+      flush();
+    return true;
+  }
+
+  /**
+  * Flushes the pending updates and counts one update that the caller is about to run by
+  * itself, such as a prepared statement with a stream parameter.
+  */
+  public synchronized void beforeDirect()
+    throws ORIOException
+  {
+    flush();
+    _direct++;
+  }
+
+  /** Executes every pending group, in order. */
+  public synchronized void flush()
+    throws ORIOException
+  {
+    try
+    {
+      for (int i = 0; i < _groups.size(); i++)
+        execute((Group)_groups.get(i));
+    }
+    finally
+    {
+      _groups.clear();
+      _pending = 0;
+    }
+  }
+
+  /** Drops the pending updates without sending them.  Used when the commit is rolled back. */
+  public synchronized void discard()
+  {
+    _groups.clear();
+    _pending = 0;
+  }
+
+  /** Returns the number of updates that were sent in batches. */
+  public synchronized int getStatementCount() { return _statements; }
+  /** Returns the number of JDBC batches that were executed. */
+  public synchronized int getBatchCount() { return _batches; }
+  /** Returns the number of updates that could not be batched and ran by themselves. */
+  public synchronized int getDirectCount() { return _direct; }
+
+  public synchronized String toString()
+  {
+    return "StatementBatch[statements="+_statements+", batches="+_batches+", direct="+_direct+", pending="+_pending+"]";
+  }
+
+  //------------------------ Grouping ------------------------------------
+  /**
+  * Returns the pending group the entry can join, or null if it has to start a new group at
+  * the end.  The entry can join the last group with its shape as long as it does not depend
+  * on anything queued after that group.
+  */
+  private Group findGroup(Entry entry)
+  {
+    for (int i = _groups.size() - 1; i >= 0; i--)
+    {
+      Group group = (Group)_groups.get(i);
+      if (group.shape.equals(entry.shape))
+        return group;
+      if (entry.ids.isEmpty() || group.conflictsWith(entry))
+        return null;
+    }
+    return null;
+  }
+
+  //------------------------ Execution ------------------------------------
+  private void execute(Group group)
+    throws ORIOException
+  {
+    int size = group.entries.size();
+    int from = 0;
+    int numTries = 0;
+    while (from < size)
+    {
+      numTries++;
+      PreparedStatement ps = null;
+      boolean reusable = false;
+      try
+      {
+        ps = (_cache != null) ? _cache.checkOut(group.shape) : _conn.prepareStatement(group.shape);
+        for (int i = from; i < size; i++)
+        {
+          Entry entry = (Entry)group.entries.get(i);
+          for (int p = 0; p < entry.params.length; p++)
+            bind(ps, p + 1, entry.params[p]);
+          ps.addBatch();
+        }
+        com.oculussoftware.service.log.DatabaseLogService.getInstance().write("BATCH("+(size - from)+") "+group.shape);
+        _batches++;
+        int[] counts = ps.executeBatch();
+        checkCounts(group, from, counts);
+        _statements += size - from;
+        from = size;
+        reusable = true;
+      }
+      catch (BatchUpdateException ex)
+      {
+        // Drivers either stop at the failed update or keep going and mark it as failed.
+        // Only the first kind can be resumed, and only for the errors a retry can fix.
+        int[] counts = ex.getUpdateCounts();
+        int done = (counts == null) ? 0 : counts.length;
+        if (!SQLState.isRetryable(ex) || numTries >= QueryProcessor.QUERY_TRY_LIMIT || done >= size - from)
+          throw new ORIOException(ex.toString());
+        checkCounts(group, from, counts);
+        _statements += done;
+        from += done;
+        pause();
+      }
+      catch (SQLException ex)
+      {
+        if (!SQLState.isRetryable(ex) || numTries >= QueryProcessor.QUERY_TRY_LIMIT)
+          throw new ORIOException(ex.toString());
+        pause();
+      }
+      finally
+      {
+        if (ps != null && reusable && _cache != null)
+          _cache.checkIn(group.shape, ps);
+        else if (ps != null)
+          try { ps.close(); } catch (SQLException ignore) {}
+      }
+    }
+  }
+
+  private void checkCounts(Group group, int from, int[] counts)
+    throws ORIOException
+  {
+    if (counts == null)
+      return;
+    for (int i = 0; i < counts.length; i++)
+    {
+      Entry entry = (Entry)group.entries.get(from + i);
+      if (entry.singleton && counts[i] > 1)
+        throw new ORIOException("An update to the database was trying to change "+counts[i]+" rows: "+entry.sql);
+    }
+  }
+
+  private static void bind(PreparedStatement ps, int index, Object value)
+    throws SQLException
+  {
+    if (value instanceof Long)
+      ps.setLong(index, ((Long)value).longValue());
+    else if (value instanceof BigDecimal)
+      ps.setBigDecimal(index, (BigDecimal)value);
+    else
+      ps.setString(index, (String)value);
+  }
+
+  private static void pause()
+  {
+    try
+    {
+      Thread.sleep(QueryProcessor.QUERY_WAIT_MILLIS);
+    } catch (InterruptedException ignore) {}
+  }
+
+  //------------------------ Parsing ------------------------------------
+  /**
+  * Breaks an INSERT, UPDATE or DELETE into its shape and its literals.  Returns null if
+  * the statement is anything else or uses syntax that cannot be parameterized safely.
+  */
+  static Entry parse(String sql, boolean singleton)
+  {
+    if (sql == null)
+      return null;
+    List tokens = tokenize(sql);
+    if (tokens == null || tokens.size() < 3)
+      return null;
+
+    String verb = ((Token)tokens.get(0)).upper();
+    String table;
+    if (verb.equals("INSERT") && ((Token)tokens.get(1)).upper().equals("INTO"))
+      table = ((Token)tokens.get(2)).upper();
+    else if (verb.equals("UPDATE"))
+      table = ((Token)tokens.get(1)).upper();
+    else if (verb.equals("DELETE") && ((Token)tokens.get(1)).upper().equals("FROM"))
+      table = ((Token)tokens.get(2)).upper();
+    else
+      return null;
+
+    Entry entry = new Entry();
+    entry.sql = sql;
+    entry.singleton = singleton;
+    entry.table = table;
+    StringBuffer shape = new StringBuffer(sql.length());
+    List params = new ArrayList();
+    int copied = 0;
+    for (int i = 0; i < tokens.size(); i++)
+    {
+      Token token = (Token)tokens.get(i);
+      if (token.type == Token.WORD && token.upper().equals("SELECT"))
+        return null;                                  // sub-selects read other rows; don't move them
+      if (token.type == Token.STRING || token.type == Token.NUMBER)
+      {
+        shape.append(sql.substring(copied, token.start)).append('?');
+        copied = token.end;
+        params.add(token.value);
+        Long id = token.asID();
+        if (id != null)
+          entry.ids.add(id);
+      }
+    }
+    shape.append(sql.substring(copied));
+    entry.shape = shape.toString().trim();
+    entry.params = params.toArray();
+    findKeyIDs(tokens, verb, entry);
+    return entry;
+  }
+
+  /**
+  * Collects the ids assigned to, or compared with, an OBJECTID column, and works out the
+  * row the update writes when it names one.
+  */
+  private static void findKeyIDs(List tokens, String verb, Entry entry)
+  {
+    Map columnValues = new HashMap();                   // column -> literal Token it is set to or compared with
+    if (verb.equals("INSERT"))
+    {
+      List columns = new ArrayList();
+      List values = new ArrayList();
+      int i = 3;
+      if (i >= tokens.size() || !((Token)tokens.get(i)).text.equals("("))
+        return;
+      for (i++; i < tokens.size() && !((Token)tokens.get(i)).text.equals(")"); i++)
+      {
+        Token token = (Token)tokens.get(i);
+        if (token.type == Token.WORD)
+          columns.add(token.upper());
+      }
+      i++;
+      if (i >= tokens.size() || !((Token)tokens.get(i)).upper().equals("VALUES"))
+        return;
+      i++;
+      int depth = 0;
+      Token item = null;
+      int itemTokens = 0;
+      for (; i < tokens.size(); i++)
+      {
+        Token token = (Token)tokens.get(i);
+        if (token.text.equals("("))
+        {
+          if (depth++ == 0)
+            continue;
+        }
+        else if (token.text.equals(")") && --depth == 0)
+          break;
+        if (depth == 1 && token.text.equals(","))
+        {
+          values.add(itemTokens == 1 ? item : null);
+          item = null;
+          itemTokens = 0;
+          continue;
+        }
+        item = token;
+        itemTokens++;
+      }
+      values.add(itemTokens == 1 ? item : null);
+      if (values.size() != columns.size())
+      {
+        entry.keyIDs.addAll(entry.ids);               // can't line them up, so assume the worst
+        return;
+      }
+      for (int c = 0; c < columns.size(); c++)
+      {
+        Token value = (Token)values.get(c);
+        if (value != null && "OBJECTID".equals(columns.get(c)) && value.asID() != null)
+          entry.keyIDs.add(value.asID());
+        if (value != null && (value.type == Token.NUMBER || value.type == Token.STRING))
+          columnValues.put(columns.get(c), value);
+      }
+    }
+    else
+    {
+      for (int i = 2; i < tokens.size(); i++)
+      {
+        Token token = (Token)tokens.get(i);
+        if (token.asID() != null && ((Token)tokens.get(i - 1)).text.equals("=")
+            && ((Token)tokens.get(i - 2)).upper().equals("OBJECTID"))
+          entry.keyIDs.add(token.asID());
+      }
+      if (!findWhereValues(tokens, columnValues))
+        return;
+    }
+    Token objectID = (Token)columnValues.get("OBJECTID");
+    Token parObjectID = (Token)columnValues.get("PAROBJECTID");
+    Token attributeID = (Token)columnValues.get("ATTRIBUTEID");
+    if (objectID != null)
+      entry.rowKey = "OBJECTID="+objectID.value;
+    else if (parObjectID != null && attributeID != null)
+      entry.rowKey = "PAROBJECTID,ATTRIBUTEID="+parObjectID.value+","+attributeID.value;
+  }
+
+  /**
+  * Collects the column = literal comparisons of a WHERE clause.  Returns false if there is
+  * no WHERE clause or it is anything but such comparisons joined by AND, since then the rows
+  * it matches cannot be told from the literals.
+  */
+  private static boolean findWhereValues(List tokens, Map columnValues)
+  {
+    int i = 0;
+    while (i < tokens.size() && !((Token)tokens.get(i)).upper().equals("WHERE"))
+      i++;
+    if (i >= tokens.size())
+      return false;
+    for (i++; i < tokens.size(); i += 4)
+    {
+      if (i + 2 >= tokens.size())
+        return false;
+      Token column = (Token)tokens.get(i);
+      Token value = (Token)tokens.get(i + 2);
+      if (column.type != Token.WORD || !((Token)tokens.get(i + 1)).text.equals("=")
+          || (value.type != Token.NUMBER && value.type != Token.STRING))
+        return false;
+      if (i + 3 < tokens.size() && !((Token)tokens.get(i + 3)).upper().equals("AND"))
+        return false;
+      String name = column.upper();
+      columnValues.put(name.substring(name.lastIndexOf('.') + 1), value);
+    }
+    return true;
+  }
+
+  /** Splits the SQL into tokens, or returns null if it contains syntax we don't handle. */
+  private static List tokenize(String sql)
+  {
+    List tokens = new ArrayList();
+    int len = sql.length();
+    int i = 0;
+    while (i < len)
+    {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c))
+      {
+        i++;
+      }
+      else if (c == '\'')
+      {
+        StringBuffer value = new StringBuffer();
+        int j = i + 1;
+        while (true)
+        {
+          if (j >= len)
+            return null;                              // unterminated literal
+          char d = sql.charAt(j);
+          if (d == '\'')
+          {
+            if (j + 1 < len && sql.charAt(j + 1) == '\'')
+            {
+              value.append('\'');
+              j += 2;
+              continue;
+            }
+            break;
+          }
+          value.append(d);
+          j++;
+        }
+        if (!tokens.isEmpty() && ((Token)tokens.get(tokens.size() - 1)).end == i)
+          return null;                                // N'...' and friends
+        tokens.add(new Token(Token.STRING, sql.substring(i, j + 1), value.toString(), j + 1));
+        i = j + 1;
+      }
+      else if (Character.isDigit(c) || (c == '.' && i + 1 < len && Character.isDigit(sql.charAt(i + 1))))
+      {
+        int j = i;
+        boolean decimal = false;
+        while (j < len && (Character.isDigit(sql.charAt(j)) || sql.charAt(j) == '.'))
+        {
+          if (sql.charAt(j) == '.')
+            decimal = true;
+          j++;
+        }
+        if (j < len && (Character.isLetter(sql.charAt(j)) || sql.charAt(j) == '_'))
+          return null;                                // 1E10, 0x1F, ...
+        String text = sql.substring(i, j);
+        Object value;
+        try
+        {
+          if (!decimal && text.length() < 19)
+            value = new Long(text);
+          else
+            value = new BigDecimal(text);
+        }
+        catch (NumberFormatException ex)
+        {
+          return null;
+        }
+        tokens.add(new Token(Token.NUMBER, text, value, j));
+        i = j;
+      }
+      else if (Character.isLetter(c) || c == '_' || c == '"')
+      {
+        int j = i + 1;
+        if (c == '"')
+        {
+          while (j < len && sql.charAt(j) != '"')
+            j++;
+          if (j >= len)
+            return null;
+          j++;
+        }
+        else
+        {
+          while (j < len && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '_'
+                             || sql.charAt(j) == '.' || sql.charAt(j) == '$' || sql.charAt(j) == '#'))
+            j++;
+        }
+        tokens.add(new Token(Token.WORD, sql.substring(i, j), null, j));
+        i = j;
+      }
+      else if (c == '{' || c == '}' || c == '?' || c == ';' || c == '[' || c == ']'
+               || (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-')
+               || (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*'))
+      {
+        return null;                                  // escapes, parameters, comments, brackets
+      }
+      else
+      {
+        tokens.add(new Token(Token.SYMBOL, String.valueOf(c), null, i + 1));
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  //------------------------ Inner Classes ------------------------------------
+  private static class Token
+  {
+    static final int WORD   = 0;
+    static final int STRING = 1;
+    static final int NUMBER = 2;
+    static final int SYMBOL = 3;
+
+    final int type;
+    final String text;
+    final Object value;
+    final int start;
+    final int end;
+
+    Token(int type, String text, Object value, int end)
+    {
+      this.type = type;
+      this.text = text;
+      this.value = value;
+      this.start = end - text.length();
+      this.end = end;
+    }
+
+    String upper() { return text.toUpperCase(); }
+
+    /** Returns the literal as an object id, or null if it doesn't look like one. */
+    Long asID()
+    {
+      long id;
+      if (value instanceof Long)
+        id = ((Long)value).longValue();
+      else if (type == STRING)
+      {
+        String s = (String)value;
+        if (s.length() == 0 || s.length() > 18)
+          return null;
+        for (int i = 0; i < s.length(); i++)
+          if (!Character.isDigit(s.charAt(i)))
+            return null;
+        id = Long.parseLong(s);
+      }
+      else
+        return null;
+      return (id >= MIN_ID) ? new Long(id) : null;
+    }
+  }
+
+  /** One queued update. */
+  static class Entry
+  {
+    String sql;
+    String shape;
+    String table;
+    Object[] params;
+    boolean singleton;
+    Set ids = new HashSet();                            // every id the update mentions
+    Set keyIDs = new HashSet();                         // ids of the rows it writes by OBJECTID
+    String rowKey;                                      // the one row it writes, or null if unknown
+  }
+
+  /** The pending updates that share one statement shape. */
+  private static class Group
+  {
+    final String shape;
+    final String table;
+    final List entries = new ArrayList();
+    final Set ids = new HashSet();
+    final Set keyIDs = new HashSet();
+
+    Group(String shape, String table)
+    {
+      this.shape = shape;
+      this.table = table;
+    }
+
+    void add(Entry entry)
+    {
+      entries.add(entry);
+      ids.addAll(entry.ids);
+      keyIDs.addAll(entry.keyIDs);
+    }
+
+    /** Returns true if the entry may depend on anything in this group. */
+    boolean conflictsWith(Entry entry)
+    {
+      if (table.equals(entry.table))
+      {
+        if (entry.rowKey == null)
+          return true;
+        for (int i = 0; i < entries.size(); i++)
+        {
+          String other = ((Entry)entries.get(i)).rowKey;
+          if (other == null || !rowKind(other).equals(rowKind(entry.rowKey)) || other.equals(entry.rowKey))
+            return true;
+        }
+        return false;
+      }
+      return intersects(entry.ids, keyIDs) || intersects(entry.keyIDs, ids);
+    }
+
+    /** Returns the columns of a row key, so keys on different columns are never compared. */
+    private static String rowKind(String rowKey)
+    {
+      return rowKey.substring(0, rowKey.indexOf('='));
+    }
+
+    private static boolean intersects(Set a, Set b)
+    {
+      if (a.size() > b.size())
+      {
+        Set t = a;
+        a = b;
+        b = t;
+      }
+      for (Iterator it = a.iterator(); it.hasNext(); )
+        if (b.contains(it.next()))
+          return true;
+      return false;
+    }
+  }
+}
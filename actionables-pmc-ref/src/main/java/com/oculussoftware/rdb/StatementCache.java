@@ -0,0 +1,152 @@
+package com.oculussoftware.rdb;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+* Filename:    StatementCache.java
+* Date:
+* Description: Keeps the most recently used PreparedStatements of one connection so that
+* the database doesn't have to parse and plan the same statement again.
+*
+* <P>A processor checks a statement out for as long as it uses it and checks it back in
+* when it is closed.  A statement that is checked out is not in the cache, so two
+* processors never share one, even if they run the same SQL at the same time (for example
+* a query run for each row of another query's results).  When the cache is full the least
+* recently used statement is closed.</P>
+*
+* <P>Hits, misses and evictions are counted for each cache and for all caches together.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class StatementCache
+{
+  /** Statements kept per connection if no size is configured. */
+  public static final int DEFAULT_SIZE = 50;
+
+  private static final AtomicLong _totalHits = new AtomicLong();
+  private static final AtomicLong _totalMisses = new AtomicLong();
+  private static final AtomicLong _totalEvictions = new AtomicLong();
+
+  private final Connection _conn;
+  private final int _maxSize;
+  private final LinkedHashMap _statements;             // SQL -> PreparedStatement, least recently used first
+  private long _hits;
+  private long _misses;
+  private long _evictions;
+
+  /**
+  * Creates a cache for the given connection.  A size of 0 turns caching off: every
+  * statement is prepared when it is checked out and closed when it is checked in.
+  */
+  public StatementCache(Connection conn, int maxSize)
+  {
+    _conn = conn;
+    _maxSize = Math.max(0, maxSize);
+    _statements = new LinkedHashMap(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry eldest)
+      {
+        if (size() <= _maxSize)
+          return false;
+        _evicted((PreparedStatement)eldest.getValue());
+        return true;
+      }
+    };
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  /** Returns a statement for the SQL, from the cache if there is one, otherwise newly prepared. */
+  public synchronized PreparedStatement checkOut(String sql)
+    throws SQLException
+  {
+    PreparedStatement ps = (PreparedStatement)_statements.remove(sql);
+    if (ps != null)
+    {
+      _hits++;
+      _totalHits.incrementAndGet();
+      return ps;
+    }
+    _misses++;
+    _totalMisses.incrementAndGet();
+    return _conn.prepareStatement(sql);
+  }
+
+  /**
+  * Puts a statement back in the cache once its caller is done with it.  Its parameters
+  * are cleared.  The statement is closed instead if caching is off or the cache already
+  * has one for the same SQL.
+  */
+  public synchronized void checkIn(String sql, PreparedStatement ps)
+  {
+    if (ps == null)
+      return;
+    if (_maxSize == 0 || _statements.containsKey(sql))
+    {
+      discard(ps);
+      return;
+    }
+    try
+    {
+      ps.clearParameters();
+    }
+    catch (SQLException exp)
+    {
+      discard(ps);                                     // don't keep a statement the driver complains about
+      return;
+    }
+    _statements.put(sql, ps);
+  }
+
+  /** Closes a statement that is checked out, without returning it to the cache. */
+  public void discard(PreparedStatement ps)
+  {
+    if (ps != null)
+      try { ps.close(); } catch (SQLException ignore) {}
+  }
+
+  /** Closes every cached statement.  Called when the connection is closed. */
+  public synchronized void close()
+  {
+    for (Iterator it = _statements.values().iterator(); it.hasNext(); )
+      discard((PreparedStatement)it.next());
+    _statements.clear();
+  }
+
+  public synchronized int size() { return _statements.size(); }
+  public int getMaxSize() { return _maxSize; }
+  public synchronized long getHitCount() { return _hits; }
+  public synchronized long getMissCount() { return _misses; }
+  public synchronized long getEvictionCount() { return _evictions; }
+
+  public synchronized String toString()
+  {
+    return "StatementCache[size="+_statements.size()+"/"+_maxSize+", hits="+_hits+", misses="+_misses+", evictions="+_evictions+"]";
+  }
+
+  //------------------------ Public Static Methods ------------------------------------
+  /** Returns the number of statements found in any cache. */
+  public static long getTotalHitCount() { return _totalHits.get(); }
+  /** Returns the number of statements that had to be prepared by any cache. */
+  public static long getTotalMissCount() { return _totalMisses.get(); }
+  /** Returns the number of statements any cache closed to make room. */
+  public static long getTotalEvictionCount() { return _totalEvictions.get(); }
+
+  /** Returns the fraction of statements that were found in a cache. */
+  public static double getTotalHitRate()
+  {
+    long hits = _totalHits.get();
+    long total = hits + _totalMisses.get();
+    return (total == 0) ? 0.0 : (double)hits / total;
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private void _evicted(PreparedStatement ps)
+  {
+    _evictions++;
+    _totalEvictions.incrementAndGet();
+    discard(ps);
+  }
+}
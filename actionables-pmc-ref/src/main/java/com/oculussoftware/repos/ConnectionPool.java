@@ -0,0 +1,446 @@
+package com.oculussoftware.repos;
+
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.system.*;
+import com.oculussoftware.service.log.LogService;
+
+import java.util.*;
+
+/**
+* Filename:    ConnectionPool.java
+* Description: Bounded pool of SRConnection objects.  The CRM used to hand out database
+* connections through the PoolMgr, which meant a scan of the whole object cache for an
+* instance of SRConnection and a brand new DriverManager connection whenever none was
+* found.  This pool keeps its own idle list and checked-out table so that getting a
+* connection is a hash lookup plus a list removal.
+*
+* As with the PoolMgr, a connection is checked out in the name of the user on the
+* IObjectContext's CRM connection, so every request made by that user until the connection
+* is returned gets the same connection (and therefore the same database transaction).
+*
+* The pool is configured from the <code>obj.ConnectionPool.*</code> entries of the directory:
+* <UL>
+* <LI>minSize - connections opened up front and kept open when idle (default 2)
+* <LI>maxSize - connections that may be open at once (default 20)
+* <LI>borrowTimeout - milliseconds to wait for a free connection (default 30000)
+* <LI>validationQuery - SQL run to test an idle connection before handing it out (optional)
+* <LI>validationInterval - milliseconds a connection may sit idle before it is re-tested (default 30000)
+* <LI>idleTimeout - milliseconds after which connections above minSize are closed (default 600000)
+* <LI>leakTimeout - milliseconds a connection may be checked out before it is reported (default 600000)
+* <LI>reclaimLeaks - "true" to take leaked connections back instead of only reporting them
+* </UL>
+*/
+
+public class ConnectionPool
+{
+  private static final String DIR_NAME = "ConnectionPool";
+
+  /** Singleton reference to the pool. */
+  private static ConnectionPool _pool = null;
+
+  //--------------------------- Configuration --------------------------------
+  private int _minSize = 2;
+  private int _maxSize = 20;
+  private long _borrowTimeout = 30000;
+  private String _validationQuery = null;
+  private long _validationInterval = 30000;
+  private long _idleTimeout = 10*60*1000;
+  private long _leakTimeout = 10*60*1000;
+  private boolean _reclaimLeaks = false;
+
+  //--------------------------- State ----------------------------------------
+  /** Idle connections, most recently returned first. */
+  private LinkedList _idle = new LinkedList();
+  /** Checked out connections keyed by the user IID they were borrowed for, or a private key. */
+  private Map _checkedOut = new HashMap();
+  /** Reverse lookup of checked out connections to their Checkout record. */
+  private Map _byConnection = new HashMap();
+  /** Number of open connections, including ones being opened right now. */
+  private int _open = 0;
+  private boolean _prefilled = false;
+
+  //--------------------------- Statistics -----------------------------------
+  private long _created;
+  private long _closed;
+  private long _borrowed;
+  private long _reused;
+  private long _returned;
+  private long _waits;
+  private long _timeouts;
+  private long _validationFailures;
+  private long _leaks;
+  private int _peakOpen;
+
+  //--------------------------- Private Constructors -------------------------
+  private ConnectionPool()
+  {
+    _minSize = getConfigInt("minSize", _minSize);
+    _maxSize = Math.max(1, getConfigInt("maxSize", _maxSize));
+    _minSize = Math.min(_minSize, _maxSize);
+    _borrowTimeout = getConfigLong("borrowTimeout", _borrowTimeout);
+    _validationQuery = getConfigString("validationQuery", null);
+    _validationInterval = getConfigLong("validationInterval", _validationInterval);
+    _idleTimeout = getConfigLong("idleTimeout", _idleTimeout);
+    _leakTimeout = getConfigLong("leakTimeout", _leakTimeout);
+    _reclaimLeaks = "true".equalsIgnoreCase(getConfigString("reclaimLeaks", "false"));
+  }
+
+  //--------------------------- Static Methods -------------------------------
+  /** Returns the singleton connection pool. */
+  public static synchronized ConnectionPool getInstance()
+  {
+    if (_pool == null)
+      _pool = new ConnectionPool();
+    return _pool;
+  }
+
+  //--------------------------- Public Methods -------------------------------
+  /**
+  * Checks out a connection for the user of the given context.  If that user already has
+  * a connection checked out, the same one is returned.  Otherwise an idle connection is
+  * validated and handed out, or a new one is opened if the pool is below its maximum.
+  * When the pool is exhausted the caller waits up to <code>borrowTimeout</code> ms.
+  * @param context the IObjectContext of the user requesting the connection.
+  * @return the connection checked out to the user.
+  * @throws OculusException if the context is invalid, or no connection became available in time.
+  */
+  public IRConnection borrowConnection(IObjectContext context)
+    throws OculusException
+  {
+    if (context == null) throw new OculusException("ObjectContext parameter null in ConnectionPool.borrowConnection().");
+    ICRMConnection crmConn = context.getConnection();
+    if (crmConn == null) throw new OculusException("Could not create connection to CRM in ConnectionPool.borrowConnection().");
+    return borrow(context, new Long(crmConn.getUserIID().getLongValue()));
+  }
+
+  /**
+  * Checks out a connection that is not shared with the other requests of the user, for
+  * work that runs next to them in a transaction of its own, such as the parallel rebuild
+  * of ChildIndexer.  Only requests made on the returned connection see that work.  It
+  * must be handed back to returnConnection() once committed or rolled back.
+  * @param context the IObjectContext of the user requesting the connection.
+  * @return a connection checked out to nobody else.
+  * @throws OculusException if the context is invalid, or no connection became available in time.
+  */
+  public IRConnection borrowPrivateConnection(IObjectContext context)
+    throws OculusException
+  {
+    if (context == null) throw new OculusException("ObjectContext parameter null in ConnectionPool.borrowPrivateConnection().");
+    return borrow(context, new Object());
+  }
+
+  /** Checks out a connection under the given key, or returns the one already under it. */
+  private IRConnection borrow(IObjectContext context, Object key)
+    throws OculusException
+  {
+    prefill();
+    long deadline = System.currentTimeMillis() + _borrowTimeout;
+    while (true)
+    {
+      SRConnection conn = null;
+      boolean mustOpen = false;
+      synchronized (this)
+      {
+        Checkout held = (Checkout)_checkedOut.get(key);
+        if (held != null)                                 // the user already has one
+        {
+          _reused++;
+          held.conn.setObjectContext(context);
+          return held.conn;
+        }
+        if (!_idle.isEmpty())
+          conn = ((Idle)_idle.removeFirst()).conn;
+        else if (_open < _maxSize)
+        {
+          _open++;                                        // reserve the slot, open outside the lock
+          mustOpen = true;
+        }
+        else
+        {
+          long wait = deadline - System.currentTimeMillis();
+          if (wait <= 0)
+          {
+            _timeouts++;
+            throw new ORIOException("Timed out after "+_borrowTimeout+"ms waiting for a database connection. "+this);
+          }
+          _waits++;
+          try { wait(wait); }
+          catch (InterruptedException ex) { throw new ORIOException("Interrupted while waiting for a database connection."); }
+          continue;
+        }
+      }
+
+      if (mustOpen)
+        conn = open();
+      else if (!validate(conn))
+        continue;                                         // that one was dead, try again
+
+      synchronized (this)
+      {
+        Checkout held = (Checkout)_checkedOut.get(key);
+        if (held != null)                                 // another thread of the same user beat us to it
+        {
+          _idle.addFirst(new Idle(conn));
+          notify();
+          _reused++;
+          held.conn.setObjectContext(context);
+          return held.conn;
+        }
+        conn.construct(context, null);
+        Checkout checkout = new Checkout(key, conn, context);
+        _checkedOut.put(key, checkout);
+        _byConnection.put(conn, checkout);
+        _borrowed++;
+        return conn;
+      }
+    }
+  }
+
+  /**
+  * Returns a connection to the pool so that other users can have it.  The caller is
+  * responsible for rolling back or committing any work on the connection first.
+  * @param conn the connection being returned.
+  */
+  public void returnConnection(IRConnection conn)
+  {
+    if (conn == null) return;
+    synchronized (this)
+    {
+      Checkout checkout = (Checkout)_byConnection.remove(conn);
+      if (checkout == null)
+        return;                                           // not ours, or already returned
+      _checkedOut.remove(checkout.key);
+      _returned++;
+      _idle.addFirst(new Idle(checkout.conn));
+      notify();
+    }
+  }
+
+  /**
+  * Returns the connection checked out by the given context, if the context was the last
+  * one to use it.  This is called when an ObjectContext is invalidated so that a session
+  * that ends without committing does not keep a connection forever.
+  * @param context the context that is going away.
+  */
+  public void releaseConnection(IObjectContext context)
+  {
+    if (context == null || context.getConnection() == null) return;
+    Checkout checkout = null;
+    synchronized (this)
+    {
+      try
+      {
+        Long key = new Long(context.getConnection().getUserIID().getLongValue());
+        checkout = (Checkout)_checkedOut.get(key);
+      }
+      catch (Exception ignore) { return; }
+      if (checkout == null || checkout.conn.getObjectContext() != context)
+        return;
+    }
+    try { checkout.conn.rollback(); }
+    catch (ORIOException ignore) {}
+    returnConnection(checkout.conn);
+  }
+
+  /**
+  * Periodic maintenance: closes connections that have been idle longer than
+  * <code>idleTimeout</code> while keeping at least <code>minSize</code> open, and reports
+  * (or reclaims) connections that have been checked out longer than <code>leakTimeout</code>.
+  */
+  public void clean()
+  {
+    long now = System.currentTimeMillis();
+    List toClose = new ArrayList();
+    List leaked = new ArrayList();
+    synchronized (this)
+    {
+      for (ListIterator it = _idle.listIterator(_idle.size()); it.hasPrevious() && _open - toClose.size() > _minSize; )
+      {
+        Idle idle = (Idle)it.previous();                  // oldest are at the end
+        if (now - idle.since > _idleTimeout)
+        {
+          it.remove();
+          toClose.add(idle.conn);
+        }
+      }
+      for (Iterator it = _checkedOut.values().iterator(); it.hasNext(); )
+      {
+        Checkout checkout = (Checkout)it.next();
+        if (!checkout.reported && now - checkout.since > _leakTimeout)
+        {
+          checkout.reported = true;
+          _leaks++;
+          leaked.add(checkout);
+        }
+      }
+    }
+    for (Iterator it = toClose.iterator(); it.hasNext(); )
+      discard((SRConnection)it.next());
+    for (Iterator it = leaked.iterator(); it.hasNext(); )
+    {
+      Checkout checkout = (Checkout)it.next();
+      LogService.getInstance().write(new Exception("Possible database connection leak: connection held "+
+        (now - checkout.since)+"ms by user "+checkout.key+" (context "+checkout.contextGUID+"). Checked out at:", checkout.where));
+      if (_reclaimLeaks)
+      {
+        try { checkout.conn.rollback(); }
+        catch (ORIOException ignore) {}
+        returnConnection(checkout.conn);
+      }
+    }
+  }
+
+  //--------------------------- Statistics -----------------------------------
+  public synchronized int getOpenCount() { return _open; }
+  public synchronized int getIdleCount() { return _idle.size(); }
+  public synchronized int getActiveCount() { return _checkedOut.size(); }
+  public synchronized int getPeakOpenCount() { return _peakOpen; }
+  public synchronized long getCreatedCount() { return _created; }
+  public synchronized long getClosedCount() { return _closed; }
+  public synchronized long getBorrowCount() { return _borrowed; }
+  public synchronized long getReuseCount() { return _reused; }
+  public synchronized long getReturnCount() { return _returned; }
+  public synchronized long getWaitCount() { return _waits; }
+  public synchronized long getTimeoutCount() { return _timeouts; }
+  public synchronized long getValidationFailureCount() { return _validationFailures; }
+  public synchronized long getLeakCount() { return _leaks; }
+  /** Returns the fraction of prepared statements that were found in a connection's statement cache. */
+  public double getStatementCacheHitRate() { return com.oculussoftware.rdb.StatementCache.getTotalHitRate(); }
+
+  public synchronized String toString()
+  {
+    return "ConnectionPool[open="+_open+", idle="+_idle.size()+", active="+_checkedOut.size()+
+           ", peak="+_peakOpen+", max="+_maxSize+", borrowed="+_borrowed+", reused="+_reused+
+           ", waits="+_waits+", timeouts="+_timeouts+", invalid="+_validationFailures+
+           ", leaks="+_leaks+", created="+_created+", closed="+_closed+
+           ", statementHits="+com.oculussoftware.rdb.StatementCache.getTotalHitCount()+
+           ", statementMisses="+com.oculussoftware.rdb.StatementCache.getTotalMissCount()+"]";
+  }
+
+  //--------------------------- Private Methods ------------------------------
+  /** Opens the minimum number of connections the first time the pool is used. */
+  private void prefill()
+  {
+    int toOpen;
+    synchronized (this)
+    {
+      if (_prefilled) return;
+      _prefilled = true;
+      toOpen = Math.max(0, _minSize - _open);
+      _open += toOpen;
+    }
+    for (int i = 0; i < toOpen; i++)
+    {
+      try
+      {
+        SRConnection conn = open();
+        synchronized (this)
+        {
+          _idle.addLast(new Idle(conn));
+          notify();
+        }
+      }
+      catch (ORIOException exp) { LogService.getInstance().write(exp); }
+    }
+  }
+
+  /** Opens a new connection for a slot that has already been reserved in _open. */
+  private SRConnection open()
+    throws ORIOException
+  {
+    try
+    {
+      SRConnection conn = new SRConnection();
+      synchronized (this)
+      {
+        _created++;
+        if (_open > _peakOpen) _peakOpen = _open;
+      }
+      return conn;
+    }
+    catch (ORIOException exp)
+    {
+      synchronized (this)
+      {
+        _open--;
+        notify();
+      }
+      throw exp;
+    }
+  }
+
+  /** Tests an idle connection, and closes it if it's no good. */
+  private boolean validate(SRConnection conn)
+  {
+    if (System.currentTimeMillis() - conn.getLastUsed() < _validationInterval)
+      return true;
+    if (conn.isValid(_validationQuery))
+      return true;
+    synchronized (this) { _validationFailures++; }
+    discard(conn);
+    return false;
+  }
+
+  /** Closes a connection that is no longer counted as idle or checked out. */
+  private void discard(SRConnection conn)
+  {
+    try { conn.close(); }
+    catch (ORIOException ignore) {}
+    synchronized (this)
+    {
+      _open--;
+      _closed++;
+      notify();
+    }
+  }
+
+  private static String getConfigString(String property, String defaultValue)
+  {
+    try
+    {
+      Object value = SimpleDirectory.getInstance().getValue(property, DIR_NAME);
+      return (value == null) ? defaultValue : ((String)value).trim();
+    }
+    catch (Exception ignore) { return defaultValue; }
+  }
+
+  private static int getConfigInt(String property, int defaultValue)
+  {
+    try { return Integer.parseInt(getConfigString(property, ""+defaultValue)); }
+    catch (NumberFormatException ignore) { return defaultValue; }
+  }
+
+  private static long getConfigLong(String property, long defaultValue)
+  {
+    try { return Long.parseLong(getConfigString(property, ""+defaultValue)); }
+    catch (NumberFormatException ignore) { return defaultValue; }
+  }
+
+  //--------------------------- Inner Classes --------------------------------
+  /** An idle connection and the time it was returned. */
+  private static class Idle
+  {
+    SRConnection conn;
+    long since = System.currentTimeMillis();
+    Idle(SRConnection conn) { this.conn = conn; }
+  }
+
+  /** Who has a connection checked out, since when, and from where. */
+  private static class Checkout
+  {
+    Object key;
+    SRConnection conn;
+    String contextGUID;
+    long since = System.currentTimeMillis();
+    Throwable where = new Throwable();
+    boolean reported = false;
+
+    Checkout(Object key, SRConnection conn, IObjectContext context)
+    {
+      this.key = key;
+      this.conn = conn;
+      this.contextGUID = (context.getGUID() == null) ? "?" : context.getGUID().toString();
+    }
+  }
+}
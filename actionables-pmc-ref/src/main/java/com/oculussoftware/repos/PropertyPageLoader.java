@@ -0,0 +1,295 @@
+package com.oculussoftware.repos;
+
+import com.oculussoftware.system.*;
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.util.DataSet;
+
+import java.io.*;
+import java.util.*;
+
+/**
+* Filename:    PropertyPageLoader.java
+* Date:
+* Description: Loads the custom properties of a page of objects with a handful of set-based
+* queries instead of one pair of queries per object.
+*
+* <P>A collection creates one loader for each page of its items as it hands them out, and
+* attaches it to every object it returns.  Nothing is read until the first of those objects
+* needs its properties.  At that point the loader reads the property values of the whole page,
+* one query per value table plus one for ENUMSELECTION and one for the ISREQUIRED flags, and
+* hands each object its own rows as the object asks for them.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class PropertyPageLoader
+{
+  /** Number of collection items per page if none is configured. */
+  public static final int DEFAULT_PAGE_SIZE = 100;
+  /** Most ids that are put in a single IN list. */
+  private static final int MAX_IN_LIST = 250;
+
+  /** value tables and the column names the property rows use for them */
+  private static final String[][] VALUE_TABLES = {
+    { "BLOBVALUE",     "blobValue" },
+    { "BOOLEANVALUE",  "boolValue" },
+    { "CHARVALUE",     "charValue" },
+    { "ENUMVALUE",     "enumValue" },
+    { "LONGCHARVALUE", "longCharValue" },
+    { "TIMEVALUE",     "timeValue" }
+  };
+
+  private static int _pageSize = -1;
+
+  private IObjectContext _context;
+  private Set _owners = new LinkedHashSet();           // Long ids of the objects on this page
+  private List _ownerQueries = new ArrayList();        // queries that return more owner ids
+  private boolean _loaded = false;
+
+  private Map _rows = new HashMap();                   // Long owner id -> List of DataSet rows
+  private Map _selections = new HashMap();             // Long owner id -> Map of Long attribute id -> List of Long literal ids
+  private Map _required = new HashMap();               // "class:attribute" and "attribute" -> Boolean
+
+  //------------------------ Public Constructors ------------------------------------
+  public PropertyPageLoader(IObjectContext context)
+  {
+    _context = context;
+  }
+
+  //------------------------ Public Static Methods ------------------------------------
+  /**
+  * Returns the number of items per page, read once from the "pageSize" value of the
+  * "PropertyPageLoader" directory entry.  Zero or less turns page loading off.
+  */
+  public static synchronized int getPageSize()
+  {
+    if (_pageSize < 0)
+    {
+      try
+      {
+        _pageSize = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("pageSize","PropertyPageLoader")).trim());
+      }
+      catch (Exception ignore) { _pageSize = DEFAULT_PAGE_SIZE; }
+    }
+    return _pageSize;
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  /** Adds an object to the page. */
+  public synchronized void addOwner(IIID iid)
+  {
+    if (iid != null)
+      _owners.add(new Long(iid.getLongValue()));
+  }
+
+  /**
+  * Adds the objects whose ids the query returns (in its first column) to the page.  This
+  * lets a collection of links load the properties of the objects at the other end too.
+  * The query is only run if the page is loaded.
+  */
+  public synchronized void addOwnerQuery(String query)
+  {
+    _ownerQueries.add(query);
+  }
+
+  /** Returns the ids of the objects added with addOwner() as a comma separated list. */
+  public synchronized String getOwnerList()
+  {
+    StringBuffer sb = new StringBuffer();
+    for (Iterator it = _owners.iterator(); it.hasNext(); )
+    {
+      if (sb.length() > 0)
+        sb.append(",");
+      sb.append(it.next());
+    }
+    return sb.toString();
+  }
+
+  /** Lets the object load its properties through this page, if it is a ReposObject. */
+  public void attach(Object obj)
+  {
+    if (obj instanceof ReposObject)
+      ((ReposObject)obj).setPropertyPage(this);
+  }
+
+  /** Returns the number of objects on the page. */
+  public synchronized int size()
+  {
+    return _owners.size();
+  }
+
+  //------------------------ Package Methods ------------------------------------
+  /**
+  * Gives the object its properties from the page, loading the page first if it hasn't
+  * been loaded yet.  Returns false if the object isn't on this page, in which case it has
+  * to load its properties itself.
+  */
+  synchronized boolean loadProperties(ReposObject obj)
+    throws OculusException
+  {
+    Long owner = new Long(obj.getIID().getLongValue());
+    if (!_loaded)
+      load();
+    if (!_owners.contains(owner))
+      return false;
+
+    List rows = (List)_rows.remove(owner);
+    if (rows == null)
+      rows = Collections.EMPTY_LIST;
+    IIID classIID = obj.getPropertyClassIID();
+    for (Iterator it = rows.iterator(); it.hasNext(); )
+    {
+      IDataSet row = (IDataSet)it.next();
+      Boolean required = null;
+      if (classIID != null)
+        required = (Boolean)_required.get(classIID.getLongValue()+":"+row.get("ATTRIBUTEID"));
+      if (required == null)
+        required = (Boolean)_required.get(row.get("ATTRIBUTEID").toString());
+      row.put("ISREQUIRED", new Integer(Boolean.TRUE.equals(required) ? 1 : 0));
+    }
+    obj.setLoadedProperties(rows, (Map)_selections.remove(owner));
+    return true;
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private void load()
+    throws OculusException
+  {
+    _loaded = true;
+    IRConnection repConn = _context.getRepository().getDataConnection(_context);
+    IQueryProcessor stmt = null;
+    try
+    {
+      for (Iterator it = _ownerQueries.iterator(); it.hasNext(); )
+      {
+        stmt = repConn.createProcessor();
+        IDataSet results = stmt.retrieve((String)it.next());
+        while (results.next())
+          _owners.add(new Long(results.getLong(1)));
+        stmt.close();
+      }
+
+      Set attributes = new HashSet();
+      List owners = new ArrayList(_owners);
+      for (int from = 0; from < owners.size(); from += MAX_IN_LIST)
+      {
+        String inList = toInList(owners.subList(from, Math.min(owners.size(), from + MAX_IN_LIST)));
+        for (int t = 0; t < VALUE_TABLES.length; t++)
+        {
+          stmt = repConn.createProcessor();
+          IDataSet results = stmt.retrieve("SELECT val.PAROBJECTID, val.ATTRIBUTEID, val.VALUE "+
+                                           " FROM \""+VALUE_TABLES[t][0]+"\" val, \"ATTRIBUTE\" attr "+
+                                           " WHERE attr.OBJECTID = val.ATTRIBUTEID "+
+                                           "   AND val.PAROBJECTID IN ("+inList+")");
+          while (results.next())
+          {
+            Long owner = new Long(results.getLong("PAROBJECTID"));
+            Long attribute = new Long(results.getLong("ATTRIBUTEID"));
+            DataSet row = new DataSet();
+            row.put("ATTRIBUTEID", attribute);
+            Object value = readValue(results, VALUE_TABLES[t][0]);
+            if (value != null)
+              row.put(VALUE_TABLES[t][1], value);
+            List rows = (List)_rows.get(owner);
+            if (rows == null)
+              _rows.put(owner, rows = new ArrayList());
+            rows.add(row);
+            attributes.add(attribute);
+          }
+          stmt.close();
+        }
+
+        stmt = repConn.createProcessor();
+        IDataSet results = stmt.retrieve("SELECT sel.PAROBJECTID, sel.ATTRIBUTEID, sel.ENUMLITERALID "+
+                                         " FROM \"ENUMSELECTION\" sel, \"ATTRIBUTE\" attr "+
+                                         " WHERE attr.OBJECTID = sel.ATTRIBUTEID "+
+                                         "   AND sel.PAROBJECTID IN ("+inList+")");
+        while (results.next())
+        {
+          Long owner = new Long(results.getLong("PAROBJECTID"));
+          Long attribute = new Long(results.getLong("ATTRIBUTEID"));
+          Map selections = (Map)_selections.get(owner);
+          if (selections == null)
+            _selections.put(owner, selections = new HashMap());
+          List literals = (List)selections.get(attribute);
+          if (literals == null)
+            selections.put(attribute, literals = new ArrayList());
+          literals.add(new Long(results.getLong("ENUMLITERALID")));
+        }
+        stmt.close();
+      }
+
+      List attribList = new ArrayList(attributes);
+      for (int from = 0; from < attribList.size(); from += MAX_IN_LIST)
+      {
+        String inList = toInList(attribList.subList(from, Math.min(attribList.size(), from + MAX_IN_LIST)));
+        stmt = repConn.createProcessor();
+        IDataSet results = stmt.retrieve("SELECT assoc.ATTRIBUTEID, assoc.ISREQUIRED, cls.OBJECTID AS CLASSID "+
+                                         " FROM INTERFACEATTRASC assoc LEFT OUTER JOIN \"CLASS\" cls ON assoc.INTERFACEID=cls.DEFINTERFACEID "+
+                                         " WHERE assoc.ATTRIBUTEID IN ("+inList+")");
+        while (results.next())
+        {
+          long attribute = results.getLong("ATTRIBUTEID");
+          Boolean required = new Boolean(results.getInt("ISREQUIRED") == 1);
+          long classID = results.getLong("CLASSID");
+          if (classID != 0)
+            _required.put(classID+":"+attribute, required);
+          _required.put(String.valueOf(attribute), required);   // for objects whose class doesn't list it
+        }
+        stmt.close();
+      }
+      stmt = null;
+    }
+    finally
+    {
+      if (stmt != null)
+        stmt.close();
+    }
+  }
+
+  /** Reads the VALUE column in the form that BMProperty.load() expects from a DataSet. */
+  private static Object readValue(IDataSet results, String table)
+    throws ORIOException
+  {
+    if (table.equals("TIMEVALUE"))
+      return results.getTimestamp("VALUE");
+    if (table.equals("BOOLEANVALUE"))
+      return (results.get("VALUE") == null) ? null : new Boolean(results.getBoolean("VALUE"));
+    if (table.equals("ENUMVALUE"))
+      return new Long(results.getLong("VALUE"));
+    if (table.equals("BLOBVALUE"))
+    {
+      // the stream is only good until the next row, so keep a copy of the bytes
+      InputStream in = results.getBinaryStream("VALUE");
+      if (in == null)
+        return null;
+      try
+      {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        for (int n = in.read(buf); n >= 0; n = in.read(buf))
+          out.write(buf, 0, n);
+        return new ByteArrayInputStream(out.toByteArray());
+      }
+      catch (IOException ex)
+      {
+        throw new ORIOException(ex);
+      }
+    }
+    return results.getString("VALUE");
+  }
+
+  private static String toInList(List ids)
+  {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < ids.size(); i++)
+    {
+      if (i > 0)
+        sb.append(",");
+      sb.append(ids.get(i));
+    }
+    return sb.toString();
+  }
+}
@@ -78,7 +78,7 @@ import java.util.*;
  * Adding convenience method to get repos objects.
 */
 
-abstract public class ReposObject implements IRObject
+abstract public class ReposObject implements IRObject, ISnapshotable
 {
   //--------------------------- Private variables --------------------------
   private com.oculussoftware.util.MC _mc = null;
@@ -91,6 +91,10 @@ abstract public class ReposObject implements IRObject
 	protected IGUID _guid;															// the BO's GUID
 	protected IIID _iid;																// the BO's IID
   
+  private PropertyPageLoader _propertyPage;           // page of a collection that loads this BO's properties for it
+  private boolean _snapshot = false;                  // true while this BO shares the property map of a cached BO
+  private volatile boolean _shared = false;           // true once snapshots share this BO's properties
+  
 
 	//--------------------------- Public Constructors --------------------------
 	/** Default constructor set the state to NEW and gets a list of empty properties */	
@@ -125,6 +129,47 @@ abstract public class ReposObject implements IRObject
   
   protected com.oculussoftware.util.MC getMC() { return _mc; };
   
+  /**
+  * Gives a snapshot its own copy of the property map it shares with the cached BO.  Every
+  * method that changes the property map, or a property in it, must call this first.
+  */
+  protected void copyOnWrite()
+    throws ORIOException
+  {
+    if (!_snapshot)
+      return;
+    try
+    {
+      IRPropertyMap shared = _attributes;
+      _attributes = new BMPropertyMap();
+      _attributes.putAll(shared, this);
+    }
+    catch (ORIOException ex) { throw ex; }
+    catch (OculusException ex) { throw new ORIOException(ex); }
+    _snapshot = false;
+  }
+  
+  /**
+  * Called on a new snapshot so that it gets its own copies of the properties held in
+  * fields, rather than in the property map.  A subclass that has such fields must
+  * override this, call super, and replace each of them with ownCopy().
+  */
+  protected void copyOwnProperties()
+    throws OculusException
+  {
+  }
+  
+  /** Returns a copy of the property that belongs to this BO. */
+  protected IRProperty ownCopy(IRProperty prop)
+    throws OculusException
+  {
+    if (prop == null)
+      return null;
+    IRProperty copy = (IRProperty)prop.dolly();
+    copy.setOwnerObject(this);
+    return copy;
+  }
+  
   abstract protected String getLoadQuery()
     throws OculusException;
       
@@ -226,6 +271,7 @@ abstract public class ReposObject implements IRObject
   public IRObject setProperty(IRAttribute metaprop, Object value)
     throws OculusException
   {
+    copyOnWrite();
     IRProperty newProp = new BMProperty(this);
     newProp.setDefnObject(metaprop);
     newProp.setValue(value);
@@ -247,6 +293,12 @@ abstract public class ReposObject implements IRObject
   protected void loadProperties()
     throws OculusException
   {
+        // If a collection handed this object out, let it load the properties of the whole page.
+        PropertyPageLoader page = _propertyPage;
+        _propertyPage = null;
+        if (page != null && canPageLoadProperties() && page.loadProperties(this))
+          return;
+
         IRConnection repConn = getObjectContext().getRepository().getDataConnection(_context);
         IQueryProcessor stmt = repConn.createProcessor();
         IDataSet results = null;
@@ -255,30 +307,11 @@ abstract public class ReposObject implements IRObject
         if(getLoadPropertiesQuery() != null)
         {
           _attributes = new BMPropertyMap();
-					IRPropertyMap props = null;
-					if (this instanceof IRPropertyMap) props = (IRPropertyMap)this;
+          _snapshot = false;
           stmt = repConn.createProcessor();
           results = stmt.retrieve(getLoadPropertiesQuery());
           while (results.next())
-          {
-            IIID id1 = new SequentialIID(results.getLong("ATTRIBUTEID"));
-
-						String key = "prop"+id1;
-            IRProperty thisProperty = null;
-						if (props != null) thisProperty = (IRProperty)props.get(key);
-						if (thisProperty == null)
-						{
-							thisProperty = new BMProperty(this);
-	            thisProperty.setDefnObject(id1);                                    
-	            thisProperty.load(results);
-						}
-						
-            _attributes.put(key,thisProperty);
-            
-            //Nursing the JVM?
-            id1 = null;
-            thisProperty = null;
-          }
+            addLoadedProperty(results);
           stmt.close();
           results = null;
         }//end if                    
@@ -315,6 +348,77 @@ abstract public class ReposObject implements IRObject
           }                       
            
            stmt.close();           
+          addLoadedSelections(attmap);
+        }//end if
+        setPersState(PersState.UNMODIFIED);
+//        getObjectContext().getCRM().returnDatabaseConnection(repConn);
+  }
+  
+  /**
+  * Installs properties that a PropertyPageLoader has already read for this object.
+  * @param rows one IDataSet per attribute value, in the form the properties query returns.
+  * @param selections the multi-select values, Long attribute id to a List of Long literal
+  * ids, or null if there are none.
+  */
+  void setLoadedProperties(List rows, Map selections)
+    throws OculusException
+  {
+    _attributes = new BMPropertyMap();
+    _snapshot = false;
+    for (Iterator it = rows.iterator(); it.hasNext(); )
+      addLoadedProperty((IDataSet)it.next());
+    if (selections != null)
+      addLoadedSelections(selections);
+    setPersState(PersState.UNMODIFIED);
+  }
+  
+  /** Lets a collection load this object's properties together with the rest of its page. */
+  void setPropertyPage(PropertyPageLoader page)
+  {
+    _propertyPage = page;
+  }
+  
+  /**
+  * Returns true if this object's properties are the plain value table rows that a
+  * PropertyPageLoader reads.  Objects that load their properties some other way must
+  * return false.
+  */
+  protected boolean canPageLoadProperties()
+  {
+    return false;
+  }
+  
+  /** Returns the class whose ISREQUIRED flags apply to this object's properties, if any. */
+  protected IIID getPropertyClassIID()
+    throws OculusException
+  {
+    return null;
+  }
+  
+  /** Creates the property for one row of the properties query. */
+  private void addLoadedProperty(IDataSet results)
+    throws OculusException
+  {
+    IRPropertyMap props = null;
+    if (this instanceof IRPropertyMap) props = (IRPropertyMap)this;
+    IIID id1 = new SequentialIID(results.getLong("ATTRIBUTEID"));
+
+    String key = "prop"+id1;
+    IRProperty thisProperty = null;
+    if (props != null) thisProperty = (IRProperty)props.get(key);
+    if (thisProperty == null)
+    {
+      thisProperty = new BMProperty(this);
+      thisProperty.setDefnObject(id1);                                    
+      thisProperty.load(results);
+    }
+    _attributes.put(key,thisProperty);
+  }
+  
+  /** Creates one property for each multi-select attribute from its list of literal ids. */
+  private void addLoadedSelections(Map attmap)
+    throws OculusException
+  {
           if (!attmap.isEmpty())
           {
             Iterator keys = attmap.keySet().iterator();
@@ -324,7 +428,7 @@ abstract public class ReposObject implements IRObject
               IIID id1 = new SequentialIID(key.longValue());
               IRProperty thisProperty = new BMProperty(this);            
               thisProperty.setDefnObject(id1); 
-              List list = (ArrayList)attmap.get(key);
+              List list = (List)attmap.get(key);
               StringBuffer sbf = new StringBuffer();
               for(int i =0; i < list.size(); ++i)
               {                
@@ -341,9 +445,6 @@ abstract public class ReposObject implements IRObject
               thisProperty = null;          
             }
           }            
-        }//end if
-        setPersState(PersState.UNMODIFIED);
-//        getObjectContext().getCRM().returnDatabaseConnection(repConn);
   }
   
   
@@ -352,6 +453,7 @@ abstract public class ReposObject implements IRObject
   public IPersistable load()
     throws OculusException
   {
+    copyOnWrite();
     if (!getPersState().equals(PersState.NEW))          // If we know that we are creating a new one, we don't need to go to the database.
     {
         IRConnection repConn = getObjectContext().getRepository().getDataConnection(_context);
@@ -405,15 +507,24 @@ abstract public class ReposObject implements IRObject
   	  stmt.update(query);
 
   	  IRPropertyMap props = getProperties();
+  	  // a new object needs a row for every property and a deleted one loses them all,
+  	  // so only an existing object can pass over the properties that weren't changed
+  	  boolean onlyModified = !PersState.NEW.equals(getPersState()) && !PersState.DELETED.equals(getPersState());
   	  if(props != null)
   	    for (Iterator keys = props.keys().iterator(); keys.hasNext(); )
   	    {
   	      String key = (String)keys.next();
   	      IRProperty attrib = (IRProperty)props.get(key);
+  	      if (onlyModified && !attrib.getPersState().equals(PersState.MODIFIED))
+  	      {
+  	        PropertyWriteStats.propertySkipped();   // nothing to write, don't even look up its definition
+  	        continue;
+  	      }
   	      AttributeKind ak = attrib.getAttributeKind();
   	      if (ak != AttributeKind.SYSTEM_GENERATED && ak != AttributeKind.CANNED && ak != AttributeKind.AGGREGATE)
   	        attrib.save();
   	    }//end for
+  	  PropertyWriteStats.objectSaved();
 
   	  if (!needsPreparedStatement().equals(PSPKind.NONE))
   	  {
@@ -526,6 +637,40 @@ abstract public class ReposObject implements IRObject
   {
     return true;
   }
+  
+//----------------- ISnapshotable Methods ------------------------------------
+  /**
+  * Returns a shallow copy of this bo that shares its property map, which is where most of
+  * a bo's state is.  The snapshot gets its own copy of the map the first time it changes
+  * it.  From then on the properties in this bo's map can no longer be changed.
+  */
+  public Object snapshot()
+    throws OculusException
+  {
+    ReposObject copy;
+    try
+    {
+      copy = (ReposObject)clone();
+    }
+    catch (CloneNotSupportedException exp) { throw new OculusException(exp); }
+    _shared = true;
+    copy._snapshot = true;
+    copy._shared = false;
+    copy.copyOwnProperties();
+    return copy;
+  }
+  
+  /** Returns true if this bo still shares the property map of the bo it was taken from. */
+  public boolean isSnapshot()
+  {
+    return _snapshot;
+  }
+  
+  /** Returns true if snapshots share this bo's property map. */
+  public boolean isShared()
+  {
+    return _shared;
+  }
 //----------------- IObject Methods ------------------------------------
 	/** Returns the GUID of the bo */
 	public IGUID getGUID()
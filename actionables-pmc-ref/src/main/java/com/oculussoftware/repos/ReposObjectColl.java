@@ -5,6 +5,7 @@ import com.oculussoftware.api.repi.*;
 import com.oculussoftware.api.sysi.*;
 import com.oculussoftware.api.busi.*;
 import com.oculussoftware.rdb.*;
+import com.oculussoftware.repos.util.IIDSet;
 
 import java.util.*;
 
@@ -26,6 +27,8 @@ import java.util.*;
 * ---             Saleem Shafi    2/17/00     Changed COL_OBJECTID to 1 in the load() method to make it more generic.
 * ---             Egan Royal      2/29/00     reset returns an IRCollection
 * ---             Zain Nemaze     3/1/00      Added COL_DELETESTATE
+* ---                                         Unsorted collections keep their IIDs in an IIDSet, a sorted
+*                                             array of ids, instead of a TreeSet.
 */
 
 abstract public class ReposObjectColl implements IRCollection, IPersistable
@@ -46,6 +49,9 @@ abstract public class ReposObjectColl implements IRCollection, IPersistable
 	
 	protected SortedSet _items;									    // list of items
 	protected Iterator _ids;												// cursor to current item
+	protected Iterator _ahead;											// runs ahead of _ids to fill the property pages
+	protected int _pageLeft;												// items of the current page not handed out yet
+	protected PropertyPageLoader _page;							// loads the properties of the current page
 
 
 	//----------------------------- Public Constructor -------------------------
@@ -53,7 +59,7 @@ abstract public class ReposObjectColl implements IRCollection, IPersistable
 	public ReposObjectColl() throws OculusException
 	{
 		_guid = new GUID();
-		_items = new TreeSet();
+		_items = new IIDSet();
 	}
 
   //----------------------------- Protected Constructor -------------------------
@@ -84,6 +90,9 @@ abstract public class ReposObjectColl implements IRCollection, IPersistable
   public IRCollection reset()
   {
   	_ids = _items.iterator();
+  	_ahead = _items.iterator();
+  	_pageLeft = 0;
+  	_page = null;
   	return this;
   }
   
@@ -94,7 +103,7 @@ abstract public class ReposObjectColl implements IRCollection, IPersistable
 		throws OculusException
   {
   	_items = null;
-  	_items = new TreeSet();							// start the list from scratch
+  	_items = new IIDSet();							// start the list from scratch
   	load();
   	return this;
   }
@@ -187,11 +196,51 @@ abstract public class ReposObjectColl implements IRCollection, IPersistable
     while (nextObject == null && hasNext())          // as long as we need to and can
     {
       IIID IID = (IIID)_ids.next();                  // get the next IProduct
+      PropertyPageLoader page = nextPropertyPage();
       nextObject = getObjectContext().getCRM().getCompObject(getObjectContext(),getClassName(),IID,isLocked());
+      if (page != null)
+        page.attach(nextObject);
     }
     return nextObject;
   }
 
+  /**
+  * Keeps the property page in step with the cursor and returns the page of the item that
+  * was just taken from _ids, or null if properties are not being loaded by page.  This has
+  * to be called once for every item taken from _ids.
+  */
+  protected PropertyPageLoader nextPropertyPage()
+    throws OculusException
+  {
+    if (isLocked() || _ahead == null || PropertyPageLoader.getPageSize() <= 0)
+      return null;
+    if (_pageLeft == 0)
+    {
+      _page = new PropertyPageLoader(getObjectContext());
+      while (_pageLeft < PropertyPageLoader.getPageSize() && _ahead.hasNext())
+      {
+        Object item = _ahead.next();
+        if (item instanceof IIID)
+          _page.addOwner((IIID)item);
+        _pageLeft++;
+      }
+      if (_pageLeft == 0)
+        return null;
+      addPropertyPageOwners(_page);
+    }
+    _pageLeft--;
+    return _page;
+  }
+
+  /**
+  * Called for every new property page.  Collections that hand out objects other than
+  * their items, like the targets of links, add them to the page here.
+  */
+  protected void addPropertyPageOwners(PropertyPageLoader page)
+    throws OculusException
+  {
+  }
+
 	public boolean hasNext()
 	{
 		return _ids.hasNext();
@@ -341,9 +390,10 @@ abstract public class ReposObjectColl implements IRCollection, IPersistable
 			IQueryProcessor stmt = repConn.createProcessor();
       String query = getLoadQuery();
 			IDataSet results = stmt.retrieve(query);
+			int idColumn = results.findColumn(COL_OBJECTID);   // look the column up once, not per row
 			while (results.next())
 			{
-				IIID iid = repos.makeReposID(results.getLong(COL_OBJECTID));
+				IIID iid = repos.makeReposID(results.getLong(idColumn));
 				_items.add(iid);
         if (preLoad())
         {
@@ -42,6 +42,9 @@ abstract public class ReposObjectList implements IRList, IPersistable
   
   protected List _items;                          // list of items
   protected Iterator _ids;                        // cursor to current item
+  protected Iterator _ahead;                      // runs ahead of _ids to fill the property pages
+  protected int _pageLeft;                        // items of the current page not handed out yet
+  protected PropertyPageLoader _page;             // loads the properties of the current page
 
 
   //----------------------------- Public Constructor -------------------------
@@ -80,6 +83,9 @@ abstract public class ReposObjectList implements IRList, IPersistable
   public IRCollection reset()
   {
     _ids = _items.listIterator();
+    _ahead = _items.listIterator();
+    _pageLeft = 0;
+    _page = null;
     return this;
   }
   
@@ -225,11 +231,51 @@ abstract public class ReposObjectList implements IRList, IPersistable
     while (nextObject == null && hasNext())          // as long as we need to and can
     {
       IIID IID = (IIID)_ids.next();                  // get the next IProduct
+      PropertyPageLoader page = nextPropertyPage();
       nextObject = getObjectContext().getCRM().getCompObject(getObjectContext(),getClassName(),IID,isLocked());
+      if (page != null)
+        page.attach(nextObject);
     }
     return nextObject;
   }
 
+  /**
+  * Keeps the property page in step with the cursor and returns the page of the item that
+  * was just taken from _ids, or null if properties are not being loaded by page.  This has
+  * to be called once for every item taken from _ids.
+  */
+  protected PropertyPageLoader nextPropertyPage()
+    throws OculusException
+  {
+    if (isLocked() || _ahead == null || PropertyPageLoader.getPageSize() <= 0)
+      return null;
+    if (_pageLeft == 0)
+    {
+      _page = new PropertyPageLoader(getObjectContext());
+      while (_pageLeft < PropertyPageLoader.getPageSize() && _ahead.hasNext())
+      {
+        Object item = _ahead.next();
+        if (item instanceof IIID)
+          _page.addOwner((IIID)item);
+        _pageLeft++;
+      }
+      if (_pageLeft == 0)
+        return null;
+      addPropertyPageOwners(_page);
+    }
+    _pageLeft--;
+    return _page;
+  }
+
+  /**
+  * Called for every new property page.  Collections that hand out objects other than
+  * their items, like the targets of links, add them to the page here.
+  */
+  protected void addPropertyPageOwners(PropertyPageLoader page)
+    throws OculusException
+  {
+  }
+
   public boolean hasNext()
   {
     return _ids.hasNext();
@@ -252,9 +298,10 @@ abstract public class ReposObjectList implements IRList, IPersistable
       String query = getLoadQuery();
       IDataSet results = stmt.retrieve(query);
       IRepository repos = getObjectContext().getRepository();
+      int idColumn = results.findColumn(COL_OBJECTID);   // look the column up once, not per row
       while (results.next())
       {
-        long id = results.getLong(COL_OBJECTID);
+        long id = results.getLong(idColumn);
         IIID iid = repos.makeReposID(id);
         _items.add(iid);
         if (preLoad())
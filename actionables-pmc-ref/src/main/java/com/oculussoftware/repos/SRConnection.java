@@ -54,10 +54,16 @@ public class SRConnection implements IRConnection
 	private IGUID _guid;
 	private IObjectContext _context;
 	private Connection _conn;
+	private long _lastUsed = System.currentTimeMillis();   // when the pool last saw this connection used
+	private StatementBatch _batch;                         // non-null while updates are being batched
+	private StatementBatch _lastBatch;                     // the most recent batch, for its counts
+	private StatementCache _statements;                    // prepared statements kept for reuse
 	private static String _driver;
 	private static String _dsn;
 	private static String _user;
 	private static String _password;
+	private static int _statementCacheSize = StatementCache.DEFAULT_SIZE;
+	private static int _fetchSize = 0;                     // rows per fetch for the processors, 0 leaves it to the driver
 
 	static
 	{
@@ -68,6 +74,16 @@ public class SRConnection implements IRConnection
       _user = (String)SecureDirectory.getInstance().getValue("username","Connection");
       _password = (String)SecureDirectory.getInstance().getValue("password","Connection");
 //      _password = "eclatdba";
+      try
+      {
+        _statementCacheSize = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("statementCacheSize","Connection")).trim());
+      }
+      catch (Exception ignore) { }  // keep the default
+      try
+      {
+        _fetchSize = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("fetchSize","Connection")).trim());
+      }
+      catch (Exception ignore) { }  // keep the default
 			Class.forName(_driver).newInstance(); 
 		}
 		catch (Exception ex) {com.oculussoftware.service.log.LogService.getInstance().write(ex);}
@@ -79,6 +95,7 @@ public class SRConnection implements IRConnection
 		{
 			_conn = DriverManager.getConnection(_dsn, _user, _password);
 			_conn.setAutoCommit(false);
+			_statements = new StatementCache(_conn, _statementCacheSize);
 		}
 		catch (SQLException sqlExp)
 		{
@@ -91,6 +108,7 @@ public class SRConnection implements IRConnection
 	{
 		try
 		{
+			_statements.close();
 			_conn.close();
 		}
 		catch (SQLException sqlExp)
@@ -103,7 +121,12 @@ public class SRConnection implements IRConnection
 	{
 		try
 		{
+			_lastUsed = System.currentTimeMillis();
+			if (_batch != null)
+				_batch.flush();
 			_conn.commit();
+			com.oculussoftware.system.sec.PermissionCache.getInstance().endOfWork(this);
+			com.oculussoftware.repos.query.KeywordIndex.getInstance().endOfWork(this);
 		}
 		catch (SQLException sqlExp)
 		{
@@ -113,14 +136,23 @@ public class SRConnection implements IRConnection
 	
 	public IQueryProcessor createProcessor() throws ORIOException
 	{
-		return new QueryProcessor(_conn);
+		_lastUsed = System.currentTimeMillis();
+		return new QueryProcessor(_conn, _batch, _statements).setFetchSize(_fetchSize);
 	}
 	
 	public void rollback() throws ORIOException
 	{
 		try
 		{
+			_lastUsed = System.currentTimeMillis();
+			if (_batch != null)
+			{
+				_batch.discard();
+				_batch = null;
+			}
 			_conn.rollback();
+			com.oculussoftware.system.sec.PermissionCache.getInstance().endOfWork(this);
+			com.oculussoftware.repos.query.KeywordIndex.getInstance().endOfWork(this);
 		}
 		catch (SQLException sqlExp)
 		{
@@ -130,7 +162,82 @@ public class SRConnection implements IRConnection
 	
 	public IPreparedStatementProcessor prepareProcessor(String sql) throws ORIOException
 	{
-		return new PreparedStatementProcessor(_conn, sql);
+		_lastUsed = System.currentTimeMillis();
+		return new PreparedStatementProcessor(_conn, sql, _batch, _statements);
+	}
+	
+	public void startBatch() throws ORIOException
+	{
+		if (_batch != null)
+			_batch.flush();
+		_batch = new StatementBatch(_conn, _statements);
+		_lastBatch = _batch;
+	}
+	
+	public void endBatch() throws ORIOException
+	{
+		StatementBatch batch = _batch;
+		_batch = null;
+		if (batch != null)
+			batch.flush();
+	}
+	
+	public int getBatchedStatementCount()
+	{
+		return (_lastBatch == null) ? 0 : _lastBatch.getStatementCount();
+	}
+	
+	public int getBatchCount()
+	{
+		return (_lastBatch == null) ? 0 : _lastBatch.getBatchCount();
+	}
+
+	/** Returns the cache of this connection's prepared statements, for its hit counts. */
+	public StatementCache getStatementCache()
+	{
+		return _statements;
+	}
+
+	//---------------------- ConnectionPool Methods -------------------------------
+	/** Returns the last time this connection was used, in milliseconds. */
+	long getLastUsed()
+	{
+		return _lastUsed;
+	}
+
+	/**
+	* Returns true if the underlying JDBC connection is still usable.  If a validation
+	* query is given it is run, otherwise the driver is asked directly.
+	*/
+	boolean isValid(String validationQuery)
+	{
+		try
+		{
+			if (_conn.isClosed())
+				return false;
+			if (validationQuery == null || validationQuery.length() == 0)
+				return _conn.isValid(5);
+			Statement stmt = _conn.createStatement();
+			try
+			{
+				stmt.execute(validationQuery);
+			}
+			finally
+			{
+				stmt.close();
+			}
+			_conn.rollback();
+			_lastUsed = System.currentTimeMillis();
+			return true;
+		}
+		catch (SQLException sqlExp)
+		{
+			return false;
+		}
+		catch (AbstractMethodError oldDriver)
+		{
+			return true;                                  // pre-JDBC4 driver and no query configured
+		}
 	}
 
 
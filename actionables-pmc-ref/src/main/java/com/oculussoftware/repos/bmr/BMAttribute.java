@@ -11,6 +11,8 @@ package com.oculussoftware.repos.bmr;
 * Issue number    Programmer      Date      Time       Description
 
  ISSUE DES00091    APota          5/26                 Removed double quote problem
+ ---                                                    Saving a changed or deleted attribute tells the XMR its
+                                                        meta data changed, so translated queries are redone.
 
 */
 import com.oculussoftware.api.sysi.*;
@@ -437,9 +439,13 @@ public class BMAttribute extends BMModelElement implements IRAttribute
 		{
 		  _sqlUpdateObject(jdtC);        
 		  setPersState(PersState.UNMODIFIED);    
+		  com.oculussoftware.repos.xmeta.XMR.metadataChanged();
 		}
 	  else if (getPersState().equals(PersState.DELETED))
+	  {
       _sqlWipeObject(jdtC);              
+		  com.oculussoftware.repos.xmeta.XMR.metadataChanged();
+	  }
 
 	  return this;
   }  
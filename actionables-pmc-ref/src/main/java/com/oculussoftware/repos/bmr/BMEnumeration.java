@@ -258,6 +258,7 @@ public class BMEnumeration extends BMModelElement implements IREnumeration
      IRConnection jdtC = null;
      try {
        jdtC = getDatabaseConnection();    
+       keywordsChanged(jdtC);
        _sqlSaveObject(jdtC);              
      }
      catch(Exception ex) { throw new ORIOException(ex);}
@@ -336,12 +336,24 @@ public abstract class BMModelElement implements IRModelElement, Comparable
 	}
 
 	
+  /**
+  * Saves don't go through a Transaction, so this tells the KeywordIndex to read the bo
+  * again once the connection commits.
+  */
+  protected void keywordsChanged(IRConnection conn)
+    throws ORIOException
+  {
+    com.oculussoftware.repos.query.KeywordIndex.getInstance().changed(conn, getIID().getLongValue());
+  }
+
   public IPersistable save()
     throws OculusException
   {
     if (!isLocked() && !getPersState().equals(PersState.NEW))  // If the bo isn't locked, throw an exception
       throw new ORIOException("This object ("+this.getClass().getName()+":"+this.getIID().getLongValue()+") cannot be saved because it is not locked.");
     
+    if (!getPersState().equals(PersState.UNMODIFIED))
+      keywordsChanged(getDatabaseConnection());
     if (getPersState().equals(PersState.MODIFIED)) {update();setPersState(PersState.UNMODIFIED);}
     if (getPersState().equals(PersState.NEW))  {insert();setPersState(PersState.UNMODIFIED);}
     if (getPersState().equals(PersState.DELETED))  harddelete();
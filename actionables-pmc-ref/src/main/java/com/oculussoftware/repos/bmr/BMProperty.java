@@ -12,6 +12,10 @@ ISSUE HISTORY
  ISSUE BUG00071    APota          7/12                 Need to make setValue() method more robust in type checking. A Javascript
                                                        validation error is making the database corrupt. Need to check if 
                                                        integer is numeric/float is numeric.
+ ---                                                   setValue() refuses to change a property that view-only snapshots share.
+ ---                                                   setValue() only marks the property modified if the value really changed,
+                                                       save() skips a property that was changed back, and a multi-select
+                                                       property only inserts and deletes the literals that changed.
 
 
 
@@ -54,6 +58,10 @@ public class BMProperty implements IRProperty
   
   protected Object _value=null;  
   protected PersState _perState;
+  /** The value as it was last loaded from or saved to the data store. */
+  protected Object _savedValue=null;
+  /** True if _savedValue is known to match the data store. */
+  protected boolean _synced=false;
 	
 	private static final String NULL_VALUE = "(none)";
   
@@ -94,7 +102,7 @@ public class BMProperty implements IRProperty
 			jdtC = CRM.getInstance().getDatabaseConnection(getObjectContext());    
 	    qp = jdtC.createProcessor();
 	    qp.setSingleton(false);					// because of MULTILISTs
-	    qp.update(" DELETE FROM "+tableName+
+	    _write(qp," DELETE FROM "+tableName+
 								" WHERE "+COL_OBJECT+"="+getOwnerObject().getIID()+
 								" 	AND "+COL_ATTRIB+"="+getDefnObject().getIID());
 		}
@@ -162,7 +170,7 @@ public class BMProperty implements IRProperty
 				if (!prim.equals(Primitive.MULTIENUM) && !prim.equals(Primitive.MULTICHECK))
 				{
 					qp = jdtC.createProcessor();
-					qp.update("INSERT INTO "+tabName+
+					_write(qp,"INSERT INTO "+tabName+
 										" ("+COL_ATTRIB+","+COL_OBJECT+") VALUES "+
 										" ("+attribIID+","+parentIID+")");
 				}
@@ -176,7 +184,7 @@ public class BMProperty implements IRProperty
 					String x = "";
 					for(int i =0; i < values.length; ++i)
 					  if (values[i] != IDCONST.DUMMYLITERAL.getLongValue())
-							qp.update("INSERT INTO ENUMSELECTION "+
+							_write(qp,"INSERT INTO ENUMSELECTION "+
 						    				" ("+COL_ENUMLIT+","+COL_ATTRIB+","+COL_OBJECT+") VALUES "+
 												" ("+values[i]+","+attribIID+","+parentIID+")");
 				}
@@ -196,7 +204,7 @@ public class BMProperty implements IRProperty
 					if (prim.equals(Primitive.LONG_CHAR))
 						psp.setString(1, value.toString());
 						
-					psp.update();	
+					PropertyWriteStats.rowsWritten(psp.update());	
 				}
 				else
 				{
@@ -220,13 +228,13 @@ public class BMProperty implements IRProperty
          qp = jdtC.createProcessor();
          if (value == null || value.toString().equals("null") || value.toString().equals(""))
             {
-              qp.update("INSERT INTO "+tabName+
+              _write(qp,"INSERT INTO "+tabName+
                       " ("+COL_ATTRIB+","+COL_OBJECT+") VALUES "+
                       " ("+attribIID+","+parentIID+")");    
             } 
         else
            {  
-              qp.update("INSERT INTO "+tabName+
+              _write(qp,"INSERT INTO "+tabName+
                       " ("+COL_VALUE+","+COL_ATTRIB+","+COL_OBJECT+") VALUES "+
                       " ("+value+","+attribIID+","+parentIID+")");    
             }					      
@@ -284,7 +292,16 @@ public class BMProperty implements IRProperty
   {
 		if (_parent.getPersState().equals(PersState.NEW)) insert();
 		if (_parent.getPersState().equals(PersState.DELETED)) delete();
-		if (getPersState().equals(PersState.MODIFIED)) update();
+		if (getPersState().equals(PersState.MODIFIED))
+		{
+			if (_synced && _sameValue(_savedValue,_value,getPrimitive()))
+				PropertyWriteStats.propertySkipped();     // it was changed back
+			else
+			{
+				update();
+				PropertyWriteStats.propertyWritten();
+			}
+		}
 	
 	  setPersState(PersState.UNMODIFIED);  
   }  
@@ -307,6 +324,11 @@ public class BMProperty implements IRProperty
   public IRProperty setPersState(PersState state)
   {
 	  _perState = state;
+		if (state.equals(PersState.UNMODIFIED))
+		{
+			_savedValue = _value;                       // it now matches the data store
+			_synced = true;
+		}
 		if ((getPersState().equals(PersState.MODIFIED) || 
 				getPersState().equals(PersState.NEW) ||
 				getPersState().equals(PersState.DELETED)) && getOwnerObject().getPersState().equals(PersState.UNMODIFIED))
@@ -333,11 +355,15 @@ public class BMProperty implements IRProperty
 	public IRProperty setValue(Object value)
 		throws ORIOException
 	{
+    // a cached object whose properties are shared by view-only snapshots must not change
+    if (_parent instanceof ISnapshotable && ((ISnapshotable)_parent).isShared())
+      throw new ORIOException("Cannot change a property of a view-only object.  Request the object for edit.");
 		    
     String strValue = null;    
 		if (value != null && !value.toString().equals(""))
 			strValue = value.toString();
    
+		Object oldValue = _value;
 		try
     {
       Primitive prim = getPrimitive();
@@ -363,10 +389,13 @@ public class BMProperty implements IRProperty
       else
 				_value = strValue;
 
-		  if (getPersState().equals(PersState.UNMODIFIED))
+		  if (getPersState().equals(PersState.UNMODIFIED) && !_sameValue(oldValue,_value,prim))
 				setPersState(PersState.MODIFIED);
 			if (getPersState().equals(PersState.UNINITED))
+			{
 				setPersState(PersState.UNMODIFIED);
+				_synced = false;                          // only load() and save() know what is stored
+			}
     }
     catch(OculusException ex) { throw new ORIOException(ex);}
 		return this;
@@ -394,13 +423,19 @@ public class BMProperty implements IRProperty
 		try
 		{    
 			jdtC = getObjectContext().getCRM().getDatabaseConnection(getObjectContext());
+			if (_synced && (prim.equals(Primitive.MULTIENUM) || prim.equals(Primitive.MULTICHECK)))
+			{
+				qp = jdtC.createProcessor();
+				_updateSelections(qp,tabName,attribIID,parentIID,value);
+				return;
+			}
 			if (prim.equals(Primitive.BOOLEAN) && value == null) value = "false";
 			if (value == null || (value.toString().equals("") || value.toString().equals("null") || value.toString().equals(" ")))
 			{
 				if (!prim.equals(Primitive.MULTIENUM) && !prim.equals(Primitive.MULTICHECK))
 				{
 					qp = jdtC.createProcessor();
-					qp.update("UPDATE "+tabName+
+					_write(qp,"UPDATE "+tabName+
 										" SET "+COL_VALUE+" = NULL "+
 										" WHERE "+COL_ATTRIB+"="+attribIID+
 											" AND "+COL_OBJECT+"="+parentIID);
@@ -412,7 +447,7 @@ public class BMProperty implements IRProperty
 				{
 					qp = jdtC.createProcessor();
 					qp.setSingleton(false);
-					qp.update(" DELETE FROM "+tabName+
+					_write(qp," DELETE FROM "+tabName+
 										" WHERE "+COL_OBJECT+"="+parentIID+
 										" 	AND "+COL_ATTRIB+"="+attribIID);
 
@@ -421,8 +456,7 @@ public class BMProperty implements IRProperty
 					{
 					  if (values[i] != IDCONST.DUMMYLITERAL.getLongValue())
 					  {
-							qp = jdtC.createProcessor();
-							qp.update("INSERT INTO "+tabName+" "+
+							_write(qp,"INSERT INTO "+tabName+" "+
 						    				" ("+COL_ENUMLIT+","+COL_ATTRIB+","+COL_OBJECT+") VALUES "+
 												" ("+values[i]+","+attribIID+","+parentIID+")");
 					  }
@@ -445,7 +479,7 @@ public class BMProperty implements IRProperty
 					if (prim.equals(Primitive.LONG_CHAR))
 						psp.setString(1, value.toString());
 						
-					psp.update();	
+					PropertyWriteStats.rowsWritten(psp.update());	
 				}
 				else
 				{
@@ -471,14 +505,14 @@ public class BMProperty implements IRProperty
 					qp = jdtC.createProcessor();
           if (value == null || value.toString().equals("null") || value.toString().equals(""))
             {              
-              qp.update("UPDATE "+tabName+
+              _write(qp,"UPDATE "+tabName+
                     " SET "+COL_VALUE+"= NULL"+
                     " WHERE "+COL_ATTRIB+"="+attribIID+
                       " AND "+COL_OBJECT+"="+parentIID);
             } 
           else
           {            
-					qp.update("UPDATE "+tabName+
+					_write(qp,"UPDATE "+tabName+
                     " SET "+COL_VALUE+"="+value+" "+
                     " WHERE "+COL_ATTRIB+"="+attribIID+
                       " AND "+COL_OBJECT+"="+parentIID);
@@ -490,6 +524,71 @@ public class BMProperty implements IRProperty
   	finally { if (psp != null) psp.close(); if (qp != null) qp.close();}
   } 
  
+  /** Inserts the literals that were added to a multi-select and deletes the ones that were removed. */
+  private void _updateSelections(IQueryProcessor qp, String tabName, IIID attribIID, IIID parentIID, Object value)
+    throws OculusException
+  {
+    Set oldValues = _selections(_savedValue);
+    Set newValues = _selections(value);
+    StringBuffer removed = new StringBuffer();
+    for (Iterator it = oldValues.iterator(); it.hasNext(); )
+    {
+      Long lit = (Long)it.next();
+      if (!newValues.contains(lit))
+        removed.append(removed.length() == 0 ? "" : ",").append(lit);
+    }
+    if (removed.length() > 0)
+    {
+      qp.setSingleton(false);
+      _write(qp," DELETE FROM "+tabName+
+                " WHERE "+COL_OBJECT+"="+parentIID+
+                "   AND "+COL_ATTRIB+"="+attribIID+
+                "   AND "+COL_ENUMLIT+" IN ("+removed+")");
+    }
+    for (Iterator it = newValues.iterator(); it.hasNext(); )
+    {
+      Long lit = (Long)it.next();
+      if (!oldValues.contains(lit))
+        _write(qp,"INSERT INTO "+tabName+" "+
+                  " ("+COL_ENUMLIT+","+COL_ATTRIB+","+COL_OBJECT+") VALUES "+
+                  " ("+lit+","+attribIID+","+parentIID+")");
+    }
+  }
+
+  /** Returns the literal ids selected in a multi-select value, without the dummy literal. */
+  private static Set _selections(Object value)
+  {
+    Set ids = new TreeSet();
+    if (value == null) return ids;
+    long values[] = StringUtil.getLongArray(value.toString().trim());
+    for (int i = 0; i < values.length; ++i)
+      if (values[i] != IDCONST.DUMMYLITERAL.getLongValue())
+        ids.add(new Long(values[i]));
+    return ids;
+  }
+
+  /** Returns true if the two values would be stored the same way. */
+  private static boolean _sameValue(Object a, Object b, Primitive prim)
+  {
+    if (a == null || b == null)
+      return a == b;
+    if (prim.equals(Primitive.BLOB))
+      return false;                                  // streams can't be compared
+    if (prim.equals(Primitive.MULTIENUM) || prim.equals(Primitive.MULTICHECK))
+    {
+      try { return _selections(a).equals(_selections(b)); }
+      catch (NumberFormatException exp) { return false; }
+    }
+    return a.equals(b);
+  }
+
+  /** Runs the statement and counts the rows it wrote. */
+  private static int _write(IQueryProcessor qp, String query)
+    throws OculusException
+  {
+    return PropertyWriteStats.rowsWritten(qp.update(query));
+  }
+
   public Object getValue()
   throws OculusException
   {
@@ -604,6 +703,8 @@ public class BMProperty implements IRProperty
     state._value = _value;
 		state.setRequired(isRequired());
     state.setPersState(getPersState()); 
+    state._savedValue = _savedValue;
+    state._synced = _synced;
     return state;
 	} 
  
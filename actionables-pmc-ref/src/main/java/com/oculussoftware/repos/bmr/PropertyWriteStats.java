@@ -0,0 +1,70 @@
+package com.oculussoftware.repos.bmr;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+* Filename:    PropertyWriteStats.java
+* Date:
+* Description: Counts the attribute value rows written when objects are saved.
+*
+* <P>A BMProperty is only written when its value has really changed since it was loaded
+* or last saved.  These counters show how many properties were written or skipped and
+* how many value rows that cost, so the rows written per save can be watched.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public final class PropertyWriteStats
+{
+  private static final AtomicLong _saves = new AtomicLong();
+  private static final AtomicLong _written = new AtomicLong();
+  private static final AtomicLong _skipped = new AtomicLong();
+  private static final AtomicLong _rows = new AtomicLong();
+
+  private PropertyWriteStats() { }
+
+  /** Counts an object whose properties were saved. */
+  public static void objectSaved() { _saves.incrementAndGet(); }
+
+  /** Counts a property that was written. */
+  public static void propertyWritten() { _written.incrementAndGet(); }
+
+  /** Counts a property that was left alone because it hadn't changed. */
+  public static void propertySkipped() { _skipped.incrementAndGet(); }
+
+  /** Counts value rows inserted, updated or deleted, and returns the count. */
+  public static int rowsWritten(int rows)
+  {
+    if (rows > 0)
+      _rows.addAndGet(rows);
+    return rows;
+  }
+
+  public static long getSaveCount() { return _saves.get(); }
+  public static long getPropertiesWritten() { return _written.get(); }
+  public static long getPropertiesSkipped() { return _skipped.get(); }
+  public static long getRowsWritten() { return _rows.get(); }
+
+  /** Returns the average number of value rows written per object saved. */
+  public static double getRowsPerSave()
+  {
+    long saves = _saves.get();
+    return (saves == 0) ? 0.0 : (double)_rows.get() / saves;
+  }
+
+  /** Sets every counter back to zero. */
+  public static void reset()
+  {
+    _saves.set(0);
+    _written.set(0);
+    _skipped.set(0);
+    _rows.set(0);
+  }
+
+  public static String asString()
+  {
+    return "PropertyWriteStats[saves="+getSaveCount()+", written="+getPropertiesWritten()+
+           ", skipped="+getPropertiesSkipped()+", rows="+getRowsWritten()+"]";
+  }
+}
@@ -178,6 +178,7 @@ public class BMAction extends BMModelElement implements IRAction
     try
     {
       c = getDatabaseConnection();
+      keywordsChanged(c);
       qp = c.createProcessor();
       if(getPersState() == PersState.NEW)
       {
@@ -144,6 +144,7 @@ public class BMGuard extends BMModelElement implements IRGuard
     try
     {
       c = getDatabaseConnection();
+      keywordsChanged(c);
       qp = c.createProcessor();
       if(getPersState() == PersState.NEW)
       {
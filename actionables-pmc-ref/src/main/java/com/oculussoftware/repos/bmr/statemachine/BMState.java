@@ -207,6 +207,7 @@ public class BMState extends BMModelElement implements IRState
     try
     {
       c = getDatabaseConnection();
+      keywordsChanged(c);
       qp = c.createProcessor();
       if(getPersState() == PersState.NEW)
       {
@@ -171,6 +171,7 @@ public class BMStateMachine extends BMModelElement implements IRStateMachine
     try
     {
       c = getDatabaseConnection();
+      keywordsChanged(c);
       qp = c.createProcessor();
       if(getPersState() == PersState.NEW)
       {
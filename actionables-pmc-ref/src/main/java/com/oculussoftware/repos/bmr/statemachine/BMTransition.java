@@ -256,6 +256,7 @@ public class BMTransition extends BMModelElement implements IRTransition
     try
     {
       c = getDatabaseConnection();
+      keywordsChanged(c);
       qp = c.createProcessor();
       if(getPersState() == PersState.NEW)
       {
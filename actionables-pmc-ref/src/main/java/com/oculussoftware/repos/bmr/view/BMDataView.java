@@ -237,6 +237,7 @@ public abstract class BMDataView extends BMModelElement  implements IRDataView
     try
     {
       c = getDatabaseConnection();
+      keywordsChanged(c);
       if(getPersState() == PersState.NEW)
       {
         //INSERT
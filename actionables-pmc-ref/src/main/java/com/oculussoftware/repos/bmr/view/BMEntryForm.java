@@ -1382,6 +1382,7 @@ public class BMEntryForm  extends BMModelElement  implements IREntryForm // STUB
     {
        //Flush & fill
        psp.update("DELETE FROM PERMISSIONGRANT WHERE PAROBJECTID="+getIID());
+       com.oculussoftware.system.sec.PermissionCache.getInstance().invalidateObject(jdtC, getIID().getLongValue());
       int permsize = permarr.length;
         for(int k = 0; k < permsize; ++k)
         {
@@ -1418,6 +1419,7 @@ public class BMEntryForm  extends BMModelElement  implements IREntryForm // STUB
         psp.update(
         "DELETE FROM PERMISSIONGRANT WHERE PAROBJECTID="+getIID()
          );       
+        com.oculussoftware.system.sec.PermissionCache.getInstance().invalidateObject(jdtC, getIID().getLongValue());
         psp.update(
         "DELETE FROM ENTRYFORM WHERE OBJECTID="+getIID()
          );
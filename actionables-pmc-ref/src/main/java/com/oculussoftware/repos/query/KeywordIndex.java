@@ -0,0 +1,1005 @@
+package com.oculussoftware.repos.query;
+
+import com.oculussoftware.api.sysi.*;
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.api.repi.query.*;
+import com.oculussoftware.api.repi.xmeta.*;
+import com.oculussoftware.system.*;
+import com.oculussoftware.service.log.LogService;
+
+import java.io.*;
+import java.util.*;
+
+/**
+* Filename:    KeywordIndex.java
+* Date:
+* Description: In-process inverted index of the text that KeywordSearch looks through.
+*
+* <P>The index holds the words of every CHAR and LONG_CHAR column that XMR lists as a
+* keyword attribute, plus the words of the extended text values (CHARVALUE and
+* LONGCHARVALUE, but not passwords).  Each column is a separate field, named
+* "TABLE.COLUMN", and the extended values are the fields "CHARVALUE" and
+* "LONGCHARVALUE", keyed on PAROBJECTID.  find() returns the ids of the rows of a field
+* that contain every word of a keyword, so KeywordSearch can ask for
+* "OBJECTID IN (...)" instead of scanning the column with LIKE '%keyword%'.  A word of the
+* keyword matches any indexed word it is the start of.</P>
+*
+* <P>The index is kept up to date by a background thread.  Transaction.commit() hands it
+* the ids of the objects it saved, and objects saved outside a Transaction tell it through
+* changed(), which queues them when their connection commits or rolls back.  The thread
+* reads their rows again a batch at a time.  Until it has, the ids are pending: find()
+* leaves them out and getPendingIDs() lists them, so the caller can search their rows in
+* the repository instead.</P>
+*
+* <P>Each batch is appended to the index directory as a segment file, and once there are
+* more than a handful of segments they are replaced by a single full one.  Every segment
+* records a change marker of the repository, made from the REPOS id counter and the row
+* counts of the tables the index reads.  At start-up the whole index is built from the
+* repository, unless "rebuildOnStart" is false, in which case the segments are read back
+* and used only if their marker still matches.  The marker can't see a row changed in
+* place while the index was down, which is why the rebuild is the default.  Until the
+* index is loaded isReady() returns false and KeywordSearch keeps using LIKE.</P>
+*
+* <P>Settings are read from the "KeywordIndex" directory entry: "enabled" (true),
+* "directory" (pmc-keyword-index under java.io.tmpdir), "maxMatches" (2000),
+* "cycleTime" in seconds (5) and "rebuildOnStart" (true).</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class KeywordIndex
+{
+  /** Most ids find() returns before it gives up and lets the caller use LIKE. */
+  public static final int DEFAULT_MAX_MATCHES = 2000;
+  /** Seconds the indexing thread waits for more commits before it writes a batch. */
+  public static final int DEFAULT_CYCLE_TIME = 5;
+
+  /** field of the extended CHAR values */
+  public static final String FIELD_EXT_CHAR = "CHARVALUE";
+  /** field of the extended LONG_CHAR values */
+  public static final String FIELD_EXT_LONG_CHAR = "LONGCHARVALUE";
+
+  private static final float CHAR_WEIGHT = 2.0f;          // names and titles count for more
+  private static final float LONG_CHAR_WEIGHT = 1.0f;     // than descriptions
+  private static final int MAX_IN_LIST = 250;
+  private static final int MAX_SEGMENTS = 16;
+  private static final int SEGMENT_MAGIC = 0x4b574932;    // "KWI2", the header holds the change marker
+  private static final byte REC_END = 0;
+  private static final byte REC_PUT = 1;
+  private static final byte REC_REMOVE = 2;
+
+  private static KeywordIndex _instance = null;
+
+  //------------------------ Private Instance Variables ------------------------------------
+  private boolean _enabled;
+  private File _dir;
+  private int _maxMatches;
+  private int _cycleTime;
+  private boolean _rebuildOnStart;
+
+  private volatile boolean _ready = false;
+  private TreeMap _terms = new TreeMap();        // term -> Map of field -> Map of Long id -> Float weight
+  private Map _docs = new HashMap();             // "field#id" -> Doc
+  private Map _docCounts = new HashMap();        // field -> int[1] number of rows in the field
+  private Map _sources = null;                   // table -> List of String[] {column, weight}
+  private long _nextSegment = 0;
+  private int _segmentCount = 0;
+
+  private Set _queue = new LinkedHashSet();      // Long ids waiting to be indexed
+  private Set _pending = new HashSet();          // Long ids changed but not read yet; guarded by _queue
+  private Map _byConnection = new HashMap();     // IRConnection -> Set of Long ids; guarded by _queue
+  private long _marker = 0;                      // change marker the index was last brought up to
+  private boolean _rebuildRequested = false;
+  private Indexer _indexer = null;
+
+  //------------------------ Public Static Methods ------------------------------------
+  public static synchronized KeywordIndex getInstance()
+  {
+    if (_instance == null)
+    {
+      _instance = new KeywordIndex();
+      if (_instance._enabled)
+        _instance._start();
+    }
+    return _instance;
+  }
+
+  /** Returns the name of the field that indexes the column of the table. */
+  public static String getField(String table, String column)
+  {
+    return table + "." + column;
+  }
+
+  /** Splits the text into lower case words of letters and digits. */
+  public static List tokenize(String text)
+  {
+    List words = new ArrayList();
+    if (text == null)
+      return words;
+    StringBuffer word = new StringBuffer();
+    for (int i = 0, n = text.length(); i <= n; i++)
+    {
+      char c = (i < n) ? text.charAt(i) : ' ';
+      if (Character.isLetterOrDigit(c))
+        word.append(Character.toLowerCase(c));
+      else if (word.length() > 0)
+      {
+        words.add(word.toString());
+        word.setLength(0);
+      }
+    }
+    return words;
+  }
+
+  //------------------------ Private Constructors ------------------------------------
+  private KeywordIndex()
+  {
+    _enabled = !"false".equalsIgnoreCase(_getSetting("enabled", "true"));
+    _dir = new File(_getSetting("directory", new File(System.getProperty("java.io.tmpdir"), "pmc-keyword-index").getPath()));
+    _rebuildOnStart = "true".equalsIgnoreCase(_getSetting("rebuildOnStart", "true"));
+    try { _maxMatches = Integer.parseInt(_getSetting("maxMatches", null)); }
+    catch (Exception ignore) { _maxMatches = DEFAULT_MAX_MATCHES; }
+    try { _cycleTime = Integer.parseInt(_getSetting("cycleTime", null)); }
+    catch (Exception ignore) { _cycleTime = DEFAULT_CYCLE_TIME; }
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  /** Returns true once the index has been loaded or built and can answer find(). */
+  public boolean isReady()
+  {
+    return _enabled && _ready;
+  }
+
+  /**
+  * Returns the ids of the rows whose field contains every word of the keyword, or null
+  * if the index isn't ready or more than "maxMatches" rows match any one of the words,
+  * in which case the caller should search the column itself.  The index never answers
+  * with a partial list.  The pending ids are left out, since their words may be stale.
+  * @param scores if not null, the relevance of each id found is added to the Double
+  * already held for it.
+  */
+  public synchronized long[] find(String field, String keyword, Map scores)
+  {
+    if (!isReady())
+      return null;
+    List words = tokenize(keyword);
+    if (words.isEmpty())
+      return null;
+    Map matches = null;                          // Long id -> double[1] score
+    for (Iterator it = words.iterator(); it.hasNext(); )
+    {
+      Map wordMatches = _findWord(field, (String)it.next());
+      if (wordMatches == null)
+        return null;                             // too many to list, so they can't be intersected either
+      if (matches == null)
+        matches = wordMatches;
+      else
+      {
+        for (Iterator ids = matches.entrySet().iterator(); ids.hasNext(); )
+        {
+          Map.Entry entry = (Map.Entry)ids.next();
+          double[] score = (double[])wordMatches.get(entry.getKey());
+          if (score == null)
+            ids.remove();
+          else
+            ((double[])entry.getValue())[0] += score[0];
+        }
+      }
+    }
+    synchronized (_queue)
+    {
+      matches.keySet().removeAll(_pending);
+    }
+    long[] ids = new long[matches.size()];
+    int i = 0;
+    for (Iterator it = matches.entrySet().iterator(); it.hasNext(); )
+    {
+      Map.Entry entry = (Map.Entry)it.next();
+      Long id = (Long)entry.getKey();
+      ids[i++] = id.longValue();
+      if (scores != null)
+      {
+        Double old = (Double)scores.get(id);
+        double score = ((double[])entry.getValue())[0];
+        scores.put(id, new Double((old == null) ? score : old.doubleValue() + score));
+      }
+    }
+    return ids;
+  }
+
+  /** Queues the objects to be read again.  Called once their changes are committed. */
+  public void enqueue(Collection iids)
+  {
+    if (!_enabled || iids == null || iids.isEmpty())
+      return;
+    synchronized (_queue)
+    {
+      for (Iterator it = iids.iterator(); it.hasNext(); )
+      {
+        Object iid = it.next();
+        Long id = null;
+        if (iid instanceof IIID)
+          id = new Long(((IIID)iid).getLongValue());
+        else if (iid instanceof Long)
+          id = (Long)iid;
+        if (id != null)
+        {
+          _queue.add(id);
+          _pending.add(id);
+        }
+      }
+      _queue.notifyAll();
+    }
+  }
+
+  /**
+  * Notes that the object was changed through the connection without a Transaction.  It
+  * is pending from now on, and is queued when the connection commits or rolls back.
+  */
+  public void changed(IRConnection conn, long id)
+  {
+    if (!_enabled || conn == null)
+      return;
+    Long lid = new Long(id);
+    synchronized (_queue)
+    {
+      Set ids = (Set)_byConnection.get(conn);
+      if (ids == null)
+        _byConnection.put(conn, ids = new HashSet());
+      ids.add(lid);
+      _pending.add(lid);
+    }
+  }
+
+  /** Queues the objects changed through the connection since its last commit or rollback. */
+  public void endOfWork(IRConnection conn)
+  {
+    if (!_enabled)
+      return;
+    Set ids;
+    synchronized (_queue) { ids = (Set)_byConnection.remove(conn); }
+    if (ids != null)
+      enqueue(ids);
+  }
+
+  /**
+  * Returns the ids of the objects that have changed since the index last read them, or
+  * null if there are more than "maxMatches" of them.  find() leaves them out, so the
+  * caller should search their rows in the repository, or the whole column if it gets null.
+  */
+  public long[] getPendingIDs()
+  {
+    synchronized (_queue)
+    {
+      if (_pending.size() > _maxMatches)
+        return null;
+      long[] ids = new long[_pending.size()];
+      int i = 0;
+      for (Iterator it = _pending.iterator(); it.hasNext(); )
+        ids[i++] = ((Long)it.next()).longValue();
+      return ids;
+    }
+  }
+
+  /** Asks the indexing thread to build the whole index again from the repository. */
+  public void rebuild()
+  {
+    if (!_enabled)
+      return;
+    synchronized (_queue)
+    {
+      _rebuildRequested = true;
+      _queue.notifyAll();
+    }
+  }
+
+  public synchronized int getTermCount() { return _terms.size(); }
+  public synchronized int getDocumentCount() { return _docs.size(); }
+  public synchronized int getSegmentCount() { return _segmentCount; }
+
+  public String toString()
+  {
+    return "KeywordIndex[ready="+isReady()+", terms="+getTermCount()+", rows="+getDocumentCount()+
+           ", segments="+getSegmentCount()+", dir="+_dir+"]";
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private static String _getSetting(String name, String def)
+  {
+    try
+    {
+      String value = (String)SimpleDirectory.getInstance().getValue(name,"KeywordIndex");
+      if (value != null && value.trim().length() > 0)
+        return value.trim();
+    }
+    catch (Exception ignore) { }
+    return def;
+  }
+
+  private void _start()
+  {
+    _indexer = new Indexer();
+    _indexer.setDaemon(true);
+    _indexer.start();
+  }
+
+  /**
+  * Returns Long id -> double[1] score for the rows whose field has a word starting with the
+  * prefix, or null if there are more than "maxMatches" of them.  Caller holds the lock.
+  */
+  private Map _findWord(String field, String prefix)
+  {
+    Map matches = new HashMap();
+    int[] count = (int[])_docCounts.get(field);
+    if (count == null)
+      return matches;
+    for (Iterator it = _terms.tailMap(prefix).entrySet().iterator(); it.hasNext(); )
+    {
+      Map.Entry entry = (Map.Entry)it.next();
+      if (!((String)entry.getKey()).startsWith(prefix))
+        break;
+      Map postings = (Map)((Map)entry.getValue()).get(field);
+      if (postings == null)
+        continue;
+      double idf = Math.log(1.0 + (double)count[0] / postings.size());
+      for (Iterator ids = postings.entrySet().iterator(); ids.hasNext(); )
+      {
+        Map.Entry posting = (Map.Entry)ids.next();
+        double[] score = (double[])matches.get(posting.getKey());
+        if (score == null)
+          matches.put(posting.getKey(), score = new double[1]);
+        score[0] += ((Float)posting.getValue()).floatValue() * idf;
+      }
+      if (matches.size() > _maxMatches)
+        return null;
+    }
+    return matches;
+  }
+
+  /** Replaces the words of a row.  Caller holds the lock. */
+  private void _put(Doc doc)
+  {
+    Doc old = (Doc)_docs.put(doc.getKey(), doc);
+    if (old != null)
+      _unpost(old);
+    else
+      _countOf(doc.field)[0]++;
+    for (int i = 0; i < doc.terms.length; i++)
+    {
+      Map fields = (Map)_terms.get(doc.terms[i]);
+      if (fields == null)
+        _terms.put(doc.terms[i], fields = new HashMap());
+      Map postings = (Map)fields.get(doc.field);
+      if (postings == null)
+        fields.put(doc.field, postings = new HashMap());
+      postings.put(new Long(doc.id), new Float(doc.weights[i]));
+    }
+  }
+
+  /** Drops a row.  Caller holds the lock. */
+  private void _remove(String field, long id)
+  {
+    Doc old = (Doc)_docs.remove(field + "#" + id);
+    if (old != null)
+    {
+      _unpost(old);
+      _countOf(field)[0]--;
+    }
+  }
+
+  private void _unpost(Doc doc)
+  {
+    Long id = new Long(doc.id);
+    for (int i = 0; i < doc.terms.length; i++)
+    {
+      Map fields = (Map)_terms.get(doc.terms[i]);
+      if (fields == null)
+        continue;
+      Map postings = (Map)fields.get(doc.field);
+      if (postings == null)
+        continue;
+      postings.remove(id);
+      if (postings.isEmpty())
+      {
+        fields.remove(doc.field);
+        if (fields.isEmpty())
+          _terms.remove(doc.terms[i]);
+      }
+    }
+  }
+
+  private int[] _countOf(String field)
+  {
+    int[] count = (int[])_docCounts.get(field);
+    if (count == null)
+      _docCounts.put(field, count = new int[1]);
+    return count;
+  }
+
+  private synchronized void _clear()
+  {
+    _terms.clear();
+    _docs.clear();
+    _docCounts.clear();
+  }
+
+  //------------------------ Reading the repository ------------------------------------
+  /** Works out which columns of which tables are keyword attributes. */
+  private Map _getSources(IObjectContext context)
+    throws OculusException
+  {
+    if (_sources != null)
+      return _sources;
+    Map sources = new HashMap();
+    IXMR xmr = context.getRepository().getXMR();
+    for (Iterator classes = xmr.getXClasses().iterator(); classes.hasNext(); )
+    {
+      IXClass cls = (IXClass)classes.next();
+      List attrs;
+      try { attrs = xmr.getKeywordAttrs(context, cls); }
+      catch (Exception ignore) { continue; }   // not every class has a display list
+      for (Iterator it = attrs.iterator(); it.hasNext(); )
+      {
+        IQAttrRef attrRef = (IQAttrRef)it.next();
+        String table = xmr.getEndClass(cls, attrRef.getAssocs()).getTableName();
+        String column = attrRef.getAttr().getColName();
+        String weight = String.valueOf(attrRef.getAttr().getPrimType() == Primitive.CHAR ? CHAR_WEIGHT : LONG_CHAR_WEIGHT);
+        List columns = (List)sources.get(table);
+        if (columns == null)
+          sources.put(table, columns = new ArrayList());
+        boolean found = false;
+        for (Iterator cols = columns.iterator(); cols.hasNext() && !found; )
+          found = ((String[])cols.next())[0].equals(column);
+        if (!found)
+          columns.add(new String[] { column, weight });
+      }
+    }
+    _sources = sources;
+    return _sources;
+  }
+
+  /**
+  * Reads the rows of the ids from the repository, or every row if ids is null, and
+  * returns the Docs for them keyed by "field#id".
+  */
+  private Map _read(IObjectContext context, List ids)
+    throws OculusException
+  {
+    Map docs = new HashMap();
+    IRConnection repConn = context.getRepository().getDataConnection(context);
+    Map sources = _getSources(context);
+    IXMR xmr = context.getRepository().getXMR();
+    List chunks = new ArrayList();
+    if (ids == null)
+      chunks.add(null);
+    else
+      for (int from = 0; from < ids.size(); from += MAX_IN_LIST)
+        chunks.add(_toInList(ids.subList(from, Math.min(ids.size(), from + MAX_IN_LIST))));
+
+    IQueryProcessor stmt = null;
+    try
+    {
+      for (Iterator c = chunks.iterator(); c.hasNext(); )
+      {
+        String inList = (String)c.next();
+        for (Iterator it = sources.entrySet().iterator(); it.hasNext(); )
+        {
+          Map.Entry source = (Map.Entry)it.next();
+          String table = (String)source.getKey();
+          List columns = (List)source.getValue();
+          StringBuffer sql = new StringBuffer("SELECT OBJECTID");
+          for (int i = 0; i < columns.size(); i++)
+            sql.append(", ").append(((String[])columns.get(i))[0]);
+          sql.append(" FROM ").append(table);
+          if (inList != null)
+            sql.append(" WHERE OBJECTID IN (").append(inList).append(")");
+          stmt = repConn.createProcessor();
+          IDataSet results = stmt.retrieve(sql.toString());
+          while (results.next())
+          {
+            long id = results.getLong("OBJECTID");
+            for (int i = 0; i < columns.size(); i++)
+            {
+              String[] column = (String[])columns.get(i);
+              _addText(docs, getField(table, column[0]), id, results.getString(column[0]), Float.parseFloat(column[1]));
+            }
+          }
+          stmt.close();
+        }
+        _readValues(repConn, docs, FIELD_EXT_CHAR, xmr.mapPrimToTable(Primitive.CHAR), CHAR_WEIGHT, inList);
+        _readValues(repConn, docs, FIELD_EXT_LONG_CHAR, xmr.mapPrimToTable(Primitive.LONG_CHAR), LONG_CHAR_WEIGHT, inList);
+      }
+      stmt = null;
+    }
+    finally
+    {
+      if (stmt != null)
+        stmt.close();
+    }
+    return docs;
+  }
+
+  private void _readValues(IRConnection repConn, Map docs, String field, String table, float weight, String inList)
+    throws OculusException
+  {
+    IQueryProcessor stmt = repConn.createProcessor();
+    try
+    {
+      IDataSet results = stmt.retrieve("SELECT val.PAROBJECTID, val.VALUE "+
+                                       " FROM \""+table+"\" val, \"ATTRIBUTE\" attr "+
+                                       " WHERE attr.OBJECTID = val.ATTRIBUTEID "+
+                                       "   AND attr.DATATYPEID <> "+IDCONST.PASSWORD.getLongValue()+
+                                       (inList == null ? "" : "   AND val.PAROBJECTID IN ("+inList+")"));
+      while (results.next())
+        _addText(docs, field, results.getLong("PAROBJECTID"), results.getString("VALUE"), weight);
+    }
+    finally
+    {
+      stmt.close();
+    }
+  }
+
+  /**
+  * Returns the change marker of the repository: the REPOS id counter and the row count of
+  * each table the index reads, hashed together.
+  */
+  private long _readMarker(IObjectContext context)
+    throws OculusException
+  {
+    IRConnection repConn = context.getRepository().getDataConnection(context);
+    IXMR xmr = context.getRepository().getXMR();
+    List tables = new ArrayList(_getSources(context).keySet());
+    Collections.sort(tables);
+    tables.add(xmr.mapPrimToTable(Primitive.CHAR));
+    tables.add(xmr.mapPrimToTable(Primitive.LONG_CHAR));
+    List queries = new ArrayList();
+    queries.add("SELECT MAXID AS NUM FROM MAXCLASSID WHERE CLASSCODE = 'REPOS'");
+    for (Iterator it = tables.iterator(); it.hasNext(); )
+      queries.add("SELECT COUNT(*) AS NUM FROM \""+it.next()+"\"");
+    long marker = 0;
+    for (Iterator it = queries.iterator(); it.hasNext(); )
+    {
+      IQueryProcessor stmt = repConn.createProcessor();
+      try
+      {
+        IDataSet results = stmt.retrieve((String)it.next());
+        marker = marker * 31 + (results.next() ? results.getLong("NUM") : -1);
+      }
+      finally
+      {
+        stmt.close();
+      }
+    }
+    return marker;
+  }
+
+  private static void _addText(Map docs, String field, long id, String text, float weight)
+  {
+    List words = tokenize(text);
+    if (words.isEmpty())
+      return;
+    String key = field + "#" + id;
+    Doc doc = (Doc)docs.get(key);
+    if (doc == null)
+      docs.put(key, doc = new Doc(field, id));
+    doc.add(words, weight);
+  }
+
+  private static String _toInList(List ids)
+  {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < ids.size(); i++)
+    {
+      if (i > 0)
+        sb.append(",");
+      sb.append(ids.get(i));
+    }
+    return sb.toString();
+  }
+
+  //------------------------ Updating the index ------------------------------------
+  /** Reads the rows of the ids again and writes the changes as a segment. */
+  private void _reindex(IObjectContext context, List ids)
+    throws OculusException, IOException
+  {
+    long marker = _readMarker(context);
+    Map docs = _read(context, ids);
+    Set fields = new HashSet();
+    fields.addAll(_getFields());
+    List changes = new ArrayList();              // Doc to put, or String "field#id" to remove
+    synchronized (this)
+    {
+      for (Iterator it = docs.values().iterator(); it.hasNext(); )
+      {
+        Doc doc = (Doc)it.next();
+        doc.seal();
+        _put(doc);
+        changes.add(doc);
+      }
+      for (Iterator it = ids.iterator(); it.hasNext(); )
+      {
+        Object id = it.next();
+        for (Iterator f = fields.iterator(); f.hasNext(); )
+        {
+          String key = f.next() + "#" + id;
+          if (!docs.containsKey(key) && _docs.containsKey(key))
+          {
+            Doc old = (Doc)_docs.get(key);
+            _remove(old.field, old.id);
+            changes.add(old.field + "#" + old.id);
+          }
+        }
+      }
+      if (marker == _marker && changes.isEmpty())
+        return;
+      _marker = marker;
+    }
+    _writeSegment(changes, false);
+  }
+
+  /** Builds the whole index again and writes it as a single full segment. */
+  private void _rebuild(IObjectContext context)
+    throws OculusException, IOException
+  {
+    _sources = null;
+    long marker = _readMarker(context);
+    Map docs = _read(context, null);
+    synchronized (this)
+    {
+      _marker = marker;
+      _clear();
+      for (Iterator it = docs.values().iterator(); it.hasNext(); )
+      {
+        Doc doc = (Doc)it.next();
+        doc.seal();
+        _put(doc);
+      }
+    }
+    _writeFull();
+    _ready = true;
+  }
+
+  /**
+  * Drops the ids the index has just read from the pending ones, unless they have changed
+  * again since.  After a rebuild every id has been read.
+  */
+  private void _applied(List ids, boolean all)
+  {
+    synchronized (_queue)
+    {
+      if (all)
+        _pending.clear();
+      else
+        _pending.removeAll(ids);
+      _pending.addAll(_queue);
+      for (Iterator it = _byConnection.values().iterator(); it.hasNext(); )
+        _pending.addAll((Set)it.next());
+    }
+  }
+
+  private synchronized Set _getFields()
+  {
+    Set fields = new HashSet(_docCounts.keySet());
+    fields.add(FIELD_EXT_CHAR);
+    fields.add(FIELD_EXT_LONG_CHAR);
+    if (_sources != null)
+    {
+      for (Iterator it = _sources.entrySet().iterator(); it.hasNext(); )
+      {
+        Map.Entry source = (Map.Entry)it.next();
+        for (Iterator cols = ((List)source.getValue()).iterator(); cols.hasNext(); )
+          fields.add(getField((String)source.getKey(), ((String[])cols.next())[0]));
+      }
+    }
+    return fields;
+  }
+
+  //------------------------ Segment files ------------------------------------
+  private File[] _listSegments()
+  {
+    File[] files = _dir.listFiles(new FilenameFilter() {
+      public boolean accept(File dir, String name) { return name.startsWith("segment-") && name.endsWith(".idx"); }
+    });
+    if (files == null)
+      return new File[0];
+    Arrays.sort(files);
+    return files;
+  }
+
+  private File _segmentFile(long seq)
+  {
+    String num = "0000000000" + seq;
+    return new File(_dir, "segment-" + num.substring(num.length() - 10) + ".idx");
+  }
+
+  /**
+  * Reads the segments back from the index directory, starting at the last full one.
+  * Returns false if there is no full segment, one of them can't be read, or the change
+  * marker of the last one isn't the repository's.
+  */
+  private boolean _loadSegments(IObjectContext context)
+    throws OculusException
+  {
+    File[] files = _listSegments();
+    if (files.length > 0)
+      synchronized (this) { _nextSegment = _parseSeq(files[files.length - 1]) + 1; }
+    int start = -1;
+    for (int i = files.length - 1; i >= 0 && start < 0; i--)
+      if (_isFull(files[i]))
+        start = i;
+    if (start < 0)
+      return false;
+    try
+    {
+      synchronized (this)
+      {
+        _clear();
+        for (int i = start; i < files.length; i++)
+          _replay(files[i]);
+        _segmentCount = files.length - start;
+      }
+      if (_marker == _readMarker(context))
+        return true;
+      LogService.getInstance().write("The repository has changed since the keyword index was written, so it is being built again.");
+      return false;
+    }
+    catch (IOException ex)
+    {
+      LogService.getInstance().write(ex);
+      return false;
+    }
+  }
+
+  private boolean _isFull(File file)
+  {
+    DataInputStream in = null;
+    try
+    {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      return in.readInt() == SEGMENT_MAGIC && in.readBoolean();
+    }
+    catch (IOException ex) { return false; }
+    finally
+    {
+      try { if (in != null) in.close(); } catch (IOException ignore) { }
+    }
+  }
+
+  /** Applies the records of a segment, and takes its change marker.  Caller holds the lock. */
+  private void _replay(File file)
+    throws IOException
+  {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try
+    {
+      if (in.readInt() != SEGMENT_MAGIC)
+        throw new IOException("Not a keyword index segment: "+file);
+      in.readBoolean();
+      _marker = in.readLong();
+      for (byte rec = in.readByte(); rec != REC_END; rec = in.readByte())
+      {
+        String field = in.readUTF();
+        long id = in.readLong();
+        if (rec == REC_REMOVE)
+          _remove(field, id);
+        else if (rec == REC_PUT)
+        {
+          int n = in.readInt();
+          Doc doc = new Doc(field, id);
+          doc.terms = new String[n];
+          doc.weights = new float[n];
+          for (int i = 0; i < n; i++)
+          {
+            doc.terms[i] = in.readUTF();
+            doc.weights[i] = in.readFloat();
+          }
+          _put(doc);
+        }
+        else
+          throw new IOException("Bad record in keyword index segment: "+file);
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+  }
+
+  private static long _parseSeq(File file)
+  {
+    String name = file.getName();
+    return Long.parseLong(name.substring("segment-".length(), name.length() - ".idx".length()));
+  }
+
+  /** Appends a segment with the changes, and compacts the segments if there are too many. */
+  private void _writeSegment(List changes, boolean full)
+    throws IOException
+  {
+    _dir.mkdirs();
+    long seq;
+    synchronized (this) { seq = _nextSegment++; }
+    File file = _segmentFile(seq);
+    File tmp = new File(_dir, file.getName() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try
+    {
+      out.writeInt(SEGMENT_MAGIC);
+      out.writeBoolean(full);
+      synchronized (this) { out.writeLong(_marker); }
+      for (Iterator it = changes.iterator(); it.hasNext(); )
+      {
+        Object change = it.next();
+        if (change instanceof Doc)
+        {
+          Doc doc = (Doc)change;
+          out.writeByte(REC_PUT);
+          out.writeUTF(doc.field);
+          out.writeLong(doc.id);
+          out.writeInt(doc.terms.length);
+          for (int i = 0; i < doc.terms.length; i++)
+          {
+            out.writeUTF(doc.terms[i]);
+            out.writeFloat(doc.weights[i]);
+          }
+        }
+        else
+        {
+          String key = (String)change;
+          int hash = key.lastIndexOf('#');
+          out.writeByte(REC_REMOVE);
+          out.writeUTF(key.substring(0, hash));
+          out.writeLong(Long.parseLong(key.substring(hash + 1)));
+        }
+      }
+      out.writeByte(REC_END);
+    }
+    finally
+    {
+      out.close();
+    }
+    if (!tmp.renameTo(file))
+      throw new IOException("Could not rename "+tmp+" to "+file);
+
+    if (full)
+    {
+      // everything before a full segment is no longer needed
+      File[] files = _listSegments();
+      for (int i = 0; i < files.length; i++)
+        if (_parseSeq(files[i]) < seq)
+          files[i].delete();
+      synchronized (this) { _segmentCount = 1; }
+    }
+    else
+    {
+      boolean compact;
+      synchronized (this) { compact = (++_segmentCount > MAX_SEGMENTS); }
+      if (compact)
+        _writeFull();
+    }
+  }
+
+  private void _writeFull()
+    throws IOException
+  {
+    List docs;
+    synchronized (this) { docs = new ArrayList(_docs.values()); }
+    _writeSegment(docs, true);
+  }
+
+  //------------------------ Private Inner Classes ------------------------------------
+  /** The words of one field of one row, with the weight of each. */
+  private static class Doc
+  {
+    final String field;
+    final long id;
+    String[] terms;
+    float[] weights;
+    private Map _building = null;                // term -> float[1] while the text is added
+
+    Doc(String field, long id)
+    {
+      this.field = field;
+      this.id = id;
+    }
+
+    String getKey() { return field + "#" + id; }
+
+    void add(List words, float weight)
+    {
+      if (_building == null)
+        _building = new HashMap();
+      for (Iterator it = words.iterator(); it.hasNext(); )
+      {
+        Object word = it.next();
+        float[] w = (float[])_building.get(word);
+        if (w == null)
+          _building.put(word, w = new float[1]);
+        w[0] += weight;
+      }
+    }
+
+    void seal()
+    {
+      if (_building == null)
+        return;
+      terms = new String[_building.size()];
+      weights = new float[terms.length];
+      int i = 0;
+      for (Iterator it = _building.entrySet().iterator(); it.hasNext(); i++)
+      {
+        Map.Entry entry = (Map.Entry)it.next();
+        terms[i] = (String)entry.getKey();
+        weights[i] = ((float[])entry.getValue())[0];
+      }
+      _building = null;
+    }
+  }
+
+  /** Loads the index, then keeps it up to date with the ids handed to enqueue(). */
+  private class Indexer extends Thread
+  {
+    Indexer()
+    {
+      super("KeywordIndexer");
+    }
+
+    public void run()
+    {
+      IObjectContext context = null;
+      try
+      {
+        context = new ObjectContext();
+        context.setConnection(context.getCRM().connect("system","system"));
+        if (!_rebuildOnStart && _loadSegments(context))
+          _ready = true;
+        else
+          _rebuild(context);
+      }
+      catch (Exception ex)
+      {
+        LogService.getInstance().write(ex);
+      }
+
+      while (context != null)
+      {
+        List ids;
+        boolean rebuild;
+        synchronized (_queue)
+        {
+          try
+          {
+            if (_queue.isEmpty() && !_rebuildRequested)
+              _queue.wait();
+            // give the commits that follow a chance to join the batch
+            if (!_rebuildRequested)
+              _queue.wait(_cycleTime * 1000L);
+          }
+          catch (InterruptedException ex)
+          {
+            return;
+          }
+          ids = new ArrayList(_queue);
+          _queue.clear();
+          rebuild = _rebuildRequested || !_ready;
+          _rebuildRequested = false;
+        }
+        try
+        {
+          if (rebuild)
+            _rebuild(context);
+          else if (!ids.isEmpty())
+            _reindex(context, ids);
+          _applied(ids, rebuild);
+        }
+        catch (Exception ex)
+        {
+          LogService.getInstance().write(ex);
+          // the ids may not have made it into the index, so start again from scratch next time
+          synchronized (_queue) { _rebuildRequested = true; }
+          try { Thread.sleep(_cycleTime * 1000L); } catch (InterruptedException ie) { return; }
+        }
+      }
+    }
+  }
+}
@@ -41,6 +41,18 @@ public class OracleQueryToSQL extends QueryToSQL
   {
   }
   
+  //-------------------------------------------------------------
+  // Protected instance methods
+  //-------------------------------------------------------------
+  /** Oracle can't limit the rows of a sorted select without a subquery, so it only gets a hint. */
+  protected void _doRowLimitHint(StringBuffer sbSql, int rows)
+  {
+    sbSql.append("/*+ FIRST_ROWS */ ");
+  }
+  
+  /** Oracle sorts NULLs as if they were larger than any value. */
+  protected boolean _nullsSortHigh() { return true; }
+  
 	//-------------------------------------------------------------
   // Public instance methods
 	//-------------------------------------------------------------
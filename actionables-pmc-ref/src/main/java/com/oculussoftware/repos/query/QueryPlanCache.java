@@ -0,0 +1,137 @@
+package com.oculussoftware.repos.query;
+
+/**
+* $Workfile: QueryPlanCache.java $
+* Description: Shared cache of translated query SQL.
+*
+* Copyright 7/01/2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+
+import com.oculussoftware.system.*;
+import com.oculussoftware.repos.xmeta.*;
+
+/**
+* Remembers the SQL that QueryToSQL translated an IQuery into, by the shape of the query:
+* its target class, select, filter tree and sort, without the values the user typed in.
+* The SQL has '?' placeholders for those values, so a saved search that is run again
+* only has its values collected and bound instead of being translated from scratch, and
+* the database sees the same statement text every time.
+*
+* <P>The SQL depends on the XMR meta data, so every plan is dropped when the XMR's version
+* changes.</P>
+*
+* <P>The size of the cache is read from the "maxEntries" value of the "QueryPlanCache"
+* directory entry.  Zero turns the cache off.</P>
+*/
+public class QueryPlanCache
+{
+  //-----------------------------------------------------------------------------
+  // Private static variables
+  //-----------------------------------------------------------------------------
+  /** Number of plans kept if none is configured. */
+  public static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static QueryPlanCache _instance = null;
+
+  //-----------------------------------------------------------------------------
+  // Public static methods
+  //-----------------------------------------------------------------------------
+  public static synchronized QueryPlanCache getInstance()
+  {
+    if (_instance == null)
+    {
+      int maxEntries;
+      try
+      {
+        maxEntries = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("maxEntries","QueryPlanCache")).trim());
+      }
+      catch (Exception ignore) { maxEntries = DEFAULT_MAX_ENTRIES; }
+      _instance = new QueryPlanCache(maxEntries);
+    }
+    return _instance;
+  }
+
+  //-----------------------------------------------------------------------------
+  // Private instance variables
+  //-----------------------------------------------------------------------------
+  private ObjectCache _plans;                   // shape -> SQL
+  private boolean     _enabled;
+  private long        _version;                 // the XMR version the plans were made with
+  private long        _invalidations = 0;
+
+  //-----------------------------------------------------------------------------
+  // Public constructor(s)
+  //-----------------------------------------------------------------------------
+  public QueryPlanCache(int maxEntries)
+  {
+    _enabled = (maxEntries > 0);
+    _plans = new ObjectCache(Math.max(1, maxEntries), ObjectCache.DEFAULT_SEGMENTS);
+    _version = XMR.getVersion();
+  }
+
+  //-----------------------------------------------------------------------------
+  // Public instance methods
+  //-----------------------------------------------------------------------------
+  /** Returns false if the cache has been configured off. */
+  public boolean isEnabled() { return _enabled; }
+
+  /** Returns the SQL for a query of the given shape, or null if it has to be translated. */
+  public String get(String shape)
+  {
+    if (!_enabled || shape == null)
+      return null;
+    _checkVersion();
+    return (String)_plans.get(shape);
+  }
+
+  /**
+  * Caches the SQL for a query of the given shape.
+  * @param version the XMR version from before the query was translated.  If the meta
+  * data has changed since, the SQL is thrown away.
+  */
+  public void put(String shape, String sql, long version)
+  {
+    if (!_enabled || shape == null)
+      return;
+    _checkVersion();
+    synchronized (this)
+    {
+      if (version == _version)
+        _plans.put(shape, sql);
+    }
+  }
+
+  /** Drops every plan. */
+  public synchronized void clear()
+  {
+    _plans.clear();
+    _invalidations++;
+  }
+
+  public int size() { return _plans.size(); }
+  public long getHitCount() { return _plans.getHitCount(); }
+  public long getMissCount() { return _plans.getMissCount(); }
+  public double getHitRate() { return _plans.getHitRate(); }
+  public synchronized long getInvalidationCount() { return _invalidations; }
+
+  public String toString()
+  {
+    return "QueryPlanCache[size="+size()+", hits="+getHitCount()+", misses="+getMissCount()+", invalidations="+getInvalidationCount()+"]";
+  }
+
+  //-----------------------------------------------------------------------------
+  // Private instance methods
+  //-----------------------------------------------------------------------------
+  private synchronized void _checkVersion()
+  {
+    long version = XMR.getVersion();
+    if (version != _version)
+    {
+      _plans.clear();
+      _invalidations++;
+      _version = version;
+    }
+  }
+}
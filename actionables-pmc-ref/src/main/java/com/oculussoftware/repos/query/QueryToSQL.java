@@ -292,6 +292,23 @@ public abstract class QueryToSQL
   private List _allRoleAttrs = new Vector();
   private boolean _extKeywordSearch = false;
   
+  // set while one page of a query is translated by translatePage()
+  private int _pageRows = 0;
+  private Object[] _pageKey = null;
+  private boolean _pageBackward = false;
+  private List _pageParams = null;
+  
+  // set while the filter's values are written as '?' placeholders instead of literals
+  private List _bindParams = null;
+  
+  /** Longest IN list that is bound value by value; a query with a longer one isn't cached. */
+  private static final int MAX_BOUND_LIST = 100;
+  
+  /** Prefix of the aliases translatePage() gives the sort columns it adds to the select. */
+  public static final String PAGEKEY_PREFIX = "PGKEY_";
+  /** Alias translatePage() gives the target's OBJECTID it adds to the select. */
+  public static final String PAGEKEY_ID = "PGKEY_ID";
+  
   //-------------------------------------------------------------
   // Constructor(s)
   //-------------------------------------------------------------
@@ -357,6 +374,99 @@ public abstract class QueryToSQL
     return sbSql.toString();
   }
   
+  /**
+  * Translates a query with '?' placeholders for the values the user gave in its filter,
+  * and adds the values to params in the order they have to be bound.  The SQL comes
+  * from the QueryPlanCache if a query of the same shape has been translated before, in
+  * which case only the filter is walked to collect the values.  A query that can't be
+  * cached (one with a keyword index match, say) is translated with its values written
+  * into the SQL, and nothing is added to params.
+  */
+	public String translate(IQuery query, List params)
+  	throws OculusException
+  {
+    String shape = _getShape(query, null);
+    if (shape == null)
+      return translate(query);
+    return _translateCached(query, shape, params);
+  }
+  
+  /**
+  * Translates one page of a query for keyset (seek) paging.  The columns of the sort
+  * and the target's OBJECTID are added to the select, as PGKEY_1 to PGKEY_n and
+  * PGKEY_ID, and the OBJECTID is added to the end of the sort so that every row has
+  * its own place in the order.  Those values of a row are its page key.
+  *
+  * If a key is given, only the rows that sort after it are selected, or the rows
+  * before it when going backward, in which case the sort is reversed so that the
+  * nearest rows come first.  The key values are left as '?' placeholders and added
+  * to params in the order they have to be bound.  At most the given number of rows
+  * is asked for.
+  * @param key the page key of the row to start after, or null for the first page.
+  */
+	public String translatePage(IQuery query, Object[] key, boolean backward, int rows, List params)
+  	throws OculusException
+  {
+    _pageRows = Math.max(1, rows);
+    _pageKey = key;
+    _pageBackward = backward;
+    _pageParams = params;
+    try {
+      String shape = _getShape(query, _getPageShape(key, backward, _pageRows));
+      if (shape != null)
+        return _translateCached(query, shape, params);
+      StringBuffer sbSql = new StringBuffer(1000);
+      _translate(sbSql, query);
+      return sbSql.toString();
+    }
+    finally {
+      _pageRows = 0;
+      _pageKey = null;
+      _pageBackward = false;
+      _pageParams = null;
+    }
+  }
+  
+  /**
+  * Translates a query into one that only counts the rows it would return.  It has the
+  * same joins and filter, but no sort.
+  */
+	public String translateCount(IQuery query)
+  	throws OculusException
+  {
+    StringBuffer sbSql = new StringBuffer(1000);
+    _reset();
+    _preEvalQuery(query);
+    IQSelect select = query.getSelect();
+    if (select != null && select.getUseDistinct()) {
+      // the distinct rows have to be found before they can be counted
+      sbSql.append("SELECT COUNT(*) AS NUMROWS FROM (");
+      _doSelect(sbSql, query);
+      _doFrom(sbSql, query);
+      _doWhere(sbSql, query);
+      sbSql.append(") CNT");
+    }
+    else {
+      sbSql.append("SELECT COUNT(*) AS NUMROWS");
+      _doFrom(sbSql, query);
+      _doWhere(sbSql, query);
+    }
+    return sbSql.toString();
+  }
+  
+  //-------------------------------------------------------------
+  // Protected instance methods
+  //-------------------------------------------------------------
+  
+  /** Adds a hint right after SELECT telling the database only the first rows are wanted. */
+  protected void _doRowLimitHint(StringBuffer sbSql, int rows) { }
+  
+  /** Adds a row limit right after SELECT [DISTINCT]. */
+  protected void _doRowLimitTop(StringBuffer sbSql, int rows) { }
+  
+  /** Returns true if the database sorts NULLs after every other value. */
+  protected boolean _nullsSortHigh() { return false; }
+  
   //-------------------------------------------------------------
   // Private instance methods
   //-------------------------------------------------------------
@@ -364,11 +474,7 @@ public abstract class QueryToSQL
 	private void _translate(StringBuffer sbSql, IQuery query)
   	throws OculusException
 	{
-    _allAssocs = new Vector();
-    _allExtAttrs = new Vector();
-    _allEnumLitAttrs = new Vector();
-    _allRoleAttrs = new Vector();
-    _extKeywordSearch = false;
+    _reset();
     
     // pre-evaluate IQuery to determine needed associations / joins...
     _preEvalQuery(query);
@@ -379,6 +485,177 @@ public abstract class QueryToSQL
     _doOrderBy(sbSql, query);
 	}
   
+  /** Gets the SQL for the shape from the QueryPlanCache, or translates and caches it, binding the values to params. */
+  private String _translateCached(IQuery query, String shape, List params)
+  	throws OculusException
+  {
+    QueryPlanCache plans = QueryPlanCache.getInstance();
+    _bindParams = params;
+    try {
+      String sql = plans.get(shape);
+      if (sql != null) {
+        // the values are collected in the same order the translation writes them
+        _reset();
+        _preEvalQuery(query);
+        _doWhere(new StringBuffer(), query);
+        return sql;
+      }
+      long version = XMR.getVersion();
+      StringBuffer sbSql = new StringBuffer(1000);
+      _translate(sbSql, query);
+      sql = sbSql.toString();
+      plans.put(shape, sql, version);
+      return sql;
+    }
+    finally {
+      _bindParams = null;
+    }
+  }
+  
+  /**
+  * Describes everything about the query that its SQL depends on, apart from the values
+  * the user gave in its filter.  Returns null if the query shouldn't be cached.
+  * Each attr ref object is numbered the first time it is seen, since two refs to the
+  * same attribute get joins of their own.
+  */
+  private String _getShape(IQuery query, String extra)
+  {
+    StringBuffer sb = new StringBuffer(200);
+    Map refs = new IdentityHashMap();
+    sb.append(getClass().getName());
+    sb.append("|T").append(query.getTargetClass().getIID().getLongValue());
+    IQSelect select = query.getSelect();
+    if (select == null)
+      sb.append("|S-");
+    else {
+      sb.append(select.getUseDistinct() ? "|SD" : "|S");
+      List items = select.getAttrs();
+      if (items == null)
+        sb.append("*");
+      else {
+        Iterator iter = items.iterator();
+        while (iter.hasNext()) {
+          IQSelectItem selitem = (IQSelectItem) iter.next();
+          if (selitem.getAttr() instanceof IQAttrRef)
+            _getRefShape(sb, (IQAttrRef) selitem.getAttr(), refs);
+          else
+            sb.append('\'').append(selitem.getAttr()).append('\'');
+          if (selitem.getAlias() != null)
+            sb.append('@').append(selitem.getAlias());
+          sb.append(',');
+        }
+      }
+    }
+    sb.append("|W");
+    if (!_getFilterShape(sb, query.getFilter().getExpr(), refs))
+      return null;
+    sb.append("|O");
+    IQSort sort = query.getSort();
+    List sorts = (sort == null) ? null : sort.getSortItems();
+    if (sorts != null) {
+      Iterator isort = sorts.iterator();
+      while (isort.hasNext()) {
+        IQSortItem si = (IQSortItem) isort.next();
+        _getRefShape(sb, si.getAttrRef(), refs);
+        sb.append(si.getDir() == SortDir.DESC ? "-," : "+,");
+      }
+    }
+    if (extra != null)
+      sb.append('|').append(extra);
+    return sb.toString();
+  }
+  
+  private void _getRefShape(StringBuffer sb, IQAttrRef attrref, Map refs)
+  {
+    Integer num = (Integer) refs.get(attrref);
+    if (num != null) {
+      sb.append('#').append(num);
+      return;
+    }
+    num = new Integer(refs.size());
+    refs.put(attrref, num);
+    sb.append('#').append(num).append('=');
+    IXAssocChain chain = attrref.getAssocs();
+    if (chain != null) {
+      Iterator ichain = chain.iterator();
+      while (ichain.hasNext())
+        sb.append(((IXAssoc) ichain.next()).getIID().getLongValue()).append('.');
+    }
+    sb.append(attrref.getAttr().getIID().getLongValue());
+  }
+  
+  /** Adds the shape of a filter (sub)tree.  Returns false if the query shouldn't be cached. */
+  private boolean _getFilterShape(StringBuffer sb, Object arg, Map refs)
+  {
+    if (arg instanceof IQFilterExpr) {
+      IQFilterExpr fex = (IQFilterExpr) arg;
+      IOperator oper = fex.getOper();
+      if (oper == CompOper.COMP_KEYWORD_IN)
+        return false;     // the ids of the matches are different every time
+      sb.append('(');
+      if (oper instanceof IntEnum)
+        sb.append((oper instanceof BoolOper) ? 'b' : 'c').append(((IntEnum) oper).getIntValue());
+      else
+        sb.append(oper);
+      sb.append(' ');
+      if (!_getFilterShape(sb, fex.getLeft(), refs))
+        return false;
+      sb.append(' ');
+      if (!_getFilterShape(sb, fex.getRight(), refs))
+        return false;
+      sb.append(')');
+    }
+    else if (arg instanceof IQAttrRef)
+      _getRefShape(sb, (IQAttrRef) arg, refs);
+    else if (arg instanceof IXClassAttr)
+      sb.append('X').append(((IXClassAttr) arg).getIID().getLongValue());
+    else if (arg == null)
+      sb.append('N');
+    else if (arg instanceof Object[]) {
+      if (((Object[]) arg).length > MAX_BOUND_LIST)
+        return false;
+      sb.append('A').append(((Object[]) arg).length);
+    }
+    else if (arg instanceof long[]) {
+      if (((long[]) arg).length > MAX_BOUND_LIST)
+        return false;
+      sb.append('L').append(((long[]) arg).length);
+    }
+    else
+      sb.append('V');     // one value, whatever its type
+    return true;
+  }
+  
+  /** Describes what a page adds to the shape: its size, direction and which key values are NULL. */
+  private String _getPageShape(Object[] key, boolean backward, int rows)
+  {
+    StringBuffer sb = new StringBuffer("P").append(rows).append(backward ? "<" : ">");
+    if (key == null)
+      sb.append("first");
+    else
+      for (int i = 0; i < key.length; i++)
+        sb.append(key[i] == null ? 'n' : 'v');
+    return sb.toString();
+  }
+  
+  /** Writes a user value into the SQL, or a placeholder for it while values are being bound. */
+  private String _doValue(Object value, String literal)
+  {
+    if (_bindParams == null)
+      return literal;
+    _bindParams.add(value);
+    return "?";
+  }
+  
+  private void _reset()
+  {
+    _allAssocs = new Vector();
+    _allExtAttrs = new Vector();
+    _allEnumLitAttrs = new Vector();
+    _allRoleAttrs = new Vector();
+    _extKeywordSearch = false;
+  }
+  
   /** Traverse attrRefs to get superset of associations needed. */
   private void _preEvalQuery(IQuery query)
   {
@@ -481,8 +758,12 @@ public abstract class QueryToSQL
     if (select != null)
     {
       sbSql.append("SELECT ");
+      if (_pageRows > 0)
+        _doRowLimitHint(sbSql, _pageRows);
       if(select.getUseDistinct())
         sbSql.append(" DISTINCT ");
+      if (_pageRows > 0)
+        _doRowLimitTop(sbSql, _pageRows);
       List items = select.getAttrs();
       if (items != null )
       {
@@ -516,8 +797,15 @@ public abstract class QueryToSQL
           }
           sqlitems.add(strItem);
         }
+        if (_pageRows > 0)
+          sqlitems.addAll(_getPageKeyItems(query));
         sbSql.append(StringUtil.buildCommaDelList(sqlitems));
       }
+      else if (_pageRows > 0) {
+        List keyitems = _getPageKeyItems(query);
+        keyitems.add(0, _getTableSyn(query.getTargetClass(), null) + ".*");
+        sbSql.append(StringUtil.buildCommaDelList(keyitems));
+      }
       else {
         sbSql.append(" * ");
       }
@@ -863,12 +1151,142 @@ public abstract class QueryToSQL
     throws OculusException, QueryException
   {
     IQFilter filter = query.getFilter();
-    if ( filter.getExpr() != null ) {
+    boolean bSeek = (_pageRows > 0 && _pageKey != null);
+    if ( filter.getExpr() != null || bSeek ) {
       sbSql.append(" WHERE ");
-      _buildWhere(sbSql, null, query.getTargetClass(), query.getFilter().getExpr());
+      if ( filter.getExpr() != null )
+        _buildWhere(sbSql, null, query.getTargetClass(), query.getFilter().getExpr());
+      if ( bSeek ) {
+        if ( filter.getExpr() != null )
+          sbSql.append(" AND ");
+        _doPageSeek(sbSql, query);
+      }
     }
   }
   
+  /**
+  * Adds the condition that the row sorts after the page key:
+  * (c1 > v1) OR (c1 = v1 AND c2 > v2) OR ... OR (c1 = v1 AND ... AND OBJECTID > vid),
+  * with the comparisons turned around for descending columns and going backward.
+  */
+  private void _doPageSeek(StringBuffer sbSql, IQuery query)
+    throws OculusException
+  {
+    List cols = _getPageKeyCols(query);
+    List ascs = _getPageKeyAscs(query);
+    if (_pageKey.length != cols.size())
+      throw new QueryException("The page key doesn't match the sort of the query.");
+    Vector terms = new Vector();
+    for (int i = 0; i < cols.size(); i++) {
+      List params = new Vector();
+      StringBuffer term = new StringBuffer("(");
+      for (int j = 0; j < i; j++) {
+        term.append(_doKeyEquals((String)cols.get(j), _pageKey[j], params));
+        term.append(" AND ");
+      }
+      boolean bNullable = (i < cols.size() - 1);   // the OBJECTID is never NULL
+      String after = _doKeyAfter((String)cols.get(i), _pageKey[i], ((Boolean)ascs.get(i)).booleanValue(), bNullable, params);
+      if (after == null)
+        continue;   // nothing sorts after this value
+      term.append(after);
+      term.append(")");
+      terms.add(term.toString());
+      if (_pageParams != null)
+        _pageParams.addAll(params);
+    }
+    sbSql.append("(");
+    if (terms.isEmpty())
+      sbSql.append("1=0");
+    else {
+      for (int i = 0; i < terms.size(); i++) {
+        if (i > 0)
+          sbSql.append(" OR ");
+        sbSql.append(terms.get(i));
+      }
+    }
+    sbSql.append(")");
+  }
+  
+  private String _doKeyEquals(String col, Object value, List params)
+  {
+    if (value == null)
+      return col + " IS NULL";
+    params.add(value);
+    return col + " = ?";
+  }
+  
+  /** Returns the condition that the column sorts after the value, or null if nothing can. */
+  private String _doKeyAfter(String col, Object value, boolean asc, boolean bNullable, List params)
+  {
+    boolean bNullsLast = bNullable && (asc == _nullsSortHigh());
+    if (value == null)
+      return bNullsLast ? null : col + " IS NOT NULL";
+    params.add(value);
+    String cmp = col + (asc ? " > ?" : " < ?");
+    return bNullsLast ? "(" + cmp + " OR " + col + " IS NULL)" : cmp;
+  }
+  
+  /** The select items that give each row its page key. */
+  private List _getPageKeyItems(IQuery query)
+    throws QueryException
+  {
+    List items = new Vector();
+    List cols = _getPageKeyCols(query);
+    for (int i = 0; i < cols.size() - 1; i++)
+      items.add(cols.get(i) + " AS " + PAGEKEY_PREFIX + (i + 1));
+    items.add(cols.get(cols.size() - 1) + " AS " + PAGEKEY_ID);
+    return items;
+  }
+  
+  /** The sort columns followed by the target's OBJECTID. */
+  private List _getPageKeyCols(IQuery query)
+    throws QueryException
+  {
+    List cols = _getSortColRefs(query);
+    cols.add(_getTableSyn(query.getTargetClass(), null) + ".OBJECTID");
+    return cols;
+  }
+  
+  /** Whether each page key column is read in ascending order, taking the direction of paging into account. */
+  private List _getPageKeyAscs(IQuery query)
+  {
+    List ascs = new Vector();
+    IQSort sort = query.getSort();
+    List sorts = (sort == null) ? null : sort.getSortItems();
+    if (sorts != null) {
+      Iterator isort = sorts.iterator();
+      while (isort.hasNext()) {
+        IQSortItem si = (IQSortItem) isort.next();
+        ascs.add(new Boolean((si.getDir() != SortDir.DESC) != _pageBackward));
+      }
+    }
+    ascs.add(new Boolean(!_pageBackward));
+    return ascs;
+  }
+  
+  /** The column each sort item sorts on. */
+  private List _getSortColRefs(IQuery query)
+    throws QueryException
+  {
+    List extAttrs = getExtAttrs();
+    List colrefs = new Vector();
+    IQSort sort = query.getSort();
+    List sorts = (sort == null) ? null : sort.getSortItems();
+    if (sorts != null) {
+      Iterator isort = sorts.iterator();
+      while (isort.hasNext()) {
+        IQSortItem si = (IQSortItem) isort.next();
+        if (si.getAttrRef().getAttr().getPrimType().isEnum()) {
+          colrefs.add(_getEnumTableSyn(query.getTargetClass(), si.getAttrRef(), extAttrs) + ".ORDERNUM");
+        }
+        else {
+          colrefs.add(_getAnyColRef(query.getTargetClass(), si.getAttrRef(), extAttrs));
+        }
+      }
+    }
+    return colrefs;
+  }
+  
   private void _buildWhere(StringBuffer sbSql, IQFilterExpr parExpr, IXClass start, Object arg)
     throws OculusException,QueryException
   {
@@ -898,6 +1316,9 @@ public abstract class QueryToSQL
       else if (oper == CompOper.COMP_EXT_KEYWORD_LIKE) {
         _doOper_ExtKeywordLike(sbSql, fex, start);
       }
+      else if (oper == CompOper.COMP_KEYWORD_IN) {
+        _doOper_KeywordIn(sbSql, fex, start);
+      }
       else {
         // do the 'simple' operators that map directly to sql
         _buildWhere(sbSql, fex, start, fex.getLeft());
@@ -929,31 +1350,56 @@ public abstract class QueryToSQL
       CompOper cop = (CompOper) parExpr.getOper();
       if (arg instanceof String) {
         if (cop == CompOper.COMP_LIKE || cop == CompOper.COMP_NOTLIKE || cop == CompOper.COMP_EXT_KEYWORD_LIKE) {
-          retVal = "'%"+SQLUtil.primer(arg.toString())+"%'";
+          retVal = _doValue("%"+arg+"%", "'%"+SQLUtil.primer(arg.toString())+"%'");
         }
         else {
-          retVal = "'"+SQLUtil.primer(arg.toString())+"'";
+          retVal = _doValue(arg, "'"+SQLUtil.primer(arg.toString())+"'");
         }
       }
       else if (arg instanceof java.sql.Timestamp) {
-        retVal = "'"+DateUtil.truncToDayStart((java.sql.Timestamp)arg)+"'";
+        java.sql.Timestamp day = DateUtil.truncToDayStart((java.sql.Timestamp)arg);
+        retVal = _doValue(day, "'"+day+"'");
       }
       else if (arg instanceof Boolean) {
-        retVal = _getBooleanLiteral(arg);
+        retVal = _doValue(new Integer(((Boolean)arg).booleanValue() ? 1 : 0), _getBooleanLiteral(arg));
       }
       else if (arg instanceof Object[]) {
-        retVal = '(' +  StringUtil.buildCommaDelList(Arrays.asList((Object[]) arg))+ ')';
+        if (_bindParams == null)
+          retVal = '(' +  StringUtil.buildCommaDelList(Arrays.asList((Object[]) arg))+ ')';
+        else
+          retVal = _doValueList(Arrays.asList((Object[]) arg));
       }
       else if (arg instanceof long[]) {
-        retVal = '(' + StringUtil.buildCommaDelList((long[]) arg) + ')';
+        if (_bindParams == null)
+          retVal = '(' + StringUtil.buildCommaDelList((long[]) arg) + ')';
+        else {
+          long[] ids = (long[]) arg;
+          List values = new Vector(ids.length);
+          for (int idx = 0; idx < ids.length; idx++)
+            values.add(new Long(ids[idx]));
+          retVal = _doValueList(values);
+        }
       }
       else {
-        retVal = SQLUtil.primer(arg.toString());
+        retVal = _doValue(arg, SQLUtil.primer(arg.toString()));
       }
     }
     return retVal;
   }
 
+  /** Writes a placeholder for each value of an IN list and binds them. */
+  private String _doValueList(List values)
+  {
+    StringBuffer sb = new StringBuffer("(");
+    for (int idx = 0; idx < values.size(); idx++) {
+      if (idx > 0)
+        sb.append(", ");
+      sb.append(_doValue(values.get(idx), null));
+    }
+    sb.append(')');
+    return sb.toString();
+  }
+  
   private String _getBooleanLiteral(Object arg)
   {
     String retVal = "";
@@ -994,12 +1440,27 @@ public abstract class QueryToSQL
   private void _doOper_ExtKeywordLike(StringBuffer sbSql, IQFilterExpr fex, IXClass start)
     throws OculusException
   {
-    String right = ".VALUE LIKE " + _doUserArg(fex, fex.getRight());
     sbSql.append(SYN_EXCHAR);
-    sbSql.append(right);
+    sbSql.append(".VALUE LIKE " + _doUserArg(fex, fex.getRight()));
     sbSql.append(" OR ");
     sbSql.append(SYN_EXLCHAR);
-    sbSql.append(right);
+    sbSql.append(".VALUE LIKE " + _doUserArg(fex, fex.getRight()));
+  }
+  
+  /** Matches the rows the KeywordIndex found, by the OBJECTID of the table that holds the text. */
+  private void _doOper_KeywordIn(StringBuffer sbSql, IQFilterExpr fex, IXClass start)
+    throws OculusException
+  {
+    long[] ids = (long[]) fex.getRight();
+    if (ids == null || ids.length == 0) {
+      sbSql.append("1=0");
+      return;
+    }
+    IQAttrRef attrref = (IQAttrRef) fex.getLeft();
+    sbSql.append(_getTableSyn(start, (attrref == null) ? null : attrref.getAssocs()));
+    sbSql.append(".OBJECTID IN (");
+    sbSql.append(StringUtil.buildCommaDelList(ids));
+    sbSql.append(")");
   }
   
   private void _doOper_Boolean(StringBuffer sbSql, IQFilterExpr fex, IXClass start)
@@ -1036,35 +1497,41 @@ public abstract class QueryToSQL
     if (cop == CompOper.COMP_EQ) {
       _doAttrSQL(fex.getLeft(), sbSql, start, false);
       sbSql.append(" >= ");
-      sbSql.append("'"+arg+"'");
+      sbSql.append(_doValue(arg, "'"+arg+"'"));
       sbSql.append(" AND ");
       _doAttrSQL(fex.getLeft(), sbSql, start, false);
       sbSql.append(" < ");
-      sbSql.append("'"+DateUtil.add(arg, Calendar.DATE, 1)+"'");
+      sbSql.append(_doDayAfter(arg));
     }
     else if (cop == CompOper.COMP_NOTEQ) {
       _doAttrSQL(fex.getLeft(), sbSql, start, false);
       sbSql.append(" < ");
-      sbSql.append("'"+arg+"'");
+      sbSql.append(_doValue(arg, "'"+arg+"'"));
       sbSql.append(" OR ");
       _doAttrSQL(fex.getLeft(), sbSql, start, false);
       sbSql.append(" >= ");
-      sbSql.append("'"+DateUtil.add(arg, Calendar.DATE, 1)+"'");
+      sbSql.append(_doDayAfter(arg));
     }
     else if (cop == CompOper.COMP_ONORBEFORE) {
       _doAttrSQL(fex.getLeft(), sbSql, start, false);
       sbSql.append(" < ");
-      sbSql.append("'"+DateUtil.add(arg, Calendar.DATE, 1)+"'");
+      sbSql.append(_doDayAfter(arg));
     }
     else if (cop == CompOper.COMP_ONORAFTER) {
       _doAttrSQL(fex.getLeft(), sbSql, start, false);
       sbSql.append(" >= ");
-      sbSql.append("'"+arg+"'");
+      sbSql.append(_doValue(arg, "'"+arg+"'"));
     }
     else {
     }
   }
   
+  private String _doDayAfter(java.sql.Timestamp arg)
+  {
+    java.sql.Timestamp next = DateUtil.add(arg, Calendar.DATE, 1);
+    return _doValue(next, "'"+next+"'");
+  }
+  
   /** Implement rules for mapping IOperator's to SQL operators. */
   private void _buildOperClause(StringBuffer sbSql, IQFilterExpr fex)
     throws OculusException
@@ -1119,7 +1586,7 @@ public abstract class QueryToSQL
       String subselect = " in " + _doEnumSubSelect(aref, start);
       long ids[] = (long[]) fex.getRight();
       for(int idx = 0; idx < ids.length; idx++) {
-        sbSql.append("(" + ids[idx] + subselect + ")");
+        sbSql.append("(" + _doValue(new Long(ids[idx]), String.valueOf(ids[idx])) + subselect + ")");
         if (idx < (ids.length - 1))
           sbSql.append(mapOperToSQL(bop));
       }
@@ -1213,8 +1680,10 @@ public abstract class QueryToSQL
   private void _doOrderBy(StringBuffer sbSql, IQuery query)
     throws OculusException
   {
-    List extAttrs = getExtAttrs();
-  
+    if (_pageRows > 0) {
+      _doPageOrderBy(sbSql, query);
+      return;
+    }
     Vector sqlitems = new Vector();
     IQSort sort = query.getSort();
     if (sort != null)
@@ -1223,20 +1692,26 @@ public abstract class QueryToSQL
       if (sorts != null && sorts.size() > 0 )
       {
         sbSql.append(" ORDER BY ");
-        Iterator isort = sorts.iterator();
-        while (isort.hasNext()) {
-          IQSortItem si = (IQSortItem) isort.next();
-          String colref = null;
-          if (si.getAttrRef().getAttr().getPrimType().isEnum()) {
-            colref = _getEnumTableSyn(query.getTargetClass(), si.getAttrRef(), extAttrs) + ".ORDERNUM";
-          }
-          else {
-            colref = _getAnyColRef(query.getTargetClass(), si.getAttrRef(), extAttrs);
-          }
-          sqlitems.add(colref + " " + mapDirToSQL(si.getDir()));
+        List colrefs = _getSortColRefs(query);
+        for (int i = 0; i < sorts.size(); i++) {
+          IQSortItem si = (IQSortItem) sorts.get(i);
+          sqlitems.add(colrefs.get(i) + " " + mapDirToSQL(si.getDir()));
         }
         sbSql.append(StringUtil.buildCommaDelList(sqlitems));
       }
     }
   }
+  
+  /** Sorts a page by its page key, backwards if the page is read backward. */
+  private void _doPageOrderBy(StringBuffer sbSql, IQuery query)
+    throws OculusException
+  {
+    Vector sqlitems = new Vector();
+    List cols = _getPageKeyCols(query);
+    List ascs = _getPageKeyAscs(query);
+    for (int i = 0; i < cols.size(); i++)
+      sqlitems.add(cols.get(i) + " " + (((Boolean)ascs.get(i)).booleanValue() ? "ASC" : "DESC"));
+    sbSql.append(" ORDER BY ");
+    sbSql.append(StringUtil.buildCommaDelList(sqlitems));
+  }
 }
@@ -99,7 +99,17 @@ public class ReposSearcher
   private IQuery          _query = null;
   private List            _queries = null;
   private MC              _mc = null;
-  private String          _sql = null;
+  private String          _sql = null;          // the SQL last run, or translated for getSQL()
+  private List            _params = null;       // the values bound to _sql
+  private int             _maxRows = 0;
+  // keyset paging
+  private int             _pageSize = 0;
+  private int             _pageNumber = 0;        // 0 until the first page is read
+  private Object[]        _firstKey = null;       // page key of the first row on the current page
+  private Object[]        _lastKey = null;        // page key of the last row on the current page
+  private boolean         _hasNext = false;
+  private boolean         _hasPrevious = false;
+  private int             _rowCount = -1;         // -1 until it is counted
   
   //----------------------------------------------------------------------
   // Public constructor
@@ -111,7 +121,6 @@ public class ReposSearcher
     if (context == null) throw new OculusException("null context");
     _context = context;
     _query = query;
-    _sql = _buildSqlQuery(getQuery()); 
     try {
       _mc = new MC(_context);
     } catch (OculusException ignore) {}
@@ -124,7 +133,6 @@ public class ReposSearcher
     if (context == null) throw new OculusException("null context");
     _context = context;
     _queries = queries;
-    _sql = _buildSqlQuery(_queries); 
     try {
       _mc = new MC(_context);
     } catch (OculusException ignore) {}
@@ -149,13 +157,145 @@ public class ReposSearcher
     return _doQueries(); 
   }
 
+  /**
+  * Runs the query and hands each row to the handler as it is read, instead of
+  * returning a data set.  Returns the number of rows handled.
+  */
+  public int doQuery(IRowHandler handler)
+    throws OculusException
+  {
+    if (_query == null) throw new OculusException("null query");
+    _buildBoundQuery(getQuery());
+    return _streamSqlSearch(_sql, handler);
+  }
+
+  /**
+  * Runs the queries and hands each row to the handler as it is read.
+  */
+  public int doQueries(IRowHandler handler)
+    throws OculusException
+  {
+    if (_queries == null) throw new OculusException("null query");
+    _sql = _buildSqlQuery(getQueries());
+    _params = null;
+    return _streamSqlSearch(_sql, handler);
+  }
+
+  /** Limits the number of rows a search returns.  0 is no limit. */
+  public ReposSearcher setMaxRows(int rows)
+  {
+    _maxRows = rows;
+    return this;
+  }
+
+  public int getMaxRows() { return _maxRows; }
+
+  //----------------------------------------------------------------------
+  // Paging
+  //
+  // A page is read with keyset (seek) paging: the query is sorted by its sort
+  // items and then OBJECTID, and the next page selects the rows that sort after
+  // the last row of the current one, so the database never has to read the
+  // rows of the pages that were skipped.  Only the rows of the page are read,
+  // plus one to tell whether there is another page.  Paging needs a single query.
+  //----------------------------------------------------------------------
+  /** Sets the number of rows in a page. */
+  public ReposSearcher setPageSize(int rows)
+  {
+    _pageSize = Math.max(1, rows);
+    return this;
+  }
+
+  public int getPageSize() { return _pageSize; }
+
+  /** Returns the number of the page last read, starting at 1, or 0 if none has been read. */
+  public int getPageNumber() { return _pageNumber; }
+
+  public boolean hasNextPage() { return _hasNext; }
+
+  public boolean hasPreviousPage() { return _hasPrevious; }
+
+  /** Reads the first page. */
+  public IDataSet firstPage()
+    throws OculusException
+  {
+    return _loadPage(null, false);
+  }
+
+  /**
+  * Reads the page after the one last read.  If there isn't one, an empty page is
+  * returned and the current page stays where it is.
+  */
+  public IDataSet nextPage()
+    throws OculusException
+  {
+    if (_lastKey == null)
+      return firstPage();
+    return _loadPage(_lastKey, false);
+  }
+
+  /**
+  * Reads the page before the one last read.  The first page is read again if there
+  * isn't one.
+  */
+  public IDataSet previousPage()
+    throws OculusException
+  {
+    if (_firstKey == null || _pageNumber <= 1)
+      return firstPage();
+    return _loadPage(_firstKey, true);
+  }
+
+  /**
+  * Returns the number of rows the query returns in all, using a query that only counts
+  * them.  The count is made the first time it is asked for.
+  */
+  public int getRowCount()
+    throws OculusException
+  {
+    if (_rowCount < 0)
+    {
+      QueryToSQL sqler = QueryToSQL.getSQLWriter(_context.getRepository().getVendor(), _context.getRepository().getXMR());
+      String sql = sqler.translateCount(_getPagedQuery());
+      IQueryProcessor stmt = null;
+      IRConnection repConn = _context.getCRM().getDatabaseConnection(_context);
+      try {
+        stmt = repConn.createProcessor();
+        IDataSet data = stmt.retrieve(sql);
+        _rowCount = data.next() ? data.getInt(1) : 0;
+      }
+      finally {
+        if (stmt != null) stmt.close();
+      }
+    }
+    return _rowCount;
+  }
+
+  /** Returns the number of pages the query returns in all. */
+  public int getPageCount()
+    throws OculusException
+  {
+    int size = (_pageSize > 0) ? _pageSize : 1;
+    return (getRowCount() + size - 1) / size;
+  }
   
+  /**
+  * Returns the SQL of the search.  Once the search has been run this is the SQL that
+  * was run, which may have '?' placeholders for the values in getParameters().
+  */
   public String getSQL()
+    throws OculusException
   {
-    
+    if (_sql == null) {
+      _params = null;
+      _sql = (_query != null) ? _buildSqlQuery(getQuery()) : _buildSqlQuery(getQueries());
+    }
     return _sql;
   }
   
+  /** Returns the values bound to the placeholders of getSQL(), or null if it has none. */
+  public List getParameters() { return _params; }
+  
   public IQuery getQuery()
     throws OculusException
   {
@@ -176,7 +316,7 @@ public class ReposSearcher
   private IDataSet _doQuery()
     throws OculusException
   {
-    _sql   = _buildSqlQuery(getQuery());
+    _buildBoundQuery(getQuery());
     return _loadSqlSearch(_sql);
   }
 
@@ -184,6 +324,7 @@ public class ReposSearcher
     throws OculusException
   {
     _sql   = _buildSqlQuery(getQueries());
+    _params = null;
     return _loadSqlSearch(_sql);
   }
   
@@ -199,6 +340,19 @@ public class ReposSearcher
     return retSQL;
   }
   
+  /**
+  * Translates the query with placeholders for its values, from the plan cache if it
+  * has been translated before, and leaves the SQL and values in _sql and _params.
+  */
+  private void _buildBoundQuery(IQuery query)
+    throws OculusException
+  {
+    QueryToSQL sqler = QueryToSQL.getSQLWriter(_context.getRepository().getVendor(), _context.getRepository().getXMR());
+    List params = new Vector();
+    _sql = sqler.translate(query, params);
+    _params = params;
+  }
+  
   private String _buildSqlQuery(List queries)
     throws OculusException
   {
@@ -214,9 +368,12 @@ public class ReposSearcher
     IQueryProcessor stmt = null;
     IRConnection repConn = _context.getCRM().getDatabaseConnection(_context);
     try {
-      stmt = repConn.createProcessor();
+      stmt = repConn.createProcessor().setMaxRows(_maxRows);
       try {
-        data = stmt.retrieve(sql);
+        if (_params == null || _params.isEmpty())
+          data = stmt.retrieve(sql);
+        else
+          data = stmt.retrieve(sql, _params.toArray());
       }
       catch (ORIOException sqlExp) {
         throw new OculusException(sqlExp);
@@ -228,6 +385,103 @@ public class ReposSearcher
     return data;
   }
 
+  private IQuery _getPagedQuery()
+    throws OculusException
+  {
+    if (_query == null) throw new OculusException("Paging needs a single query.");
+    return _query;
+  }
+
+  /** Reads the page after the key, or before it when going backward. */
+  private IDataSet _loadPage(Object[] key, boolean backward)
+    throws OculusException
+  {
+    if (_pageSize <= 0) throw new OculusException("The page size hasn't been set.");
+    IQuery query = _getPagedQuery();
+    List params = new Vector();
+    QueryToSQL sqler = QueryToSQL.getSQLWriter(_context.getRepository().getVendor(), _context.getRepository().getXMR());
+    _sql = sqler.translatePage(query, key, backward, _pageSize + 1, params);
+    _params = params;
+    final BufferedDataSet page = new BufferedDataSet();
+    IQueryProcessor stmt = null;
+    IRConnection repConn = _context.getCRM().getDatabaseConnection(_context);
+    try {
+      stmt = repConn.createProcessor().setMaxRows(_pageSize + 1);
+      stmt.retrieve(_sql, params.toArray(), new IRowHandler() {
+        public boolean handleRow(IDataSet row) throws OculusException
+        {
+          page.addRow(row);
+          return true;
+        }
+      });
+    }
+    finally {
+      if (stmt != null) stmt.close();
+    }
+    boolean more = page.getRowCount() > _pageSize;
+    if (more)
+      page.removeLastRow();
+    if (backward)
+      page.reverse();       // it was read in reverse order
+    int rows = page.getRowCount();
+    if (key == null) {
+      _pageNumber = 1;
+      _hasPrevious = false;
+      _hasNext = more;
+    }
+    else if (rows == 0) {
+      // nothing on that side any more, so stay on the current page
+      if (backward) _hasPrevious = false; else _hasNext = false;
+      return page;
+    }
+    else if (backward) {
+      _pageNumber = more ? Math.max(2, _pageNumber - 1) : 1;
+      _hasPrevious = more;
+      _hasNext = true;
+    }
+    else {
+      _pageNumber++;
+      _hasPrevious = true;
+      _hasNext = more;
+    }
+    if (rows > 0) {
+      int keys = query.getSort().getSortItems().size();
+      _firstKey = _getPageKey(page, 1, keys);
+      _lastKey = _getPageKey(page, rows, keys);
+    }
+    else {
+      _firstKey = null;
+      _lastKey = null;
+    }
+    return page;
+  }
+
+  private Object[] _getPageKey(BufferedDataSet page, int row, int keys)
+    throws OculusException
+  {
+    Object[] key = new Object[keys + 1];
+    for (int i = 0; i < keys; i++)
+      key[i] = page.getValue(row, QueryToSQL.PAGEKEY_PREFIX + (i + 1));
+    key[keys] = page.getValue(row, QueryToSQL.PAGEKEY_ID);
+    return key;
+  }
+
+  private int _streamSqlSearch(String sql, IRowHandler handler)
+    throws OculusException
+  {
+    IQueryProcessor stmt = null;
+    IRConnection repConn = _context.getCRM().getDatabaseConnection(_context);
+    try {
+      stmt = repConn.createProcessor().setMaxRows(_maxRows);
+      if (_params == null || _params.isEmpty())
+        return stmt.retrieve(sql, handler);
+      return stmt.retrieve(sql, _params.toArray(), handler);
+    }
+    finally {
+      if (stmt != null) stmt.close();
+    }
+  }
+
 
   public String toString()
   {
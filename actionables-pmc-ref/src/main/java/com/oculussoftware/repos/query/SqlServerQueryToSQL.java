@@ -38,4 +38,15 @@ public class SqlServerQueryToSQL extends QueryToSQL
   {
   }
   
+  //-------------------------------------------------------------
+  // Protected instance methods
+  //-------------------------------------------------------------
+  protected void _doRowLimitTop(StringBuffer sbSql, int rows)
+  {
+    sbSql.append(" TOP " + rows + " ");
+  }
+  
+  /** SQL Server sorts NULLs as if they were smaller than any value. */
+  protected boolean _nullsSortHigh() { return false; }
+  
 }
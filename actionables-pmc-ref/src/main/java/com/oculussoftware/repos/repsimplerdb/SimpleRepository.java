@@ -186,6 +186,7 @@ import com.oculussoftware.api.busi.*;
 import com.oculussoftware.system.*;
 import com.oculussoftware.repos.xmeta.*;
 import com.oculussoftware.repos.util.SequentialIID;
+import com.oculussoftware.repos.util.BlockIIDAllocator;
 import com.oculussoftware.util.*;
 import com.oculussoftware.service.log.LogService;
   
@@ -216,6 +217,7 @@ public class SimpleRepository implements IRepository, IPoolable
   private static String _driver = null;
   private static DBVendor _vendor = null;
   private static boolean _initworked = false;
+  private static BlockIIDAllocator _idAllocator = null;
   
   //added by Cuihua
   private static int _major = 0;
@@ -227,6 +229,9 @@ public class SimpleRepository implements IRepository, IPoolable
   static {
     try {
       _initDBConnParms();
+      _idAllocator = new BlockIIDAllocator(new BlockIIDAllocator.BlockSource() {
+          public long reserve(int size) throws OculusException { return _reserveIDs(size); }
+        }, _getIDBlockSize());
       _initworked = true;
     }
     catch (Exception ex) {
@@ -256,6 +261,7 @@ public class SimpleRepository implements IRepository, IPoolable
   private static final String COL_MAXID = "MAXID";
   private static final String COL_CLASSCODE = "CLASSCODE";
   private static final long MIN_USER_OID = 10000L;
+  private static final int DEFAULT_ID_BLOCK_SIZE = 100;
   
   public String getFullReleaseString()
   {
@@ -372,51 +378,86 @@ public class SimpleRepository implements IRepository, IPoolable
     return sgenReposID();
   }
   
-  /** Important method called by all object creation logic to get next available oid. */
-  public static synchronized IIID sgenReposID() 
+  /** 
+  * Important method called by all object creation logic to get next available oid.  Ids
+  * come out of blocks of <code>obj.Repository.idBlockSize</code> ids that are reserved in
+  * the MAXCLASSID table ahead of time, so only one call per block goes to the database.
+  */
+  public static IIID sgenReposID() 
     throws OculusException
   {
     if (!_initworked) throw new OculusException("Repository init failed.  See log file.");
-    IIID retVal = null;
-//    IRConnection repConn = getCRM().getDatabaseConnection(getObjectContext());
-    
+    return new SequentialIID(_idAllocator.nextID());
+  }
+  
+  /**
+  * Reserves <code>count</code> consecutive oids and returns the first one.  Bulk
+  * operations use this to number many new objects with a single database round-trip.
+  */
+  public long genReposIDRange(int count)
+    throws OculusException
+  {
+    if (!_initworked) throw new OculusException("Repository init failed.  See log file.");
+    return _idAllocator.reserveRange(count);
+  }
+  
+  /**
+  * Moves the REPOS row of MAXCLASSID forward by <code>size</code> and returns the new
+  * maximum.  The UPDATE is done first so that the row stays locked until the commit;
+  * that way two VMs sharing the database can never be handed the same range.
+  */
+  private static synchronized long _reserveIDs(int size)
+    throws OculusException
+  {
     // Use new connection since using current IObjectContext would hold a lock
     // on the MAXCLASSID table until transaction was commited.
     Connection conn = null;
+    long retVal = 0;
     try {
       conn = _getSysConn();
       Statement stmt = conn.createStatement();
       try {
-        String query = "SELECT "+COL_MAXID+" FROM MAXCLASSID WHERE "+COL_CLASSCODE+" = '"+KEY_REPOS+"'";
+        String query = "UPDATE MAXCLASSID SET "+COL_MAXID+" = "+COL_MAXID+" + "+size+" WHERE "+COL_CLASSCODE+" = '"+KEY_REPOS+"'";
+        if (stmt.executeUpdate(query) != 1 ) {
+          conn.rollback();
+          throw new OculusException("genReposID() failed to update 1 and only 1 row.");
+        }
+        query = "SELECT "+COL_MAXID+" FROM MAXCLASSID WHERE "+COL_CLASSCODE+" = '"+KEY_REPOS+"'";
         ResultSet results = stmt.executeQuery(query);
-        if (!results.next())
+        if (!results.next()) {
+          conn.rollback();
           throw new OculusException("Could not find row for CLASSCODE='"+KEY_REPOS+"' in MAXCLASSID table.");
-          
-        long currmax = results.getLong(COL_MAXID);
-        currmax++;
-        query = "UPDATE MAXCLASSID SET "+COL_MAXID+" = " + currmax + " WHERE "+COL_CLASSCODE+" = '"+KEY_REPOS+"'";
-        
-        if (stmt.executeUpdate(query) != 1 )
-          throw new OculusException("genReposID() failed to update 1 and only 1 row.");
-        retVal = new SequentialIID(currmax);
+        }
+        retVal = results.getLong(COL_MAXID);
+        if (results.wasNull()) {                 // freshly inserted row; MAXID + size is still NULL
+          results.close();
+          retVal = size;
+          stmt.executeUpdate("UPDATE MAXCLASSID SET "+COL_MAXID+" = "+retVal+" WHERE "+COL_CLASSCODE+" = '"+KEY_REPOS+"'");
+        }
         conn.commit();
-//        conn.close();
       }
       finally {
         if (stmt != null) 
           stmt.close();
       }
     }
-    catch (ORIOException sqlExp)
-    {
-      throw new OculusException(sqlExp);
-    }
     catch(SQLException ex) {
       throw new OculusException(ex);
     }
     return retVal;
   }
   
+  /** Reads the id block size from the directory. */
+  private static int _getIDBlockSize()
+  {
+    try {
+      return Integer.parseInt(((String)_directory.getValue("idBlockSize", "Repository")).trim());
+    }
+    catch (Exception ex) {
+      return DEFAULT_ID_BLOCK_SIZE;
+    }
+  }
+  
   public IIID makeReposID(long id) throws ORIOException
   {
     return new SequentialIID(id);
@@ -580,6 +621,7 @@ public class SimpleRepository implements IRepository, IPoolable
             throw new OculusException("setMaxOID() failed to update 1 and only 1 row.  Query="+query+"");
           }
           conn.commit();
+          _idAllocator.reset();           // the rest of our current block may now be below MAXID
         }
         finally {
           stmt.close();
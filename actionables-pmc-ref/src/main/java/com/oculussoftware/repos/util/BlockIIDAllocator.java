@@ -0,0 +1,125 @@
+package com.oculussoftware.repos.util;
+
+import com.oculussoftware.api.sysi.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Hands out object ids from blocks that are reserved in the repository ahead of time.
+* Reserving a block moves the repository's high-water mark past the whole block before
+* any id in it is used, so a restart (or a second VM sharing the repository) can only
+* leave gaps; it can never hand out an id twice.  Within a block ids are handed out
+* from memory with a single atomic increment, and only the thread that finds the block
+* used up goes back to the repository for the next one.
+*/
+public class BlockIIDAllocator
+{
+  //---------------------------------
+  // Public inner interfaces
+  //---------------------------------
+  /** Reserves ids in the backing store. */
+  public interface BlockSource
+  {
+    /** Atomically advances the high-water mark by <code>size</code> and returns the new
+    * mark.  The caller owns the ids <code>(mark - size, mark]</code>. */
+    public long reserve(int size) throws OculusException;
+  }
+
+  //---------------------------------
+  // Private instance variables
+  //---------------------------------
+  private final BlockSource _source;
+  private final int _blockSize;
+  private volatile Block _block = new Block(1, 0);      // starts out used up
+  private final Object _refillLock = new Object();
+
+  private final AtomicLong _idsIssued = new AtomicLong();
+  private final AtomicLong _blocksReserved = new AtomicLong();
+
+  //---------------------------------
+  // Public constructors
+  //---------------------------------
+  public BlockIIDAllocator(BlockSource source, int blockSize)
+  {
+    if (source == null) throw new IllegalArgumentException("BlockSource required.");
+    _source = source;
+    _blockSize = Math.max(1, blockSize);
+  }
+
+  //---------------------------------
+  // Public instance methods
+  //---------------------------------
+  /** Returns the next unused id. */
+  public long nextID()
+    throws OculusException
+  {
+    while (true)
+    {
+      Block block = _block;
+      long id = block.next.getAndIncrement();
+      if (id <= block.last)
+      {
+        _idsIssued.incrementAndGet();
+        return id;
+      }
+      synchronized (_refillLock)
+      {
+        if (_block == block)                         // nobody refilled it while we waited
+        {
+          long last = _source.reserve(_blockSize);
+          _blocksReserved.incrementAndGet();
+          _block = new Block(last - _blockSize + 1, last);
+        }
+      }
+    }
+  }
+
+  /** Reserves <code>count</code> consecutive ids directly from the source, bypassing the
+  * current block, and returns the first one.  This is for bulk operations that want to
+  * number many new rows at once. */
+  public long reserveRange(int count)
+    throws OculusException
+  {
+    if (count < 1) throw new OculusException("Cannot reserve a range of "+count+" ids.");
+    long last;
+    synchronized (_refillLock)
+    {
+      last = _source.reserve(count);
+      _blocksReserved.incrementAndGet();
+    }
+    _idsIssued.addAndGet(count);
+    return last - count + 1;
+  }
+
+  /** Throws away the rest of the current block.  Use this whenever the high-water mark
+  * in the repository is moved by something other than this allocator. */
+  public void reset()
+  {
+    synchronized (_refillLock)
+    {
+      _block = new Block(1, 0);
+    }
+  }
+
+  public int getBlockSize() { return _blockSize; }
+  public long getIDsIssued() { return _idsIssued.get(); }
+  public long getBlocksReserved() { return _blocksReserved.get(); }
+
+  public String toString()
+  {
+    return "BlockIIDAllocator[blockSize="+_blockSize+", issued="+getIDsIssued()+", blocks="+getBlocksReserved()+"]";
+  }
+
+  //---------------------------------
+  // Private inner classes
+  //---------------------------------
+  private static class Block
+  {
+    final AtomicLong next;
+    final long last;
+    Block(long first, long last)
+    {
+      this.next = new AtomicLong(first);
+      this.last = last;
+    }
+  }
+}
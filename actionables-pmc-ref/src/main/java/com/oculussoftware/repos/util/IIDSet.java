@@ -0,0 +1,167 @@
+package com.oculussoftware.repos.util;
+
+import com.oculussoftware.api.repi.IIID;
+import com.oculussoftware.util.*;
+
+import java.util.*;
+
+/**
+* A SortedSet of SequentialIIDs in id order, which is how a TreeSet orders them, kept as a
+* LongSortedSet of their ids instead of a tree of objects.  The IIDs handed out by the
+* iterator are made from the ids as they are needed.
+*
+* <P>If anything other than a SequentialIID is added, the set turns into an ordinary TreeSet
+* of its items, so it still behaves the way a TreeSet would.</P>
+*
+* <P>The headSet(), tailSet() and subSet() of this set are copies, not views.</P>
+*/
+public class IIDSet extends AbstractSet implements SortedSet
+{
+  //---------------------------------
+  // Private instance variables
+  //---------------------------------
+  private LongSortedSet _ids = new LongSortedSet();
+  private TreeSet _items = null;                 // used instead of _ids once something else is added
+
+  //---------------------------------
+  // Public constructors
+  //---------------------------------
+  public IIDSet()
+  {
+  }
+
+  public IIDSet(Collection items)
+  {
+    addAll(items);
+  }
+
+  //---------------------------------
+  // Public instance methods
+  //---------------------------------
+  /** Returns the ids of the set in ascending order, or null if it holds more than IIDs. */
+  public LongSortedSet getIDs()
+  {
+    return (_items == null) ? _ids : null;
+  }
+
+  public boolean add(Object item)
+  {
+    if (_items == null)
+    {
+      if (item != null && item.getClass() == SequentialIID.class)
+        return _ids.add(((IIID)item).getLongValue());
+      _convert();
+    }
+    return _items.add(item);
+  }
+
+  public boolean addAll(Collection items)
+  {
+    if (_items == null && items instanceof IIDSet && ((IIDSet)items).getIDs() != null)
+      return _ids.addAll(((IIDSet)items).getIDs());
+    return super.addAll(items);
+  }
+
+  public boolean retainAll(Collection items)
+  {
+    if (_items == null && items instanceof IIDSet && ((IIDSet)items).getIDs() != null)
+      return _ids.retainAll(((IIDSet)items).getIDs());
+    return super.retainAll(items);
+  }
+
+  public boolean remove(Object item)
+  {
+    if (_items != null)
+      return _items.remove(item);
+    return (item instanceof IIID) && _ids.remove(((IIID)item).getLongValue());
+  }
+
+  public boolean contains(Object item)
+  {
+    if (_items != null)
+      return _items.contains(item);
+    return (item instanceof IIID) && _ids.contains(((IIID)item).getLongValue());
+  }
+
+  public int size()
+  {
+    return (_items != null) ? _items.size() : _ids.size();
+  }
+
+  public void clear()
+  {
+    _ids = new LongSortedSet();
+    _items = null;
+  }
+
+  public Iterator iterator()
+  {
+    if (_items != null)
+      return _items.iterator();
+    return new Iterator()
+    {
+      private int _next = 0;
+      private boolean _canRemove = false;
+
+      public boolean hasNext() { return _next < _ids.size(); }
+
+      public Object next()
+      {
+        if (_next >= _ids.size())
+          throw new NoSuchElementException();
+        _canRemove = true;
+        return new SequentialIID(_ids.get(_next++));
+      }
+
+      public void remove()
+      {
+        if (!_canRemove)
+          throw new IllegalStateException();
+        _canRemove = false;
+        _ids.removeAt(--_next);
+      }
+    };
+  }
+
+  //---------------------------------
+  // SortedSet methods
+  //---------------------------------
+  public Comparator comparator()
+  {
+    return null;
+  }
+
+  public Object first()
+  {
+    if (_items != null)
+      return _items.first();
+    if (_ids.isEmpty())
+      throw new NoSuchElementException();
+    return new SequentialIID(_ids.get(0));
+  }
+
+  public Object last()
+  {
+    if (_items != null)
+      return _items.last();
+    if (_ids.isEmpty())
+      throw new NoSuchElementException();
+    return new SequentialIID(_ids.get(_ids.size()-1));
+  }
+
+  public SortedSet headSet(Object toElement) { return new TreeSet(this).headSet(toElement); }
+  public SortedSet tailSet(Object fromElement) { return new TreeSet(this).tailSet(fromElement); }
+  public SortedSet subSet(Object fromElement, Object toElement) { return new TreeSet(this).subSet(fromElement, toElement); }
+
+  //---------------------------------
+  // Private instance methods
+  //---------------------------------
+  private void _convert()
+  {
+    TreeSet items = new TreeSet();
+    for (int i = 0; i < _ids.size(); i++)
+      items.add(new SequentialIID(_ids.get(i)));
+    _items = items;
+    _ids = null;
+  }
+}
@@ -60,8 +60,7 @@ public class SequentialIID implements IIID, Comparable
  //override Object hashcode
  public int hashCode()
  {
-   Long l = new Long(_id);
-   return l.hashCode();
+   return (int)(_id ^ (_id >>> 32));     // same as Long.hashCode(), without making a Long
  }
   //---------------------------------
   // Private Class methods
@@ -148,14 +148,16 @@ import java.util.*;
 public class XMR implements IXMR
 {
   private static IXMR _instance = null;
-  // hashes for various types of meta objects...
-  private static Map _classes = new HashMap();  
-  private static Map _attrs = new HashMap();  
-  private static Map _assocs = new HashMap();  
+  // hashes for various types of meta objects...  getAttr() fills _attrs from request
+  // threads, so they are synchronized
+  private static SynchronizedLongObjectMap _classes = new SynchronizedLongObjectMap();  // keyed by IID
+  private static SynchronizedLongObjectMap _attrs = new SynchronizedLongObjectMap();  
+  private static SynchronizedLongObjectMap _assocs = new SynchronizedLongObjectMap();  
   private static Map _attrRefs = new HashMap();
   private static Map _queryChains = new HashMap();  // map of Lists (key=IXClass)
   private static Map _keywordAssocChains = new HashMap();
   private static Map _classAttrAscIndex = new HashMap();
+  private static long _version = 0;                 // bumped whenever the meta data changes
   
   //-------------------------------------------------------------------
   // Public constants and static methods
@@ -171,9 +173,19 @@ public class XMR implements IXMR
     return _instance;  
   }
   
+  /**
+  * Returns a number that changes whenever the meta data changes, so that anything
+  * worked out from it, such as translated queries, can tell it is out of date.
+  */
+  public static synchronized long getVersion() { return _version; }
+  
+  /** Called when the meta data has changed, for example when an attribute is saved. */
+  public static synchronized void metadataChanged() { _version++; }
+  
   /***/
   public static void addQueryAssocChain(IXClass cls, IXAssoc[] assocs)
   {
+    metadataChanged();
     List chains = null;
     if (!_queryChains.containsKey(cls)) 
     {
@@ -186,6 +198,7 @@ public class XMR implements IXMR
   /***/
   public static void addKeywordAssocChain(IXClass cls, IXAssoc[] assocs)
   {
+    metadataChanged();
     List chains = null;
     if (!_keywordAssocChains.containsKey(cls)) 
     {
@@ -197,27 +210,30 @@ public class XMR implements IXMR
   
   static void addClass(IXClass cls)
   {
-    _classes.put(new Long(cls.getIID().getLongValue()), cls);
+    metadataChanged();
+    _classes.put(cls.getIID().getLongValue(), cls);
   }
   static void addAttr(IXClassAttr attr)
   {
-    Long key = new Long(attr.getIID().getLongValue());
+    metadataChanged();
+    long key = attr.getIID().getLongValue();
     // First in wins.  if key is already there, ignore it.  This
     // will happen in the case where a CANNED attrs is statically
     // declared, but is also in the dynamic Attribute table because
     // the user must be able to control attr group and position in form.
-    if (_attrs.get(key) == null)
-      _attrs.put(key, attr);
+    _attrs.putIfAbsent(key, attr);
   }
   static void addAssoc(IXAssoc assoc)
   {
-    _assocs.put(new Long(assoc.getIID().getLongValue()), assoc);
+    metadataChanged();
+    _assocs.put(assoc.getIID().getLongValue(), assoc);
   }
   
   // JKC 9/9/2000 Class attr assoc stuff added to hold info that is assoc-specific.
   
   static void addClassAttrAsc(ClassAttrAscMeta caa)
   {
+    metadataChanged();
     _classAttrAscIndex.put(classAttrKey(caa.getClassID(), caa.getAttrID()), caa);
   }
   
@@ -396,7 +412,7 @@ public class XMR implements IXMR
     return retList;
 	}
   
-  private IXClassAttr _getFromAttrCache(Long lid)
+  private IXClassAttr _getFromAttrCache(long lid)
   {
     IXClassAttr retObj = null;
     retObj = (IXClassAttr) _attrs.get(lid);
@@ -408,7 +424,7 @@ public class XMR implements IXMR
   {
     MC mc = new MC(context);
     IXClassAttr retObj = null;
-    Long lid = new Long(id);
+    long lid = id;
     try {
       retObj = _getFromAttrCache(lid);
       if (retObj == null) {
@@ -432,7 +448,7 @@ public class XMR implements IXMR
         else {
           throw new OculusException("Attribute id '"+id+"' not found as an Attribute or a Role.");
         }
-        _attrs.put(lid, retObj);
+        retObj = (IXClassAttr) _attrs.putIfAbsent(lid, retObj);
       }
     }
     catch (Exception ex) {
@@ -446,14 +462,14 @@ public class XMR implements IXMR
     throws OculusException
   {
     IXClassAttr retObj = null;
-    Long lid = new Long(rattr.getIID().getLongValue());
+    long lid = rattr.getIID().getLongValue();
     try {
       retObj = (IXClassAttr) _attrs.get(lid);
       if (retObj == null) {
         if (rattr != null) {
           retObj = new ClassAttrMeta(rattr);
         }
-        _attrs.put(lid, retObj);
+        retObj = (IXClassAttr) _attrs.putIfAbsent(lid, retObj);
       }
     }
     catch (Exception ex) {
@@ -490,7 +506,7 @@ public class XMR implements IXMR
   {
     IXClass retObj = null;
     try {
-      retObj = (IXClass) _classes.get(new Long(id));
+      retObj = (IXClass) _classes.get(id);
     }
     catch (Exception ex) {
       throw new OculusException(ex);
@@ -504,7 +520,7 @@ public class XMR implements IXMR
   {
     IXAssoc retObj = null;
     try {
-      retObj = (IXAssoc) _assocs.get(new Long(id));
+      retObj = (IXAssoc) _assocs.get(id);
     }
     catch (Exception ex) {
       throw new OculusException(ex);
@@ -32,7 +32,8 @@ public class AlertThread extends Thread
   * Change Activity
   *
   * Issue number    Programmer      Date        Description
-  *
+  * ---                                         Runs inside an identity scope so the enumerations and literals
+  *                                             looked up for each feature are only fetched once.
   */
   private IObjectContext _context;
   
@@ -44,6 +45,7 @@ public class AlertThread extends Thread
   
 	public void run()
   {
+    IdentityMap.open();
     try
     {    
       IUserColl users = (IUserColl)_context.getCRM().getCompObject(_context,"UserColl",IDCONST.USERCOLL.getIIDValue());
@@ -80,6 +82,7 @@ public class AlertThread extends Thread
       
     }//end try
     catch(Throwable exc) { LogService.getInstance().write(exc);}
+    finally { IdentityMap.close(); }
   }//end run
   
   /**
@@ -0,0 +1,297 @@
+package com.oculussoftware.service.log;
+
+import com.oculussoftware.system.*;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+* Filename:    AsyncLogWriter.java
+* Date:
+* Description: Appends log entries to a file from a single background thread.
+*
+* <P>write() only puts the entry on a bounded queue, so the caller never waits on the
+* disk.  A daemon thread takes the entries off the queue and writes them through one
+* BufferedWriter that stays open, flushing whenever the queue runs dry and at least
+* every "flushMillis".  The file is rotated once it grows past "maxFileSize" bytes or
+* is older than "rotateHours"; the old file is renamed with a time stamp and only the
+* newest "maxBackups" of those are kept.</P>
+*
+* <P>When the queue is full, POLICY_DROP throws the entry away and counts it, and
+* POLICY_BLOCK makes the caller wait for room.  Whatever is still queued is written
+* when the VM shuts down.</P>
+*
+* <P>The settings are read from the directory entry named when the writer is created.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class AsyncLogWriter
+{
+  /** Throw the entry away if the queue is full. */
+  public static final int POLICY_DROP = 0;
+  /** Wait for room if the queue is full. */
+  public static final int POLICY_BLOCK = 1;
+
+  public static final int  DEFAULT_QUEUE_SIZE = 10000;
+  public static final long DEFAULT_MAX_FILE_SIZE = 10L * 1024 * 1024;
+  public static final int  DEFAULT_ROTATE_HOURS = 24;
+  public static final int  DEFAULT_MAX_BACKUPS = 5;
+  public static final int  DEFAULT_FLUSH_MILLIS = 1000;
+
+  //------------------------ Private Instance Variables ------------------------------------
+  private volatile String _path;
+  private int  _policy;
+  private int  _queueSize;
+  private long _maxFileSize;
+  private long _rotateMillis;
+  private int  _maxBackups;
+  private long _flushNanos;
+
+  private final ConcurrentLinkedQueue _queue = new ConcurrentLinkedQueue();
+  private final AtomicInteger _queued = new AtomicInteger();
+  private final AtomicLong _written = new AtomicLong();
+  private final AtomicLong _dropped = new AtomicLong();
+  private final AtomicLong _rotations = new AtomicLong();
+  private final Object _drainLock = new Object();    // held while entries go to the file
+
+  private Thread _thread = null;
+  private Writer _out = null;
+  private String _openPath = null;
+  private long   _openSize = 0;
+  private long   _openedAt = 0;
+
+  //------------------------ Public Constructors ------------------------------------
+  /**
+  * @param path the file to append to.
+  * @param section the directory entry the settings are read from.
+  * @param policy what to do when the queue is full, if the directory doesn't say.
+  */
+  public AsyncLogWriter(String path, String section, int policy)
+  {
+    _path = path;
+    _queueSize = (int)_getSetting(section, "queueSize", DEFAULT_QUEUE_SIZE);
+    _maxFileSize = _getSetting(section, "maxFileSize", DEFAULT_MAX_FILE_SIZE);
+    _rotateMillis = _getSetting(section, "rotateHours", DEFAULT_ROTATE_HOURS) * 60L * 60L * 1000L;
+    _maxBackups = (int)_getSetting(section, "maxBackups", DEFAULT_MAX_BACKUPS);
+    _flushNanos = _getSetting(section, "flushMillis", DEFAULT_FLUSH_MILLIS) * 1000000L;
+    _policy = (int)_getSetting(section, "policy", policy);
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  public void setPath(String path) { _path = path; }
+  public String getPath() { return _path; }
+
+  /**
+  * Queues the text to be appended to the file.  If the queue is full the text is
+  * dropped or the caller waits, depending on the policy.
+  */
+  public void write(String text)
+  {
+    if (text == null)
+      return;
+    _ensureStarted();
+    while (true)
+    {
+      int queued = _queued.get();
+      if (queued < _queueSize)
+      {
+        if (_queued.compareAndSet(queued, queued + 1))
+          break;
+        continue;
+      }
+      if (_policy != POLICY_BLOCK || Thread.currentThread() == _thread)
+      {
+        _dropped.incrementAndGet();
+        return;
+      }
+      LockSupport.unpark(_thread);
+      LockSupport.parkNanos(1000000L);
+    }
+    _queue.offer(text);
+    if (_queued.get() == 1)
+      LockSupport.unpark(_thread);
+  }
+
+  /**
+  * Writes the text straight to the file on the caller's thread, after anything that
+  * is already queued.
+  */
+  public void writeNow(String text)
+  {
+    synchronized (_drainLock)
+    {
+      _drain();
+      _append(text);
+      _flush();
+    }
+  }
+
+  /** Writes everything that is queued and flushes the file. */
+  public void flush()
+  {
+    synchronized (_drainLock)
+    {
+      _drain();
+      _flush();
+    }
+  }
+
+  public int getQueuedCount() { return _queued.get(); }
+  public long getWrittenCount() { return _written.get(); }
+  public long getDroppedCount() { return _dropped.get(); }
+  public long getRotationCount() { return _rotations.get(); }
+
+  public String toString()
+  {
+    return "AsyncLogWriter[path="+_path+", queued="+getQueuedCount()+", written="+getWrittenCount()+
+           ", dropped="+getDroppedCount()+", rotations="+getRotationCount()+"]";
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private static long _getSetting(String section, String name, long def)
+  {
+    try
+    {
+      return Long.parseLong(((String)SimpleDirectory.getInstance().getValue(name,section)).trim());
+    }
+    catch (Exception ignore) { return def; }
+  }
+
+  private synchronized void _ensureStarted()
+  {
+    if (_thread != null)
+      return;
+    _thread = new Thread("AsyncLogWriter " + _path) {
+      public void run()
+      {
+        while (true)
+        {
+          if (_queued.get() == 0)
+          {
+            synchronized (_drainLock) { _flush(); }
+            LockSupport.parkNanos(_flushNanos);
+          }
+          synchronized (_drainLock) { _drain(); }
+        }
+      }
+    };
+    _thread.setDaemon(true);
+    _thread.start();
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      public void run() { flush(); }
+    });
+  }
+
+  /** Caller holds _drainLock. */
+  private void _drain()
+  {
+    for (Object text = _queue.poll(); text != null; text = _queue.poll())
+    {
+      _queued.decrementAndGet();
+      _append((String)text);
+    }
+  }
+
+  /** Caller holds _drainLock. */
+  private void _append(String text)
+  {
+    try
+    {
+      Writer out = _open();
+      if (out == null)
+      {
+        _dropped.incrementAndGet();
+        return;
+      }
+      out.write(text);
+      _openSize += text.length();
+      _written.incrementAndGet();
+    }
+    catch (IOException ex)
+    {
+      _dropped.incrementAndGet();
+      _close();
+    }
+  }
+
+  /** Caller holds _drainLock. */
+  private void _flush()
+  {
+    try
+    {
+      if (_out != null)
+        _out.flush();
+    }
+    catch (IOException ex)
+    {
+      _close();
+    }
+  }
+
+  /** Returns the open file, opening or rotating it first if need be.  Caller holds _drainLock. */
+  private Writer _open()
+    throws IOException
+  {
+    String path = _path;
+    if (_out != null && path.equals(_openPath))
+    {
+      boolean tooBig = (_maxFileSize > 0 && _openSize >= _maxFileSize);
+      boolean tooOld = (_rotateMillis > 0 && System.currentTimeMillis() - _openedAt >= _rotateMillis);
+      if (!tooBig && !tooOld)
+        return _out;
+      _close();
+      _rotate(new File(path));
+    }
+    else
+      _close();
+
+    File file = new File(path);
+    _out = new BufferedWriter(new FileWriter(path, true));
+    _openPath = path;
+    _openSize = file.length();
+    _openedAt = System.currentTimeMillis();
+    return _out;
+  }
+
+  private void _close()
+  {
+    try
+    {
+      if (_out != null)
+        _out.close();
+    }
+    catch (IOException ignore) { }
+    _out = null;
+    _openPath = null;
+  }
+
+  /** Renames the file with a time stamp and drops the oldest backups. */
+  private void _rotate(File file)
+  {
+    String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    File backup = new File(file.getPath() + "." + stamp);
+    for (int i = 1; backup.exists(); i++)
+      backup = new File(file.getPath() + "." + stamp + "-" + i);
+    if (!file.renameTo(backup))
+      return;
+    _rotations.incrementAndGet();
+
+    File dir = file.getAbsoluteFile().getParentFile();
+    final String prefix = file.getName() + ".";
+    String[] names = (dir == null) ? null : dir.list(new FilenameFilter() {
+      public boolean accept(File d, String name) { return name.startsWith(prefix); }
+    });
+    if (names == null || names.length <= _maxBackups)
+      return;
+    Arrays.sort(names);                        // the time stamps sort oldest first
+    for (int i = 0; i < names.length - _maxBackups; i++)
+      new File(dir, names[i]).delete();
+  }
+}
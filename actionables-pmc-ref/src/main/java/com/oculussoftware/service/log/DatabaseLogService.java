@@ -22,25 +22,28 @@ public final class DatabaseLogService implements ILogService
   * Change Activity
   *
   * Issue number    Programmer      Date        Description
+  * ---                                         Statements are appended by an AsyncLogWriter instead of
+  *                                             opening the file for each one.
   *
   */
   
   private static DatabaseLogService _logservice;
   
-  private String _fullpath;
+  private AsyncLogWriter _writer;
     
   /**
   * private constructor
   */
   private DatabaseLogService()
   {
-    _fullpath = "../dblog.log";
+    // every statement is logged, so drop entries rather than hold up the queries
+    _writer = new AsyncLogWriter("../dblog.log", "DatabaseLogService", AsyncLogWriter.POLICY_DROP);
   }//
   
   /**
   * singleton
   */
-  public static DatabaseLogService getInstance()
+  public static synchronized DatabaseLogService getInstance()
   {
     if(_logservice == null)
       _logservice = new DatabaseLogService();
@@ -48,10 +51,14 @@ public final class DatabaseLogService implements ILogService
   }//
   
   public ILogService setFullPath(String path)
-  { _fullpath = path; return this; }
+  { _writer.setPath(path); return this; }
   
   public String getFullPath()
-  { return _fullpath; }
+  { return _writer.getPath(); }
+  
+  /** Returns the writer, for its counters. */
+  public AsyncLogWriter getLogWriter()
+  { return _writer; }
   
   
   /**
@@ -69,25 +76,12 @@ public final class DatabaseLogService implements ILogService
   {
     if (LogManager.getInstance().DATABASELOGGING)
     {
-      PrintWriter out = getWriter();
-      out.println(str+" GO \r\n");
-      out.flush();
-      out.close();
+      String entry = str+" GO \r\n"+System.getProperty("line.separator");
+      if (LogManager.getInstance().ASYNCLOGGING)
+        _writer.write(entry);
+      else
+        _writer.writeNow(entry);
     }
     return this;
   }
-  
-  /**
-  *
-  */
-  private PrintWriter getWriter()
-  {
-    PrintWriter out = null;
-    try
-    {
-      out = new PrintWriter(new FileWriter(_fullpath,true));
-    }//end try
-    catch(IOException ignored) {}
-    return out;
-  }//
 }//end Utils
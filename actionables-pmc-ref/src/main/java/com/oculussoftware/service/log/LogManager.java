@@ -22,12 +22,14 @@ public final class LogManager
   * Change Activity
   *
   * Issue number    Programmer      Date        Description
+  * ---                                         Added ASYNCLOGGING.
   *
   */
   
   private static LogManager _logManager;
   public boolean ERRORLOGGING = true;
   public boolean DATABASELOGGING = true;
+  public boolean ASYNCLOGGING = true;       // false writes each entry on the caller's thread
   
   /**
   * private constructor
@@ -22,25 +22,28 @@ public final class LogService implements ILogService
   * Change Activity
   *
   * Issue number    Programmer      Date        Description
+  * ---                                         Entries are appended by an AsyncLogWriter instead of
+  *                                             opening the file for each one.
   *
   */
   
   private static LogService _logservice;
   
-  private String _fullpath;
+  private AsyncLogWriter _writer;
     
   /**
   * private constructor
   */
   private LogService()
   {
-    _fullpath = "../pmlog.log";
+    // errors are worth waiting for, so callers block rather than lose them
+    _writer = new AsyncLogWriter("../pmlog.log", "LogService", AsyncLogWriter.POLICY_BLOCK);
   }//
   
   /**
   * singleton
   */
-  public static LogService getInstance()
+  public static synchronized LogService getInstance()
   {
     if(_logservice == null)
       _logservice = new LogService();
@@ -48,11 +51,14 @@ public final class LogService implements ILogService
   }//
   
   public ILogService setFullPath(String path)
-  { _fullpath = path; return this; }
+  { _writer.setPath(path); return this; }
   
   public String getFullPath()
-  { return _fullpath; }
+  { return _writer.getPath(); }
   
+  /** Returns the writer, for its counters. */
+  public AsyncLogWriter getLogWriter()
+  { return _writer; }
   
   /**
   *
@@ -61,12 +67,13 @@ public final class LogService implements ILogService
   {
     if (LogManager.getInstance().ERRORLOGGING)
     {
-      PrintWriter out = getWriter();
+      StringWriter sw = new StringWriter();
+      PrintWriter out = new PrintWriter(sw);
       writeHeader(out);
       exc.printStackTrace(out);
       writeFooter(out);
       out.flush();
-      out.close();
+      send(sw.toString());
     }
     return this;
   }//
@@ -78,16 +85,28 @@ public final class LogService implements ILogService
   {
     if (LogManager.getInstance().ERRORLOGGING)
     {
-      PrintWriter out = getWriter();
+      StringWriter sw = new StringWriter();
+      PrintWriter out = new PrintWriter(sw);
       writeHeader(out);
       out.println(str);
       writeFooter(out);
       out.flush();
-      out.close();
+      send(sw.toString());
     }
     return this;
   }
   
+  /**
+  *
+  */
+  private void send(String entry)
+  {
+    if (LogManager.getInstance().ASYNCLOGGING)
+      _writer.write(entry);
+    else
+      _writer.writeNow(entry);
+  }
+  
   /**
   *
   */
@@ -108,18 +127,5 @@ public final class LogService implements ILogService
     out.println("/////////////////////////////////////////////////////////////");
     out.println();
   }//
-  
-  /**
-  *
-  */
-  private PrintWriter getWriter()
-  {
-    PrintWriter out = null;
-    try
-    {
-      out = new PrintWriter(new FileWriter(_fullpath,true));
-    }//end try
-    catch(IOException ignored) {}
-    return out;
-  }//
+
 }//end Utils
\ No newline at end of file
@@ -20,7 +20,7 @@ import java.util.*;
 * Change Activity
 *
 * Issue number    Programmer      Date        Description
-*
+* ---                                         Reads only the two columns it uses, and looks each user up once.
 */
 
 public class UserLogEntryList implements IUserLogEntryList {
@@ -50,25 +50,30 @@ protected void getLoadQueryAndLoad() throws OculusException
 	{
 		IRConnection repConn = _context.getRepository().getDataConnection(_context);
 		stmt = repConn.createProcessor();
-		String query = "SELECT * FROM USERLOG ORDER BY DATE"; //"Select " + COL_LOGINID +" from " + TABLE + " where "+ COL_OBJECTID + " <> " + _iid.getLongValue() + " AND "  + COL_DELETESTATE + "<>" + DeleteState.DELETED.getIntValue() + " AND " + COL_LOGINID + " IS NOT NULL"; 
-		IDataSet ds = stmt.retrieve(query);
+		String query = "SELECT DATE, USERID FROM USERLOG ORDER BY DATE"; //"Select " + COL_LOGINID +" from " + TABLE + " where "+ COL_OBJECTID + " <> " + _iid.getLongValue() + " AND "  + COL_DELETESTATE + "<>" + DeleteState.DELETED.getIntValue() + " AND " + COL_LOGINID + " IS NOT NULL"; 
 		_elements = new Vector();
-		while (ds.next())
-		{
+		final Map users = new HashMap();                // USERID -> IUser, a user has many entries
+		stmt.retrieve(query, new IRowHandler() {
+			public boolean handleRow(IDataSet ds) throws OculusException
+			{
 				UserLogEntry ent = new UserLogEntry();
 				
 				ent.setDate(ds.getTimestamp("DATE"));
-				IIID usrID = _context.getRepository().makeReposID(ds.getLong("USERID"));
-				IUser usr = (IUser)_context.getCRM().getCompObject(_context,"User",usrID);
+				Long userID = new Long(ds.getLong("USERID"));
+				IUser usr = (IUser)users.get(userID);
+				if (usr == null)
+				{
+					IIID usrID = _context.getRepository().makeReposID(userID.longValue());
+					usr = (IUser)_context.getCRM().getCompObject(_context,"User",usrID);
+					users.put(userID, usr);
+				}
 				ent.setUser(usr);
 				_elements.addElement(ent);
-								
-		}
+				return true;
+			}
+		});
 
 		_ids = _elements.iterator();
-
-		if (stmt != null)
-			stmt.close();
 	}
 	finally
 	{
@@ -0,0 +1,95 @@
+package com.oculussoftware.servlet;
+
+import java.io.*;
+
+/**
+* Filename:    ChunkedWriter.java
+* Date:
+* Description: Collects what is written to it into chunks and flushes each chunk
+*              through to the response as soon as it is full.
+*
+* <P>An IHTML page writes itself one tag at a time.  Passing each tag to the servlet's
+* writer would be slow, and leaving the buffering to the container means nothing reaches
+* the browser until the container's buffer fills.  This writer sends the page on in pieces
+* of a known size and flushes after each, so the browser can start on the top of a large
+* page while the rest of it is still being written.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class ChunkedWriter extends Writer
+{
+  /** Size of a chunk if none is given. */
+  public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+  private Writer _out;
+  private char[] _buf;
+  private int    _count = 0;
+
+  //------------------------ Public Constructors ------------------------------------
+  public ChunkedWriter(Writer out)
+  {
+    this(out, DEFAULT_CHUNK_SIZE);
+  }
+
+  public ChunkedWriter(Writer out, int chunkSize)
+  {
+    super(out);
+    _out = out;
+    _buf = new char[Math.max(1, chunkSize)];
+  }
+
+  //------------------------ Writer Methods ------------------------------------
+  public void write(int c) throws IOException
+  {
+    if (_count == _buf.length)
+      flush();
+    _buf[_count++] = (char)c;
+  }
+
+  public void write(char[] cbuf, int off, int len) throws IOException
+  {
+    while (len > 0)
+    {
+      if (_count == _buf.length)
+        flush();
+      int n = Math.min(len, _buf.length - _count);
+      System.arraycopy(cbuf, off, _buf, _count, n);
+      _count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  public void write(String str, int off, int len) throws IOException
+  {
+    while (len > 0)
+    {
+      if (_count == _buf.length)
+        flush();
+      int n = Math.min(len, _buf.length - _count);
+      str.getChars(off, off + n, _buf, _count);
+      _count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /** Sends what has been collected so far on to the response. */
+  public void flush() throws IOException
+  {
+    if (_count > 0)
+    {
+      _out.write(_buf, 0, _count);
+      _count = 0;
+    }
+    _out.flush();
+  }
+
+  /** Flushes, but leaves the underlying writer open for the servlet to close. */
+  public void close() throws IOException
+  {
+    flush();
+  }
+}
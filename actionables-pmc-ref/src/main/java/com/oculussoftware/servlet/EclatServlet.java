@@ -37,6 +37,8 @@ import java.util.*;
 *                                             proxy.  If so, links are modified appropriately.
 *                                             Removed sessionExpired(PrinWriter, BrowserKind)
 *                                             Added sessionExpired(PrinWriter, BrowserKind, boolean)
+* ---                                         Pages are streamed to the output through writePage().
+* ---                                         Each request runs inside an identity scope on its thread.
 *
 *                                             
 */
@@ -100,6 +102,7 @@ public abstract class EclatServlet extends HttpServlet
 	 // Make sure the user is logged in properly
 	 if (context != null)
 	 {
+	   IdentityMap.open();                   // objects are shared for the length of this request
 	   try
 	   {
       if(!context.getCRM().isLoggedIn(context))
@@ -121,20 +124,21 @@ public abstract class EclatServlet extends HttpServlet
 		     thisPage = buildPage(thisSession, thisPage, context, req.getParameter("Page"));
 
 		     // Display the IHTML page generated by this servlet.
-		     out.println(thisPage);
+		     writePage(out, thisPage);
        }//end else
 	   }
 	   catch(ObjectLockedException e)
 	   {
 		 IHTML htm = new HTML(bk);
 		 htm.addBody().setOnLoad("window.alert('The object you requested has been checked out for edit. \\n Please try again later.');parent.location='/system/OculusHtml/Selection.htm';");
-		 out.println(htm);    
+		 writePage(out, htm);    
 	   }
 	   catch(Throwable exp)
 	   {
 		  exp.printStackTrace(out);
       com.oculussoftware.service.log.LogService.getInstance().write(exp); 
 	   }
+	   finally { IdentityMap.close(); }
 	 }//end if
 	 else
    {
@@ -168,6 +172,7 @@ public abstract class EclatServlet extends HttpServlet
 	 // Make sure the user is properly logged in
 	 if (context != null)
 	 {
+	   IdentityMap.open();                   // objects are shared for the length of this request
 	   try
 	   {
       if(!context.getCRM().isLoggedIn(context))
@@ -247,6 +252,7 @@ public abstract class EclatServlet extends HttpServlet
 		   exp.printStackTrace(res.getWriter());
        com.oculussoftware.service.log.LogService.getInstance().write(exp); 
 	   }
+	   finally { IdentityMap.close(); }
 	 }
 	 else {
 	   sessionExpired(res.getWriter() ,BrowserKind.ALL, lIsExternal);
@@ -340,8 +346,44 @@ protected void service(HttpServletRequest aRequest, HttpServletResponse aRespons
    } else {
 	   htm.addBody().setOnLoad("window.alert('Your Session Has Expired.\\n Please Login Again.');parent.location='/pmc/servlet/extranetProxy?Servlet=common.SvtLogoutHandler';");  	   	
    }
-   out.println(htm);
+   writePage(out, htm);
  }    
+ /**
+ *  Streams the page to the output a chunk at a time instead of building the whole
+ *  page as a String first.  The chunk size is the "chunkSize" value of the
+ *  "EclatServlet" directory entry.
+ *
+ *  @param out  The output of this servlet
+ *  @param page  The page to send
+ */
+ protected void writePage(PrintWriter out, IHTML page)
+ {
+   try
+   {
+     ChunkedWriter chunks = new ChunkedWriter(out, getChunkSize());
+     page.write(chunks);
+     chunks.flush();
+   }
+   catch (IOException exp)
+   {
+     // PrintWriter doesn't throw, so this can only come from the page itself
+     com.oculussoftware.service.log.LogService.getInstance().write(exp);
+   }
+   out.println();
+ }
+ private static int _chunkSize = -1;
+ private static synchronized int getChunkSize()
+ {
+   if (_chunkSize < 0)
+   {
+     try
+     {
+       _chunkSize = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("chunkSize","EclatServlet")).trim());
+     }
+     catch (Exception ignore) { _chunkSize = ChunkedWriter.DEFAULT_CHUNK_SIZE; }
+   }
+   return _chunkSize;
+ }
  /** Takes all of the parameters passed to it from the caller and puts the values in the session. */
  protected void storeParameters(SessionSrvc session, HttpServletRequest req)
  {
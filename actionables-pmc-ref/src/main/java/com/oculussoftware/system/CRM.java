@@ -10,6 +10,7 @@ import com.oculussoftware.api.repi.IDataSet;
 import com.oculussoftware.api.repi.DeleteState;
 
 import com.oculussoftware.system.sec.*;
+import com.oculussoftware.repos.ConnectionPool;
 import com.oculussoftware.repos.util.*;
 import com.oculussoftware.util.*;
 
@@ -35,6 +36,8 @@ import java.sql.*;
 *																							changed CRM() to throw OculusException
 * ---             Saleem Shafi    3/6/00      Optimized getCompObject(context, string, IIID) to use
 *                                             getCompObject(Context, string, IIID, boolean)
+* ---                                         getCompObject() resolves class names through the ComponentRegistry.
+* ---                                         Login queries bind the login id and password as parameters.
 */
 public class CRM implements ICRM
 {
@@ -78,7 +81,7 @@ public class CRM implements ICRM
 	{
 		if (isValid(context.getConnection()))
 		{
-			String classname = (String)SimpleDirectory.getInstance().getValue("classname",name);
+			String classname = ComponentRegistry.getInstance().getClassName(name);
 			return PoolMgr.getInstance().getObject(context,classname);
 		}
     return null;
@@ -116,7 +119,7 @@ public class CRM implements ICRM
       }
 		if (isValid(context.getConnection()))
 		{
-			String classname = (String)SimpleDirectory.getInstance().getValue("classname",name);
+			String classname = ComponentRegistry.getInstance().getClassName(name);
 			return PoolMgr.getInstance().getObject(context,classname,args,editable);
 		}
     return null;
@@ -129,7 +132,7 @@ public class CRM implements ICRM
   {
     if (isValid(context.getConnection()))
     {
-      String classname = (String)SimpleDirectory.getInstance().getValue("classname",name);
+      String classname = ComponentRegistry.getInstance().getClassName(name);
       return PoolMgr.getInstance().getObject(context,classname, args, editable);
     }
     return null;
@@ -266,9 +269,10 @@ public class CRM implements ICRM
       IDataSet results = stmt.retrieve(      // check if the username and password match
         " SELECT OBJECTID "+
         " FROM APPUSER "+
-        " WHERE LOGINID='"+SQLUtil.primer(strLogin)+"'"+
+        " WHERE LOGINID=?"+
         " AND ACTIVE = 1"+
-        " AND DELETESTATE = "+DeleteState.NOT_DELETED.getIntValue());
+        " AND DELETESTATE = ?",
+        new Object[] { strLogin, DeleteState.NOT_DELETED });
       blnRV = results.next();
       returnDatabaseConnection(repConn);
     }//end try
@@ -297,23 +301,24 @@ public class CRM implements ICRM
       IDataSet results = stmt.retrieve(        // check if the username and password match
         " SELECT OBJECTID "+
         " FROM APPUSER "+
-        " WHERE LOGINID='"+SQLUtil.primer(strLogin)+"' AND PASSWORD='"+SQLUtil.primer(strPassword)+"'"+
+        " WHERE LOGINID=? AND PASSWORD=?"+
         " AND ACTIVE = 1"+
         " AND FAILEDLOGINS < 5"+
-        " AND DELETESTATE = "+DeleteState.NOT_DELETED.getIntValue());
+        " AND DELETESTATE = ?",
+        new Object[] { strLogin, strPassword, DeleteState.NOT_DELETED });
       if (results.next())
       {
         long lngObjID = results.getLong("OBJECTID");
         userIID = _context.getRepository().makeReposID(lngObjID);    // if so, get the user's ID
         stmt2 = repConn.createProcessor();
         stmt2.update("UPDATE APPUSER SET FAILEDLOGINS = 0"+
-                     " WHERE OBJECTID="+lngObjID);
+                     " WHERE OBJECTID=?", new Object[] { new Long(lngObjID) });
       }//end if
       else  //increment the failed logins
       {
         stmt2 = repConn.createProcessor();
         stmt2.update("UPDATE APPUSER SET FAILEDLOGINS = FAILEDLOGINS + 1"+
-                     " WHERE LOGINID='"+strLogin+"'"); 
+                     " WHERE LOGINID=?", new Object[] { strLogin }); 
       }
       repConn.commit();
       returnDatabaseConnection(repConn);
@@ -396,7 +401,7 @@ public class CRM implements ICRM
 		throws OculusException
 	{
 		if (isValid(context.getConnection()))
-			return (IRConnection)getCompObject(context,"Connection");
+			return ConnectionPool.getInstance().borrowConnection(context);
 		else
 			throw new OculusException(MSG_INVALID_CONNECT);
 	}
@@ -408,7 +413,7 @@ public class CRM implements ICRM
 		if (conn != null)
     {
       conn.rollback();
-      PoolMgr.getInstance().returnObject(conn);
+      ConnectionPool.getInstance().returnConnection(conn);
     }
 	}
 
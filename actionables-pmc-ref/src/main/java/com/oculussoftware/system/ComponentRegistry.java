@@ -0,0 +1,220 @@
+package com.oculussoftware.system;
+
+import com.oculussoftware.api.sysi.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* Filename:    ComponentRegistry.java
+* Date:
+* Description: Maps each component name in the directory to a factory for its class.
+*
+* <P>The CRM used to look up the "classname" of a component in the directory every time
+* an object was requested, and the PoolMgr used to find the class by name and create the
+* object by reflection every time it missed the cache.  The registry reads every
+* "obj.&lt;name&gt;.classname" entry once, loads the classes and keeps a constructor
+* handle for each, so fetching an object only costs a map lookup.</P>
+*
+* <P>The directory file is checked for changes every "checkSeconds" seconds (from the
+* "ComponentRegistry" directory entry, 0 turns it off), and the registry is rebuilt when
+* it has changed.  reload() rebuilds it straight away.  A component that isn't in the
+* registry is looked up in the directory the old way and added.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class ComponentRegistry
+{
+  /** Seconds between checks of the directory file if none is configured. */
+  public static final int DEFAULT_CHECK_SECONDS = 30;
+
+  private static ComponentRegistry _instance = null;
+
+  //------------------------ Public Static Methods ------------------------------------
+  public static synchronized ComponentRegistry getInstance()
+  {
+    if (_instance == null)
+      _instance = new ComponentRegistry();
+    return _instance;
+  }
+
+  //------------------------ Private Instance Variables ------------------------------------
+  private volatile Map _byName = new HashMap();        // component name -> Factory, replaced but never changed
+  private Map _byClass = new ConcurrentHashMap();      // class name -> Factory
+  private long _checkMillis;
+  private volatile long _nextCheck = 0;
+  private long _loadedStamp = 0;
+  private boolean _loaded = false;
+
+  //------------------------ Private Constructors ------------------------------------
+  private ComponentRegistry()
+  {
+    int seconds;
+    try
+    {
+      seconds = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("checkSeconds","ComponentRegistry")).trim());
+    }
+    catch (Exception ignore) { seconds = DEFAULT_CHECK_SECONDS; }
+    _checkMillis = seconds * 1000L;
+    try
+    {
+      reload();
+    }
+    catch (OculusException ignore) { }    // no directory yet, components are looked up as they are asked for
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  /**
+  * Returns the factory for the component with the given directory name.
+  * @throws OculusException if the component isn't in the directory or its class can't
+  * be loaded.
+  */
+  public Factory getFactory(String name)
+    throws OculusException
+  {
+    if (_checkMillis > 0 && System.currentTimeMillis() >= _nextCheck)
+      _checkForChange();
+    Factory factory = (Factory)_byName.get(name);
+    if (factory == null)
+      factory = _register(name, (String)SimpleDirectory.getInstance().getValue("classname",name));
+    return factory;
+  }
+
+  /** Returns the name of the class that implements the component with the given directory name. */
+  public String getClassName(String name)
+    throws OculusException
+  {
+    return getFactory(name).getClassName();
+  }
+
+  /**
+  * Returns the factory for the given class.
+  * @throws OculusException if the class can't be loaded or has no public no-arg constructor.
+  */
+  public Factory getFactoryForClass(String classname)
+    throws OculusException
+  {
+    Factory factory = (Factory)_byClass.get(classname);
+    if (factory == null)
+    {
+      factory = new Factory(classname);
+      _byClass.put(classname, factory);
+    }
+    return factory;
+  }
+
+  /** Reads the directory again and rebuilds the registry from it. */
+  public synchronized void reload()
+    throws OculusException
+  {
+    long stamp = SimpleDirectory.lastModified();
+    SimpleDirectory dir = (SimpleDirectory)(_loaded ? SimpleDirectory.reload() : SimpleDirectory.getInstance());
+    Map byName = new HashMap();
+    Map classnames = dir.getItems("classname");
+    for (Iterator it = classnames.entrySet().iterator(); it.hasNext(); )
+    {
+      Map.Entry entry = (Map.Entry)it.next();
+      String classname = ((String)entry.getValue()).trim();
+      try
+      {
+        byName.put(entry.getKey(), getFactoryForClass(classname));
+      }
+      catch (OculusException ignore) { }  // a missing class only matters if the component is asked for
+    }
+    _byName = byName;
+    _loadedStamp = stamp;
+    _loaded = true;
+    _nextCheck = System.currentTimeMillis() + _checkMillis;
+  }
+
+  /** Returns the number of components in the registry. */
+  public int size() { return _byName.size(); }
+
+  public String toString()
+  {
+    return "ComponentRegistry[components="+size()+", classes="+_byClass.size()+"]";
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private synchronized Factory _register(String name, String classname)
+    throws OculusException
+  {
+    Factory factory = getFactoryForClass(classname.trim());
+    Map byName = new HashMap(_byName);
+    byName.put(name, factory);
+    _byName = byName;
+    return factory;
+  }
+
+  private synchronized void _checkForChange()
+  {
+    if (System.currentTimeMillis() < _nextCheck)
+      return;
+    _nextCheck = System.currentTimeMillis() + _checkMillis;
+    long stamp = SimpleDirectory.lastModified();
+    if (stamp == 0 || stamp == _loadedStamp)
+      return;
+    try
+    {
+      reload();
+    }
+    catch (OculusException ignore) { }  // keep what we have, and try again next time
+  }
+
+  //------------------------ Inner Classes ------------------------------------
+  /** Creates instances of one component class through a constructor handle. */
+  public static final class Factory
+  {
+    private final String _classname;
+    private final Class _class;
+    private final MethodHandle _constructor;
+
+    Factory(String classname)
+      throws OculusException
+    {
+      try
+      {
+        _classname = classname;
+        _class = Class.forName(classname);
+        _constructor = MethodHandles.publicLookup().findConstructor(_class, MethodType.methodType(void.class))
+                                    .asType(MethodType.methodType(Object.class));
+      }
+      catch (ClassNotFoundException exp)
+      {
+        throw new OculusException("The class name "+classname+" could not be found.");
+      }
+      catch (Exception exp)
+      {
+        throw new OculusException("The class "+classname+" has no public no-arg constructor.");
+      }
+    }
+
+    public String getClassName() { return _classname; }
+    public Class getComponentClass() { return _class; }
+
+    /** Returns a new, unconstructed instance of the class. */
+    public IPoolable newInstance()
+      throws OculusException
+    {
+      try
+      {
+        Object obj = _constructor.invokeExact();
+        return (IPoolable)obj;
+      }
+      catch (OculusException exp) { throw exp; }
+      catch (Exception exp) { throw new OculusException(exp); }
+      catch (Throwable t)
+      {
+        if (t instanceof Error)
+          throw (Error)t;
+        // a Throwable that is neither an Exception nor an Error
+        throw new OculusException(new Exception(t));
+      }
+    }
+  }
+}
@@ -3,188 +3,207 @@ package com.oculussoftware.system;
 import com.oculussoftware.api.sysi.*;
 
 import java.util.*;
-import java.io.*;
 import java.net.*;
-import java.text.*;
-import java.lang.reflect.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Concrete impl for IGUID
+*
+* <P>A GUID is 20 bytes: the address of the node that made it, an identifier picked at
+* random when the JVM started, a 62 bit counter and a random tail.  They are kept as two
+* longs and an int, so comparing and hashing them doesn't allocate.  The node address is
+* looked up once per JVM, and the counter is an AtomicLong seeded from the clock, so
+* making one doesn't lock or go to the network.</P>
+*
+* <P>GUIDs are stored as 40 hex digits.  The original string encoding wrote each 4 byte
+* group without its leading zeros and then padded it out with trailing zeros, so groups
+* that only differ by leading zeros have always had the same string.  Each group is
+* normalized the same way when a GUID is made, which keeps equals() the same as comparing
+* the strings, and keeps the strings already in the database readable.</P>
 */
 public class GUID implements IGUID
 {
   private static final int GUID_SIZE_BYTES     = 20; // bytes
-  private static final int UID_SIZE_BYTES      = 16; // bytes
+  private static final int GUID_SIZE_CHARS     = GUID_SIZE_BYTES * 2;
   private static final int INETADDR_SIZE_BYTES = 4;  // bytes
 
-  private byte[] _baGUID = null;
-  private byte[] _baUID = null;
-  private byte[] _baIA = null;
-	
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static final Random _random = new Random();
+  private static final int _node = _normalize(_nodeAddress());
+  private static final int _jvm = _random.nextInt() | 0x80000000;
+  private static final AtomicLong _sequence = new AtomicLong(System.currentTimeMillis() << 16);
+
+  private final long _hi;      // groups 0 and 1
+  private final long _lo;      // groups 2 and 3
+  private final int _tail;     // group 4
+  private String _str = null;
+
   //---------------------------------------------------------------------
   // Constructors
   //---------------------------------------------------------------------
   public GUID ( )
-	  throws OculusException
-  {
-	
-	// use UID( ) and InetAddress( ) 
-	_baGUID = new byte[GUID_SIZE_BYTES];
-	
-	ByteArrayOutputStream baos = null;
-	try {
-	  java.net.InetAddress ia = java.net.InetAddress.getLocalHost( );
-	  java.rmi.server.UID u = new java.rmi.server.UID();
-	  u.write( new DataOutputStream( baos = new ByteArrayOutputStream() ) );
-	  _baUID = baos.toByteArray();
-	  _baIA = ia.getAddress();
-	  //set _baGUID to _baIA
-	  for ( int idx = 0; idx < _baIA.length; idx++ ) {
-	  _baGUID[idx] = _baIA[idx];
-	  }
-	  // set uid bytes
-	  for ( int idx = 0; idx < _baUID.length; idx++ ) {
-	  _baGUID[INETADDR_SIZE_BYTES + idx] = _baUID[idx];
-	  }
-	}
-	catch (UnknownHostException ex) {
-	  throw new OculusException("GUID generation process failed due to UnknownHostException.");
-	}
-	catch (IOException ex2) {
-	  throw new OculusException("GUID generation process failed due to IOException.");
-	}
-  }  
+    throws OculusException
+  {
+    // the counter and tail groups have their top bit set so they are already normal
+    long seq = _sequence.incrementAndGet();
+    int seqHi = 0x80000000 | (int)(seq >>> 31);
+    int seqLo = 0x80000000 | (int)(seq & 0x7fffffffL);
+    _hi = _pack(_node, _jvm);
+    _lo = _pack(seqHi, seqLo);
+    _tail = _random.nextInt() | 0x80000000;
+  }
   /** Constructor that takes a byte array.
   *   For use in creating a GUID from a database store byte array.
   */
   public GUID ( byte[] bytes)
-	throws OculusException
-  {
-	if ( bytes.length != GUID_SIZE_BYTES ) {
-	  throw new OculusException("Invalid byte array for GUID.  Length not equal to " + GUID_SIZE_BYTES + ".");
-	}
-	
-	_baGUID = new byte[GUID_SIZE_BYTES];
-	for ( int idx = 0; idx < GUID_SIZE_BYTES; idx++ ) {
-	  _baGUID[idx] = bytes[idx];
-	}
-  }  
-  /** Constructor that takes hex String.  
-  *   For use in creating GUID's from export import files.
+    throws OculusException
+  {
+    if ( bytes.length != GUID_SIZE_BYTES ) {
+      throw new OculusException("Invalid byte array for GUID.  Length not equal to " + GUID_SIZE_BYTES + ".");
+    }
+    _hi = _pack(_normalize(_int(bytes, 0)), _normalize(_int(bytes, 4)));
+    _lo = _pack(_normalize(_int(bytes, 8)), _normalize(_int(bytes, 12)));
+    _tail = _normalize(_int(bytes, 16));
+  }
+  /** Constructor that takes hex String.
+  *   For use in creating GUID's from export import files and the GUID columns.
   */
   public GUID ( String strHex )
-	  throws OculusException
+    throws OculusException
   {
-	_baGUID = _strHextoByteArr( strHex );
-  }  
-  //---------------------------------------------------------------------
-  // Private methods
-  //---------------------------------------------------------------------
+    if (strHex.length() != GUID_SIZE_CHARS)
+    {
+      // the original parser read whole bytes from the end of the string; anything it
+      // didn't fill is zero
+      byte[] bytes = new byte[GUID_SIZE_BYTES];
+      int numBytes = Math.min(strHex.length() / 2, GUID_SIZE_BYTES);
+      int strLen = strHex.length();
+      for (int i = 0; i < numBytes; i++)
+        bytes[GUID_SIZE_BYTES-i-1] = (byte)((_digit(strHex, strLen-i*2-2) << 4) | _digit(strHex, strLen-i*2-1));
+      _hi = _pack(_normalize(_int(bytes, 0)), _normalize(_int(bytes, 4)));
+      _lo = _pack(_normalize(_int(bytes, 8)), _normalize(_int(bytes, 12)));
+      _tail = _normalize(_int(bytes, 16));
+      return;
+    }
+    _hi = _pack(_normalize(_hex(strHex, 0)), _normalize(_hex(strHex, 8)));
+    _lo = _pack(_normalize(_hex(strHex, 16)), _normalize(_hex(strHex, 24)));
+    _tail = _normalize(_hex(strHex, 32));
+  }
 
-  /** Converts byte array (that contains a multiple of 4 elements) to a hex string */
-  private String _ByteArrtostrHex( byte[] byt )
-  {
-  StringBuffer strBuf = new StringBuffer();
-  int j,k,l,m,n;
-  int wipe_out = 255; //clears sign extension in byte to integer conversion
-  //should throw an exception if array length not divisible by 4
-  for (int i = 0 ; i < (Array.getLength(byt)/4); i++)
-  {
-	j=byt[i*4];j=j&wipe_out;
-	k=byt[i*4+1];k=k&wipe_out;
-	l=byt[i*4+2];l=l&wipe_out;
-	m=byt[i*4+3];m=m&wipe_out;
-	
-	j=j<<24;
-	k=k<<16;
-	l=l<<8;
-	
-	n=j|k|l|m;
-	
-	//pad leading spaces with zeros since toHexString drops them
-	StringBuffer temp = new StringBuffer(Integer.toHexString(n));
-	while (temp.length() < 8 )
-	temp.append("0");
-  
-	strBuf.append(temp.toString());
-  }
-  
-  return strBuf.toString();
-  }  
-  /** Converts hex string with an even number of characters to a byte array  */
-  private byte[] _strHextoByteArr( String strHex )
-
-  {
- /**
-	  String substr;
-	byte[] byt = new byte[GUID_SIZE_BYTES];
-	int offset = GUID_SIZE_BYTES*2 - strHex.length();
-	//pad string with zeroes in front so strLen = 40
-	StringBuffer strTemp = new StringBuffer(strHex);
-	for (int i=0; i<offset; i++)
-		strTemp.insert(0,0);
-	strHex = strTemp.toString();
-	//convert to byte array
-	for (int i=strHex.length(); i>0; i--)
-	{
-		substr = strHex.substring(i*2-3,i*2-1);
-		byt[strHex.length() - i] = (byte)Integer.parseInt(substr,16);	
-
-	}
-			
-
-	return byt;	  
-*/
-	
-//Buggy original (odd Str Len boundary problem)
-  String substr;
-	int strLen = strHex.length();
-	int numBytes = strLen/2;
-	byte[] byt = new byte[numBytes];
-	
-	for (int i=0; i<numBytes; i++)
-	{
-	  substr = strHex.substring(strLen-i*2-2,strLen-i*2);
-	  byt[numBytes-i-1] = (byte)Integer.parseInt(substr,16);
-	}
-  
-	return byt;
-
-	/**
-	Hack to fix bug
-	String substr;
-	StringBuffer strTemp = new StringBuffer(strHex);
-	int strLen = strHex.length();
-	int numBytes = strLen/2;
-	byte[] byt = new byte[GUID_SIZE_BYTES];
-	int offset = GUID_SIZE_BYTES*2 - strLen;
-	for (int i=0; i<offset; i++)
-		strTemp.insert(0,0);
-	strHex = strTemp.toString();
-	strLen = strHex.length();
-	numBytes = strLen / 2;
-	
-	for (int i=0; i<numBytes; i++)
-	{
-	  substr = strHex.substring(strLen-i*2-2,strLen-i*2);
-	  //byt[numBytes-i-1+offset] = (byte)Integer.parseInt(substr,16);
-	  byt[numBytes-i-1] = (byte)Integer.parseInt(substr,16);
-	}
-  
-	return byt; */
-  }                                  
-  public boolean equals(IGUID guid)
-  {    
-	return ((this.toString()).equals(guid.toString()));
-  }  
   //---------------------------------------------------------------------
   // Public methods
   //---------------------------------------------------------------------
-  public byte[] getByteArray( ) 
+  public boolean equals(IGUID guid)
+  {
+    if (guid instanceof GUID)
+    {
+      GUID other = (GUID)guid;
+      return _hi == other._hi && _lo == other._lo && _tail == other._tail;
+    }
+    return guid != null && toString().equals(guid.toString());
+  }
+  public boolean equals(Object obj)
+  {
+    return (obj instanceof IGUID) && equals((IGUID)obj);
+  }
+  public int hashCode()
+  {
+    long h = _hi ^ (_lo * 31) ^ _tail;
+    return (int)(h ^ (h >>> 32));
+  }
+  /** Returns the 20 bytes of this GUID, in the order of its string. */
+  public byte[] getByteArray( )
   {
-	return _baGUID;
-  }  
+    byte[] bytes = new byte[GUID_SIZE_BYTES];
+    _putInt(bytes, 0, (int)(_hi >>> 32));
+    _putInt(bytes, 4, (int)_hi);
+    _putInt(bytes, 8, (int)(_lo >>> 32));
+    _putInt(bytes, 12, (int)_lo);
+    _putInt(bytes, 16, _tail);
+    return bytes;
+  }
   public String toString()
   {
-	return _ByteArrtostrHex(_baGUID);
-  }  
+    String str = _str;
+    if (str == null)
+    {
+      char[] chars = new char[GUID_SIZE_CHARS];
+      _putHex(chars, 0, (int)(_hi >>> 32));
+      _putHex(chars, 8, (int)_hi);
+      _putHex(chars, 16, (int)(_lo >>> 32));
+      _putHex(chars, 24, (int)_lo);
+      _putHex(chars, 32, _tail);
+      _str = str = new String(chars);
+    }
+    return str;
+  }
+
+  //---------------------------------------------------------------------
+  // Private methods
+  //---------------------------------------------------------------------
+  /** Returns this node's address, or a random one if it can't be found. */
+  private static int _nodeAddress()
+  {
+    try
+    {
+      byte[] ia = InetAddress.getLocalHost().getAddress();
+      if (ia.length >= INETADDR_SIZE_BYTES)
+        return _int(ia, 0);
+    }
+    catch (UnknownHostException ignore) {}
+    catch (SecurityException ignore) {}
+    return _random.nextInt();
+  }
+
+  /**
+  * Shifts the leading zeros of a group to the end, which is what the original string
+  * encoding did.  "00001234" and "12340000" are the same group.
+  */
+  private static int _normalize(int group)
+  {
+    while (group != 0 && (group & 0xf0000000) == 0)
+      group <<= 4;
+    return group;
+  }
+
+  private static long _pack(int high, int low)
+  {
+    return ((long)high << 32) | (low & 0xffffffffL);
+  }
+
+  private static int _int(byte[] bytes, int off)
+  {
+    return ((bytes[off] & 0xff) << 24) | ((bytes[off+1] & 0xff) << 16) | ((bytes[off+2] & 0xff) << 8) | (bytes[off+3] & 0xff);
+  }
+
+  private static void _putInt(byte[] bytes, int off, int group)
+  {
+    bytes[off]   = (byte)(group >>> 24);
+    bytes[off+1] = (byte)(group >>> 16);
+    bytes[off+2] = (byte)(group >>> 8);
+    bytes[off+3] = (byte)group;
+  }
+
+  private static void _putHex(char[] chars, int off, int group)
+  {
+    for (int i = 7; i >= 0; i--, group >>>= 4)
+      chars[off+i] = HEX[group & 0xf];
+  }
+
+  /** Reads the 8 hex digits starting at the given offset. */
+  private static int _hex(String str, int off)
+  {
+    int group = 0;
+    for (int i = 0; i < 8; i++)
+      group = (group << 4) | _digit(str, off+i);
+    return group;
+  }
+
+  private static int _digit(String str, int off)
+  {
+    int digit = Character.digit(str.charAt(off), 16);
+    if (digit < 0)
+      throw new NumberFormatException("Invalid GUID: " + str);
+    return digit;
+  }
 }
@@ -0,0 +1,129 @@
+package com.oculussoftware.system;
+
+import com.oculussoftware.api.sysi.*;
+
+import java.util.*;
+
+/**
+* Filename:    IdentityMap.java
+* Date:
+* Description: The view-only objects already handed out by the thread serving the current
+* request.
+*
+* <P>A page or a background job tends to ask for the same objects over and over, and each
+* request used to go through the pool and come back as a new copy.  While a scope is open
+* on the thread, the PoolMgr hands back the copy it gave the same context the first time
+* instead.  The map belongs to the thread rather than to the ObjectContext, because a
+* session's context is shared by every request the session has running at once, and the
+* business objects are not safe to share between them.</P>
+*
+* <P>Scopes nest; the map is dropped when the outermost one is closed, so nothing is kept
+* from one request to the next.  An object is dropped from the map when it is checked out
+* for edit, and when a change to it is committed, on the same thread.</P>
+*
+* <P>The hit and miss counts are kept across scopes and threads so the dedup rate can be
+* watched.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class IdentityMap
+{
+  //------------------------ Private Class Variables ------------------------------------
+  private static final ThreadLocal _current = new ThreadLocal();   // the open map of each thread
+  private static long _hits = 0;
+  private static long _misses = 0;
+
+  //------------------------ Private Instance Variables ------------------------------------
+  private final Map _objects = new HashMap();   // pool key -> { IObjectContext, IObject }
+  private int _depth = 0;
+
+  private IdentityMap()
+  {
+  }
+
+  //------------------------ Public Static Methods ------------------------------------
+  /**
+  * Opens a scope on the calling thread.  Objects are only remembered while a scope is open.
+  * Every call must be matched by close(), in a finally block around the request or job.
+  */
+  public static void open()
+  {
+    IdentityMap map = (IdentityMap)_current.get();
+    if (map == null)
+    {
+      map = new IdentityMap();
+      _current.set(map);
+    }
+    map._depth++;
+  }
+
+  /** Closes a scope on the calling thread, and drops the map when the outermost scope is closed. */
+  public static void close()
+  {
+    IdentityMap map = (IdentityMap)_current.get();
+    if (map != null && --map._depth <= 0)
+      _current.set(null);
+  }
+
+  /** Returns the map of the calling thread, or null if it has no scope open. */
+  public static IdentityMap current()
+  {
+    return (IdentityMap)_current.get();
+  }
+
+  /** Returns the number of requests that were answered from a map. */
+  public static synchronized long getHitCount() { return _hits; }
+
+  /** Returns the number of requests that had to go to the pool while a scope was open. */
+  public static synchronized long getMissCount() { return _misses; }
+
+  /** Returns the fraction of requests that were answered from a map. */
+  public static synchronized double getHitRate()
+  {
+    long total = _hits + _misses;
+    return (total == 0) ? 0.0 : (double)_hits / total;
+  }
+
+  private static synchronized void count(boolean hit)
+  {
+    if (hit)
+      _hits++;
+    else
+      _misses++;
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  /**
+  * Returns the object stored under the given pool key, or null if there isn't one or it
+  * was handed out to another context.
+  */
+  public IObject get(IObjectContext context, String key)
+  {
+    Object[] entry = (Object[])_objects.get(key);
+    IObject obj = (entry != null && entry[0] == context) ? (IObject)entry[1] : null;
+    count(obj != null);
+    return obj;
+  }
+
+  /** Remembers the object handed out to the given context under the given pool key. */
+  public void put(IObjectContext context, String key, IObject obj)
+  {
+    _objects.put(key, new Object[] { context, obj });
+  }
+
+  /** Forgets the object stored under the given pool key. */
+  public void remove(String key)
+  {
+    _objects.remove(key);
+  }
+
+  /** Returns the number of objects remembered in the current scope. */
+  public int size() { return _objects.size(); }
+
+  public String toString()
+  {
+    return "IdentityMap[size="+_objects.size()+", hits="+getHitCount()+", misses="+getMissCount()+"]";
+  }
+}
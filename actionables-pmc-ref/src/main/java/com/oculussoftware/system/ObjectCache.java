@@ -0,0 +1,322 @@
+package com.oculussoftware.system;
+
+import com.oculussoftware.api.sysi.*;
+
+import java.util.*;
+
+/**
+* <B>Filename:</B> ObjectCache.java<BR>
+* <B>Description:</B> <P>Striped, size-bounded map used by the PoolMgr to hold its cached
+* objects.  The key space is split across a fixed number of segments, each with its own
+* monitor, so that requests for different objects do not contend on a single lock the way
+* they did with <code>Collections.synchronizedMap(new HashMap())</code>.</P>
+*
+* <P>Each segment keeps its entries in access order.  When a bound is given and a segment
+* grows past its share of it, the least-recently-used entries of that segment are evicted.
+* IPoolable objects that answer false to <code>isRemoveable()</code> are the same objects
+* the PoolCleaner leaves alone, so they are never chosen for eviction either.</P>
+*
+* <P>Hit, miss and eviction counts are kept per segment and summed on request.</P>
+*/
+
+public class ObjectCache
+{
+  /** Default number of segments if none is configured. */
+  public static final int DEFAULT_SEGMENTS = 16;
+
+  /** The segments that hold the entries. */
+  private Segment[] _segments;
+  /** Mask used to pick a segment from a hash code. */
+  private int _segmentMask;
+  /** Maximum number of entries in the whole cache, or 0 if unbounded. */
+  private int _maxEntries;
+  /** Optional listener that is told about evicted keys. */
+  private EvictionListener _listener;
+
+  //--------------------------- Public Constructors ---------------------------------
+  /**
+  * Creates an unbounded cache with the default number of segments.
+  */
+  public ObjectCache()
+  {
+    this(0, DEFAULT_SEGMENTS);
+  }
+
+  /**
+  * Creates a cache that holds at most <code>maxEntries</code> objects.
+  * @param maxEntries the maximum number of entries, or 0 (or less) for no limit.
+  * @param segments the number of lock stripes.  It is rounded up to a power of two.
+  */
+  public ObjectCache(int maxEntries, int segments)
+  {
+    int numSegs = 1;
+    while (numSegs < segments)
+      numSegs <<= 1;
+    _segmentMask = numSegs - 1;
+    _maxEntries = (maxEntries > 0) ? maxEntries : 0;
+    _segments = new Segment[numSegs];
+    int perSegment = 0;
+    if (_maxEntries > 0)
+      perSegment = Math.max(1, (_maxEntries + numSegs - 1) / numSegs);
+    for (int i = 0; i < numSegs; i++)
+      _segments[i] = new Segment(perSegment);
+  }
+
+  //--------------------------- Public Methods ---------------------------------
+  /**
+  * Registers the listener that is told whenever an entry is evicted to keep the cache
+  * within its bound.  Explicit removes are not reported.
+  */
+  public void setEvictionListener(EvictionListener listener)
+  {
+    _listener = listener;
+  }
+
+  /** Returns the cached object for the key, or null if it is not cached. */
+  public Object get(Object key)
+  {
+    return segmentFor(key).get(key);
+  }
+
+  /** Returns true if the key is cached.  This does not count as a hit or a miss. */
+  public boolean containsKey(Object key)
+  {
+    return segmentFor(key).containsKey(key);
+  }
+
+  /** Caches the object under the given key and returns the object it replaced, if any. */
+  public Object put(Object key, Object value)
+  {
+    if (key == null || value == null)
+      throw new IllegalArgumentException("ObjectCache does not accept null keys or values.");
+    List evicted = new ArrayList();
+    Object retVal = segmentFor(key).put(key, value, evicted);
+    fireEvicted(evicted);
+    return retVal;
+  }
+
+  /** Removes the key from the cache and returns the object that was cached. */
+  public Object remove(Object key)
+  {
+    return segmentFor(key).remove(key);
+  }
+
+  /**
+  * Removes and returns some cached object that is an instance of the given class, or
+  * returns null if there is none.  The search does not disturb the access order or the
+  * hit and miss counts.
+  */
+  public Object removeInstanceOf(Class type)
+  {
+    for (int i = 0; i < _segments.length; i++)
+    {
+      Object retVal = _segments[i].removeInstanceOf(type);
+      if (retVal != null)
+        return retVal;
+    }
+    return null;
+  }
+
+  /** Returns a point-in-time copy of the cached keys. */
+  public List keys()
+  {
+    List retVal = new ArrayList();
+    for (int i = 0; i < _segments.length; i++)
+      _segments[i].copyKeys(retVal);
+    return retVal;
+  }
+
+  /** Returns true if the given object is cached under any key. */
+  public boolean containsValue(Object value)
+  {
+    for (int i = 0; i < _segments.length; i++)
+      if (_segments[i].containsValue(value))
+        return true;
+    return false;
+  }
+
+  /** Removes every entry from the cache. */
+  public void clear()
+  {
+    for (int i = 0; i < _segments.length; i++)
+      _segments[i].clear();
+  }
+
+  /** Returns the number of cached objects. */
+  public int size()
+  {
+    int retVal = 0;
+    for (int i = 0; i < _segments.length; i++)
+      retVal += _segments[i].size();
+    return retVal;
+  }
+
+  /** Returns the configured bound, or 0 if the cache is unbounded. */
+  public int getMaxEntries() { return _maxEntries; }
+
+  /** Returns the number of get() calls that found an object. */
+  public long getHitCount()
+  {
+    long retVal = 0;
+    for (int i = 0; i < _segments.length; i++)
+      retVal += _segments[i].getHits();
+    return retVal;
+  }
+
+  /** Returns the number of get() calls that did not find an object. */
+  public long getMissCount()
+  {
+    long retVal = 0;
+    for (int i = 0; i < _segments.length; i++)
+      retVal += _segments[i].getMisses();
+    return retVal;
+  }
+
+  /** Returns the number of entries that were evicted to honor the bound. */
+  public long getEvictionCount()
+  {
+    long retVal = 0;
+    for (int i = 0; i < _segments.length; i++)
+      retVal += _segments[i].getEvictions();
+    return retVal;
+  }
+
+  /** Returns the fraction of get() calls that were hits, between 0 and 1. */
+  public double getHitRate()
+  {
+    long hits = getHitCount();
+    long total = hits + getMissCount();
+    return (total == 0) ? 0.0 : ((double)hits) / total;
+  }
+
+  public String toString()
+  {
+    return "ObjectCache[size="+size()+", max="+_maxEntries+", hits="+getHitCount()+
+           ", misses="+getMissCount()+", evictions="+getEvictionCount()+"]";
+  }
+
+  //--------------------------- Private Methods ---------------------------------
+  private Segment segmentFor(Object key)
+  {
+    int h = key.hashCode();
+    h ^= (h >>> 16);                       // spread the bits so that keys which only
+    h ^= (h >>> 7);                        // differ in their last few characters still scatter
+    return _segments[h & _segmentMask];
+  }
+
+  private void fireEvicted(List evicted)
+  {
+    if (_listener == null || evicted.isEmpty())
+      return;
+    for (Iterator it = evicted.iterator(); it.hasNext(); )
+    {
+      Map.Entry entry = (Map.Entry)it.next();
+      _listener.evicted(entry.getKey(), entry.getValue());
+    }
+  }
+
+  //--------------------------- Inner Classes ---------------------------------
+  /**
+  * Callback used to keep companion structures, like the PoolMgr's request times, in step
+  * with the entries that the cache evicts on its own.
+  */
+  public interface EvictionListener
+  {
+    public void evicted(Object key, Object value);
+  }
+
+  /**
+  * One lock stripe.  All access goes through the segment's own monitor.
+  */
+  private static class Segment
+  {
+    private LinkedHashMap _map = new LinkedHashMap(16, 0.75f, true);  // access-ordered
+    private int _capacity;
+    private long _hits;
+    private long _misses;
+    private long _evictions;
+
+    Segment(int capacity)
+    {
+      _capacity = capacity;
+    }
+
+    synchronized Object get(Object key)
+    {
+      Object retVal = _map.get(key);
+      if (retVal == null)
+        _misses++;
+      else
+        _hits++;
+      return retVal;
+    }
+
+    synchronized boolean containsKey(Object key)
+    {
+      return _map.containsKey(key);
+    }
+
+    synchronized boolean containsValue(Object value)
+    {
+      return _map.containsValue(value);
+    }
+
+    synchronized Object put(Object key, Object value, List evicted)
+    {
+      Object retVal = _map.put(key, value);
+      if (_capacity > 0 && _map.size() > _capacity)
+      {
+        // walk from the least-recently-used end, skipping objects that are pinned
+        for (Iterator it = _map.entrySet().iterator(); it.hasNext() && _map.size() > _capacity; )
+        {
+          Map.Entry entry = (Map.Entry)it.next();
+          if (entry.getKey().equals(key) || !isEvictable(entry.getValue()))
+            continue;
+          evicted.add(new AbstractMap.SimpleEntry(entry.getKey(), entry.getValue()));
+          it.remove();
+          _evictions++;
+        }
+      }
+      return retVal;
+    }
+
+    synchronized Object remove(Object key)
+    {
+      return _map.remove(key);
+    }
+
+    synchronized Object removeInstanceOf(Class type)
+    {
+      for (Iterator it = _map.values().iterator(); it.hasNext(); )
+      {
+        Object value = it.next();
+        if (type.isInstance(value))
+        {
+          it.remove();
+          return value;
+        }
+      }
+      return null;
+    }
+
+    synchronized void copyKeys(List dest)
+    {
+      dest.addAll(_map.keySet());
+    }
+
+    synchronized void clear()
+    {
+      _map.clear();
+    }
+
+    synchronized int size() { return _map.size(); }
+    synchronized long getHits() { return _hits; }
+    synchronized long getMisses() { return _misses; }
+    synchronized long getEvictions() { return _evictions; }
+
+    private static boolean isEvictable(Object value)
+    {
+      return !(value instanceof IPoolable) || ((IPoolable)value).isRemoveable();
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.oculussoftware.system;
 import com.oculussoftware.api.sysi.*;
 import com.oculussoftware.api.repi.*;
 import com.oculussoftware.repos.util.*;
+import com.oculussoftware.repos.ConnectionPool;
 
 /**
 * <B>Filename:</B> ObjectContext.java<BR>
@@ -145,6 +146,7 @@ public class ObjectContext implements IObjectContext, java.io.Serializable
     if(t != null)
       crm.rollbackTransaction(this);
     crm.removeAccessMgr(this);
+    ConnectionPool.getInstance().releaseConnection(this);   // don't let an abandoned session keep its db connection
     crm.removeCRMConnection(this.getConnection().getIID());  
 	}
 	
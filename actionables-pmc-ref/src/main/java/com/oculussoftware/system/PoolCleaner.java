@@ -3,6 +3,7 @@ package com.oculussoftware.system;
 import com.oculussoftware.api.sysi.*;
 import com.oculussoftware.api.repi.*;
 import com.oculussoftware.repos.util.SequentialIID;
+import com.oculussoftware.repos.ConnectionPool;
 import com.oculussoftware.util.DataSet;
 
 import java.util.Hashtable;
@@ -13,8 +14,9 @@ import java.util.*;
 * <B>Filename:</B> PoolMgr.java<BR>
 * <B>Date:</B> <BR>
 * <B>Description:</B> <P>Thread that tells the PoolMgr to clean itself out, 
-* every now and then.  It uses the <code>obj.PoolCleaner.cycleTime</code> value in the 
-* directory to determine the number of milliseconds between cleanups.</P>
+* every now and then.  The PoolMgr is cleaned every tick of its expiry wheel, since that only
+* costs as much as the number of objects that have expired.  Idle database connections are
+* closed every <code>obj.PoolCleaner.cycleTime</code> milliseconds of the directory.</P>
 *
 * <P>Copyright 1-31-2000 Oculus Software.  All Rights Reserved.</P>
 *
@@ -29,16 +31,27 @@ import java.util.*;
 *	---							Saleem Shafi		2/4/00			Changed initialization because the initializer
 *																							can't throw exceptions.
 * ---				      Bob Makowski		2000-03-21	split PoolCleaner from inside PoolMgr.java
+* ---                                         Cleans the PoolMgr every wheel tick and the ConnectionPool every
+*                                             cycleTime.  A missing cycleTime no longer stops the thread.
 */
 
 public class PoolCleaner extends Thread
 {
-  /** The number of milliseconds between cleanups */
+  /** The number of milliseconds between connection cleanups if none is configured. */
+  public static final long DEFAULT_CYCLE = 60000;
+  /** The number of milliseconds between connection cleanups */
 	private static long cycle = -1;
 
+  public PoolCleaner()
+  {
+    super("PoolCleaner");
+    setDaemon(true);
+  }
+
   /**
   Executes the thread.  If this is the first cycle, the user-defined cycle time is
-  read from the directory.  Then the Pool is cleaned every <code>obj.PoolCleaner.cycleTime</code> milliseconds.
+  read from the directory.  Then the Pool is cleaned every tick and the connections every
+  <code>obj.PoolCleaner.cycleTime</code> milliseconds.
   */
   public void run()
   {
@@ -46,20 +59,37 @@ public class PoolCleaner extends Thread
   	{
 			try
   		{
-  			// get the amount of time between pool cleanups
-				cycle = Long.parseLong((String)SimpleDirectory.getInstance().getValue("cycleTime","PoolCleaner"));	
+  			// get the amount of time between connection cleanups
+				cycle = Long.parseLong(((String)SimpleDirectory.getInstance().getValue("cycleTime","PoolCleaner")).trim());	
   		}
-  		catch (OculusException ignore)
+  		catch (Exception ignore)
   		{
   		}
+      if (cycle <= 0)
+        cycle = DEFAULT_CYCLE;
   	}
   	
+    long nextConnectionClean = System.currentTimeMillis() + cycle;
 	while(true)
 	{
-	   if (PoolMgr.getInstance() != null)
-		 PoolMgr.getInstance().clean();      // as long as there is a pool, clean it out         
-		try { sleep(cycle); }	catch(InterruptedException ignored) {}
+      long tick = cycle;
+      try
+      {
+		    PoolMgr pool = (PoolMgr)PoolMgr.getInstance();
+		    if (pool != null)
+		    {
+          pool.clean();                       // as long as there is a pool, clean it out
+          tick = Math.min(cycle, pool.getTickMillis());
+        }
+        if (System.currentTimeMillis() >= nextConnectionClean)
+        {
+		      ConnectionPool.getInstance().clean(); // close idle db connections and report leaks
+          nextConnectionClean = System.currentTimeMillis() + cycle;
+        }
+      }
+      catch (Exception ignore) { }            // try again next time
+		try { sleep(tick); }	catch(InterruptedException ignored) {}
 																					// wait for a while.
   	}//end while
  	}//end run 
-}
\ No newline at end of file
+}
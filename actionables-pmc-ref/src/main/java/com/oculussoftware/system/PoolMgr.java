@@ -35,20 +35,41 @@ import java.util.*;
 * ---				      Bob Makowski		2000-03-21	split PoolCleaner from inside PoolMgr.java
 * ---             Zain Nemazie    5/8/00      Made a clone of unlocked to get iterator from to avoid concurrent mod exception
 * BUG00327        Saleem Shafi    5/23/00     Started adding IRCollections to transactions so that they can be unlocked on a trans commit.
+* ---                                         View-only requests for ISnapshotable objects get a snapshot that shares the
+*                                             cached object's state instead of a dolly()'d copy.  Edit requests dolly() once.
+* ---                                         createShell() uses the ComponentRegistry's factories instead of reflection.
+* ---                                         Idle objects are expired by a TimingWheel instead of scanning the request table.
+*                                             Locks can optionally expire too.
+* ---                                         View-only requests are answered from the thread's IdentityMap when it has a scope open.
+* ---                                         updateCache(), replace() and returnObject() cache a copy of an ISnapshotable, so its holder can still change it.
 */
 
 public class PoolMgr implements IPoolMgr
 {
   /** Singleton reference to PoolMgr. */
 	private static PoolMgr _poolMgr = new PoolMgr();
-  /** List of unlocked, cached objects. */
-	private Map _unlocked;
+  /** Default bound on the number of unlocked, cached objects. */
+  private static final int DEFAULT_MAX_ENTRIES = 50000;
+  /** List of unlocked, cached objects.  This is the only list that is bounded. */
+	private ObjectCache _unlocked;
   /** List of locked objects. */
-  private Map _locked;
+  private ObjectCache _locked;
   /** List of object locks. */
-	private Map _locks;
-  /** Table of objects and the last time they were accessed. */
-	private Map _request;
+	private ObjectCache _locks;
+  /** Default number of minutes a view-only object stays in the pool after its last request. */
+  private static final int DEFAULT_IDLE_MINUTES = 60;
+  /** Default width in milliseconds of a slot in the expiry wheels. */
+  private static final int DEFAULT_TICK_MILLIS = 1000;
+  /** Deadlines of the view-only objects, which move every time an object is requested. */
+	private TimingWheel _request;
+  /** Deadlines of the locks, if locks expire. */
+  private TimingWheel _lockExpiry;
+  /** Milliseconds an object may go unrequested before it is removed. */
+  private long _idleMillis;
+  /** Milliseconds a lock may be held before it is released, or 0 if locks never expire. */
+  private long _lockMillis;
+  /** True if view-only requests get snapshots of ISnapshotable objects instead of dolly()'d copies. */
+  private boolean _snapshots;
 	
 
 	//--------------------------- Private Constructors ---------------------------------
@@ -57,57 +78,86 @@ public class PoolMgr implements IPoolMgr
   */
 	private PoolMgr()
 	{
-	// Collections.synchronizedMap(new HashMap()) was added to avoid the ConcurrentModificationException
-		_locked = Collections.synchronizedMap(new HashMap());
-		_unlocked = Collections.synchronizedMap(new HashMap());
-		_locks = Collections.synchronizedMap(new HashMap());
-		_request = Collections.synchronizedMap(new HashMap());
+	// The ObjectCache is striped so that requests for different objects don't contend on
+	// one monitor.  Only the view-only cache is bounded; locked objects are edit buffers
+	// and must stay put until they are committed or rolled back.
+    int segments = getConfigValue("segments",ObjectCache.DEFAULT_SEGMENTS);
+		_locked = new ObjectCache(0,segments);
+		_unlocked = new ObjectCache(getConfigValue("maxEntries",DEFAULT_MAX_ENTRIES),segments);
+		_locks = new ObjectCache(0,segments);
+    int tick = getConfigValue("tickMillis",DEFAULT_TICK_MILLIS);
+		_request = new TimingWheel(tick);
+    _lockExpiry = new TimingWheel(tick);
+    _idleMillis = getConfigValue("idleMinutes",DEFAULT_IDLE_MINUTES) * 60000L;
+    _lockMillis = getConfigValue("lockMinutes",0) * 60000L;
+    _snapshots = (getConfigValue("snapshots",1) != 0);
+    _unlocked.setEvictionListener(new ObjectCache.EvictionListener() {
+      public void evicted(Object key, Object value)
+      {
+        _request.cancel(key);                  // an evicted object no longer needs cleaning
+      }
+    });
     (new PoolCleaner()).start();
 	}
+  /**
+  * Reads an optional integer setting for the pool from the <code>obj.PoolMgr.*</code>
+  * entries of the directory.
+  * @param property the name of the setting.
+  * @param defaultValue the value to use if the setting is missing or invalid.
+  * @return the configured value or the default.
+  */
+  private static int getConfigValue(String property, int defaultValue)
+  {
+    try
+    {
+      return Integer.parseInt(((String)SimpleDirectory.getInstance().getValue(property,"PoolMgr")).trim());
+    }
+    catch (Exception ignore) { return defaultValue; }
+  }
 	/**
-	* This method searches the Request List for any object that has not been accessed in the 
-  * specified amount of time and removes them from the pool.
+	* Removes every object that has not been requested in the last 
+  * <code>obj.PoolMgr.idleMinutes</code> minutes, and releases every lock that has been held
+  * longer than <code>obj.PoolMgr.lockMinutes</code> minutes if that is set.  Only the
+  * entries that have come due are looked at, so this is cheap enough to call every tick.
 	*/
 	public void clean()
 	{
-	// This is the "specified amount of time.  This should probably be configureable but it isn't.
-		long timeoutInterval = 60*60*1000; // 1 hour.
-		Long currentTime = new Long(System.currentTimeMillis());
-    long cutOff = currentTime.longValue() - timeoutInterval;
-    Vector keysToDelete = new Vector();
-	try
-	{
-	  for (Iterator it = _request.keySet().iterator(); it.hasNext(); )
-	  {                                    // for each object, check the time interval
-		  String key = (String)it.next();    // between right now and the last time it was accessed
-		  Long lastRequest = (Long)_request.get(key);
-		  if (lastRequest.longValue() < cutOff)
-        keysToDelete.add(key);       // if it's been too long, clear it out
-	  }
-
-    for (Iterator i = keysToDelete.iterator(); i.hasNext(); )
-    {
-      String key = (String)i.next();
-      removeKey(key);
-    }
-	}
-	catch (ORIOException ignore) { /** the only reason we should get here is for an invalid key */ }
+    long now = System.currentTimeMillis();
+    _request.advance(now, new TimingWheel.ExpiryListener() {
+      public void expired(Object key)
+      {
+        try { removeKey((String)key); }
+        catch (ORIOException ignore) { /** the only reason we should get here is for an invalid key */ }
+      }
+    });
+    if (_lockMillis > 0)
+      _lockExpiry.advance(now, new TimingWheel.ExpiryListener() {
+        public void expired(Object key)
+        {
+          _locked.remove(key);                 // the transaction will find it isn't locked if it tries to save
+          _locks.remove(key);
+        }
+      });
 	}
   /**
+  * Returns the width in milliseconds of a slot in the expiry wheels, which is how often
+  * clean() has work to do.
+  */
+  public long getTickMillis()
+  {
+    return _request.getTickMillis();
+  }
+  /**
   * Creates an instance of the given classname.  The default constructor is used to
   * construct the object.
   * @return A shell of an object of the given class.
   * @param classname The String value of the Java classname to instantiate.
-  * @throws ClassNotFoundException This exception is thrown if the class specified was not found in the current classpath.
-  * @throws InstantiationException This exception is thrown if there is an error creating an instance of the object.  Usually this is caused by a missing or private default constructor.
-  * @throws IllegalAccessException This exception is thrown if the user does not have access to the class specified.
+  * @throws OculusException This exception is thrown if the class specified was not found in the current classpath or has no public default constructor.
   */
 	private IPoolable createShell(String classname)
-	throws ClassNotFoundException, InstantiationException, IllegalAccessException
+	throws OculusException
 	{
-	Class thisClass = Class.forName(classname);
-	if (thisClass == null) throw new InstantiationException("Cannot instantiate a null class");
-		return (IPoolable)thisClass.newInstance();
+		return ComponentRegistry.getInstance().getFactoryForClass(classname).newInstance();
 	}
 	//--------------------------- Static Methods ---------------------------------
 	/**
@@ -141,32 +191,15 @@ public class PoolMgr implements IPoolMgr
 
 	try
 	{
-	  if (_locked.containsKey(key))
-		pObj = (IPoolable)_locked.get(key);            // if the user already has an object of this class, return it to them
-	  else                                              // otherwise
+	  pObj = (IPoolable)_locked.get(key);              // if the user already has an object of this class, return it to them
+	  if (pObj == null)                                 // otherwise
 	  {
-		String available = null;
-		Class genClass = Class.forName(classname);        // search for an instance of it in the pool
+		Class genClass = ComponentRegistry.getInstance().getFactoryForClass(classname).getComponentClass();  // search for an instance of it in the pool
 		if (genClass == null) throw new OculusException("Could not find class: "+classname);
-		//Attempt at removing concurrent modification exception
-		//duplicate the _unlocked map in a synchronized block so it can complete uninterrupted
-		HashMap mp;
-		synchronized(_unlocked)
-		{
-			mp = new HashMap(_unlocked);
-		}
-		//use the duplicate to get an iterator; it shouldn't matter if unlocked is changed now
-	  for (Iterator it = mp.keySet().iterator(); it.hasNext() && available==null;)
-	  {			
-		  Object possibleKey = it.next();
-			if (genClass.isInstance(_unlocked.get(possibleKey)))
-			  available = (String)possibleKey;              // if we found one, save the key
-	  }
+		pObj = (IPoolable)_unlocked.removeInstanceOf(genClass);  // if we find one, take it out of the pool
 		
-		if (available != null)                        // if we did find an instance of the class
+		if (pObj != null)                             // if we did find an instance of the class
 		{
-		  pObj = (IPoolable)_unlocked.get(available);      //get the object and remove it from the pool
-		  _unlocked.remove(available);
 		  pObj.setObjectContext(context);
 		}
 		else                                          // otherwise, create one
@@ -206,16 +239,22 @@ public class PoolMgr implements IPoolMgr
 	  IIID objID = args.getIID();
 	  if (objID == null) throw new OculusException("Object IID expected in PoolMgr.getObject(IObjectContext,'"+classname+"',IDataSet).");
 		String key = keyGen(classname,objID);		// generate a key for the object
+    IdentityMap ids = args.isEmpty() ? IdentityMap.current() : null;  // only plain IID requests are remembered
+    if (ids != null)
+    {
+      pObj = (IPersistable)ids.get(context,key);
+      if (pObj != null)
+        return pObj;                                // this context already has a copy
+    }
 
 	try
 	{
 
     if (_locked.containsKey(key))                  // if it's already checked out
     {
-      if (_locks.containsKey(key))
-      {
       ILock lock = (ILock)_locks.get(key);
-      if (lock == null) throw new OculusException("Invalid Lock object in PoolMgr.getObject(IObjectContext,String,IDataSet).");
+      if (lock != null)
+      {
       ICRMConnection conn = context.getConnection();
       if (conn == null) throw new OculusException("Error connecting to CRM in PoolMgr.getObject(IObjectContext,String,IDataSet).");
       IIID userID = conn.getUserIID();
@@ -228,38 +267,34 @@ public class PoolMgr implements IPoolMgr
 
 
 
-	  if (_unlocked.containsKey(key))          // if its in the cache, return it
-		pObj = (IPersistable)_unlocked.get(key);
-	  else                                    // otherwise
+	  pObj = (IPersistable)_unlocked.get(key);  // if its in the cache, return it
+	  if (pObj == null)                       // otherwise
 	  {
-		try
-		{
-		  pObj = (IPersistable)createShell(classname);  // create an IPoolable shell
-		  if (pObj == null) throw new OculusException("Instance of class: "+classname+" returned as null.");
-		  pObj.construct(context,args);
-		  if (pObj.getPersState() == null || pObj.getPersState().equals(PersState.UNINITED))
-			pObj.load();                          // get data from the data store
+		pObj = (IPersistable)createShell(classname);  // create an IPoolable shell
+		if (pObj == null) throw new OculusException("Instance of class: "+classname+" returned as null.");
+		pObj.construct(context,args);
+		if (pObj.getPersState() == null || pObj.getPersState().equals(PersState.UNINITED))
+		  pObj.load();                          // get data from the data store
 	
-		  if (!(pObj instanceof IPoolableNotCachable))  // and put it in the view-only cache
-			_unlocked.put(key,pObj);            // do not cache collections
-		  else
-      {
-        if (pObj instanceof IRCollection)
-        	((IRCollection)pObj).reset();       // reset them.
-      }
-		}
-		catch (ClassNotFoundException exp)
-		{
-		  throw new ClassNotFoundException("The class name "+classname+" could not be found.");
-		}
+		if (!(pObj instanceof IPoolableNotCachable))  // and put it in the view-only cache
+		  _unlocked.put(key,pObj);            // do not cache collections
+		else
+    {
+      if (pObj instanceof IRCollection)
+      	((IRCollection)pObj).reset();       // reset them.
+    }
 	  }
     pObj.setObjectContext(context);
-	  pObj = (IPersistable)pObj.dolly();            // return a clone so everyone has their own copy
-    pObj.setObjectContext(context);
+	  if (_snapshots && pObj instanceof ISnapshotable)
+		pObj = (IPersistable)((ISnapshotable)pObj).snapshot();  // share the cached state, it is only copied if it gets changed
+	  else
+		pObj = (IPersistable)pObj.dolly();            // return a clone so everyone has their own copy
 	  if (pObj == null) throw new OculusException("Clone method returned null.");
     pObj.setObjectContext(context);
 	  if (pObj.isRemoveable())
-		_request.put(key,new Long(System.currentTimeMillis()));  // record when the request was made
+		_request.schedule(key,System.currentTimeMillis() + _idleMillis);  // push back when it expires
+	  if (ids != null && !(pObj instanceof IPoolableNotCachable))
+		ids.put(context,key,pObj);                            // collections keep a cursor, so they aren't shared
 	}
   catch (OculusException ex) { throw ex; }
 	catch (Exception exp) { throw new OculusException(exp); }
@@ -302,12 +337,12 @@ public class PoolMgr implements IPoolMgr
 		  // else
 		  //   throw new OculusException("Object ID expected in PoolMgr.getObject(IObjectContext,String,IDataSet,boolean).");
 		}
-		if (key != null && _locked.containsKey(key))                  // if it's already checked out
+		IPersistable lockedObj = (key == null) ? null : (IPersistable)_locked.get(key);
+		if (lockedObj != null)                            // if it's already checked out
 		{
-		  if (_locks.containsKey(key))
+		  ILock lock = (ILock)_locks.get(key);
+		  if (lock != null)
 		  {
-			ILock lock = (ILock)_locks.get(key);
-			if (lock == null) throw new OculusException("Invalid Lock object in PoolMgr.getObject(IObjectContext,String,IDataSet,boolean).");
 			ICRMConnection conn = context.getConnection();
 			if (conn == null) throw new OculusException("Error connecting to CRM in PoolMgr.getObject(IObjectContext,String,IDataSet,boolean).");
 			IIID userID = conn.getUserIID();
@@ -317,23 +352,18 @@ public class PoolMgr implements IPoolMgr
 								  //   then throw the LockException
 			  throw new ObjectLockedException("Someone else has a lock on : "+key);
 		  }
-		  pObj = (IPersistable)_locked.get(key);            // get the obj
+		  pObj = lockedObj;                                 // get the obj
       pObj.setObjectContext(context);
 		}
 		else                                            // if it's not checked out
 		{
-		  if (key != null && _unlocked.containsKey(key))                  // if it's in the cache
-		  {
-			pObj = (IPersistable)_unlocked.get(key);        // get a copy of it            
-			if (pObj.getPersState() != null && pObj.getPersState().equals(PersState.PARTIAL))      // if it's only partially loaded
-			  pObj.load();                                          // we'd better get a fresh copy before editing it
-      _unlocked.put(key,pObj);
-			pObj.setObjectContext(context);
-      pObj = (IPersistable)pObj.dolly();
-			if (pObj == null) throw new OculusException("Clone method returned null.");
-			pObj.setObjectContext(context);
-		  }
-		  else                                            // if it's not in the cache
+		  if (key != null)
+			pObj = (IPersistable)_unlocked.get(key);        // get a copy of it
+		  if (pObj != null && pObj.getPersState() != null && pObj.getPersState().equals(PersState.PARTIAL))
+			pObj = null;                                  // if it's only partially loaded we'd better get a fresh copy
+		                                                  // before editing it.  Snapshots may share the cached one, so
+		                                                  // it can't be reloaded in place.
+		  if (pObj == null)                               // if it's not in the cache
 		  {
 			pObj = (IPersistable)createShell(classname);
 			if (pObj == null) throw new OculusException("Instance of class: "+classname+" returned as null.");
@@ -357,7 +387,7 @@ public class PoolMgr implements IPoolMgr
 			((IRCollection)pObj).setAsLocked();
 			((IRCollection)pObj).reset();
 		  }
-		  _request.remove(key);
+		  _request.cancel(key);
 		}
 	  }
 	}
@@ -372,6 +402,11 @@ public class PoolMgr implements IPoolMgr
   */
 	public boolean isLocked(IPoolable obj)
 	{
+    if (obj instanceof IPersistable)              // persistable keys don't depend on the context,
+    {                                             // so we can go straight to the entry
+      try { return _locked.get(keyGen(obj)) == obj; }
+      catch (ORIOException ignore) { }
+    }
 		return _locked.containsValue(obj);
 	}
 	/**
@@ -431,8 +466,10 @@ public class PoolMgr implements IPoolMgr
 		ILock lock = new Lock(obj.getObjectContext(),obj);
 	if (lock == null) throw new OculusException("Invalid lock generation.");
 		_locks.put(key,lock);														// create an ILock object for the object
-		if (_request.containsKey(key))
-			_request.remove(key);													// remove the object from the requests so it doesn't get cleaned
+		_request.cancel(key);														// remove the object from the requests so it doesn't get cleaned
+    forget(key);                // later view requests should get the edit buffer
+    if (_lockMillis > 0)
+      _lockExpiry.schedule(key,System.currentTimeMillis() + _lockMillis);
 		
 		if (obj instanceof IPersistable)								// if it's IPersistable
 		{																										// add it to the transaction
@@ -455,10 +492,10 @@ public class PoolMgr implements IPoolMgr
 	if (obj == null) throw new ORIOException("Cannot remove null object from the pool.");
 		String key = keyGen(obj);
 	if (key == null) throw new ORIOException("Invalid key generation.");
-		if (_locked.containsKey(key))										// remove the object from every list
-			_locked.remove(key);
-		if (_locks.containsKey(key))
-			_locks.remove(key);
+		_locked.remove(key);														// remove the object from every list
+		_locks.remove(key);
+    _lockExpiry.cancel(key);
+    forget(key);
 	removeKey(key);
 	}
 	/**
@@ -469,18 +506,42 @@ public class PoolMgr implements IPoolMgr
 	throws ORIOException
 	{
 	if (key == null) throw new ORIOException("Cannot remove null key value from pool.");
-		if (_unlocked.containsKey(key))
-			_unlocked.remove(key);
-		if (_request.containsKey(key))
-			_request.remove(key);
+		_unlocked.remove(key);
+		_request.cancel(key);
 	}
+  /**
+  * Drops the object with the given key from the thread's identity map.
+  */
+  private static void forget(String key)
+  {
+    IdentityMap ids = IdentityMap.current();
+    if (ids != null)
+      ids.remove(key);
+  }
   public void replace(IPersistable obj)
 	throws ORIOException
   {
 	String key = keyGen(obj);
-	_unlocked.put(key,obj);
+	_unlocked.put(key,cacheCopy(obj));
   }  
   /**
+  * Returns what to cache for an object its caller still holds.  A cached object that
+  * snapshots have been taken of can no longer be changed, so when snapshots are on, an
+  * ISnapshotable is cached as a copy and the caller's instance stays its own.
+  */
+  private IPoolable cacheCopy(IPoolable obj)
+	throws ORIOException
+  {
+    if (!_snapshots || !(obj instanceof ISnapshotable))
+      return obj;
+    try
+    {
+      return (IPoolable)obj.dolly();
+    }
+    catch (ORIOException ex) { throw ex; }
+    catch (OculusException ex) { throw new ORIOException(ex); }
+  }
+  /**
   * Returns an object that was retrieve using getObject(IObjectContext, String).
   * Hence, only non-IPersistable objects, like SRConnection, should use this method.
   * @param obj the object that is being returned to the pool.
@@ -494,9 +555,9 @@ public class PoolMgr implements IPoolMgr
 		if (_locked.containsKey(key))
 		{
 			unlock(obj);																	// unlock the object
-			_unlocked.put(key,obj);												// make it available to others
+			_unlocked.put(key,cacheCopy(obj));								// make it available to others
 	  if (obj.isRemoveable())
-			_request.put(key,new Long(System.currentTimeMillis()));	// set the request time
+			_request.schedule(key,System.currentTimeMillis() + _idleMillis);	// set the request time
 		}
 	}
   /**
@@ -510,10 +571,9 @@ public class PoolMgr implements IPoolMgr
 	if (obj == null) throw new ORIOException("Cannot unlock null object.");
 	String key = keyGen(obj);                        // generate a key
 	if (key == null) throw new ORIOException("Invalid key generation.");
-		if (_locked.containsKey(key))										// remove from the locked list
-			_locked.remove(key);
-		if (_locks.containsKey(key))										// remove the ILock object
-			_locks.remove(key);
+		_locked.remove(key);														// remove from the locked list
+		_locks.remove(key);															// remove the ILock object
+    _lockExpiry.cancel(key);
 	}
   /**
   * Updates the cache to reflect changes made while being locked.  If the object was
@@ -534,13 +594,23 @@ public class PoolMgr implements IPoolMgr
 		{
 			String key = keyGen(obj);
 	  if (key == null) throw new ORIOException("Key generation invalid.");
+      forget(key);            // the thread's copy is out of date
 			if (_locked.containsKey(key))										// if it's locked
 			{
       if (!(obj instanceof IPoolableNotCachable))
-				_unlocked.put(key,obj);												// update the cache.
+				_unlocked.put(key,cacheCopy(obj));							// update the cache.
 			if (obj.isRemoveable())
-		  		_request.put(key,new Long(System.currentTimeMillis()));
+		  		_request.schedule(key,System.currentTimeMillis() + _idleMillis);
 			}
 		}
 	}
-}
\ No newline at end of file
+  /**
+  * Returns the cache of unlocked, view-only objects so that its size and hit, miss and
+  * eviction counts can be monitored.
+  * @return the view-only object cache.
+  */
+  public ObjectCache getObjectCache()
+  {
+    return _unlocked;
+  }
+}
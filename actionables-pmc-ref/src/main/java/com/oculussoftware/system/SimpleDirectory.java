@@ -3,6 +3,9 @@ package com.oculussoftware.system;
 import com.oculussoftware.api.sysi.*;
 import java.sql.*;
 import java.util.PropertyResourceBundle;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.io.*;
 
 /**
@@ -25,10 +28,13 @@ import java.io.*;
 *																							effect is that the constructor had to throw OculusException.
 *																							Also added a check to get() for a null directory so it too
 *																							has to throw OculusException.
+* ---                                         Added getItems() so the ComponentRegistry can read every component
+*                                             at once, and reload() so changes to the file can be picked up.
 */
 
 final public class SimpleDirectory implements IDirectory
 {
+	private static final String FILENAME = "../oculus.ini";	// name and directory of the prop file
 	private static IDirectory _simpleDir;			// singleton instance of SimpleDirectory
 	private PropertyResourceBundle _dir;			// handles the list of properties
 	
@@ -44,9 +50,12 @@ final public class SimpleDirectory implements IDirectory
 	private SimpleDirectory()
 		throws FileNotFoundException, IOException
 	{
-		String filename = "../oculus.ini";			// name and directory of the prop file
-		InputStream propertiesFile = new FileInputStream(filename);
-		_dir = new PropertyResourceBundle(propertiesFile);		// load the props
+		InputStream propertiesFile = new FileInputStream(FILENAME);
+		try
+		{
+			_dir = new PropertyResourceBundle(propertiesFile);		// load the props
+		}
+		finally { propertiesFile.close(); }
 	}
 	
 	/**
@@ -56,7 +65,7 @@ final public class SimpleDirectory implements IDirectory
   * @throws OculusException This exception is thrown if the properties file could not
   * be read.
 	*/
-	public static IDirectory getInstance()
+	public static synchronized IDirectory getInstance()
 		throws OculusException
 	{
 		// if we haven't initialized the directory yet
@@ -102,4 +111,56 @@ final public class SimpleDirectory implements IDirectory
     }
     return retVal;
 	}
+
+	/**
+  Returns the value of the given property for every directory item that has it.
+  @return a Map of directory item name to the property's value.
+  @throws OculusException This exception is thrown if the directory has not been
+  initialized.
+  @param property The property to collect.
+  */
+	public Map getItems(String property)
+		throws OculusException
+	{
+		if (_dir == null)
+			throw new OculusException("Attempt to access directory before it has been initialized.");
+		Map items = new HashMap();
+		String suffix = "."+property;
+		for (Enumeration keys = _dir.getKeys(); keys.hasMoreElements(); )
+		{
+			String key = (String)keys.nextElement();
+			if (key.startsWith("obj.") && key.endsWith(suffix) && key.length() > 4+suffix.length())
+				items.put(key.substring(4, key.length()-suffix.length()), _dir.getObject(key));
+		}
+		return items;
+	}
+
+	/**
+  Reads the properties file again.  Callers that get the directory after this see the new
+  values.
+  @return The new instance of the directory.
+  @throws OculusException This exception is thrown if the properties file could not
+  be read, in which case the old directory is kept.
+  */
+	public static synchronized IDirectory reload()
+		throws OculusException
+	{
+		try
+		{
+			_simpleDir = new SimpleDirectory();
+		}
+		catch (Exception exp)
+		{
+			throw new OculusException(exp.toString());
+		}
+		return _simpleDir;
+	}
+
+	/**
+  Returns the time the properties file was last changed, or 0 if it doesn't exist.
+  */
+	public static long lastModified()
+	{
+		return new File(FILENAME).lastModified();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package com.oculussoftware.system;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+* Filename:    TimingWheel.java
+* Date:
+* Description: Hierarchical timing wheel that tells the pool which keys have expired.
+*
+* <P>The PoolMgr used to find idle objects by walking its whole request table every
+* cycle.  The wheel files each key in a slot by its deadline instead, so a tick only
+* looks at the keys that are due in that slot.  Each level has 64 slots; a slot in
+* level 0 covers one tick, a slot in level 1 covers 64 ticks, and so on.  Keys that are
+* further away than a level can hold go to the next level up, and move down a level as
+* their time gets closer.</P>
+*
+* <P>Touching a key that is already scheduled only moves its deadline; the key stays in
+* its slot and is re-filed under the new deadline when that slot comes due.  So a touch
+* is a map lookup and a volatile write, and never waits for the cleaner.  Cancelled keys
+* are dropped when their slot comes due.</P>
+*
+* Copyright 1-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+public class TimingWheel
+{
+  /** Called with each key whose deadline has passed. */
+  public interface ExpiryListener
+  {
+    public void expired(Object key);
+  }
+
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS - 1;
+  private static final int LEVELS = 4;
+
+  //------------------------ Private Instance Variables ------------------------------------
+  private final long _tickMillis;
+  private final List[][] _wheel = new List[LEVELS][SLOTS];
+  private final Map _entries = new ConcurrentHashMap();   // key -> Entry
+  private final Object _lock = new Object();               // guards _wheel and _currentTick
+  private long _currentTick;
+
+  //------------------------ Public Constructors ------------------------------------
+  /**
+  * Creates a wheel whose slots are the given number of milliseconds wide.  Deadlines are
+  * rounded up to the next tick, so a key never expires early.
+  */
+  public TimingWheel(long tickMillis)
+  {
+    if (tickMillis <= 0)
+      throw new IllegalArgumentException("The tick must be at least one millisecond.");
+    _tickMillis = tickMillis;
+    _currentTick = System.currentTimeMillis() / tickMillis;
+    for (int level = 0; level < LEVELS; level++)
+      for (int slot = 0; slot < SLOTS; slot++)
+        _wheel[level][slot] = new ArrayList();
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  /** Returns the width of a slot in milliseconds. */
+  public long getTickMillis() { return _tickMillis; }
+
+  /** Returns the number of keys that are scheduled. */
+  public int size() { return _entries.size(); }
+
+  /** Returns true if the key is scheduled to expire. */
+  public boolean isScheduled(Object key) { return _entries.containsKey(key); }
+
+  /**
+  * Schedules the key to expire at the given time, or moves its deadline if it is
+  * already scheduled.  Deadlines are meant to move later; a deadline that is moved
+  * earlier only takes effect when the old one's slot comes due.
+  */
+  public void schedule(Object key, long deadline)
+  {
+    Entry entry = (Entry)_entries.get(key);
+    if (entry != null)
+    {
+      entry.deadline = deadline;          // it gets re-filed when its slot comes due
+      if (_entries.get(key) == entry)
+        return;
+    }
+    entry = new Entry(key, deadline);
+    _entries.put(key, entry);
+    synchronized (_lock)
+    {
+      _file(entry);
+    }
+  }
+
+  /** Stops the key from expiring.  It is dropped from its slot when the slot comes due. */
+  public void cancel(Object key)
+  {
+    _entries.remove(key);
+  }
+
+  /** Cancels every key. */
+  public void clear()
+  {
+    _entries.clear();
+    synchronized (_lock)
+    {
+      for (int level = 0; level < LEVELS; level++)
+        for (int slot = 0; slot < SLOTS; slot++)
+          _wheel[level][slot].clear();
+    }
+  }
+
+  /**
+  * Moves the wheel up to the given time and tells the listener about every key whose
+  * deadline has passed.  The listener is called after the wheel has been released, so it
+  * may schedule or cancel keys.
+  * @return the number of keys that expired.
+  */
+  public int advance(long now, ExpiryListener listener)
+  {
+    List expired = new ArrayList();
+    synchronized (_lock)
+    {
+      long target = now / _tickMillis;
+      while (_currentTick < target)
+      {
+        _currentTick++;
+        _cascade();
+        List slot = _wheel[0][(int)(_currentTick & SLOT_MASK)];
+        if (slot.isEmpty())
+          continue;
+        List due = new ArrayList(slot);
+        slot.clear();
+        for (Iterator it = due.iterator(); it.hasNext(); )
+        {
+          Entry entry = (Entry)it.next();
+          if (_entries.get(entry.key) != entry)
+            continue;                                      // cancelled or replaced
+          if (_tickOf(entry.deadline) > _currentTick)
+            _file(entry);                                  // touched since it was filed
+          else if (_entries.remove(entry.key) != null)
+            expired.add(entry.key);
+        }
+      }
+    }
+    for (Iterator it = expired.iterator(); it.hasNext(); )
+      listener.expired(it.next());
+    return expired.size();
+  }
+
+  public String toString()
+  {
+    return "TimingWheel[tick="+_tickMillis+"ms, scheduled="+size()+"]";
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private long _tickOf(long deadline)
+  {
+    return (deadline + _tickMillis - 1) / _tickMillis;
+  }
+
+  /** Files the entry in the slot for its deadline.  The caller holds _lock. */
+  private void _file(Entry entry)
+  {
+    long tick = Math.max(_tickOf(entry.deadline), _currentTick + 1);
+    long delta = tick - _currentTick;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1))))
+      level++;
+    long span = 1L << (SLOT_BITS * (level + 1));
+    if (delta >= span)
+      tick = _currentTick + span - 1;                      // beyond the wheel, park it in the furthest slot
+    int slot = (int)((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    _wheel[level][slot].add(entry);
+  }
+
+  /** Moves the entries of the higher-level slots that just came due down a level.  The caller holds _lock. */
+  private void _cascade()
+  {
+    for (int level = 1; level < LEVELS; level++)
+    {
+      if ((_currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+        return;                                            // the lower level hasn't wrapped
+      List slot = _wheel[level][(int)((_currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+      if (slot.isEmpty())
+        continue;
+      List due = new ArrayList(slot);
+      slot.clear();
+      for (Iterator it = due.iterator(); it.hasNext(); )
+      {
+        Entry entry = (Entry)it.next();
+        if (_entries.get(entry.key) == entry)
+          _file(entry);
+      }
+    }
+  }
+
+  //------------------------ Inner Classes ------------------------------------
+  private static final class Entry
+  {
+    final Object key;
+    volatile long deadline;
+
+    Entry(Object key, long deadline)
+    {
+      this.key = key;
+      this.deadline = deadline;
+    }
+  }
+}
@@ -25,6 +25,11 @@ import java.util.Enumeration;
 * ---             Saleem Shafi    4/21/00     Changed logic to force an explicit startTransaction().
 * BUG00327        Saleem Shafi    5/23/00     Added check to exclude IRCollections from saving now that IRCollections can be in the transaction.
 * DES00628        Egan Royal      6/5/00      Added check to exclude Deleted objects from saving.
+* ---                                         commit() sends the updates to the database in JDBC batches.
+* ---                                         commit() drops cached permissions that depend on the saved objects.
+* ---                                         commit() hands the saved objects to the KeywordIndex.
+* ---                                         commit() hands the saved objects to the InboxStore.
+* ---                                         commit() indexes the objects an IBulkPersistable saved.
 */
 
 public class Transaction implements ITransaction
@@ -32,6 +37,8 @@ public class Transaction implements ITransaction
 	private Vector _operations;							// list of the operations that need to commit together
 	private IObjectContext _context;						// context of the objects in the operations
 	private IGUID _guid;												// guid of this transaction
+	private int _statementCount;								// updates batched by the last commit
+	private int _batchCount;										// JDBC batches sent by the last commit
 	
 	//------------------------ Private Constructors ------------------------------------
 	/**
@@ -86,6 +93,9 @@ public class Transaction implements ITransaction
   * the cache is updated and the locks are released.  If there are any errors during
   * this process, the objects are completed removed from the cache and forced to be
   * reloaded from the database.
+  * <P>While the objects are saved, the connection collects their updates and sends them
+  * in JDBC batches, one per table and statement shape where the order allows it.  The
+  * counts are available from getStatementCount() and getBatchCount() afterwards.</P>
   * @return true if the commit was successful
   * @throws OculusException This exception is thrown if there was an error during
   * the transfer of data to the database.
@@ -94,20 +104,41 @@ public class Transaction implements ITransaction
     throws OculusException
 	{
 		IRConnection conn = null;
+		List saved = new ArrayList();								// ids of the objects to index again once committed
+		List savedObjects = new ArrayList();				// and the objects themselves
 		try
 		{
 			// This checks out a Connection in the user's name so that one connection
 			// is used for all of the operations
 			conn = CRM.getInstance().getDatabaseConnection(_context);
+			conn.startBatch();
 			// For every operation, save it
 			for (Enumeration e = _operations.elements(); e.hasMoreElements(); )
       {
         IPersistable pObj = ((IPersistable)e.nextElement());
         if (!(pObj instanceof IRCollection) || PersState.DELETED.equals(pObj.getPersState()))
+        {
+          // the object's parent may be changing, so drop the permissions worked out through it
+          if (!PersState.NEW.equals(pObj.getPersState()))
+            com.oculussoftware.system.sec.PermissionCache.getInstance().invalidateObject(conn, pObj.getIID().getLongValue());
           pObj.save();
+          saved.add(pObj.getIID());
+          if (pObj instanceof IBulkPersistable)
+          {
+            long[] ids = ((IBulkPersistable)pObj).getSavedIDs();
+            for (int i = 0; i < ids.length; i++)
+              saved.add(new Long(ids[i]));
+          }
+          savedObjects.add(pObj);
+        }
       }
-			// This will commit all of the changes in the data store
+			// Send whatever is still batched, then commit all of the changes in the data store
+			conn.endBatch();
+			_statementCount = conn.getBatchedStatementCount();
+			_batchCount = conn.getBatchCount();
+			com.oculussoftware.service.log.DatabaseLogService.getInstance().write("COMMIT "+_guid+": "+_statementCount+" statements in "+_batchCount+" batches");
 			conn.commit();
+			com.oculussoftware.repos.query.KeywordIndex.getInstance().enqueue(saved);
 		}
 		// If there was a problem updating the data store
 		catch (Exception exp)
@@ -125,6 +156,9 @@ public class Transaction implements ITransaction
 			CRM.getInstance().returnDatabaseConnection(conn);
 		}			
 
+		// bring the inboxes kept in memory up to date
+		com.oculussoftware.bus.common.process.InboxStore.getInstance().committed(_context, savedObjects);
+
 		try
 		{
 			// For every operation, update the cache
@@ -172,6 +206,22 @@ public class Transaction implements ITransaction
 		return true;
 	}
   
+	/**
+  Returns the number of updates the last commit sent in batches.
+  */
+	public int getStatementCount()
+	{
+		return _statementCount;
+	}
+	
+	/**
+  Returns the number of JDBC batches the last commit sent.
+  */
+	public int getBatchCount()
+	{
+		return _batchCount;
+	}
+	
 	//------------------------ IObject Methods ------------------------------------
 	/**
   Returns the context of this transaction.
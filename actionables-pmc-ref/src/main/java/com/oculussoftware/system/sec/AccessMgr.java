@@ -155,6 +155,10 @@ import java.sql.*;
 *   then the ObjectACInfo knows how to create another ObjectACInfo corresponding to the
 *   parent business object.
 *
+*   The current user's answers are kept in the shared PermissionCache, so an ObjectACInfo
+*   is only built for permissions that haven't been worked out since the grants, roles,
+*   groups or parents they depend on last changed.
+*
 */
 public class AccessMgr implements IAccessMgr
 {
@@ -188,6 +192,7 @@ public class AccessMgr implements IAccessMgr
   private ObjectACInfo   _rootObject          = null;
   private IPermSet       _permSet             = null;
   private String         _strGroups           = null;
+  private long           _strGroupsVersion    = 0;
   
   //-----------------------------------------------------------------------------
   // Public constructor(s)
@@ -516,19 +521,47 @@ public class AccessMgr implements IAccessMgr
   {
     if ( obj == null ) throw new OculusException("Null object.");
     
-    IGrantSet retSet = _initPermSet(perms);
-    ObjectACInfo oai = new ObjectACInfo(this, obj);
-    oai.fillInhrPermissions(retSet, perms);
-    return retSet;
+    return _cachedFill(new ObjectACInfo(this, obj), obj.getIID().getLongValue(), perms);
   }
   
   /** Internal method does not check for admin or ownership. */
   private IGrantSet _checkReposPerms(IPermission perms[])
     throws OculusException
+  {
+    return _cachedFill(new ObjectACInfo(this, null), IDCONST.OCUREPOS.getLongValue(), perms);
+  }
+
+  /**
+  * Fills the current user's inherited permissions on the object, taking whatever it can
+  * from the shared PermissionCache and working out only the rest.
+  */
+  private IGrantSet _cachedFill(ObjectACInfo oai, long oid, IPermission perms[])
+    throws OculusException
   {
     IGrantSet retSet = _initPermSet(perms);
-    ObjectACInfo oai = new ObjectACInfo(this, null);
-    oai.fillInhrPermissions(retSet, perms);
+    PermissionCache cache = PermissionCache.getInstance();
+    List misses = new ArrayList(perms.length);
+    for (int i = 0; i < perms.length; i++) {
+      Boolean granted = cache.get(_userId, oid, perms[i].getID());
+      if (granted == null)
+        misses.add(perms[i]);
+      else if (granted.booleanValue())
+        retSet.add(perms[i]);
+    }
+    if (!misses.isEmpty()) {
+      IPermission missPerms[] = (IPermission[]) misses.toArray(new IPermission[misses.size()]);
+      long generation = cache.getGeneration();
+      Set visited = new HashSet();
+      IGrantSet missSet = _initPermSet(missPerms);
+      oai.setVisitedSet(visited);
+      oai.fillInhrPermissions(missSet, missPerms);
+      for (int i = 0; i < missPerms.length; i++) {
+        boolean granted = missSet.contains(missPerms[i]);
+        if (granted)
+          retSet.add(missPerms[i]);
+        cache.put(_userId, oid, missPerms[i].getID(), granted, visited, generation);
+      }
+    }
     return retSet;
   }
 
@@ -604,8 +637,10 @@ public class AccessMgr implements IAccessMgr
     throws OculusException
   {
     String retString = "";
-    // if userid is that of 'current' user, try to use cached group list
-    if (userId == getUserId() && _strGroups != null) {
+    // if userid is that of 'current' user, try to use cached group list, unless the
+    // user's groups have changed since it was built
+    long version = PermissionCache.getInstance().getUserVersion(userId);
+    if (userId == getUserId() && _strGroups != null && version == _strGroupsVersion) {
         retString = _strGroups;
     }
     else {
@@ -614,6 +649,7 @@ public class AccessMgr implements IAccessMgr
       // cache away the group list...
       if (userId == getUserId()) {
         _strGroups = retString;
+        _strGroupsVersion = version;
       }
     }
     return retString;
@@ -714,6 +750,7 @@ public class AccessMgr implements IAccessMgr
                      + accid + " )";
         
         stmt.update(query);
+        PermissionCache.getInstance().invalidateObject(repConn, oid);
       }
     }
     catch (ORIOException sqlExp)
@@ -740,6 +777,7 @@ public class AccessMgr implements IAccessMgr
                    + " AND " + COL_PAROBJID + "=" + oid ;
       
       stmt.update(query);
+      PermissionCache.getInstance().invalidateObject(repConn, oid);
     }
     catch (ORIOException sqlExp)
     {
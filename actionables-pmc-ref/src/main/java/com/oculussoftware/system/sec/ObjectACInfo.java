@@ -142,6 +142,7 @@ public class ObjectACInfo
   
   private long _oid;
   private Set _roleSet = null;
+  private Set _visited = null;    // collects the ids whose grants were read, for the PermissionCache
   
   //-----------------------------------------------------------------------------
   // Public constructor(s)
@@ -258,6 +259,15 @@ public class ObjectACInfo
   //-----------------------------------------------------------------------------
   // Package instance methods
   //-----------------------------------------------------------------------------
+  /**
+  * Has fillInhrPermissions( ) add the id of every object, parent and class whose grants
+  * it reads to the given set (as Longs).
+  */
+  void setVisitedSet(Set visited)
+  {
+    _visited = visited;
+  }
+
   /**
   * Recursively looks for permissions in parent objects if needed, by creating a new
   * ObjectACInfo instance.  Used by other 'inherited' methods.
@@ -275,12 +285,17 @@ public class ObjectACInfo
       else
         all = groups;
     }
+    if (_visited != null)
+      _visited.add(new Long(getObjectId()));
     _sqlFillPermissions(all, getObjectId(), permSet, perms);
     if (lUserId != null)
     {
       String roles = _buildRoleList(lUserId.longValue());
-      if (roles != null && roles.trim().length() > 0)
+      if (roles != null && roles.trim().length() > 0) {
+        if (_visited != null)
+          _visited.add(new Long(getClassId()));
         _sqlFillPermissions(roles, getClassId(), permSet, perms );
+      }
     }
     // recursively check parents unless this is the root repository object
     // JKC 8/15/00 Only do parent check one permissions that are recursive in nature.
@@ -289,6 +304,7 @@ public class ObjectACInfo
     {
       ObjectACInfo paci = _getParentNode();
       if (paci != null) {
+        paci.setVisitedSet(_visited);
         paci.fillInhrPermissions(lUserId, groups, permSet, ngrPerms);
       }
     }
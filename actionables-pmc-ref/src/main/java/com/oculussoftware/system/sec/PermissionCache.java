@@ -0,0 +1,337 @@
+package com.oculussoftware.system.sec;
+/**
+* $Workfile: PermissionCache.java $
+* Description: Shared cache of effective permissions.
+*
+* Copyright 7-31-2000 Oculus Software.  All Rights Reserved.
+*
+* @version 1.2
+*/
+
+import com.oculussoftware.api.repi.*;
+import com.oculussoftware.system.*;
+
+import java.util.*;
+
+/**
+* Remembers, across all AccessMgrs, whether a user holds a permission on an object once
+* all of the user's groups, roles and the object's parents have been taken into account.
+*
+* <P>Each entry remembers which objects the AccessMgr had to look at to work it out: the
+* object itself, every parent it walked up through and the class whose Role grants it
+* read.  A change to the PermissionGrant rows of any of those objects, or a change to the
+* parent of any of them, removes the entry.  A change to a user's groups or roles removes
+* all of that user's entries.</P>
+*
+* <P>Writes are not visible to other connections until they are committed, so an entry
+* worked out by another user between the write and the commit could still hold the old
+* answer.  For that reason a change made through a connection is remembered and applied a
+* second time when the connection commits or rolls back.  An entry that was being worked
+* out while any invalidation happened is not stored at all.</P>
+*
+* <P>The size of the cache is read from the "maxEntries" value of the "PermissionCache"
+* directory entry.  Zero turns the cache off.</P>
+*/
+public class PermissionCache
+{
+  //-----------------------------------------------------------------------------
+  // Private static variables
+  //-----------------------------------------------------------------------------
+  /** Number of entries kept if none is configured. */
+  public static final int DEFAULT_MAX_ENTRIES = 50000;
+
+  private static PermissionCache _instance = null;
+
+  //-----------------------------------------------------------------------------
+  // Public static methods
+  //-----------------------------------------------------------------------------
+  public static synchronized PermissionCache getInstance()
+  {
+    if (_instance == null)
+    {
+      int maxEntries;
+      try
+      {
+        maxEntries = Integer.parseInt(((String)SimpleDirectory.getInstance().getValue("maxEntries","PermissionCache")).trim());
+      }
+      catch (Exception ignore) { maxEntries = DEFAULT_MAX_ENTRIES; }
+      _instance = new PermissionCache(maxEntries);
+    }
+    return _instance;
+  }
+
+  //-----------------------------------------------------------------------------
+  // Private instance variables
+  //-----------------------------------------------------------------------------
+  private ObjectCache _entries;                    // "user:object:perm" -> Entry
+  private boolean     _enabled;
+  private Object      _indexLock = new Object();   // guards the indexes and _generation
+  private Map         _byObject = new HashMap();   // Long object id -> Set of keys
+  private Map         _byUser = new HashMap();     // Long user id -> Set of keys
+  private Map         _userVersions = new HashMap(); // Long user id -> Long, bumped on group/role changes
+  private Map         _pending = new HashMap();    // IRConnection -> Pending
+  private long        _generation = 0;
+
+  private long _invalidations = 0;
+  private long _droppedStores = 0;
+
+  //-----------------------------------------------------------------------------
+  // Public constructor(s)
+  //-----------------------------------------------------------------------------
+  public PermissionCache(int maxEntries)
+  {
+    _enabled = (maxEntries > 0);
+    _entries = new ObjectCache(maxEntries, ObjectCache.DEFAULT_SEGMENTS);
+    _entries.setEvictionListener(new ObjectCache.EvictionListener() {
+      public void evicted(Object key, Object value)
+      {
+        synchronized (_indexLock) { _unindex((String)key, (Entry)value); }
+      }
+    });
+  }
+
+  //-----------------------------------------------------------------------------
+  // Public instance methods
+  //-----------------------------------------------------------------------------
+  /** Returns false if the cache has been configured off. */
+  public boolean isEnabled() { return _enabled; }
+
+  /**
+  * Returns Boolean.TRUE or Boolean.FALSE if the answer is cached, or null if it has to
+  * be worked out.
+  */
+  public Boolean get(long userId, long objectId, int permId)
+  {
+    if (!_enabled)
+      return null;
+    Entry entry = (Entry)_entries.get(_key(userId, objectId, permId));
+    return (entry == null) ? null : entry.granted;
+  }
+
+  /**
+  * Returns a stamp to pass to put() once the answer has been worked out.  If anything is
+  * invalidated in the meantime the answer is thrown away.
+  */
+  public long getGeneration()
+  {
+    synchronized (_indexLock) { return _generation; }
+  }
+
+  /**
+  * Caches the answer for the permission.
+  * @param objectIds the ids of every object (and class) whose grants were read.
+  * @param generation the value getGeneration() returned before the answer was worked out.
+  */
+  public void put(long userId, long objectId, int permId, boolean granted, Set objectIds, long generation)
+  {
+    if (!_enabled)
+      return;
+    String key = _key(userId, objectId, permId);
+    Entry entry = new Entry(userId, granted, objectIds);
+    synchronized (_indexLock)
+    {
+      if (generation != _generation)
+      {
+        _droppedStores++;
+        return;
+      }
+      Entry old = (Entry)_entries.put(key, entry);
+      if (old != null)
+        _unindex(key, old);
+      _addIndex(_byUser, entry.userId, key);
+      for (int i = 0; i < entry.objectIds.length; i++)
+        _addIndex(_byObject, entry.objectIds[i], key);
+    }
+  }
+
+  /** Drops every answer that depended on the grants or the parent of the object. */
+  public void invalidateObject(long objectId)
+  {
+    synchronized (_indexLock)
+    {
+      _generation++;
+      _invalidations++;
+      _removeAll((Set)_byObject.remove(new Long(objectId)));
+    }
+  }
+
+  /** Drops every answer for the user, and any group list cached for the user. */
+  public void invalidateUser(long userId)
+  {
+    synchronized (_indexLock)
+    {
+      _generation++;
+      _invalidations++;
+      Long lUser = new Long(userId);
+      _removeAll((Set)_byUser.remove(lUser));
+      Long version = (Long)_userVersions.get(lUser);
+      _userVersions.put(lUser, new Long((version == null) ? 1 : version.longValue() + 1));
+    }
+  }
+
+  /**
+  * Same as invalidateObject(long), and does it again when the connection that made the
+  * change commits or rolls back.
+  */
+  public void invalidateObject(IRConnection conn, long objectId)
+  {
+    invalidateObject(objectId);
+    _addPending(conn, new Long(objectId), false);
+  }
+
+  /**
+  * Same as invalidateUser(long), and does it again when the connection that made the
+  * change commits or rolls back.
+  */
+  public void invalidateUser(IRConnection conn, long userId)
+  {
+    invalidateUser(userId);
+    _addPending(conn, new Long(userId), true);
+  }
+
+  /** Repeats the invalidations made through the connection since its last commit or rollback. */
+  public void endOfWork(IRConnection conn)
+  {
+    Pending pending;
+    synchronized (_pending) { pending = (Pending)_pending.remove(conn); }
+    if (pending == null)
+      return;
+    for (Iterator it = pending.objects.iterator(); it.hasNext(); )
+      invalidateObject(((Long)it.next()).longValue());
+    for (Iterator it = pending.users.iterator(); it.hasNext(); )
+      invalidateUser(((Long)it.next()).longValue());
+  }
+
+  /**
+  * Returns a number that changes whenever the user's groups or roles change, so that
+  * callers can tell when something they derived from them is out of date.
+  */
+  public long getUserVersion(long userId)
+  {
+    synchronized (_indexLock)
+    {
+      Long version = (Long)_userVersions.get(new Long(userId));
+      return (version == null) ? 0 : version.longValue();
+    }
+  }
+
+  /** Removes every entry. */
+  public void clear()
+  {
+    synchronized (_indexLock)
+    {
+      _generation++;
+      _entries.clear();
+      _byObject.clear();
+      _byUser.clear();
+    }
+  }
+
+  public int size() { return _entries.size(); }
+  public long getHitCount() { return _entries.getHitCount(); }
+  public long getMissCount() { return _entries.getMissCount(); }
+  public long getEvictionCount() { return _entries.getEvictionCount(); }
+  public double getHitRate() { return _entries.getHitRate(); }
+  public long getInvalidationCount() { synchronized (_indexLock) { return _invalidations; } }
+  public long getDroppedStoreCount() { synchronized (_indexLock) { return _droppedStores; } }
+
+  public String toString()
+  {
+    return "PermissionCache[size="+size()+", hits="+getHitCount()+", misses="+getMissCount()+
+           ", evictions="+getEvictionCount()+", invalidations="+getInvalidationCount()+
+           ", dropped="+getDroppedStoreCount()+"]";
+  }
+
+  //-----------------------------------------------------------------------------
+  // Private instance methods
+  //-----------------------------------------------------------------------------
+  private static String _key(long userId, long objectId, int permId)
+  {
+    return userId+":"+objectId+":"+permId;
+  }
+
+  private void _addPending(IRConnection conn, Long id, boolean isUser)
+  {
+    if (conn == null)
+      return;
+    synchronized (_pending)
+    {
+      Pending pending = (Pending)_pending.get(conn);
+      if (pending == null)
+        _pending.put(conn, pending = new Pending());
+      if (isUser)
+        pending.users.add(id);
+      else
+        pending.objects.add(id);
+    }
+  }
+
+  /** Caller holds _indexLock. */
+  private void _removeAll(Set keys)
+  {
+    if (keys == null)
+      return;
+    for (Iterator it = keys.iterator(); it.hasNext(); )
+    {
+      String key = (String)it.next();
+      Entry entry = (Entry)_entries.remove(key);
+      if (entry != null)
+        _unindex(key, entry);
+    }
+  }
+
+  /** Caller holds _indexLock. */
+  private void _unindex(String key, Entry entry)
+  {
+    _removeIndex(_byUser, entry.userId, key);
+    for (int i = 0; i < entry.objectIds.length; i++)
+      _removeIndex(_byObject, entry.objectIds[i], key);
+  }
+
+  private static void _addIndex(Map index, long id, String key)
+  {
+    Long lId = new Long(id);
+    Set keys = (Set)index.get(lId);
+    if (keys == null)
+      index.put(lId, keys = new HashSet());
+    keys.add(key);
+  }
+
+  private static void _removeIndex(Map index, long id, String key)
+  {
+    Long lId = new Long(id);
+    Set keys = (Set)index.get(lId);
+    if (keys != null)
+    {
+      keys.remove(key);
+      if (keys.isEmpty())
+        index.remove(lId);
+    }
+  }
+
+  //-----------------------------------------------------------------------------
+  // Private inner classes
+  //-----------------------------------------------------------------------------
+  private static class Entry
+  {
+    final long userId;
+    final Boolean granted;
+    final long[] objectIds;
+
+    Entry(long userId, boolean granted, Set ids)
+    {
+      this.userId = userId;
+      this.granted = granted ? Boolean.TRUE : Boolean.FALSE;
+      this.objectIds = new long[ids.size()];
+      int i = 0;
+      for (Iterator it = ids.iterator(); it.hasNext(); )
+        this.objectIds[i++] = ((Long)it.next()).longValue();
+    }
+  }
+
+  private static class Pending
+  {
+    final Set objects = new HashSet();
+    final Set users = new HashSet();
+  }
+}
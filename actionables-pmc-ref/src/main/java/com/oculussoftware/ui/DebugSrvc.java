@@ -5,7 +5,6 @@ import java.util.*;
 import java.io.*;
 import javax.servlet.http.*;
 
-import com.oculussoftware.*;
 import com.oculussoftware.util.*;
 
 
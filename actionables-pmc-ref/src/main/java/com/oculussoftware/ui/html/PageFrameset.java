@@ -108,7 +108,7 @@ public class PageFrameset extends com.oculussoftware.ui.html.wrappers.Frameset i
   }
 
 
-	public String toString()
+	public void write(java.io.Writer out) throws java.io.IOException
 	{
 		if (needsHourGlass())
 		{
@@ -118,7 +118,7 @@ public class PageFrameset extends com.oculussoftware.ui.html.wrappers.Frameset i
 			appendOnLoad("Body.location='"+url+"'; if (document.layers) { window.onresize = onload; }");
 			needsHourGlass(false);
 		}
-		return super.toString();
+		super.write(out);
 	}
 
   //--------------------- IFrameset methods ------------------------
@@ -4,6 +4,7 @@ import com.oculussoftware.api.ui.html.*;
 import com.oculussoftware.api.sysi.OculusException;
 import com.oculussoftware.api.ui.html.wrappers.*;
 
+import java.io.*;
 import java.lang.*;
 import java.util.*;
 
@@ -31,6 +32,7 @@ public class GenericElement implements IGenericElement
   * ---             Jachin Cheng    02.24.00    Changed to implement interface
   * ---             Egan Royal      03.16.00    Changed HashMap to Vector to maintain the order of the params
   * ---             Saleem Shafi    03/26/00    Added getHTMLObject, getParentObject methods.
+  * ---                                         Added write(Writer); toString() and getElements() go through it.
   *
   */
   protected String       _elementType    = null;                 // element type/name
@@ -163,16 +165,28 @@ public class GenericElement implements IGenericElement
    */
   public String toString()
   {
-    StringBuffer sbuff = new StringBuffer();
-    sbuff.append(this.getStartTag());
+    StringWriter sw = new StringWriter();
+    try { write(sw); }
+    catch (IOException ignore) { }        // a StringWriter doesn't throw
+    return sw.toString(); 
+  }// 
+
+  /**
+   * Writes the HTML tags for this element, including start tag with parameters, 
+   * contained elements, and end tag, straight to the writer.  Contained elements
+   * write themselves to the same writer, so the page is never held in memory as a
+   * whole.
+   */
+  public void write(Writer out) throws IOException
+  {
+    out.write(this.getStartTag());
     if (_hasElements)   
-      sbuff.append(this.getElements());
+      writeElements(out);
     if(_hasStringValue)
-      sbuff.append(this.getStringValue());
+      out.write(this.getStringValue());
     if(_isClosable)
-      sbuff.append(this.getEndTag());
-    return sbuff.toString(); 
-  }// 
+      out.write(this.getEndTag());
+  }// end write()
     
   /** Returns entire HTML start tag */  
   public String getStartTag()
@@ -225,20 +239,23 @@ public class GenericElement implements IGenericElement
     return sbuff.toString();   
   }//end getParams() 
 
-  /** Returns HTML for all elements.  note: recursive call to toString() */ 
+  /** Returns HTML for all elements.  note: recursive call to write() */ 
   public String getElements()
   {
-    StringBuffer sbuff = new StringBuffer(); 
+    StringWriter sw = new StringWriter();
+    try { writeElements(sw); }
+    catch (IOException ignore) { }        // a StringWriter doesn't throw
+    return sw.toString();    
+  }// end getElements
+
+  /** Writes the HTML for all elements to the writer. */
+  protected void writeElements(Writer out) throws IOException
+  {
     // iterate through element list
     Iterator itr = _elementList.iterator();
     while (itr.hasNext())
-    {     
-      sbuff.append(((GenericElement)itr.next()).toString());
-      // selects next element, casts to Generic Element, gets HTML string
-//       sbuff.append((((GenericElement)itr.next()).setBrowserKind(_bkind)).toString());
-    }
-    return sbuff.toString();    
-  }// end getElements
+      ((IGenericElement)itr.next()).write(out);
+  }// end writeElements
   
   public void clear()
   { _elementList.clear(); }
@@ -235,13 +235,13 @@ public class Select extends GenericElement implements ISelect
     return this;
   }
 
-	public String toString()
+	public void write(java.io.Writer out) throws java.io.IOException
 	{
 		String blank = "&nbsp;";
 		for (int i = 0; i < _width; i++)
 			blank += "&nbsp;";
 		addOption().setValue("-1").setStringValue(blank);
-		return super.toString();
+		super.write(out);
 	}
 
 }//end Select class def
\ No newline at end of file
@@ -9,6 +9,7 @@ public class DataSet implements IDataSet
 {
   private Map _map;
   private IIID _iid;
+  private boolean _lastNull = false;
   
   public DataSet()
   {
@@ -57,6 +58,22 @@ public class DataSet implements IDataSet
   {
     return _map.get(key);
   }
+
+  /** Always throws, since this data set only has named values. */
+  public int findColumn(String key)
+    throws ORIOException
+  {
+    throw new ORIOException(msg);
+  }
+
+  public boolean wasNull()
+  {
+    return _lastNull;
+  }
+
+  /** A DataSet is a single row, and next() never moves off it. */
+  public int getRow() { return 1; }
+  public int getRowCount() { return 1; }
   
   
   
@@ -75,8 +92,8 @@ public class DataSet implements IDataSet
   public Object put(Object key, Object value) { _map.put(key,value); return this; }
   public void clear() {}
   public Set entrySet() { return null; }
-  public boolean isEmpty() { return false; }
-  public int size() { return -1; }
+  public boolean isEmpty() { return _map.isEmpty(); }
+  public int size() { return _map.size(); }
  
   //----- Egan & Alok decided that for the repository classes it would be
   // best to use specific accessor methods as we know what data to expect.
@@ -84,12 +101,12 @@ public class DataSet implements IDataSet
   
   public int getInt(String key)  throws ORIOException 
     { 
-      return Integer.parseInt(_map.get(key).toString());
+      return Integer.parseInt(_value(key).toString());
      }
   
   public long getLong(String key)  throws ORIOException 
     { 
-      return Long.parseLong(_map.get(key).toString());
+      return Long.parseLong(_value(key).toString());
     }
   
   
@@ -107,7 +124,7 @@ public class DataSet implements IDataSet
   
   public boolean getBoolean(String key)  throws ORIOException 
     { 
-      return ((Boolean)_map.get(key)).booleanValue();
+      return ((Boolean)_value(key)).booleanValue();
      }
   
   
@@ -118,9 +135,17 @@ public class DataSet implements IDataSet
      
    public float getFloat(String key)  throws ORIOException 
     { 
-      return Float.parseFloat(_map.get(key).toString());
+      return Float.parseFloat(_value(key).toString());
     }   
   
+  /** Returns the named value and remembers whether it was null, for wasNull(). */
+  private Object _value(String key)
+  {
+    Object value = _map.get(key);
+    _lastNull = (value == null);
+    return value;
+  }
+
   // Overloads that take an integer key.  For this implementation,
   // throw exceptions because don't make sense.
   private static final String msg = "Integer keys not supported in this implementation of IDataSet.";
@@ -2,7 +2,6 @@ package com.oculussoftware.util;
 
 import java.io.*;
 import java.math.*;
-import com.oculussoftware.*;
 
 /**
 * Filename:    DriveStatus.java
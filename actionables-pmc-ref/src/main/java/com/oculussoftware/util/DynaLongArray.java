@@ -18,6 +18,8 @@ Following are the basic operations possible with DynaLongArray:-
 8 indexOf(long value);
 9 isEmpty();
 10 toArray(); returns  long[];
+11 addAll(long[] values, int from, int count);
+12 binarySearch(long value); for arrays kept in order
 
 *************************/
 
@@ -33,11 +35,11 @@ public class DynaLongArray extends ArrayBase
 		}
     
     protected DynaLongArray(int size, int growth) {
-        super(size, growth, Integer.TYPE);
+        super(size, growth, Long.TYPE);
     }
 
     protected DynaLongArray(int size) {
-        super(size, Integer.TYPE);
+        super(size, Long.TYPE);
     }
 
     protected Object getArray() {
@@ -86,10 +88,17 @@ public class DynaLongArray extends ArrayBase
 		set(index,value);
 	}
 	
+	/** Adds count values of the given array, starting at from, to the end of the array */
+	public void addAll(long[] values, int from, int count)
+	{
+		int index = size();
+		setSize(index + count);
+		System.arraycopy(values, from, baseArray, index, count);
+	}
+	
 	public boolean contains(long value)
 	{
-	  java.util.Arrays.sort((long[])getArray());	
-	  return (java.util.Arrays.binarySearch((long[])getArray(),value) > 0);			
+	  return indexOf(value) >= 0;
 	}
 	
 	 /**
@@ -102,7 +111,7 @@ public class DynaLongArray extends ArrayBase
 	
 	public long[] toArray()
 	{		
-	 return (long []) getArray();	
+	 return (long []) buildArray(Long.TYPE);	
 	}
 	
 	public long get(int index)
@@ -112,8 +121,32 @@ public class DynaLongArray extends ArrayBase
 	
 	public int indexOf(long value)
 	{		
-	  java.util.Arrays.sort(baseArray);
-	  return java.util.Arrays.binarySearch(baseArray,value);	 
+	  for (int i = 0; i < size(); i++)
+	    if (baseArray[i] == value)
+	      return i;
+	  return -1;
+	}
+	
+	 /**
+		* Searches an array whose values are in ascending order.  Returns the index of the
+		* value, or (-(insertion point) - 1) if it isn't there, like java.util.Arrays.
+     */
+	public int binarySearch(long value)
+	{
+	  int low = 0;
+	  int high = size() - 1;
+	  while (low <= high)
+	  {
+	    int mid = (low + high) >>> 1;
+	    long midVal = baseArray[mid];
+	    if (midVal < value)
+	      low = mid + 1;
+	    else if (midVal > value)
+	      high = mid - 1;
+	    else
+	      return mid;
+	  }
+	  return -(low + 1);
 	}
 	
 	public boolean isEmpty() { return size()==0;}
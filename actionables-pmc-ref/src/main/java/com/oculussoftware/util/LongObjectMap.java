@@ -0,0 +1,201 @@
+package com.oculussoftware.util;
+
+import java.util.*;
+
+/*************************
+LongObjectMap maps longs to objects without boxing the keys.  It is an open addressing hash
+table: the keys and values are kept in two arrays and a key that collides goes in the next
+free slot.  Use it for maps keyed by object ids, in place of a HashMap keyed by Longs that
+allocates a Long for every put and get and an entry object for every mapping.
+
+Like HashMap, it is not synchronized and null values are allowed, although get() can't
+tell a null value from a missing key.  A map that is shared between threads should be a
+SynchronizedLongObjectMap, since a get() during a put() that grows the arrays can fail.
+
+Following are the basic operations possible with LongObjectMap:-
+
+0. Constructor call new LongObjectMap();
+1. put(long key, Object value);
+2. get(long key);
+3. containsKey(long key);
+4. remove(long key);
+5. size();
+6. clear();
+7. keys(); returns long[]
+8. values(); returns a Collection
+
+*************************/
+public class LongObjectMap
+{
+  private static final int   DEFAULT_CAPACITY = 16;
+  private static final float LOAD_FACTOR      = 0.5f;
+
+  private long[]   _keys;
+  private Object[] _values;
+  private boolean[] _used;
+  private int      _size = 0;
+  private int      _threshold;
+
+  public LongObjectMap()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** Creates a map that will hold the given number of keys before it has to grow. */
+  public LongObjectMap(int expected)
+  {
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity * LOAD_FACTOR < expected)
+      capacity <<= 1;
+    _allocate(capacity);
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  public Object get(long key)
+  {
+    int slot = _find(key);
+    return (slot < 0) ? null : _values[slot];
+  }
+
+  public boolean containsKey(long key)
+  {
+    return _find(key) >= 0;
+  }
+
+  /** Maps the key to the value and returns the value it used to have. */
+  public Object put(long key, Object value)
+  {
+    int mask = _keys.length - 1;
+    int slot = _hash(key) & mask;
+    while (_used[slot])
+    {
+      if (_keys[slot] == key)
+      {
+        Object old = _values[slot];
+        _values[slot] = value;
+        return old;
+      }
+      slot = (slot + 1) & mask;
+    }
+    _keys[slot] = key;
+    _values[slot] = value;
+    _used[slot] = true;
+    if (++_size > _threshold)
+      _rehash(_keys.length << 1);
+    return null;
+  }
+
+  /** Removes the key and returns the value it had. */
+  public Object remove(long key)
+  {
+    int slot = _find(key);
+    if (slot < 0)
+      return null;
+    Object old = _values[slot];
+    _size--;
+    // close the gap so keys that collided with this one can still be found
+    int mask = _keys.length - 1;
+    int gap = slot;
+    int next = (gap + 1) & mask;
+    while (_used[next])
+    {
+      int home = _hash(_keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask))
+      {
+        _keys[gap] = _keys[next];
+        _values[gap] = _values[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    _used[gap] = false;
+    _values[gap] = null;
+    return old;
+  }
+
+  public int size() { return _size; }
+  public boolean isEmpty() { return _size == 0; }
+
+  public void clear()
+  {
+    Arrays.fill(_used, false);
+    Arrays.fill(_values, null);
+    _size = 0;
+  }
+
+  /** Returns the keys, in no particular order. */
+  public long[] keys()
+  {
+    long[] keys = new long[_size];
+    int k = 0;
+    for (int i = 0; i < _keys.length; i++)
+      if (_used[i])
+        keys[k++] = _keys[i];
+    return keys;
+  }
+
+  /** Returns a copy of the values, in the same order as keys(). */
+  public Collection values()
+  {
+    List values = new ArrayList(_size);
+    for (int i = 0; i < _keys.length; i++)
+      if (_used[i])
+        values.add(_values[i]);
+    return values;
+  }
+
+  public String toString()
+  {
+    StringBuffer sbf = new StringBuffer("{");
+    for (int i = 0; i < _keys.length; i++)
+    {
+      if (!_used[i])
+        continue;
+      if (sbf.length() > 1)
+        sbf.append(", ");
+      sbf.append(_keys[i]).append("=").append(_values[i]);
+    }
+    return sbf.append("}").toString();
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private int _find(long key)
+  {
+    int mask = _keys.length - 1;
+    int slot = _hash(key) & mask;
+    while (_used[slot])
+    {
+      if (_keys[slot] == key)
+        return slot;
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /** Spreads the bits of the key, since ids are often sequential. */
+  private static int _hash(long key)
+  {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int)(h ^ (h >>> 32));
+  }
+
+  private void _allocate(int capacity)
+  {
+    _keys = new long[capacity];
+    _values = new Object[capacity];
+    _used = new boolean[capacity];
+    _threshold = (int)(capacity * LOAD_FACTOR);
+  }
+
+  private void _rehash(int capacity)
+  {
+    long[] keys = _keys;
+    Object[] values = _values;
+    boolean[] used = _used;
+    _allocate(capacity);
+    _size = 0;
+    for (int i = 0; i < keys.length; i++)
+      if (used[i])
+        put(keys[i], values[i]);
+  }
+}
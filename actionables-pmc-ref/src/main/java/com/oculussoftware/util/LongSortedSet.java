@@ -0,0 +1,248 @@
+package com.oculussoftware.util;
+
+/*************************
+LongSortedSet is a set of longs kept in ascending order in a DynaLongArray, for sets of
+object ids that would otherwise be a TreeSet of boxed ids.  Looking a value up is a binary
+search, and the union and intersection of two sets are a single merge of their arrays.
+
+Following are the basic operations possible with LongSortedSet:-
+
+0. Constructor call new LongSortedSet();
+1. add(long value);
+2. remove(long value);
+3. contains(long value);
+4. get(int index);  the index'th smallest value
+5. size();
+6. clear();
+7. addAll(LongSortedSet other);     union
+8. retainAll(LongSortedSet other);  intersection
+9. removeAll(LongSortedSet other);  difference
+10. toArray(); returns long[] in ascending order
+
+*************************/
+public class LongSortedSet
+{
+  private DynaLongArray _values = new DynaLongArray();
+
+  public LongSortedSet()
+  {
+  }
+
+  /** Creates a set of the given values, which don't have to be in order or distinct. */
+  public LongSortedSet(long[] values)
+  {
+    long[] sorted = (long[])values.clone();
+    java.util.Arrays.sort(sorted);
+    int count = 0;
+    for (int i = 0; i < sorted.length; i++)
+      if (i == 0 || sorted[i] != sorted[count-1])
+        sorted[count++] = sorted[i];
+    _values.addAll(sorted, 0, count);
+  }
+
+  /** Adds the value.  Returns false if it was already in the set. */
+  public boolean add(long value)
+  {
+    int size = _values.size();
+    if (size == 0 || _values.get(size-1) < value)
+    {
+      _values.add(value);                  // ids usually arrive in order
+      return true;
+    }
+    int index = _values.binarySearch(value);
+    if (index >= 0)
+      return false;
+    _values.add(-(index + 1), value);
+    return true;
+  }
+
+  /** Removes the value.  Returns false if it wasn't in the set. */
+  public boolean remove(long value)
+  {
+    int index = _values.binarySearch(value);
+    if (index < 0)
+      return false;
+    _values.remove(index);
+    return true;
+  }
+
+  public boolean contains(long value)
+  {
+    return _values.binarySearch(value) >= 0;
+  }
+
+  /** Returns the position of the value in the set, or a negative number if it isn't there. */
+  public int indexOf(long value)
+  {
+    return _values.binarySearch(value);
+  }
+
+  /** Returns the index'th smallest value. */
+  public long get(int index)
+  {
+    if (index < 0 || index >= _values.size())
+      throw new ArrayIndexOutOfBoundsException("Invalid index value");
+    return _values.get(index);
+  }
+
+  /** Removes the index'th smallest value. */
+  public void removeAt(int index)
+  {
+    _values.remove(index);
+  }
+
+  public int size() { return _values.size(); }
+  public boolean isEmpty() { return _values.isEmpty(); }
+  public void clear() { _values.clear(); }
+
+  public long[] toArray()
+  {
+    return _values.toArray();
+  }
+
+  /** Adds every value of the other set.  Returns false if none were new. */
+  public boolean addAll(LongSortedSet other)
+  {
+    int size = size();
+    if (other.isEmpty())
+      return false;
+    if (size == 0 || get(size-1) < other.get(0))
+    {
+      _values.addAll(other._values.baseArray, 0, other.size());
+      return true;
+    }
+    long[] merged = union(this, other)._values.toArray();
+    if (merged.length == size)
+      return false;
+    _set(merged, merged.length);
+    return true;
+  }
+
+  /** Removes every value that isn't in the other set.  Returns false if none were removed. */
+  public boolean retainAll(LongSortedSet other)
+  {
+    int size = size();
+    long[] kept = intersection(this, other)._values.toArray();
+    if (kept.length == size)
+      return false;
+    _set(kept, kept.length);
+    return true;
+  }
+
+  /** Removes every value that is in the other set.  Returns false if none were removed. */
+  public boolean removeAll(LongSortedSet other)
+  {
+    long[] a = _values.baseArray;
+    long[] b = other._values.baseArray;
+    int na = size(), nb = other.size();
+    long[] kept = new long[na];
+    int i = 0, j = 0, k = 0;
+    while (i < na)
+    {
+      if (j >= nb || a[i] < b[j])
+        kept[k++] = a[i++];
+      else if (a[i] > b[j])
+        j++;
+      else
+      {
+        i++;
+        j++;
+      }
+    }
+    if (k == na)
+      return false;
+    _set(kept, k);
+    return true;
+  }
+
+  public boolean equals(Object obj)
+  {
+    if (!(obj instanceof LongSortedSet))
+      return false;
+    LongSortedSet other = (LongSortedSet)obj;
+    if (other.size() != size())
+      return false;
+    for (int i = 0; i < size(); i++)
+      if (_values.get(i) != other._values.get(i))
+        return false;
+    return true;
+  }
+
+  public int hashCode()
+  {
+    int hash = 0;
+    for (int i = 0; i < size(); i++)
+    {
+      long value = _values.get(i);
+      hash += (int)(value ^ (value >>> 32));
+    }
+    return hash;
+  }
+
+  public String toString()
+  {
+    return _values.toString();
+  }
+
+  //------------------------ Public Static Methods ------------------------------------
+  /** Returns a new set of the values that are in either set. */
+  public static LongSortedSet union(LongSortedSet s1, LongSortedSet s2)
+  {
+    long[] a = s1._values.baseArray;
+    long[] b = s2._values.baseArray;
+    int na = s1.size(), nb = s2.size();
+    long[] merged = new long[na + nb];
+    int i = 0, j = 0, k = 0;
+    while (i < na && j < nb)
+    {
+      if (a[i] < b[j])
+        merged[k++] = a[i++];
+      else if (a[i] > b[j])
+        merged[k++] = b[j++];
+      else
+      {
+        merged[k++] = a[i++];
+        j++;
+      }
+    }
+    while (i < na)
+      merged[k++] = a[i++];
+    while (j < nb)
+      merged[k++] = b[j++];
+    LongSortedSet result = new LongSortedSet();
+    result._values.addAll(merged, 0, k);
+    return result;
+  }
+
+  /** Returns a new set of the values that are in both sets. */
+  public static LongSortedSet intersection(LongSortedSet s1, LongSortedSet s2)
+  {
+    long[] a = s1._values.baseArray;
+    long[] b = s2._values.baseArray;
+    int na = s1.size(), nb = s2.size();
+    long[] common = new long[Math.min(na, nb)];
+    int i = 0, j = 0, k = 0;
+    while (i < na && j < nb)
+    {
+      if (a[i] < b[j])
+        i++;
+      else if (a[i] > b[j])
+        j++;
+      else
+      {
+        common[k++] = a[i++];
+        j++;
+      }
+    }
+    LongSortedSet result = new LongSortedSet();
+    result._values.addAll(common, 0, k);
+    return result;
+  }
+
+  //------------------------ Private Methods ------------------------------------
+  private void _set(long[] values, int count)
+  {
+    _values.clear();
+    _values.addAll(values, 0, count);
+  }
+}
@@ -0,0 +1,46 @@
+package com.oculussoftware.util;
+
+import java.util.*;
+
+/*************************
+SynchronizedLongObjectMap is a LongObjectMap that can be shared between threads.  Every
+method holds the map's lock, so a get() never sees the arrays half way through being
+grown by a put() on another thread.  keys() and values() return copies, so they can be
+iterated without holding the lock.
+*************************/
+
+public class SynchronizedLongObjectMap extends LongObjectMap
+{
+  public SynchronizedLongObjectMap()
+  {
+    super();
+  }
+
+  /** Creates a map that will hold the given number of keys before it has to grow. */
+  public SynchronizedLongObjectMap(int expected)
+  {
+    super(expected);
+  }
+
+  //------------------------ Public Methods ------------------------------------
+  public synchronized Object get(long key) { return super.get(key); }
+  public synchronized boolean containsKey(long key) { return super.containsKey(key); }
+  public synchronized Object put(long key, Object value) { return super.put(key, value); }
+  public synchronized Object remove(long key) { return super.remove(key); }
+  public synchronized int size() { return super.size(); }
+  public synchronized boolean isEmpty() { return super.isEmpty(); }
+  public synchronized void clear() { super.clear(); }
+  public synchronized long[] keys() { return super.keys(); }
+  public synchronized Collection values() { return super.values(); }
+  public synchronized String toString() { return super.toString(); }
+
+  /** Puts the value only if the key isn't mapped yet, and returns the value it ends up with. */
+  public synchronized Object putIfAbsent(long key, Object value)
+  {
+    Object old = super.get(key);
+    if (old != null)
+      return old;
+    super.put(key, value);
+    return value;
+  }
+}
@@ -4,7 +4,6 @@ import java.text.*;
 import java.util.*;
 import java.io.*;
 
-import com.oculussoftware.*;
 import com.oculussoftware.ui.*;
 
 